@@ -0,0 +1,91 @@
+package com.tpts.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.tpts.entity.Parcel;
+
+/**
+ * JPA / Hibernate settings that are not left to application.properties
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class JpaConfig implements SmartInitializingSingleton {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Enable JDBC insert/update batching unless configured explicitly.
+     * Only entities with non-IDENTITY ids (Parcel) batch inserts.
+     * Lazy associations of a loaded list are initialized in IN (...) batches
+     * rather than one query per row.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer(
+            @Value("${parcel.import.batch-size:100}") int batchSize,
+            @Value("${jpa.fetch-batch-size:100}") int fetchBatchSize) {
+        return properties -> {
+            properties.putIfAbsent("hibernate.jdbc.batch_size", batchSize);
+            properties.putIfAbsent("hibernate.order_inserts", true);
+            properties.putIfAbsent("hibernate.order_updates", true);
+            properties.putIfAbsent("hibernate.default_batch_fetch_size", fetchBatchSize);
+        };
+    }
+
+    /**
+     * Let MySQL Connector/J rewrite JDBC batches into multi-row statements;
+     * without rewriteBatchedStatements it still sends every batched row on
+     * its own. Set on the pool rather than in the datasource URL, which lives
+     * in the untracked application.properties; an explicit setting wins.
+     */
+    @Bean
+    public static BeanPostProcessor mysqlBatchRewritePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource
+                        && dataSource.getJdbcUrl() != null
+                        && dataSource.getJdbcUrl().startsWith("jdbc:mysql:")
+                        && !dataSource.getJdbcUrl().contains("rewriteBatchedStatements")
+                        && !dataSource.getDataSourceProperties().containsKey("rewriteBatchedStatements")) {
+                    dataSource.addDataSourceProperty("rewriteBatchedStatements", "true");
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Keep the parcel id sequence ahead of existing ids
+     * ddl-auto creates parcels_seq starting at 1 on databases whose parcels were
+     * numbered by AUTO_INCREMENT; raise it before the first insert could collide.
+     * Runs once all singletons (including the EntityManagerFactory that creates the
+     * table) exist, but before the web server, schedulers and runners start.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        alignParcelIdSequence();
+    }
+
+    void alignParcelIdSequence() {
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM parcels", Long.class);
+            long floor = (maxId != null ? maxId : 0) + Parcel.ID_ALLOCATION_SIZE + 1;
+            int updated = jdbcTemplate.update("UPDATE parcels_seq SET next_val = ? WHERE next_val < ?", floor, floor);
+            if (updated > 0) {
+                log.warn("Raised parcels_seq to {} (was behind the highest parcel id {})", floor, maxId);
+            }
+        } catch (Exception e) {
+            log.error("Could not check parcels_seq against existing parcel ids: {}", e.getMessage());
+        }
+    }
+}
@@ -99,7 +99,7 @@ public class SecurityConfig {
                         .requestMatchers("/api/upload/**").permitAll()
 
                         // WebSocket endpoints
-                        .requestMatchers("/ws/**").permitAll()
+                        .requestMatchers("/ws/**", "/ws-native").permitAll()
 
                         // Public tracking - No auth required
                         .requestMatchers(HttpMethod.GET, "/api/parcels/track").permitAll()
@@ -139,6 +139,7 @@ public class SecurityConfig {
 
                         // Company admin endpoints (private)
                         .requestMatchers("/api/company/**").hasRole("COMPANY_ADMIN")
+                        .requestMatchers(HttpMethod.GET, "/api/agents/*/trail").hasAnyRole("COMPANY_ADMIN", "SUPER_ADMIN")
                         .requestMatchers("/api/agents/**").hasAnyRole("COMPANY_ADMIN", "DELIVERY_AGENT")
 
                         // Delivery agent endpoints
@@ -0,0 +1,144 @@
+package com.tpts.config;
+
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broker Channel Executor, sharded by destination
+ *
+ * Splits the in-process broker into lanes: every message for one destination
+ * (e.g. /topic/parcel/TRK...) is dispatched by the same single-threaded lane,
+ * so subscribers of a topic see its updates in publish order, while different
+ * topics fan out in parallel. Publishers (REST pings, @MessageMapping methods)
+ * only enqueue, instead of walking the subscriber list on their own thread.
+ *
+ * Lanes are bounded; when one is full the publisher waits up to offerTimeoutMs
+ * for room, which slows producers down rather than growing the queue without
+ * limit. If the lane is still full the message is dropped and counted; it is
+ * never dispatched on the publisher's thread, where it could overtake
+ * messages still queued for its topic. Messages without a destination go to
+ * the regular pool.
+ */
+public class ShardedChannelExecutor extends ThreadPoolTaskExecutor {
+
+    private final int laneCount;
+    private final int laneCapacity;
+    private final long offerTimeoutMs;
+
+    private ThreadPoolExecutor[] lanes;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public ShardedChannelExecutor(int laneCount, int laneCapacity, long offerTimeoutMs) {
+        if (laneCount < 1 || laneCapacity < 1) {
+            throw new IllegalArgumentException("laneCount and laneCapacity must be positive");
+        }
+        if (offerTimeoutMs < 0) {
+            throw new IllegalArgumentException("offerTimeoutMs must not be negative");
+        }
+        this.laneCount = laneCount;
+        this.laneCapacity = laneCapacity;
+        this.offerTimeoutMs = offerTimeoutMs;
+        setCorePoolSize(1);
+        setMaxPoolSize(1);
+        setThreadNamePrefix("broker-lane-");
+    }
+
+    @Override
+    protected ExecutorService initializeExecutor(ThreadFactory threadFactory,
+                                                 RejectedExecutionHandler rejectedExecutionHandler) {
+        RejectedExecutionHandler waitForRoom = (task, lane) -> {
+            if (lane.isShutdown()) {
+                return;
+            }
+            blocked.increment();
+            try {
+                // The lane thread is running (the queue is full), so queuing directly is safe
+                if (lane.getQueue().offer(task, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            dropped.increment();
+        };
+        ThreadPoolExecutor[] created = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            created[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(laneCapacity), threadFactory, waitForRoom);
+        }
+        lanes = created;
+        return super.initializeExecutor(threadFactory, rejectedExecutionHandler);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        String destination = destinationOf(task);
+        if (destination == null || lanes == null) {
+            super.execute(task);
+            return;
+        }
+        dispatched.increment();
+        lanes[Math.floorMod(destination.hashCode(), laneCount)].execute(task);
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        if (lanes != null) {
+            for (ThreadPoolExecutor lane : lanes) {
+                lane.shutdown();
+            }
+        }
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        int queued = 0;
+        int maxQueued = 0;
+        if (lanes != null) {
+            for (ThreadPoolExecutor lane : lanes) {
+                int size = lane.getQueue().size();
+                queued += size;
+                maxQueued = Math.max(maxQueued, size);
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lanes", laneCount);
+        stats.put("laneCapacity", laneCapacity);
+        stats.put("dispatched", dispatched.sum());
+        stats.put("queued", queued);
+        stats.put("maxLaneQueued", maxQueued);
+        stats.put("offerTimeoutMs", offerTimeoutMs);
+        stats.put("blocked", blocked.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static String destinationOf(Runnable task) {
+        if (task instanceof MessageHandlingRunnable runnable) {
+            return SimpMessageHeaderAccessor.getDestination(runnable.getMessage().getHeaders());
+        }
+        return null;
+    }
+}
@@ -1,16 +1,85 @@
 package com.tpts.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.*;
 
+/**
+ * WebSocket / STOMP Configuration
+ *
+ * The simple broker fans every tracking update out on the client outbound
+ * channel, so that channel gets its own sized pool and each session gets a
+ * bounded send buffer and send time: a slow mobile client is disconnected
+ * instead of holding a thread and backing up everyone else's frames.
+ * Server heartbeats let both sides drop dead connections behind NATs.
+ *
+ * Messages published to the broker (tracking pings, group events) are
+ * dispatched on destination-sharded lanes (ShardedChannelExecutor): one
+ * topic's updates stay in order, different topics fan out in parallel, and
+ * the publishing request thread no longer walks the subscriber list.
+ * The subscription registry caches matches per destination; its limit must
+ * exceed the number of live parcel topics, or every publish falls back to a
+ * locked scan of all subscriptions.
+ *
+ * Endpoints:
+ * - /ws        SockJS (browser fallback transports)
+ * - /ws-native plain WebSocket for mobile/native clients (no SockJS framing)
+ */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Value("${websocket.inbound.core-pool-size:4}")
+    private int inboundCorePoolSize;
+
+    @Value("${websocket.inbound.max-pool-size:16}")
+    private int inboundMaxPoolSize;
+
+    @Value("${websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${websocket.channel.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${websocket.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.send-buffer-size-limit-bytes:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${websocket.message-size-limit-bytes:65536}")
+    private int messageSizeLimit;
+
+    @Value("${websocket.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    @Value("${websocket.broker.lanes:4}")
+    private int brokerLanes;
+
+    @Value("${websocket.broker.lane-capacity:10000}")
+    private int brokerLaneCapacity;
+
+    @Value("${websocket.broker.lane-offer-timeout-ms:100}")
+    private long brokerLaneOfferTimeoutMs;
+
+    @Value("${websocket.broker.cache-limit:16384}")
+    private int brokerCacheLimit;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[] { heartbeatMs, heartbeatMs })
+                .setTaskScheduler(brokerHeartbeatScheduler());
+        config.setCacheLimit(brokerCacheLimit);
+        config.configureBrokerChannel()
+                .taskExecutor(new ShardedChannelExecutor(brokerLanes, brokerLaneCapacity, brokerLaneOfferTimeoutMs));
         config.setApplicationDestinationPrefixes("/app");
     }
 
@@ -18,6 +87,54 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
-                .withSockJS();
+                .withSockJS()
+                .setHeartbeatTime(heartbeatMs * 2);
+
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*");
+    }
+
+    // ==========================================
+    // Channel Executors
+    // ==========================================
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(inboundCorePoolSize)
+                .maxPoolSize(inboundMaxPoolSize)
+                .queueCapacity(queueCapacity);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(outboundMaxPoolSize)
+                .queueCapacity(queueCapacity);
+    }
+
+    // ==========================================
+    // Per-Session Limits
+    // ==========================================
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit);
+    }
+
+    /**
+     * Scheduler for STOMP heartbeats; a bean so the container starts and stops it.
+     * @Scheduled jobs are unaffected: SchedulerConfig sets their scheduler explicitly.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler brokerHeartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        scheduler.setDaemon(true);
+        return scheduler;
     }
 }
@@ -5,25 +5,32 @@ import com.tpts.dto.request.UpdateAgentRequest;
 import com.tpts.dto.request.UpdateAvailabilityRequest;
 import com.tpts.dto.request.UpdateLocationRequest;
 import com.tpts.dto.request.ChangePasswordRequest;
+import com.tpts.dto.request.LocationTrailRequest;
 import com.tpts.dto.response.AgentDTO;
 import com.tpts.dto.response.AgentDashboardDTO;
+import com.tpts.dto.response.AgentTrailDTO;
 import com.tpts.dto.response.ApiResponse;
+import com.tpts.dto.response.LocationTrailResultDTO;
+import com.tpts.dto.response.OptimizedRouteDTO;
 import com.tpts.entity.User;
 import com.tpts.service.AgentService;
 import com.tpts.service.AgentLocationService;
 import com.tpts.service.CloudinaryService;
+import com.tpts.service.RouteOptimizationService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -40,6 +47,7 @@ public class AgentController {
     private final AgentService agentService;
     private final AgentLocationService agentLocationService;
     private final CloudinaryService cloudinaryService;
+    private final RouteOptimizationService routeOptimizationService;
 
     // ==========================================
     // Agent Self-Service Endpoints
@@ -272,11 +280,47 @@ public class AgentController {
 
         // Also broadcast location to customers tracking this agent's parcels via
         // WebSocket
-        agentLocationService.updateAgentLocation(agent.getId(), request.getLatitude(), request.getLongitude());
+        agentLocationService.broadcastLocation(agent.getId(), request.getLatitude(), request.getLongitude());
 
         return ResponseEntity.ok(ApiResponse.success(agent, "Location updated"));
     }
 
+    /**
+     * Get active pickups/deliveries in optimized visiting order
+     * GET /api/agents/route/optimized?lat=..&lng=.. (start defaults to last known location)
+     */
+    @GetMapping("/route/optimized")
+    @PreAuthorize("hasRole('DELIVERY_AGENT')")
+    public ResponseEntity<ApiResponse<OptimizedRouteDTO>> getOptimizedRoute(
+            @RequestParam(required = false) BigDecimal lat,
+            @RequestParam(required = false) BigDecimal lng,
+            @AuthenticationPrincipal User currentUser) {
+        OptimizedRouteDTO route = routeOptimizationService.getOptimizedRoute(currentUser, lat, lng);
+        return ResponseEntity.ok(ApiResponse.success(route,
+                "Optimized " + route.getStops().size() + " stops"));
+    }
+
+    /**
+     * Upload a batched, delta-encoded GPS trail (agents with intermittent connectivity)
+     * POST /api/agents/location/trail
+     */
+    @PostMapping("/location/trail")
+    @PreAuthorize("hasRole('DELIVERY_AGENT')")
+    public ResponseEntity<ApiResponse<LocationTrailResultDTO>> uploadLocationTrail(
+            @Valid @RequestBody LocationTrailRequest request,
+            @AuthenticationPrincipal User currentUser) {
+        Long agentId = agentService.resolveAgentId(currentUser);
+        LocationTrailResultDTO result = agentLocationService.ingestTrail(agentId, request);
+
+        if (request.getGroupShipmentId() != null && result.getAccepted() > 0) {
+            agentService.updateGroupAgentLocation(agentId, request.getGroupShipmentId(),
+                    result.getLatitude().doubleValue(), result.getLongitude().doubleValue());
+        }
+
+        return ResponseEntity.ok(ApiResponse.success(result,
+                "Accepted " + result.getAccepted() + " of " + result.getReceived() + " points"));
+    }
+
     @PatchMapping("/{agentId}/location")
     @PreAuthorize("hasRole('COMPANY_ADMIN')")
     public ResponseEntity<ApiResponse<Void>> updateLocationById(
@@ -287,6 +331,25 @@ public class AgentController {
         return ResponseEntity.ok(ApiResponse.success(null, "Location updated"));
     }
 
+    /**
+     * Replay an agent's recorded GPS trail (defaults to the last 24 hours)
+     * GET /api/agents/{agentId}/trail?from=2024-01-01T00:00:00&to=2024-01-01T23:59:59
+     */
+    @GetMapping("/{agentId}/trail")
+    @PreAuthorize("hasAnyRole('COMPANY_ADMIN', 'SUPER_ADMIN')")
+    public ResponseEntity<ApiResponse<AgentTrailDTO>> getAgentTrail(
+            @PathVariable Long agentId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "5000") int limit,
+            @AuthenticationPrincipal User currentUser) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        LocalDateTime start = from != null ? from : end.minusHours(24);
+        AgentTrailDTO trail = agentService.getAgentTrail(agentId, start, end,
+                Math.min(Math.max(limit, 1), 50000), currentUser);
+        return ResponseEntity.ok(ApiResponse.success(trail, "Retrieved " + trail.getCount() + " trail points"));
+    }
+
     /**
      * Public endpoint to get agent's current location for customer tracking
      */
@@ -294,15 +357,10 @@ public class AgentController {
     public ResponseEntity<ApiResponse<java.util.Map<String, Object>>> getAgentLocation(
             @PathVariable Long agentId) {
         log.debug("Fetching location for agent {}", agentId);
-        var agent = agentService.getAgentById(agentId);
-        if (agent == null || agent.getCurrentLatitude() == null || agent.getCurrentLongitude() == null) {
+        java.util.Map<String, Object> locationData = agentService.getAgentLocation(agentId);
+        if (locationData == null) {
             return ResponseEntity.ok(ApiResponse.success(null, "Location not available"));
         }
-        java.util.Map<String, Object> locationData = new java.util.HashMap<>();
-        locationData.put("agentLat", agent.getCurrentLatitude());
-        locationData.put("agentLng", agent.getCurrentLongitude());
-        locationData.put("agentName", agent.getFullName());
-        locationData.put("timestamp", agent.getLocationUpdatedAt());
         return ResponseEntity.ok(ApiResponse.success(locationData, "Agent location retrieved"));
     }
 
@@ -399,6 +457,25 @@ public class AgentController {
                 "Retrieved " + agents.size() + " agents (ordered by pincode priority)"));
     }
 
+    /**
+     * Nearest-agent variant of /available/priority, selected when lat/lng are given
+     * GET /api/agents/available/priority?lat=..&lng=..&k=10&radiusKm=5
+     */
+    @GetMapping(value = "/available/priority", params = { "lat", "lng" })
+    @PreAuthorize("hasRole('COMPANY_ADMIN')")
+    public ResponseEntity<ApiResponse<List<AgentDTO>>> getNearestAvailableAgents(
+            @RequestParam BigDecimal lat,
+            @RequestParam BigDecimal lng,
+            @RequestParam(defaultValue = "10") int k,
+            @RequestParam(required = false) Double radiusKm,
+            @AuthenticationPrincipal User currentUser) {
+        log.info("Getting {} nearest available agents to ({}, {})", k, lat, lng);
+        List<AgentDTO> agents = agentService.getNearestAvailableAgents(lat, lng, Math.min(Math.max(k, 1), 100),
+                radiusKm, currentUser);
+        return ResponseEntity.ok(ApiResponse.success(agents,
+                "Retrieved " + agents.size() + " agents (ordered by distance)"));
+    }
+
     // ==========================================
     // Profile Image Management
     // ==========================================
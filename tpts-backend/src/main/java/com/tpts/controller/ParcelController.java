@@ -1,23 +1,41 @@
 package com.tpts.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.tpts.dto.request.AssignAgentRequest;
 import com.tpts.dto.request.CreateParcelRequest;
+import com.tpts.dto.request.ParcelListFilter;
 import com.tpts.dto.request.UpdateParcelStatusRequest;
 import com.tpts.dto.response.ApiResponse;
+import com.tpts.dto.response.CursorPageDTO;
 import com.tpts.dto.response.ParcelDTO;
+import com.tpts.dto.response.ParcelImportRowResult;
+import com.tpts.dto.response.ParcelImportSummaryDTO;
 import com.tpts.dto.response.ParcelTrackingDTO;
 import com.tpts.entity.User;
+import com.tpts.exception.TptsExceptions.BadRequestException;
+import com.tpts.service.ParcelImportService;
 import com.tpts.service.ParcelService;
+import com.tpts.service.TrackingProjectionCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Parcel Controller
@@ -28,7 +46,9 @@ import java.util.List;
  *
  * Customer Endpoints:
  * - POST /api/parcels - Create new parcel
+ * - POST /api/parcels/import - Bulk create parcels from CSV / JSON lines
  * - GET /api/parcels/my - Get my parcels
+ * - GET /api/parcels/my/page - Get my parcels, paginated and filtered
  * - GET /api/parcels/my/active - Get my active parcels
  * - GET /api/parcels/{id} - Get parcel by ID
  * - GET /api/parcels/tracking/{number} - Get parcel by tracking number
@@ -37,12 +57,14 @@ import java.util.List;
  *
  * Company Endpoints:
  * - GET /api/parcels/company - Get all company parcels
+ * - GET /api/parcels/company/page - Get company parcels, paginated and filtered
  * - GET /api/parcels/company/pending - Get parcels needing assignment
  * - PATCH /api/parcels/{id}/assign - Assign agent to parcel
  *
  * Agent Endpoints:
  * - GET /api/parcels/agent/active - Get agent's active deliveries
  * - GET /api/parcels/agent/all - Get all agent's deliveries
+ * - GET /api/parcels/agent/all/page - Get agent's deliveries, paginated and filtered
  * - PATCH /api/parcels/{id}/status - Update parcel status
  */
 @RestController
@@ -52,6 +74,8 @@ import java.util.List;
 public class ParcelController {
 
         private final ParcelService parcelService;
+        private final ParcelImportService parcelImportService;
+        private final ObjectMapper objectMapper;
 
         // ==========================================
         // Public Tracking (No Auth Required)
@@ -60,6 +84,8 @@ public class ParcelController {
         /**
          * Public parcel tracking
          * GET /api/parcels/track?trackingNumber=TRK123&phoneLastFour=1234
+         * Sends an ETag; a repeat poll with a matching If-None-Match gets 304
+         * (handled by Spring for GET responses that carry an ETag)
          */
         @GetMapping("/track")
         public ResponseEntity<ApiResponse<ParcelTrackingDTO>> trackParcel(
@@ -68,9 +94,12 @@ public class ParcelController {
 
                 log.info("Public tracking request for: {}", trackingNumber);
 
-                ParcelTrackingDTO tracking = parcelService.trackParcel(trackingNumber, phoneLastFour);
+                TrackingProjectionCache.TrackingView view = parcelService.trackParcel(trackingNumber, phoneLastFour);
 
-                return ResponseEntity.ok(ApiResponse.success(tracking, "Parcel tracking info retrieved"));
+                return ResponseEntity.ok()
+                                .eTag(view.etag())
+                                .cacheControl(CacheControl.noCache())
+                                .body(ApiResponse.success(view.tracking(), "Parcel tracking info retrieved"));
         }
 
         // ==========================================
@@ -97,6 +126,58 @@ public class ParcelController {
                                                 + parcel.getTrackingNumber()));
         }
 
+        /**
+         * Bulk create parcels
+         * POST /api/parcels/import?companyId=1&format=csv (or format=jsonl)
+         * The file is the raw request body (e.g. Content-Type: text/csv), read as a
+         * stream. CSV needs a header row of CreateParcelRequest field names; a row's
+         * companyId column overrides the companyId parameter.
+         * Answers with NDJSON while the file is processed: one line per row
+         * (CREATED with tracking number and price, or FAILED with errors), then a
+         * SUMMARY line. Invalid rows never stop the import.
+         */
+        @PostMapping("/import")
+        @PreAuthorize("hasRole('CUSTOMER')")
+        public void importParcels(
+                        @RequestParam(required = false) Long companyId,
+                        @RequestParam(defaultValue = "csv") String format,
+                        @AuthenticationPrincipal User currentUser,
+                        HttpServletRequest request,
+                        HttpServletResponse response) throws IOException {
+
+                ParcelImportService.Format importFormat;
+                try {
+                        importFormat = ParcelImportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                        throw new BadRequestException("format must be csv or jsonl");
+                }
+
+                log.info("Bulk parcel import ({}) for customer: {}", importFormat, currentUser.getEmail());
+
+                response.setContentType("application/x-ndjson");
+                response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+                Writer out = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+
+                // Nothing is written before the first batch, so request-level errors
+                // still reach the exception handler as a normal error response
+                ParcelImportSummaryDTO summary = parcelImportService.importParcels(
+                                request.getInputStream(), importFormat, companyId, currentUser, results -> {
+                                        try {
+                                                for (ParcelImportRowResult result : results) {
+                                                        out.write(objectMapper.writeValueAsString(result));
+                                                        out.write('\n');
+                                                }
+                                                out.flush();
+                                        } catch (IOException e) {
+                                                throw new UncheckedIOException(e);
+                                        }
+                                });
+
+                out.write(objectMapper.writeValueAsString(summary));
+                out.write('\n');
+                out.flush();
+        }
+
         /**
          * Get customer's parcels
          * GET /api/parcels/my
@@ -114,6 +195,22 @@ public class ParcelController {
                                 "Retrieved " + parcels.size() + " parcels"));
         }
 
+        /**
+         * Get one page of customer's parcels
+         * GET /api/parcels/my/page?cursor=&limit=&status=&from=&to=&city=
+         */
+        @GetMapping("/my/page")
+        @PreAuthorize("hasRole('CUSTOMER')")
+        public ResponseEntity<ApiResponse<CursorPageDTO<ParcelDTO>>> getMyParcelPage(
+                        ParcelListFilter filter,
+                        @AuthenticationPrincipal User currentUser) {
+
+                CursorPageDTO<ParcelDTO> page = parcelService.getCustomerParcelPage(currentUser, filter);
+
+                return ResponseEntity.ok(ApiResponse.success(page,
+                                "Retrieved " + page.getItems().size() + " parcels"));
+        }
+
         /**
          * Get customer's active parcels
          * GET /api/parcels/my/active
@@ -240,6 +337,22 @@ public class ParcelController {
                                 "Retrieved " + parcels.size() + " parcels"));
         }
 
+        /**
+         * Get one page of company parcels
+         * GET /api/parcels/company/page?cursor=&limit=&status=&from=&to=&city=
+         */
+        @GetMapping("/company/page")
+        @PreAuthorize("hasRole('COMPANY_ADMIN')")
+        public ResponseEntity<ApiResponse<CursorPageDTO<ParcelDTO>>> getCompanyParcelPage(
+                        ParcelListFilter filter,
+                        @AuthenticationPrincipal User currentUser) {
+
+                CursorPageDTO<ParcelDTO> page = parcelService.getCompanyParcelPage(currentUser, filter);
+
+                return ResponseEntity.ok(ApiResponse.success(page,
+                                "Retrieved " + page.getItems().size() + " parcels"));
+        }
+
         /**
          * Get parcels needing assignment
          * GET /api/parcels/company/pending
@@ -314,6 +427,22 @@ public class ParcelController {
                                 "Retrieved " + parcels.size() + " deliveries"));
         }
 
+        /**
+         * Get one page of agent's deliveries
+         * GET /api/parcels/agent/all/page?cursor=&limit=&status=&from=&to=&city=
+         */
+        @GetMapping("/agent/all/page")
+        @PreAuthorize("hasRole('DELIVERY_AGENT')")
+        public ResponseEntity<ApiResponse<CursorPageDTO<ParcelDTO>>> getAgentDeliveryPage(
+                        ParcelListFilter filter,
+                        @AuthenticationPrincipal User currentUser) {
+
+                CursorPageDTO<ParcelDTO> page = parcelService.getAgentParcelPage(currentUser, filter);
+
+                return ResponseEntity.ok(ApiResponse.success(page,
+                                "Retrieved " + page.getItems().size() + " deliveries"));
+        }
+
         /**
          * Update parcel status (pickup, in-transit, delivered)
          * PATCH /api/parcels/{id}/status
@@ -1,6 +1,7 @@
 package com.tpts.controller;
 
 import com.tpts.dto.response.ApiResponse;
+import com.tpts.entity.VehicleType;
 import com.tpts.service.RouteService;
 import com.tpts.service.GeocodingService;
 import lombok.RequiredArgsConstructor;
@@ -36,17 +37,19 @@ public class RouteController {
     }
 
     /**
-     * Calculate ETA to destination
-     * GET /api/route/eta?fromLat=13.08&fromLng=80.27&toLat=12.97&toLng=77.59
+     * Calculate ETA to destination from learned delivery speeds
+     * GET /api/route/eta?fromLat=13.08&fromLng=80.27&toLat=12.97&toLng=77.59&city=Chennai&vehicleType=BIKE
      */
     @GetMapping("/eta")
     public ResponseEntity<ApiResponse<RouteService.EtaResponse>> calculateEta(
             @RequestParam BigDecimal fromLat,
             @RequestParam BigDecimal fromLng,
             @RequestParam BigDecimal toLat,
-            @RequestParam BigDecimal toLng) {
+            @RequestParam BigDecimal toLng,
+            @RequestParam(required = false) String city,
+            @RequestParam(required = false) VehicleType vehicleType) {
 
-        RouteService.EtaResponse eta = routeService.calculateEta(fromLat, fromLng, toLat, toLng);
+        RouteService.EtaResponse eta = routeService.calculateEta(fromLat, fromLng, toLat, toLng, city, vehicleType);
         return ResponseEntity.ok(ApiResponse.success(eta, "ETA calculated successfully"));
     }
 
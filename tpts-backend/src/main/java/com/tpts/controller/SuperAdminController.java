@@ -52,6 +52,9 @@ import java.util.Map;
  * - GET /api/super-admin/ratings/flagged - Flagged ratings
  * - POST /api/super-admin/ratings/{id}/unflag - Unflag rating
  * - POST /api/super-admin/ratings/{id}/remove - Remove rating
+ *
+ * System:
+ * - GET /api/super-admin/stats/system - Cache and pipeline metrics
  */
 @RestController
 @RequestMapping("/api/super-admin")
@@ -603,6 +606,24 @@ public class SuperAdminController {
         return ResponseEntity.ok(ApiResponse.success(stats, "Cancellation stats retrieved"));
     }
 
+    // ==========================================
+    // System Metrics
+    // ==========================================
+
+    /**
+     * Get runtime cache and pipeline metrics
+     * GET /api/super-admin/stats/system
+     */
+    @GetMapping("/stats/system")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getSystemMetrics() {
+
+        log.info("Getting system metrics");
+
+        Map<String, Object> metrics = superAdminService.getSystemMetrics();
+
+        return ResponseEntity.ok(ApiResponse.success(metrics, "System metrics retrieved"));
+    }
+
     // ==========================================
     // Login Activity Logs
     // ==========================================
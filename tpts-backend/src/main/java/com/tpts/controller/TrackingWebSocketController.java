@@ -1,24 +1,31 @@
 package com.tpts.controller;
 
+import com.tpts.dto.event.AgentLocationEvent;
+import com.tpts.dto.event.GroupUpdateEvent;
 import com.tpts.dto.response.ParcelTrackingDTO;
+import com.tpts.service.LocationBroadcastThrottle;
+import com.tpts.service.LocationBroadcastThrottle.DueUpdate;
 import com.tpts.service.ParcelService;
+import com.tpts.service.TrackingMessageEncoder;
+import com.tpts.service.TrackingPubSub;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
-import java.util.Map;
+import java.util.List;
 
 @Controller
 @RequiredArgsConstructor
 @Slf4j
 public class TrackingWebSocketController {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final TrackingPubSub trackingPubSub;
     private final ParcelService parcelService;
+    private final LocationBroadcastThrottle locationThrottle;
+    private final TrackingMessageEncoder messageEncoder;
 
     /**
      * Subscribe to parcel tracking
@@ -35,23 +42,39 @@ public class TrackingWebSocketController {
      * Called internally when parcel status changes
      */
     public void broadcastParcelUpdate(String trackingNumber, ParcelTrackingDTO tracking) {
-        messagingTemplate.convertAndSend("/topic/tracking/" + trackingNumber, tracking);
+        trackingPubSub.publish("/topic/tracking/" + trackingNumber, messageEncoder.json(tracking));
         log.info("Broadcasted update for {}", trackingNumber);
     }
 
     /**
      * Broadcast agent location update
-     * Called when agent updates GPS location
+     * Called when agent updates GPS location; throttled per topic, so pings
+     * while standing still or arriving too fast are suppressed or coalesced
+     * (and never serialized)
      */
-    public void broadcastAgentLocation(String trackingNumber, Map<String, Object> locationData) {
-        messagingTemplate.convertAndSend("/topic/agent-location/" + trackingNumber, locationData);
+    public void broadcastAgentLocation(String trackingNumber, double latitude, double longitude,
+            AgentLocationEvent event) {
+        if (locationThrottle.offer(trackingNumber, latitude, longitude, event)) {
+            trackingPubSub.publish("/topic/agent-location/" + trackingNumber, messageEncoder.agentLocation(event));
+        }
+    }
+
+    /**
+     * Send the latest held agent location of each topic whose interval has passed
+     * Called by TrackingScheduler
+     */
+    public void flushPendingAgentLocations() {
+        List<DueUpdate> due = locationThrottle.drainDue();
+        for (DueUpdate update : due) {
+            trackingPubSub.publish("/topic/agent-location/" + update.topic(), messageEncoder.agentLocation(update.event()));
+        }
     }
 
     /**
      * Broadcast group shipment update
      */
-    public void broadcastGroupUpdate(String groupCode, Map<String, Object> groupData) {
-        messagingTemplate.convertAndSend("/topic/group/" + groupCode, groupData);
+    public void broadcastGroupUpdate(String groupCode, GroupUpdateEvent event) {
+        trackingPubSub.publish("/topic/group/" + groupCode, messageEncoder.json(event));
         log.info("Broadcasted group update for {}", groupCode);
     }
 }
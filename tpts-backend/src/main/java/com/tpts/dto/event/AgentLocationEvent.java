@@ -0,0 +1,26 @@
+package com.tpts.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Agent location update sent to /topic/agent-location/{trackingNumber}
+ * Distance and ETA are null when the parcel has no delivery coordinates.
+ *
+ * @param distanceKm straight-line distance to the delivery point, two decimals ("3.40")
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AgentLocationEvent(
+        BigDecimal agentLat,
+        BigDecimal agentLng,
+        LocalDateTime timestamp,
+        String distanceKm,
+        Integer etaMinutes,
+        String etaText) {
+
+    public boolean hasEta() {
+        return distanceKm != null && etaMinutes != null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.tpts.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Group shipment update sent to /topic/group/{groupCode}
+ *
+ * @param status    e.g. "URGENT"
+ * @param timeLeft  human-readable time left until the group deadline
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record GroupUpdateEvent(
+        Integer membersNeeded,
+        String timeLeft,
+        String status) {
+}
@@ -0,0 +1,45 @@
+package com.tpts.dto.event;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.tpts.entity.Parcel;
+import com.tpts.entity.ParcelStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Parcel lifecycle change, recorded in the outbox and delivered to
+ * ParcelEventSubscribers after the transaction commits
+ *
+ * @param fromStatus status before the change (null for PAYMENT_CONFIRMED)
+ * @param agentId    agent assigned at the time of the change, if any
+ * @param paymentId  set for PAYMENT_CONFIRMED
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ParcelLifecycleEvent(
+        Type type,
+        Long parcelId,
+        String trackingNumber,
+        ParcelStatus fromStatus,
+        ParcelStatus toStatus,
+        Long agentId,
+        Long paymentId,
+        LocalDateTime occurredAt) {
+
+    public enum Type {
+        PAYMENT_CONFIRMED, // Payment verified; parcel confirmed (and created, in the payment-first flow)
+        AGENT_ASSIGNED,    // Company assigned an agent
+        STATUS_CHANGED,    // Status update by agent or company
+        CANCELLED          // Cancelled by the customer
+    }
+
+    public static ParcelLifecycleEvent of(Type type, Parcel parcel, ParcelStatus fromStatus) {
+        return new ParcelLifecycleEvent(type, parcel.getId(), parcel.getTrackingNumber(), fromStatus,
+                parcel.getStatus(), parcel.getAgent() != null ? parcel.getAgent().getId() : null, null,
+                LocalDateTime.now());
+    }
+
+    public static ParcelLifecycleEvent paymentConfirmed(Parcel parcel, Long paymentId) {
+        return new ParcelLifecycleEvent(Type.PAYMENT_CONFIRMED, parcel.getId(), parcel.getTrackingNumber(), null,
+                parcel.getStatus(), null, paymentId, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,46 @@
+package com.tpts.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO for a batched, delta-encoded GPS trail
+ * POST /api/agents/location/trail
+ *
+ * Coordinates are integer micro-degrees (degrees * 1e6). The first point is
+ * (baseTime, baseLat, baseLng); point i is the previous point plus
+ * (timeDeltas[i], latDeltas[i], lngDeltas[i]). The first deltas are ignored
+ * and should be sent as 0.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LocationTrailRequest {
+
+    @NotNull(message = "Base time is required")
+    private Long baseTime; // epoch millis of the first point
+
+    @NotNull(message = "Base latitude is required")
+    private Integer baseLat;
+
+    @NotNull(message = "Base longitude is required")
+    private Integer baseLng;
+
+    @NotEmpty(message = "At least one point is required")
+    private List<Long> timeDeltas; // millis since previous point
+
+    @NotEmpty(message = "At least one point is required")
+    private List<Integer> latDeltas;
+
+    @NotEmpty(message = "At least one point is required")
+    private List<Integer> lngDeltas;
+
+    private Long groupShipmentId;
+}
@@ -0,0 +1,27 @@
+package com.tpts.dto.request;
+
+import com.tpts.entity.ParcelStatus;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Query parameters for paginated parcel lists
+ */
+@Data
+public class ParcelListFilter {
+
+    private String cursor; // nextCursor of the previous page; omit for the first page
+    private Integer limit;
+    private List<ParcelStatus> status;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate from; // Created on or after (inclusive)
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate to; // Created on or before (inclusive)
+
+    private String city; // Pickup or delivery city
+}
@@ -47,6 +47,7 @@ public class AgentDTO {
     private BigDecimal currentLatitude;
     private BigDecimal currentLongitude;
     private LocalDateTime locationUpdatedAt;
+    private Double distanceKm; // Set by nearest-agent search only
 
     // Statistics
     private BigDecimal ratingAvg;
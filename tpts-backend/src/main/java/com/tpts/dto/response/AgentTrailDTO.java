@@ -0,0 +1,36 @@
+package com.tpts.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO for an agent's recorded GPS trail over a time range
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AgentTrailDTO {
+
+    private Long agentId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Integer count;
+    private Boolean truncated; // More points exist than the requested limit
+    private List<TrailPoint> points;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class TrailPoint {
+        private Long timestamp; // epoch millis
+        private Double latitude;
+        private Double longitude;
+    }
+}
@@ -0,0 +1,23 @@
+package com.tpts.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated list
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CursorPageDTO<T> {
+
+    private List<T> items;
+    private String nextCursor; // Pass as ?cursor= for the next page; null on the last page
+    private Boolean hasMore;
+    private Integer limit;
+}
@@ -0,0 +1,26 @@
+package com.tpts.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO for the outcome of a batched GPS trail upload
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LocationTrailResultDTO {
+
+    private Integer received;
+    private Integer accepted; // Newer than the position already held
+    private Long firstTimestamp;
+    private Long lastTimestamp;
+    private BigDecimal latitude; // Latest position after applying the trail
+    private BigDecimal longitude;
+    private Integer parcelsNotified;
+}
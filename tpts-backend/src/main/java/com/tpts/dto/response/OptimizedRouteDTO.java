@@ -0,0 +1,52 @@
+package com.tpts.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO for an agent's active stops in optimized visiting order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OptimizedRouteDTO {
+
+    private Long agentId;
+    private BigDecimal startLatitude;
+    private BigDecimal startLongitude;
+    private BigDecimal totalDistanceKm;
+    private BigDecimal assignedOrderDistanceKm; // Same stops visited in assignment order
+    private BigDecimal savedDistanceKm;
+    private Integer totalDurationMinutes;
+    private Boolean isFallback; // True if straight-line distances were used
+    private List<Stop> stops;
+    private List<Stop> unsequenced; // Stops without coordinates, or beyond the stop limit
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Stop {
+        private Integer sequence;
+        private String type; // PICKUP, DELIVERY, WAREHOUSE
+        private Long parcelId;
+        private String trackingNumber;
+        private Long groupShipmentId;
+        private String contactName;
+        private String contactPhone;
+        private String address;
+        private String city;
+        private String pincode;
+        private BigDecimal latitude;
+        private BigDecimal longitude;
+        private BigDecimal legDistanceKm;
+        private BigDecimal cumulativeDistanceKm;
+        private Integer etaMinutes; // From the start, including earlier stops
+    }
+}
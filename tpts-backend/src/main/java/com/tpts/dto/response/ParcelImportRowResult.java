@@ -0,0 +1,36 @@
+package com.tpts.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Outcome of one row of a bulk parcel import
+ * Streamed as one JSON line per row, in file order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ParcelImportRowResult {
+
+    public static final String CREATED = "CREATED";
+    public static final String FAILED = "FAILED";
+
+    private Long row; // 1-based data row (CSV header not counted)
+    private String status; // CREATED or FAILED
+
+    // CREATED
+    private Long parcelId;
+    private String trackingNumber;
+    private BigDecimal finalPrice;
+
+    // FAILED
+    private List<String> errors;
+}
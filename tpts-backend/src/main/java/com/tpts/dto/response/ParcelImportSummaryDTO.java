@@ -0,0 +1,27 @@
+package com.tpts.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last line of a bulk parcel import response
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ParcelImportSummaryDTO {
+
+    @Builder.Default
+    private String status = "SUMMARY";
+
+    private Long totalRows;
+    private Long created;
+    private Long failed;
+    private Boolean completed; // false if the file could not be read to the end
+    private String error; // why reading stopped early
+}
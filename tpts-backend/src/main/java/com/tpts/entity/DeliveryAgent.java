@@ -69,13 +69,15 @@ public class DeliveryAgent {
     private Boolean isAvailable = false; // Set by Agent
 
     // Current Location
-    @Column(name = "current_latitude", precision = 10, scale = 7)
+    // Written only by AgentLocationStore's write-behind flush; excluded from
+    // entity updates so a stale agent save never clobbers a newer position
+    @Column(name = "current_latitude", precision = 10, scale = 7, updatable = false)
     private BigDecimal currentLatitude;
 
-    @Column(name = "current_longitude", precision = 10, scale = 7)
+    @Column(name = "current_longitude", precision = 10, scale = 7, updatable = false)
     private BigDecimal currentLongitude;
 
-    @Column(name = "location_updated_at")
+    @Column(name = "location_updated_at", updatable = false)
     private LocalDateTime locationUpdatedAt;
 
     // Statistics
@@ -30,7 +30,7 @@ public class GroupShipment {
     private Long id;
 
     // Unique group code (e.g., GRP123456)
-    @Column(name = "group_code", unique = true, nullable = false, length = 10)
+    @Column(name = "group_code", unique = true, nullable = false, length = 16)
     private String groupCode;
 
     // Company that created this group
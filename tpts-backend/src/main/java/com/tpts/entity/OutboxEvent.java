@@ -0,0 +1,88 @@
+package com.tpts.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outbox Event Entity
+ * A domain event written in the same transaction as the change it
+ * describes, then delivered to subscribers by OutboxDispatcher.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        @Index(name = "idx_outbox_pending", columnList = "status, next_attempt_at, id"),
+        @Index(name = "idx_outbox_aggregate", columnList = "aggregate_id, status, id"),
+        @Index(name = "idx_outbox_status_aggregate", columnList = "status, aggregate_id, id"),
+        @Index(name = "idx_outbox_locked_by", columnList = "locked_by")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // ==========================================
+    // Event
+    // ==========================================
+
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId; // Parcel id; events of one aggregate are delivered in id order
+
+    @Column(name = "event_type", nullable = false, length = 40)
+    private String eventType;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload; // JSON
+
+    // ==========================================
+    // Delivery
+    // ==========================================
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "completed_subscribers", length = 255)
+    private String completedSubscribers; // Comma-separated; skipped on retry
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "locked_by", length = 80)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    // ==========================================
+    // Timestamps
+    // ==========================================
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.tpts.entity;
+
+/**
+ * Outbox Event Status Enum
+ */
+public enum OutboxStatus {
+    PENDING,        // Waiting for (re)delivery to subscribers
+    PROCESSED,      // Every subscriber handled it
+    DEAD            // Gave up after the maximum number of attempts
+}
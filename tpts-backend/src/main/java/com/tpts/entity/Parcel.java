@@ -11,11 +11,13 @@ import java.time.LocalDateTime;
  * Contains pickup, delivery, pricing, and tracking information
  */
 @Entity
+@EntityListeners(ParcelWriteListener.class)
 @Table(name = "parcels", indexes = {
         @Index(name = "idx_parcel_tracking", columnList = "tracking_number"),
-        @Index(name = "idx_parcel_customer", columnList = "customer_id"),
-        @Index(name = "idx_parcel_company", columnList = "company_id"),
-        @Index(name = "idx_parcel_agent", columnList = "agent_id"),
+        // Owner + (created_at, id) so keyset pages are index range scans in sort order
+        @Index(name = "idx_parcel_customer_created", columnList = "customer_id, created_at, id"),
+        @Index(name = "idx_parcel_company_created", columnList = "company_id, created_at, id"),
+        @Index(name = "idx_parcel_agent_created", columnList = "agent_id, created_at, id"),
         @Index(name = "idx_parcel_status", columnList = "status"),
         @Index(name = "idx_parcel_delivery_phone", columnList = "delivery_phone")
 })
@@ -25,8 +27,13 @@ import java.time.LocalDateTime;
 @Builder
 public class Parcel {
 
+    // Ids are allocated in blocks from parcels_seq (a table on MySQL) instead of
+    // IDENTITY, so Hibernate can batch inserts (bulk import)
+    public static final int ID_ALLOCATION_SIZE = 100;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "parcel_id_seq")
+    @SequenceGenerator(name = "parcel_id_seq", sequenceName = "parcels_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "tracking_number", unique = true, nullable = false, length = 20)
@@ -0,0 +1,26 @@
+package com.tpts.entity;
+
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+/**
+ * JPA listener that passes every parcel update or delete, whichever service
+ * path saved it, to the registered ParcelWriteObservers.
+ * Observers are looked up lazily: Hibernate creates this listener while the
+ * EntityManagerFactory (which the observers' dependencies need) is being built.
+ */
+public class ParcelWriteListener {
+
+    private final ObjectProvider<ParcelWriteObserver> observers;
+
+    public ParcelWriteListener(ObjectProvider<ParcelWriteObserver> observers) {
+        this.observers = observers;
+    }
+
+    @PostUpdate
+    @PostRemove
+    public void onParcelWritten(Parcel parcel) {
+        observers.orderedStream().forEach(observer -> observer.onParcelWritten(parcel.getTrackingNumber()));
+    }
+}
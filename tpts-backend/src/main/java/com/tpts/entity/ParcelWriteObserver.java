@@ -0,0 +1,11 @@
+package com.tpts.entity;
+
+/**
+ * Told about every parcel update or delete by ParcelWriteListener
+ * Lets derived read models (e.g. the public tracking cache) drop their copy
+ * without the entity package depending on the services that keep them.
+ */
+public interface ParcelWriteObserver {
+
+    void onParcelWritten(String trackingNumber);
+}
@@ -11,6 +11,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -38,6 +39,10 @@ public interface DeliveryAgentRepository extends JpaRepository<DeliveryAgent, Lo
     // Find by ID and company ID (security check)
     Optional<DeliveryAgent> findByIdAndCompanyId(Long id, Long companyId);
 
+    // Agents by id with user and company loaded (for list mapping)
+    @Query("SELECT a FROM DeliveryAgent a JOIN FETCH a.user JOIN FETCH a.company WHERE a.id IN :ids")
+    List<DeliveryAgent> findAllWithUserAndCompanyByIdIn(@Param("ids") Collection<Long> ids);
+
     // Find active agents by company
     List<DeliveryAgent> findByCompanyIdAndIsActiveTrue(Long companyId);
 
@@ -58,6 +63,12 @@ public interface DeliveryAgentRepository extends JpaRepository<DeliveryAgent, Lo
             @Param("city") String city
     );
 
+    // Row projection used to rebuild the in-memory agent spatial index
+    // [id, companyId, currentLatitude, currentLongitude]
+    @Query("SELECT a.id, a.company.id, a.currentLatitude, a.currentLongitude FROM DeliveryAgent a " +
+            "WHERE a.isActive = true AND a.isAvailable = true")
+    List<Object[]> findAvailableAgentIndexRows();
+
     // Check if agent exists for user
     boolean existsByUserId(Long userId);
 
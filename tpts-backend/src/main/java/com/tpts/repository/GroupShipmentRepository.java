@@ -10,6 +10,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -94,6 +95,16 @@ public interface GroupShipmentRepository extends JpaRepository<GroupShipment, Lo
         @Query("SELECT COUNT(g) FROM GroupShipment g WHERE g.deliveryAgent.id = :agentId AND g.status = 'COMPLETED'")
         long countCompletedByDeliveryAgentId(@Param("agentId") Long agentId);
 
+        // [agentId, count] - countCompletedByPickupAgentId for a set of agents
+        @Query("SELECT g.pickupAgent.id, COUNT(g) FROM GroupShipment g " +
+                        "WHERE g.pickupAgent.id IN :agentIds AND g.status = 'COMPLETED' GROUP BY g.pickupAgent.id")
+        List<Object[]> countCompletedByPickupAgentIds(@Param("agentIds") Collection<Long> agentIds);
+
+        // [agentId, count] - countCompletedByDeliveryAgentId for a set of agents
+        @Query("SELECT g.deliveryAgent.id, COUNT(g) FROM GroupShipment g " +
+                        "WHERE g.deliveryAgent.id IN :agentIds AND g.status = 'COMPLETED' GROUP BY g.deliveryAgent.id")
+        List<Object[]> countCompletedByDeliveryAgentIds(@Param("agentIds") Collection<Long> agentIds);
+
         // ==========================================
         // Status Updates
         // ==========================================
@@ -0,0 +1,79 @@
+package com.tpts.repository;
+
+import com.tpts.entity.OutboxEvent;
+import com.tpts.entity.OutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+        // ==========================================
+        // Dispatch
+        // ==========================================
+
+        // Lease the oldest due events to one dispatcher (MySQL UPDATE ... ORDER BY ... LIMIT).
+        // Only each parcel's oldest pending event is eligible, so events stuck behind a
+        // retrying one are never claimed and cannot crowd newer parcels out of the batch.
+        // The heads come from a grouped derived table: MySQL materializes it, which
+        // allows reading the table being updated.
+        @Modifying
+        @Transactional
+        @Query(value = "UPDATE outbox_events SET locked_by = :owner, locked_until = :until " +
+                        "WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+                        "AND (locked_until IS NULL OR locked_until < :now) " +
+                        "AND id IN (SELECT head_id FROM (SELECT MIN(h.id) AS head_id FROM outbox_events h " +
+                        "WHERE h.status = 'PENDING' GROUP BY h.aggregate_id) heads) " +
+                        "ORDER BY id LIMIT :limit", nativeQuery = true)
+        int claimDue(@Param("owner") String owner, @Param("until") LocalDateTime until,
+                        @Param("now") LocalDateTime now, @Param("limit") int limit);
+
+        List<OutboxEvent> findByLockedByAndStatusOrderByIdAsc(String lockedBy, OutboxStatus status);
+
+        // Oldest pending event per aggregate: anything later must wait for it
+        // [aggregateId, minId]
+        @Query("SELECT e.aggregateId, MIN(e.id) FROM OutboxEvent e " +
+                        "WHERE e.status = com.tpts.entity.OutboxStatus.PENDING AND e.aggregateId IN :aggregateIds " +
+                        "GROUP BY e.aggregateId")
+        List<Object[]> findOldestPendingIds(@Param("aggregateIds") Collection<Long> aggregateIds);
+
+        @Modifying
+        @Transactional
+        @Query("UPDATE OutboxEvent e SET e.lockedBy = NULL, e.lockedUntil = NULL WHERE e.id IN :ids")
+        int release(@Param("ids") Collection<Long> ids);
+
+        // Record a delivery attempt only while the lease is still ours; 0 means it
+        // expired and another dispatcher has (or had) the event
+        @Modifying
+        @Transactional
+        @Query("UPDATE OutboxEvent e SET e.status = :status, e.attempts = :attempts, " +
+                        "e.nextAttemptAt = :nextAttemptAt, e.completedSubscribers = :completedSubscribers, " +
+                        "e.lastError = :lastError, e.processedAt = :processedAt, " +
+                        "e.lockedBy = NULL, e.lockedUntil = NULL " +
+                        "WHERE e.id = :id AND e.lockedBy = :owner")
+        int recordAttempt(@Param("id") Long id, @Param("owner") String owner,
+                        @Param("status") OutboxStatus status, @Param("attempts") Integer attempts,
+                        @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                        @Param("completedSubscribers") String completedSubscribers,
+                        @Param("lastError") String lastError, @Param("processedAt") LocalDateTime processedAt);
+
+        // ==========================================
+        // Maintenance / Stats
+        // ==========================================
+
+        long countByStatus(OutboxStatus status);
+
+        @Modifying
+        @Transactional
+        @Query("DELETE FROM OutboxEvent e WHERE e.status = com.tpts.entity.OutboxStatus.PROCESSED " +
+                        "AND e.processedAt < :before")
+        int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
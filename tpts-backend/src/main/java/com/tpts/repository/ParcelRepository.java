@@ -2,18 +2,22 @@ package com.tpts.repository;
 
 import com.tpts.entity.Parcel;
 import com.tpts.entity.ParcelStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ParcelRepository extends JpaRepository<Parcel, Long> {
+public interface ParcelRepository extends JpaRepository<Parcel, Long>, JpaSpecificationExecutor<Parcel> {
 
         // ==========================================
         // Find by Tracking Number
@@ -22,6 +26,11 @@ public interface ParcelRepository extends JpaRepository<Parcel, Long> {
 
         boolean existsByTrackingNumber(String trackingNumber);
 
+        // Parcel with everything the public tracking view reads, in one query
+        @Query("SELECT p FROM Parcel p LEFT JOIN FETCH p.agent a LEFT JOIN FETCH a.user " +
+                        "LEFT JOIN FETCH p.company WHERE p.trackingNumber = :trackingNumber")
+        Optional<Parcel> findForTrackingByTrackingNumber(@Param("trackingNumber") String trackingNumber);
+
         // ==========================================
         // Public Tracking
         // ==========================================
@@ -33,10 +42,14 @@ public interface ParcelRepository extends JpaRepository<Parcel, Long> {
         // ==========================================
         // Customer Queries
         // ==========================================
+        // List queries that feed ParcelDtoAssembler fetch the customer, company,
+        // agent and agent user it reads in the same statement
+        @EntityGraph(attributePaths = { "customer", "company", "agent", "agent.user" })
         List<Parcel> findByCustomerIdOrderByCreatedAtDesc(Long customerId);
 
         List<Parcel> findByCustomerIdAndStatus(Long customerId, ParcelStatus status);
 
+        @EntityGraph(attributePaths = { "customer", "company", "agent", "agent.user" })
         @Query("SELECT p FROM Parcel p WHERE p.customer.id = :customerId AND p.status IN :statuses ORDER BY p.createdAt DESC")
         List<Parcel> findByCustomerIdAndStatusIn(@Param("customerId") Long customerId,
                         @Param("statuses") List<ParcelStatus> statuses);
@@ -48,6 +61,7 @@ public interface ParcelRepository extends JpaRepository<Parcel, Long> {
         // ==========================================
         // Company Queries
         // ==========================================
+        @EntityGraph(attributePaths = { "customer", "company", "agent", "agent.user" })
         List<Parcel> findByCompanyIdOrderByCreatedAtDesc(Long companyId);
 
         List<Parcel> findByCompanyId(Long companyId);
@@ -62,12 +76,14 @@ public interface ParcelRepository extends JpaRepository<Parcel, Long> {
 
         long countByCompanyIdAndStatus(Long companyId, ParcelStatus status);
 
+        @EntityGraph(attributePaths = { "customer", "company", "agent", "agent.user" })
         @Query("SELECT p FROM Parcel p WHERE p.company.id = :companyId AND p.status = 'CONFIRMED' AND p.agent IS NULL ORDER BY p.createdAt ASC")
         List<Parcel> findParcelsNeedingAssignment(@Param("companyId") Long companyId);
 
         // ==========================================
         // Agent Queries
         // ==========================================
+        @EntityGraph(attributePaths = { "customer", "company", "agent", "agent.user" })
         List<Parcel> findByAgentIdOrderByCreatedAtDesc(Long agentId);
 
         List<Parcel> findByAgentIdAndStatus(Long agentId, ParcelStatus status);
@@ -76,9 +92,27 @@ public interface ParcelRepository extends JpaRepository<Parcel, Long> {
         List<Parcel> findByAgentIdAndStatusIn(@Param("agentId") Long agentId,
                         @Param("statuses") List<ParcelStatus> statuses);
 
+        @EntityGraph(attributePaths = { "customer", "company", "agent", "agent.user" })
         @Query("SELECT p FROM Parcel p WHERE p.agent.id = :agentId AND p.status IN ('ASSIGNED', 'PICKED_UP', 'IN_TRANSIT', 'OUT_FOR_DELIVERY') ORDER BY p.assignedAt ASC")
         List<Parcel> findActiveDeliveriesForAgent(@Param("agentId") Long agentId);
 
+        // Row projection used to rebuild the in-memory agent -> active parcel index
+        // [id, agentId, trackingNumber, deliveryLatitude, deliveryLongitude, deliveryCity, vehicleType]
+        @Query("SELECT p.id, a.id, p.trackingNumber, p.deliveryLatitude, p.deliveryLongitude, p.deliveryCity, a.vehicleType " +
+                        "FROM Parcel p JOIN p.agent a WHERE p.status IN :statuses")
+        List<Object[]> findActiveParcelIndexRows(@Param("statuses") List<ParcelStatus> statuses);
+
+        // Delivered regular parcels after a (deliveredAt, id) watermark, for the ETA speed profiles
+        // [id, deliveryCity, vehicleType, distanceKm, pickupLat, pickupLng, deliveryLat, deliveryLng, pickedUpAt, deliveredAt]
+        @Query("SELECT p.id, p.deliveryCity, a.vehicleType, p.distanceKm, p.pickupLatitude, p.pickupLongitude, " +
+                        "p.deliveryLatitude, p.deliveryLongitude, p.pickedUpAt, p.deliveredAt " +
+                        "FROM Parcel p JOIN p.agent a WHERE p.status = 'DELIVERED' AND p.groupShipmentId IS NULL " +
+                        "AND p.pickedUpAt IS NOT NULL AND p.deliveredAt IS NOT NULL " +
+                        "AND (p.deliveredAt > :since OR (p.deliveredAt = :since AND p.id > :lastId)) " +
+                        "ORDER BY p.deliveredAt ASC, p.id ASC")
+        List<Object[]> findDeliveredTripRowsAfter(@Param("since") LocalDateTime since,
+                        @Param("lastId") Long lastId, Pageable pageable);
+
         long countByAgentId(Long agentId);
 
         long countByAgentIdAndStatus(Long agentId, ParcelStatus status);
@@ -88,9 +122,32 @@ public interface ParcelRepository extends JpaRepository<Parcel, Long> {
         long countByAgentIdAndStatusAndGroupShipmentIdIsNull(@Param("agentId") Long agentId,
                         @Param("status") ParcelStatus status);
 
+        // [agentId, count] - countByAgentIdAndStatusAndGroupShipmentIdIsNull for a set of agents
+        @Query("SELECT p.agent.id, COUNT(p) FROM Parcel p WHERE p.agent.id IN :agentIds " +
+                        "AND p.status = :status AND p.groupShipmentId IS NULL GROUP BY p.agent.id")
+        List<Object[]> countByAgentIdsAndStatusAndGroupShipmentIdIsNull(
+                        @Param("agentIds") Collection<Long> agentIds, @Param("status") ParcelStatus status);
+
+        // ==========================================
+        // Pincode Centroids (offline geocoding)
+        // ==========================================
+        // [pincode, city, avgLatitude, avgLongitude, samples]
+        // Only coordinates inside India's bounding box, so 0,0 and swapped pairs don't skew the average
+        @Query("SELECT p.pickupPincode, p.pickupCity, AVG(p.pickupLatitude), AVG(p.pickupLongitude), COUNT(p) " +
+                        "FROM Parcel p WHERE p.pickupLatitude BETWEEN 6 AND 37.5 AND p.pickupLongitude BETWEEN 68 AND 97.5 " +
+                        "GROUP BY p.pickupPincode, p.pickupCity")
+        List<Object[]> findPickupPincodeCentroidRows();
+
+        // [pincode, city, avgLatitude, avgLongitude, samples]
+        @Query("SELECT p.deliveryPincode, p.deliveryCity, AVG(p.deliveryLatitude), AVG(p.deliveryLongitude), COUNT(p) " +
+                        "FROM Parcel p WHERE p.deliveryLatitude BETWEEN 6 AND 37.5 AND p.deliveryLongitude BETWEEN 68 AND 97.5 " +
+                        "GROUP BY p.deliveryPincode, p.deliveryCity")
+        List<Object[]> findDeliveryPincodeCentroidRows();
+
         // ==========================================
         // Group Shipment Queries
         // ==========================================
+        @EntityGraph(attributePaths = { "customer", "company", "agent", "agent.user" })
         List<Parcel> findByGroupShipmentId(Long groupShipmentId);
 
         long countByGroupShipmentId(Long groupShipmentId);
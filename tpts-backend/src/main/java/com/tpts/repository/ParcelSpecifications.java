@@ -0,0 +1,83 @@
+package com.tpts.repository;
+
+import com.tpts.entity.Parcel;
+import com.tpts.entity.ParcelStatus;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria for the keyset-paginated parcel lists
+ *
+ * Only the predicates that are actually set end up in the SQL, so each
+ * owner/filter combination gets its own plan on the matching
+ * (owner_id, created_at, id) index instead of one catch-all
+ * "(:x IS NULL OR ...)" statement the optimizer has to plan for every case.
+ */
+public final class ParcelSpecifications {
+
+    /**
+     * Page order; the keyset predicate below walks it strictly after the cursor
+     */
+    public static final Sort NEWEST_FIRST = Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id"));
+
+    public enum Owner {
+        COMPANY("company"),
+        CUSTOMER("customer"),
+        AGENT("agent");
+
+        private final String attribute;
+
+        Owner(String attribute) {
+            this.attribute = attribute;
+        }
+    }
+
+    private ParcelSpecifications() {
+    }
+
+    /**
+     * Parcels of one owner matching the optional filters, after the optional cursor
+     *
+     * @param statuses  null or empty for any status
+     * @param from      created on or after (inclusive), or null
+     * @param to        created before (exclusive), or null
+     * @param city      pickup or delivery city, or null
+     * @param cursorAt  created_at of the last row of the previous page, or null for the first page
+     * @param cursorId  id of the last row of the previous page (with cursorAt)
+     */
+    public static Specification<Parcel> page(Owner owner, Long ownerId, List<ParcelStatus> statuses,
+            LocalDateTime from, LocalDateTime to, String city, LocalDateTime cursorAt, Long cursorId) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get(owner.attribute).get("id"), ownerId));
+
+            if (statuses != null && !statuses.isEmpty()) {
+                predicates.add(root.get("status").in(statuses));
+            }
+            if (from != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), from));
+            }
+            if (to != null) {
+                predicates.add(cb.lessThan(root.get("createdAt"), to));
+            }
+            if (city != null) {
+                predicates.add(cb.or(
+                        cb.equal(root.get("pickupCity"), city),
+                        cb.equal(root.get("deliveryCity"), city)));
+            }
+            if (cursorAt != null) {
+                predicates.add(cb.or(
+                        cb.lessThan(root.get("createdAt"), cursorAt),
+                        cb.and(
+                                cb.equal(root.get("createdAt"), cursorAt),
+                                cb.lessThan(root.get("id"), cursorId))));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,6 +35,10 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
         // payments can create multiple records
         Optional<Payment> findFirstByParcelIdOrderByCreatedAtDesc(Long parcelId);
 
+        // [parcelId, paymentMethod, createdAt, id] of every payment of the given parcels
+        @Query("SELECT p.parcel.id, p.paymentMethod, p.createdAt, p.id FROM Payment p WHERE p.parcel.id IN :parcelIds")
+        List<Object[]> findPaymentMethodRowsByParcelIds(@Param("parcelIds") Collection<Long> parcelIds);
+
         List<Payment> findByCustomerIdOrderByCreatedAtDesc(Long customerId);
 
         List<Payment> findByCompanyIdOrderByCreatedAtDesc(Long companyId);
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -48,6 +49,22 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
         @Query("SELECT COUNT(r) > 0 FROM Rating r WHERE r.parcel.id = :parcelId AND r.hasRatedCompany = true")
         boolean existsCompanyRatedByParcelId(@Param("parcelId") Long parcelId);
 
+        // Batch lookups for parcel lists (see ParcelDtoAssembler)
+        // [parcelId, hasRatedPickupAgent, hasRatedDeliveryAgent, hasRatedCompany]
+        @Query("SELECT r.parcel.id, r.hasRatedPickupAgent, r.hasRatedDeliveryAgent, r.hasRatedCompany " +
+                        "FROM Rating r WHERE r.parcel.id IN :parcelIds")
+        List<Object[]> findRatingFlagsByParcelIds(@Param("parcelIds") Collection<Long> parcelIds);
+
+        // [agentId, average agentRating, count] - same filters as getAverageAgentRating/countByAgentId
+        @Query("SELECT r.agent.id, AVG(r.agentRating), COUNT(r) FROM Rating r " +
+                        "WHERE r.agent.id IN :agentIds AND r.agentRating IS NOT NULL GROUP BY r.agent.id")
+        List<Object[]> findAgentRatingSummaries(@Param("agentIds") Collection<Long> agentIds);
+
+        // [companyId, average companyRating, count] - same filters as getAverageCompanyRating/countByCompanyId
+        @Query("SELECT r.company.id, AVG(r.companyRating), COUNT(r) FROM Rating r " +
+                        "WHERE r.company.id IN :companyIds AND r.hasRatedCompany = true GROUP BY r.company.id")
+        List<Object[]> findCompanyRatingSummaries(@Param("companyIds") Collection<Long> companyIds);
+
         List<Rating> findByCustomerIdOrderByCreatedAtDesc(Long customerId);
 
         List<Rating> findByCompanyIdOrderByCreatedAtDesc(Long companyId);
@@ -177,6 +194,21 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
                         "(r.pickupAgent.id = :agentId AND r.pickupAgentRating IS NOT NULL))")
         Long countUniqueRatingsByAgentId(@Param("agentId") Long agentId);
 
+        // countUniqueRatingsByAgentId for a set of agents, in three parts:
+        // [agentId, count] as delivery agent, as pickup agent, and as both on the same rating
+        @Query("SELECT r.agent.id, COUNT(r) FROM Rating r WHERE r.isPublic = true AND r.isFlagged = false " +
+                        "AND r.agent.id IN :agentIds AND r.agentRating IS NOT NULL GROUP BY r.agent.id")
+        List<Object[]> countPublicDeliveryRatingsByAgentIds(@Param("agentIds") Collection<Long> agentIds);
+
+        @Query("SELECT r.pickupAgent.id, COUNT(r) FROM Rating r WHERE r.isPublic = true AND r.isFlagged = false " +
+                        "AND r.pickupAgent.id IN :agentIds AND r.pickupAgentRating IS NOT NULL GROUP BY r.pickupAgent.id")
+        List<Object[]> countPublicPickupRatingsByAgentIds(@Param("agentIds") Collection<Long> agentIds);
+
+        @Query("SELECT r.agent.id, COUNT(r) FROM Rating r WHERE r.isPublic = true AND r.isFlagged = false " +
+                        "AND r.agent.id IN :agentIds AND r.pickupAgent.id = r.agent.id " +
+                        "AND r.agentRating IS NOT NULL AND r.pickupAgentRating IS NOT NULL GROUP BY r.agent.id")
+        List<Object[]> countPublicDualRatingsByAgentIds(@Param("agentIds") Collection<Long> agentIds);
+
         // ==========================================
         // Recommendation Stats
         // ==========================================
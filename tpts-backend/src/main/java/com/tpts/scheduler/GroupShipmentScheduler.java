@@ -1,5 +1,6 @@
 package com.tpts.scheduler;
 
+import com.tpts.dto.event.GroupUpdateEvent;
 import com.tpts.entity.GroupShipment;
 import com.tpts.entity.GroupStatus;
 import com.tpts.entity.Parcel;
@@ -81,11 +82,8 @@ public class GroupShipmentScheduler {
                 if (membersNeeded > 0 && membersNeeded <= 3) {
                     sendUrgentAlertToMembers(group, groupParcels, membersNeeded);
 
-                    Map<String, Object> alertData = new HashMap<>();
-                    alertData.put("membersNeeded", membersNeeded);
-                    alertData.put("timeLeft", "Less than 1 hour");
-                    alertData.put("status", "URGENT");
-                    wsController.broadcastGroupUpdate(group.getGroupCode(), alertData);
+                    wsController.broadcastGroupUpdate(group.getGroupCode(),
+                            new GroupUpdateEvent(membersNeeded, "Less than 1 hour", "URGENT"));
                 }
             } catch (Exception e) {
                 log.error("Failed to send alert for group {}: {}",
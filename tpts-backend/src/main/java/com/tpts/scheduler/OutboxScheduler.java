@@ -0,0 +1,43 @@
+package com.tpts.scheduler;
+
+import com.tpts.service.OutboxDispatcher;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxScheduler {
+
+    private final OutboxDispatcher outboxDispatcher;
+
+    /**
+     * Pick up outbox events that are due for retry or were missed by the
+     * post-commit wake-up (e.g. recorded just before a restart)
+     * Runs every 5 seconds by default
+     */
+    @Scheduled(initialDelayString = "${outbox.poll-interval-ms:5000}",
+            fixedDelayString = "${outbox.poll-interval-ms:5000}")
+    public void pollOutbox() {
+        try {
+            outboxDispatcher.wake();
+        } catch (Exception e) {
+            log.error("Failed to wake outbox dispatcher: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Delete processed outbox events past retention
+     * Runs daily at 3:00 AM
+     */
+    @Scheduled(cron = "${outbox.purge-cron:0 0 3 * * *}")
+    public void purgeOutbox() {
+        try {
+            outboxDispatcher.purgeProcessed();
+        } catch (Exception e) {
+            log.error("Failed to purge outbox events: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.tpts.scheduler;
+
+import com.tpts.controller.TrackingWebSocketController;
+import com.tpts.service.AgentLocationStore;
+import com.tpts.service.AgentParcelIndex;
+import com.tpts.service.AgentSpatialIndex;
+import com.tpts.service.CoordinateBackfillService;
+import com.tpts.service.EtaModel;
+import com.tpts.service.LocationTrailStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TrackingScheduler {
+
+    private final AgentLocationStore agentLocationStore;
+    private final AgentParcelIndex agentParcelIndex;
+    private final AgentSpatialIndex agentSpatialIndex;
+    private final LocationTrailStore locationTrailStore;
+    private final EtaModel etaModel;
+    private final CoordinateBackfillService coordinateBackfillService;
+    private final TrackingWebSocketController wsController;
+
+    /**
+     * Write buffered agent positions to the database
+     * Runs every 5 seconds by default
+     */
+    @Scheduled(fixedDelayString = "${tracking.location.flush-interval-ms:5000}")
+    public void flushAgentLocations() {
+        try {
+            int written = agentLocationStore.flush();
+            if (written > 0) {
+                log.debug("Flushed {} agent positions", written);
+            }
+        } catch (Exception e) {
+            log.error("Failed to flush agent positions: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Send agent locations held back by the broadcast throttle
+     * Runs every second by default
+     */
+    @Scheduled(fixedDelayString = "${tracking.broadcast.throttle.flush-interval-ms:1000}")
+    public void flushPendingAgentLocations() {
+        try {
+            wsController.flushPendingAgentLocations();
+        } catch (Exception e) {
+            log.error("Failed to flush pending agent locations: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resync the agent -> active parcel index with the database
+     * Catches status changes made outside the indexed write paths
+     * Runs every 10 minutes by default
+     */
+    @Scheduled(initialDelayString = "${tracking.parcel-index.resync-interval-ms:600000}",
+            fixedDelayString = "${tracking.parcel-index.resync-interval-ms:600000}")
+    public void resyncAgentParcelIndex() {
+        try {
+            agentParcelIndex.rebuild();
+        } catch (Exception e) {
+            log.error("Failed to resync agent parcel index: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resync the available-agent spatial index with the database
+     * Runs every 10 minutes by default
+     */
+    @Scheduled(initialDelayString = "${tracking.agent-index.resync-interval-ms:600000}",
+            fixedDelayString = "${tracking.agent-index.resync-interval-ms:600000}")
+    public void resyncAgentSpatialIndex() {
+        try {
+            agentSpatialIndex.rebuild();
+        } catch (Exception e) {
+            log.error("Failed to resync agent spatial index: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Apply retention and compact finished days of the GPS trail history
+     * Runs daily at 2:30 AM
+     */
+    @Scheduled(cron = "${tracking.trail-store.maintenance-cron:0 30 2 * * *}")
+    public void maintainLocationTrails() {
+        log.info("Starting location trail maintenance...");
+        try {
+            locationTrailStore.maintain();
+        } catch (Exception e) {
+            log.error("Location trail maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Feed newly delivered parcels into the ETA speed profiles
+     * First run (30s after startup) reads the full history; later runs only new deliveries
+     * Runs every 15 minutes by default
+     */
+    @Scheduled(initialDelayString = "${tracking.eta.initial-delay-ms:30000}",
+            fixedDelayString = "${tracking.eta.refresh-interval-ms:900000}")
+    public void refreshEtaModel() {
+        try {
+            etaModel.refresh();
+        } catch (Exception e) {
+            log.error("Failed to refresh ETA model: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Geocode parcels and saved addresses with missing or suspicious coordinates
+     * Nominatim calls are rate limited inside the job, which runs on its own
+     * thread so its waits never hold up the other schedules; cursors survive restarts
+     * Runs every 5 minutes by default (skipped while the previous run is going)
+     */
+    @Scheduled(initialDelayString = "${geocode.backfill.initial-delay-ms:120000}",
+            fixedDelayString = "${geocode.backfill.interval-ms:300000}")
+    public void backfillCoordinates() {
+        if (!coordinateBackfillService.trigger()) {
+            log.debug("Coordinate backfill still running or disabled; skipping this tick");
+        }
+    }
+}
@@ -8,6 +8,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -20,6 +21,12 @@ import java.io.IOException;
 /**
  * JWT Authentication Filter
  * Intercepts every request and validates JWT token
+ *
+ * The token is parsed and verified exactly once per request. The principal
+ * comes from the PrincipalCache, or - in stateless mode, for the configured
+ * high-frequency paths only - straight from the userId/userType claims.
+ * Stateless principals carry no password or refresh token, so they must
+ * never reach endpoints that save or re-check the user.
  */
 @Component
 @RequiredArgsConstructor
@@ -28,6 +35,13 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserRepository userRepository;
+    private final PrincipalCache principalCache;
+
+    @Value("${jwt.stateless-principal.enabled:false}")
+    private boolean statelessPrincipalEnabled;
+
+    @Value("${jwt.stateless-principal.paths:/api/agents/share-location,/api/agents/location,/api/agents/location/trail,/api/notifications/unread/count}")
+    private String[] statelessPrincipalPaths;
 
     @Override
     protected void doFilterInternal(
@@ -48,17 +62,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String jwt = authHeader.substring(7);
 
         try {
-            // Extract email from token
-            final String email = jwtUtil.extractEmail(jwt);
+            // Verify signature/expiry and extract claims in one parse
+            final JwtClaims claims = jwtUtil.parseToken(jwt);
+            final String email = claims.email();
 
             // If email exists and no authentication in context
             if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
 
-                // Find user by email
-                User user = userRepository.findByEmail(email).orElse(null);
+                User user;
+                if (isStatelessEligible(request, claims)) {
+                    // Build principal from claims, no DB access
+                    user = buildStatelessPrincipal(claims);
+                } else {
+                    // Find user by email (served from the principal cache when warm)
+                    user = principalCache.get(email,
+                            key -> userRepository.findByEmail(key).orElse(null));
+                }
 
                 // Validate token
-                if (user != null && jwtUtil.validateToken(jwt, user)) {
+                if (user != null && jwtUtil.validateToken(claims, user)) {
 
                     // Create authentication token
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
@@ -82,6 +104,35 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Stateless principals are only used for allow-listed paths and access tokens
+     */
+    private boolean isStatelessEligible(HttpServletRequest request, JwtClaims claims) {
+        if (!statelessPrincipalEnabled || !claims.hasPrincipalClaims()) {
+            return false;
+        }
+        String path = request.getServletPath();
+        for (String statelessPath : statelessPrincipalPaths) {
+            if (path.equals(statelessPath.trim())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build a minimal principal from verified token claims
+     */
+    private User buildStatelessPrincipal(JwtClaims claims) {
+        return User.builder()
+                .id(claims.userId())
+                .email(claims.email())
+                .userType(claims.userTypeEnum())
+                .isActive(true)
+                .isVerified(true)
+                .build();
+    }
+
     /**
      * Skip filter for certain paths (public endpoints)
      * Note: /api/auth/logout is NOT skipped because it needs authentication to
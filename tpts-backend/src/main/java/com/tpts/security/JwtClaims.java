@@ -0,0 +1,44 @@
+package com.tpts.security;
+
+import com.tpts.entity.UserType;
+
+import java.time.Instant;
+
+/**
+ * Immutable view of a verified JWT
+ * Produced once per request by JwtUtil.parseToken and reused by the filter
+ *
+ * @param email      token subject
+ * @param userId     "userId" claim
+ * @param userType   "userType" claim (access tokens only)
+ * @param tokenType  "type" claim ("refresh" for refresh tokens, null otherwise)
+ * @param issuedAt   iat
+ * @param expiration exp
+ */
+public record JwtClaims(
+        String email,
+        Long userId,
+        String userType,
+        String tokenType,
+        Instant issuedAt,
+        Instant expiration) {
+
+    public boolean isExpired() {
+        return expiration != null && expiration.isBefore(Instant.now());
+    }
+
+    public boolean isRefreshToken() {
+        return "refresh".equals(tokenType);
+    }
+
+    /**
+     * Whether the token carries enough claims to build a principal without a DB lookup
+     */
+    public boolean hasPrincipalClaims() {
+        return email != null && userId != null && userType != null && !isRefreshToken();
+    }
+
+    public UserType userTypeEnum() {
+        return UserType.valueOf(userType);
+    }
+}
@@ -4,10 +4,12 @@ import com.tpts.entity.User;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -16,6 +18,9 @@ import java.util.function.Function;
 /**
  * JWT Utility class for token generation and validation
  * Handles access tokens and refresh tokens
+ *
+ * The signing key and parser are built once at startup; both are immutable
+ * and thread-safe, so every request reuses them.
  */
 @Component
 public class JwtUtil {
@@ -29,6 +34,18 @@ public class JwtUtil {
     @Value("${jwt.refresh-token-expiration}")
     private long refreshTokenExpiration;
 
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    public void init() {
+        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
+        this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
     // ==========================================
     // Token Generation
     // ==========================================
@@ -73,19 +90,46 @@ public class JwtUtil {
     // Token Validation
     // ==========================================
 
+    /**
+     * Verify signature and expiry, and extract all claims in a single parse.
+     * Throws JwtException (incl. ExpiredJwtException) if the token is invalid.
+     */
+    public JwtClaims parseToken(String token) {
+        Claims claims = extractAllClaims(token);
+        return new JwtClaims(
+                claims.getSubject(),
+                claims.get("userId", Long.class),
+                claims.get("userType", String.class),
+                claims.get("type", String.class),
+                toInstant(claims.getIssuedAt()),
+                toInstant(claims.getExpiration()));
+    }
+
+    /**
+     * Validate already-parsed claims against user details
+     */
+    public boolean validateToken(JwtClaims claims, User user) {
+        return claims.email() != null
+                && claims.email().equals(user.getEmail())
+                && !claims.isExpired();
+    }
+
     /**
      * Validate token against user details
      */
     public boolean validateToken(String token, User user) {
-        final String email = extractEmail(token);
-        return (email.equals(user.getEmail()) && !isTokenExpired(token));
+        return validateToken(parseToken(token), user);
     }
 
     /**
      * Check if token is expired
      */
     public boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+        try {
+            return parseToken(token).isExpired();
+        } catch (ExpiredJwtException e) {
+            return true;
+        }
     }
 
     /**
@@ -93,8 +137,7 @@ public class JwtUtil {
      */
     public boolean isValidToken(String token) {
         try {
-            extractAllClaims(token);
-            return !isTokenExpired(token);
+            return !parseToken(token).isExpired();
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
@@ -146,9 +189,7 @@ public class JwtUtil {
      * Extract all claims from token
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return jwtParser
                 .parseSignedClaims(token)
                 .getPayload();
     }
@@ -158,11 +199,14 @@ public class JwtUtil {
     // ==========================================
 
     /**
-     * Get signing key from secret
+     * Get signing key (decoded once at startup)
      */
     private SecretKey getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signingKey;
+    }
+
+    private Instant toInstant(Date date) {
+        return date != null ? date.toInstant() : null;
     }
 
     /**
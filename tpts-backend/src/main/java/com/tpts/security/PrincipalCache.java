@@ -0,0 +1,282 @@
+package com.tpts.security;
+
+import com.tpts.entity.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Authenticated Principal Cache
+ * Bounded, TTL-based cache of users resolved by JwtAuthenticationFilter so
+ * that authenticated requests do not hit the users table every time.
+ *
+ * Entries are keyed by email (the JWT subject) with a secondary userId index.
+ * Callers always receive a private copy of the cached user, so services that
+ * mutate and save the principal never touch the shared snapshot.
+ *
+ * Must be evicted whenever a user's password, active or deleted state changes.
+ * Inside a transaction the eviction is repeated after commit, and a load that
+ * overlapped an eviction (generation counters, striped by email) is not kept,
+ * so a concurrent request cannot re-cache the pre-commit row.
+ */
+@Component
+@Slf4j
+public class PrincipalCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    @Value("${security.principal-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${security.principal-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${security.principal-cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, CachedPrincipal> byEmail = new ConcurrentHashMap<>();
+    private final Map<Long, String> emailById = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder staleLoads = new LongAdder();
+
+    private record CachedPrincipal(User user, long expiresAt) {
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    // ==========================================
+    // Lookup
+    // ==========================================
+
+    /**
+     * Get user by email, loading it with the given loader on a miss.
+     * Returns null if the loader returns null (unknown user); misses for
+     * unknown users are not cached.
+     */
+    public User get(String email, Function<String, User> loader) {
+        if (!enabled) {
+            misses.increment();
+            return loader.apply(email);
+        }
+
+        long now = System.currentTimeMillis();
+        CachedPrincipal cached = byEmail.get(email);
+
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                hits.increment();
+                return copyOf(cached.user());
+            }
+            if (byEmail.remove(email, cached)) {
+                emailById.remove(cached.user().getId(), email);
+                expirations.increment();
+            }
+        }
+
+        misses.increment();
+        int stripe = stripe(email);
+        long generation = generations.get(stripe);
+        User user = loader.apply(email);
+        if (user != null) {
+            if (generations.get(stripe) == generation) {
+                CachedPrincipal stored = put(user, now);
+                // An eviction between the check and the put has already run its remove
+                if (generations.get(stripe) != generation && byEmail.remove(stored.user().getEmail(), stored)) {
+                    staleLoads.increment();
+                }
+            } else {
+                staleLoads.increment();
+            }
+        }
+        return user;
+    }
+
+    private CachedPrincipal put(User user, long now) {
+        if (byEmail.size() >= maxSize) {
+            evictForSpace(now);
+        }
+
+        User snapshot = copyOf(user);
+        CachedPrincipal cached = new CachedPrincipal(snapshot, now + ttlSeconds * 1000);
+        byEmail.put(snapshot.getEmail(), cached);
+        if (snapshot.getId() != null) {
+            emailById.put(snapshot.getId(), snapshot.getEmail());
+        }
+        return cached;
+    }
+
+    /**
+     * Drop expired entries first; if the cache is still full, drop the
+     * oldest tenth so that bursts of new logins don't evict one-by-one.
+     */
+    private void evictForSpace(long now) {
+        byEmail.entrySet().removeIf(e -> {
+            if (e.getValue().isExpired(now)) {
+                emailById.remove(e.getValue().user().getId(), e.getKey());
+                expirations.increment();
+                return true;
+            }
+            return false;
+        });
+
+        if (byEmail.size() < maxSize) {
+            return;
+        }
+
+        int toRemove = Math.max(1, maxSize / 10);
+        List<Map.Entry<String, CachedPrincipal>> oldest = byEmail.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt()))
+                .limit(toRemove)
+                .toList();
+
+        for (Map.Entry<String, CachedPrincipal> e : oldest) {
+            if (byEmail.remove(e.getKey(), e.getValue())) {
+                emailById.remove(e.getValue().user().getId(), e.getKey());
+                sizeEvictions.increment();
+            }
+        }
+        log.debug("Principal cache full, evicted {} oldest entries", oldest.size());
+    }
+
+    // ==========================================
+    // Invalidation
+    // ==========================================
+
+    /**
+     * Evict a user (call after password, status or delete changes)
+     * Evicts now and, inside a transaction, again after it completes
+     */
+    public void evict(User user) {
+        if (user == null) {
+            return;
+        }
+        Long userId = user.getId();
+        String email = user.getEmail();
+        evictNow(userId, email);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNow(userId, email);
+                }
+            });
+        }
+    }
+
+    private void evictNow(Long userId, String email) {
+        if (userId != null) {
+            evictById(userId);
+        }
+        if (email != null) {
+            evictByEmail(email);
+        }
+    }
+
+    /**
+     * Evict a user by ID
+     */
+    public void evictById(Long userId) {
+        String email = emailById.remove(userId);
+        if (email != null) {
+            evictByEmail(email);
+        }
+    }
+
+    /**
+     * Evict a user by email
+     */
+    public void evictByEmail(String email) {
+        // Bump before removing: a load that misses this remove sees the new generation
+        generations.incrementAndGet(stripe(email));
+        CachedPrincipal removed = byEmail.remove(email);
+        if (removed != null) {
+            emailById.remove(removed.user().getId(), email);
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Clear the whole cache
+     */
+    public void clear() {
+        byEmail.clear();
+        emailById.clear();
+        log.info("Principal cache cleared");
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    /**
+     * Cache statistics for monitoring
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", byEmail.size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("sizeEvictions", sizeEvictions.sum());
+        stats.put("staleLoads", staleLoads.sum());
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static int stripe(String email) {
+        return Math.floorMod(email.hashCode(), GENERATION_STRIPES);
+    }
+
+    private User copyOf(User user) {
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .password(user.getPassword())
+                .phone(user.getPhone())
+                .userType(user.getUserType())
+                .isVerified(user.getIsVerified())
+                .isActive(user.getIsActive())
+                .isDeleted(user.getIsDeleted())
+                .otp(user.getOtp())
+                .otpExpiry(user.getOtpExpiry())
+                .resetToken(user.getResetToken())
+                .resetTokenExpiry(user.getResetTokenExpiry())
+                .refreshToken(user.getRefreshToken())
+                .refreshTokenExpiry(user.getRefreshTokenExpiry())
+                .createdAt(user.getCreatedAt())
+                .updatedAt(user.getUpdatedAt())
+                .lastLogin(user.getLastLogin())
+                .build();
+    }
+}
@@ -1,21 +1,22 @@
 package com.tpts.service;
 
 import com.tpts.controller.TrackingWebSocketController;
-import com.tpts.entity.DeliveryAgent;
-import com.tpts.entity.Parcel;
-import com.tpts.entity.ParcelStatus;
+import com.tpts.dto.event.AgentLocationEvent;
+import com.tpts.dto.request.LocationTrailRequest;
+import com.tpts.dto.response.LocationTrailResultDTO;
+import com.tpts.exception.TptsExceptions.BadRequestException;
+import com.tpts.exception.TptsExceptions.ResourceNotFoundException;
 import com.tpts.repository.DeliveryAgentRepository;
-import com.tpts.repository.ParcelRepository;
+import com.tpts.service.AgentParcelIndex.ActiveParcel;
+import com.tpts.util.GeoUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -23,73 +24,207 @@ import java.util.Map;
 public class AgentLocationService {
 
     private final DeliveryAgentRepository agentRepository;
-    private final ParcelRepository parcelRepository;
     private final TrackingWebSocketController wsController;
+    private final AgentLocationStore agentLocationStore;
+    private final AgentParcelIndex agentParcelIndex;
+    private final LocationTrailStore locationTrailStore;
+    private final EtaModel etaModel;
+
+    @Value("${tracking.trail.max-points:1000}")
+    private int trailMaxPoints;
+
+    @Value("${tracking.trail.max-clock-skew-ms:60000}")
+    private long trailMaxClockSkewMs;
+
+    // Older points would move the position backwards in time and open trail segments for long-gone days
+    @Value("${tracking.trail.max-age-ms:86400000}")
+    private long trailMaxAgeMs;
 
     /**
      * Update agent location and broadcast to tracking subscribers
+     * The position goes to the in-memory store; the DB is written behind
      */
-    @Transactional
     public void updateAgentLocation(Long agentId, BigDecimal latitude, BigDecimal longitude) {
-        DeliveryAgent agent = agentRepository.findById(agentId)
-                .orElseThrow(() -> new RuntimeException("Agent not found"));
+        // Only agents not seen since startup cost an existence check
+        if (!agentLocationStore.contains(agentId) && !agentRepository.existsById(agentId)) {
+            throw new ResourceNotFoundException("Agent", "id", agentId);
+        }
+
+        agentLocationStore.update(agentId, latitude.doubleValue(), longitude.doubleValue());
+
+        broadcastLocation(agentId, latitude, longitude);
+    }
+
+    // ==========================================
+    // Batched Trail Upload
+    // ==========================================
 
-        agent.setCurrentLatitude(latitude);
-        agent.setCurrentLongitude(longitude);
-        agent.setLocationUpdatedAt(LocalDateTime.now());
-        agentRepository.save(agent);
+    /**
+     * Decoded GPS trail; timestamps are strictly increasing
+     */
+    public record DecodedTrail(long[] timestamps, double[] latitudes, double[] longitudes) {
+
+        public int size() {
+            return timestamps.length;
+        }
+    }
+
+    /**
+     * Apply a batched, delta-encoded GPS trail for an agent
+     * Only the newest point moves the latest position; tracking subscribers
+     * get one broadcast per active parcel for the whole batch.
+     */
+    public LocationTrailResultDTO ingestTrail(Long agentId, LocationTrailRequest request) {
+        DecodedTrail trail = decodeTrail(request);
+        int last = trail.size() - 1;
+
+        AgentLocationStore.AgentPosition before = agentLocationStore.get(agentId);
+        long heldTimestamp = before != null ? before.timestamp() : Long.MIN_VALUE;
+
+        int accepted = 0;
+        for (long timestamp : trail.timestamps()) {
+            if (timestamp >= heldTimestamp) {
+                accepted++;
+            }
+        }
+
+        int parcelsNotified = 0;
+        if (accepted > 0) {
+            // Intermediate points only go to the trail history; the store appends the last one
+            for (int i = 0; i < last; i++) {
+                if (trail.timestamps()[i] >= heldTimestamp) {
+                    locationTrailStore.append(agentId, trail.timestamps()[i],
+                            trail.latitudes()[i], trail.longitudes()[i]);
+                }
+            }
+            AgentLocationStore.AgentPosition position = agentLocationStore.update(agentId,
+                    trail.latitudes()[last], trail.longitudes()[last], trail.timestamps()[last]);
+            parcelsNotified = broadcastLocation(agentId, position.latitudeDecimal(), position.longitudeDecimal(),
+                    position.updatedAt());
+        }
+
+        AgentLocationStore.AgentPosition current = agentLocationStore.get(agentId);
+        log.debug("Agent {} uploaded trail of {} points ({} accepted)", agentId, trail.size(), accepted);
+
+        return LocationTrailResultDTO.builder()
+                .received(trail.size())
+                .accepted(accepted)
+                .firstTimestamp(trail.timestamps()[0])
+                .lastTimestamp(trail.timestamps()[last])
+                .latitude(current != null ? current.latitudeDecimal() : null)
+                .longitude(current != null ? current.longitudeDecimal() : null)
+                .parcelsNotified(parcelsNotified)
+                .build();
+    }
+
+    /**
+     * Decode and validate a delta-encoded trail in a single pass
+     */
+    public DecodedTrail decodeTrail(LocationTrailRequest request) {
+        int n = request.getTimeDeltas().size();
+        if (request.getLatDeltas().size() != n || request.getLngDeltas().size() != n) {
+            throw new BadRequestException("timeDeltas, latDeltas and lngDeltas must have the same length");
+        }
+        if (n > trailMaxPoints) {
+            throw new BadRequestException("Trail exceeds " + trailMaxPoints + " points");
+        }
 
-        // Get all active deliveries for this agent
-        List<Parcel> activeParcels = parcelRepository.findByAgentIdAndStatusIn(
-                agentId,
-                List.of(ParcelStatus.PICKED_UP, ParcelStatus.IN_TRANSIT, ParcelStatus.OUT_FOR_DELIVERY)
-        );
+        long[] timestamps = new long[n];
+        double[] latitudes = new double[n];
+        double[] longitudes = new double[n];
+
+        long time = request.getBaseTime();
+        long latE6 = request.getBaseLat();
+        long lngE6 = request.getBaseLng();
+        long now = System.currentTimeMillis();
+        long latestAllowed = now + trailMaxClockSkewMs;
+        long earliestAllowed = now - trailMaxAgeMs;
+
+        for (int i = 0; i < n; i++) {
+            Long dt = request.getTimeDeltas().get(i);
+            Integer dLat = request.getLatDeltas().get(i);
+            Integer dLng = request.getLngDeltas().get(i);
+            if (dt == null || dLat == null || dLng == null) {
+                throw new BadRequestException("Trail point " + i + " is incomplete");
+            }
+            if (i > 0 && dt <= 0) {
+                throw new BadRequestException("Trail timestamps must be strictly increasing (point " + i + ")");
+            }
+            time += i > 0 ? dt : 0;
+            latE6 += i > 0 ? dLat : 0;
+            lngE6 += i > 0 ? dLng : 0;
+
+            if (latE6 < -90_000_000L || latE6 > 90_000_000L || lngE6 < -180_000_000L || lngE6 > 180_000_000L) {
+                throw new BadRequestException("Trail point " + i + " is out of range");
+            }
+            timestamps[i] = time;
+            latitudes[i] = latE6 / 1e6;
+            longitudes[i] = lngE6 / 1e6;
+        }
+
+        if (timestamps[n - 1] > latestAllowed) {
+            throw new BadRequestException("Trail timestamps are in the future");
+        }
+        if (timestamps[0] < earliestAllowed) {
+            throw new BadRequestException("Trail starts more than " + trailMaxAgeMs / 60_000 + " minutes ago");
+        }
+        return new DecodedTrail(timestamps, latitudes, longitudes);
+    }
+
+    // ==========================================
+    // Broadcast
+    // ==========================================
+
+    /**
+     * Broadcast an already-recorded agent location to tracking subscribers
+     */
+    public int broadcastLocation(Long agentId, BigDecimal latitude, BigDecimal longitude) {
+        return broadcastLocation(agentId, latitude, longitude, LocalDateTime.now());
+    }
+
+    /**
+     * Broadcast an agent location fixed at the given time
+     *
+     * @return number of active parcels notified
+     */
+    public int broadcastLocation(Long agentId, BigDecimal latitude, BigDecimal longitude, LocalDateTime fixTime) {
+        // Active deliveries come from the in-memory index (no DB access)
+        List<ActiveParcel> activeParcels = agentParcelIndex.getActiveParcels(agentId);
+        if (activeParcels.isEmpty()) {
+            return 0;
+        }
+
+        double agentLat = latitude.doubleValue();
+        double agentLng = longitude.doubleValue();
+        double agentCosLat = GeoUtils.cosLat(agentLat);
+        int hour = fixTime.getHour();
 
         // Broadcast location to each active parcel's tracking subscribers
         activeParcels.forEach(parcel -> {
             try {
-                // Calculate ETA (simple distance-based calculation)
-                double distanceKm = calculateDistance(
-                        latitude.doubleValue(), longitude.doubleValue(),
-                        parcel.getDeliveryLatitude().doubleValue(),
-                        parcel.getDeliveryLongitude().doubleValue()
-                );
-
-                int etaMinutes = (int) (distanceKm * 3); // Assume 20km/h average speed
-                String etaText = etaMinutes < 60 ?
-                        etaMinutes + " mins" :
-                        (etaMinutes / 60) + " hrs " + (etaMinutes % 60) + " mins";
-
-                Map<String, Object> locationData = new HashMap<>();
-                locationData.put("agentLat", latitude);
-                locationData.put("agentLng", longitude);
-                locationData.put("distanceKm", String.format("%.2f", distanceKm));
-                locationData.put("etaMinutes", etaMinutes);
-                locationData.put("etaText", etaText);
-                locationData.put("timestamp", LocalDateTime.now());
-
-                wsController.broadcastAgentLocation(parcel.getTrackingNumber(), locationData);
+                AgentLocationEvent event;
+                if (parcel.hasDeliveryLocation()) {
+                    // ETA from the learned city/hour/vehicle speed profile
+                    double distanceKm = GeoUtils.distanceKm(agentLat, agentLng, agentCosLat,
+                            parcel.deliveryLatitude(), parcel.deliveryLongitude(), parcel.deliveryCosLat());
+
+                    int etaMinutes = etaModel.estimate(distanceKm, parcel.deliveryCity(), parcel.vehicleType(), hour)
+                            .minutes();
+
+                    event = new AgentLocationEvent(latitude, longitude, fixTime,
+                            GeoUtils.formatKm(distanceKm), etaMinutes, GeoUtils.formatEta(etaMinutes));
+                } else {
+                    event = new AgentLocationEvent(latitude, longitude, fixTime, null, null, null);
+                }
+
+                wsController.broadcastAgentLocation(parcel.trackingNumber(), agentLat, agentLng, event);
             } catch (Exception e) {
                 log.error("Failed to broadcast location for parcel {}: {}",
-                        parcel.getTrackingNumber(), e.getMessage());
+                        parcel.trackingNumber(), e.getMessage());
             }
         });
 
         log.debug("Agent {} location updated: {}, {}", agentId, latitude, longitude);
-    }
-
-    /**
-     * Calculate distance between two lat/lng points (Haversine formula)
-     */
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Radius of the earth in km
-
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return R * c;
+        return activeParcels.size();
     }
 }
@@ -0,0 +1,221 @@
+package com.tpts.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory latest-position store for delivery agents
+ *
+ * GPS pings only update this map; positions are written behind to
+ * delivery_agent.current_latitude/current_longitude in periodic JDBC batches
+ * (see TrackingScheduler). Readers check here first and fall back to the
+ * entity columns for agents that have not pinged since startup.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AgentLocationStore {
+
+    private static final String FLUSH_SQL =
+            "UPDATE delivery_agent SET current_latitude = ?, current_longitude = ?, location_updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AgentSpatialIndex agentSpatialIndex;
+    private final LocationTrailStore locationTrailStore;
+
+    @Value("${tracking.location.flush-batch-size:500}")
+    private int flushBatchSize;
+
+    /** Zone Hibernate writes timestamps in; used only for the write-behind UPDATE */
+    @Value("${spring.jpa.properties.hibernate.jdbc.time_zone:Asia/Kolkata}")
+    private ZoneId zone;
+
+    private final Map<Long, AgentPosition> positions = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder rowsFlushed = new LongAdder();
+    private final LongAdder flushBatches = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    /**
+     * Immutable latest position of an agent
+     */
+    public record AgentPosition(double latitude, double longitude, long timestamp) {
+
+        public BigDecimal latitudeDecimal() {
+            return BigDecimal.valueOf(latitude);
+        }
+
+        public BigDecimal longitudeDecimal() {
+            return BigDecimal.valueOf(longitude);
+        }
+
+        /**
+         * Fix time in the JVM zone, like the other LocalDateTimes handed to clients
+         */
+        public LocalDateTime updatedAt() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+        }
+    }
+
+    // ==========================================
+    // Write Path
+    // ==========================================
+
+    /**
+     * Record a new position for an agent (no database access)
+     */
+    public AgentPosition update(Long agentId, double latitude, double longitude) {
+        return update(agentId, latitude, longitude, System.currentTimeMillis());
+    }
+
+    /**
+     * Record a position with an explicit timestamp. Older fixes than the one
+     * already held are ignored so out-of-order pings never move an agent back.
+     */
+    public AgentPosition update(Long agentId, double latitude, double longitude, long timestamp) {
+        AgentPosition next = new AgentPosition(latitude, longitude, timestamp);
+        AgentPosition stored = positions.merge(agentId, next,
+                (current, incoming) -> incoming.timestamp() >= current.timestamp() ? incoming : current);
+        if (stored == next) {
+            dirty.add(agentId);
+            updates.increment();
+            agentSpatialIndex.onPositionChanged(agentId, latitude, longitude);
+            locationTrailStore.append(agentId, timestamp, latitude, longitude);
+        }
+        return stored;
+    }
+
+    // ==========================================
+    // Read Path
+    // ==========================================
+
+    /**
+     * Latest known position, or null if the agent has not pinged since startup
+     */
+    public AgentPosition get(Long agentId) {
+        return agentId != null ? positions.get(agentId) : null;
+    }
+
+    public boolean contains(Long agentId) {
+        return agentId != null && positions.containsKey(agentId);
+    }
+
+    /**
+     * Drop an agent from the store (e.g. after deletion)
+     */
+    public void remove(Long agentId) {
+        positions.remove(agentId);
+        dirty.remove(agentId);
+    }
+
+    // ==========================================
+    // Write-Behind
+    // ==========================================
+
+    /**
+     * Flush dirty positions to delivery_agent in JDBC batches,
+     * one transaction per batch
+     *
+     * @return number of rows written
+     */
+    public int flush() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+
+        List<Object[]> batch = new ArrayList<>(Math.min(dirty.size(), flushBatchSize));
+        List<Long> batchIds = new ArrayList<>(batch.size());
+        int written = 0;
+
+        Iterator<Long> it = dirty.iterator();
+        while (it.hasNext()) {
+            Long agentId = it.next();
+            it.remove();
+            AgentPosition position = positions.get(agentId);
+            if (position == null) {
+                continue;
+            }
+            batch.add(new Object[] {
+                    position.latitudeDecimal(),
+                    position.longitudeDecimal(),
+                    Timestamp.valueOf(LocalDateTime.ofInstant(Instant.ofEpochMilli(position.timestamp()), zone)),
+                    agentId });
+            batchIds.add(agentId);
+
+            if (batch.size() >= flushBatchSize) {
+                written += writeBatch(batch, batchIds);
+            }
+        }
+        if (!batch.isEmpty()) {
+            written += writeBatch(batch, batchIds);
+        }
+
+        log.debug("Flushed {} agent positions", written);
+        return written;
+    }
+
+    private int writeBatch(List<Object[]> batch, List<Long> batchIds) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(FLUSH_SQL, batch));
+            flushBatches.increment();
+            rowsFlushed.add(batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            // Re-queue so the next flush retries with the latest position
+            dirty.addAll(batchIds);
+            flushFailures.increment();
+            log.error("Failed to flush {} agent positions: {}", batch.size(), e.getMessage());
+            return 0;
+        } finally {
+            batch.clear();
+            batchIds.clear();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            int written = flush();
+            log.info("Flushed {} agent positions on shutdown", written);
+        } catch (Exception e) {
+            log.error("Failed to flush agent positions on shutdown: {}", e.getMessage());
+        }
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("agents", positions.size());
+        stats.put("pendingFlush", dirty.size());
+        stats.put("updates", updates.sum());
+        stats.put("rowsFlushed", rowsFlushed.sum());
+        stats.put("flushBatches", flushBatches.sum());
+        stats.put("flushFailures", flushFailures.sum());
+        return stats;
+    }
+}
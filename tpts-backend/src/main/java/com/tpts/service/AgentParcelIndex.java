@@ -0,0 +1,243 @@
+package com.tpts.service;
+
+import com.tpts.entity.Parcel;
+import com.tpts.entity.ParcelStatus;
+import com.tpts.entity.VehicleType;
+import com.tpts.repository.ParcelRepository;
+import com.tpts.util.GeoUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory index of each agent's active (in-flight) parcels
+ *
+ * Lets the location fan-out find the tracking numbers and delivery
+ * coordinates for an agent without touching the database. Kept current by
+ * the parcel/group/agent write paths via onParcelChanged (applied after the
+ * surrounding transaction commits), rebuilt from the database at startup and
+ * periodically resynced by TrackingScheduler to catch any missed write path.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AgentParcelIndex {
+
+    /** Statuses during which an agent is physically carrying the parcel */
+    public static final List<ParcelStatus> ACTIVE_STATUSES = List.of(
+            ParcelStatus.PICKED_UP, ParcelStatus.IN_TRANSIT, ParcelStatus.OUT_FOR_DELIVERY);
+
+    private final ParcelRepository parcelRepository;
+
+    // Values are immutable lists, replaced on every change, so reads are lock-free
+    private volatile Map<Long, List<ActiveParcel>> byAgent = new ConcurrentHashMap<>();
+    private volatile Map<Long, ActiveParcel> byParcel = new ConcurrentHashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder changes = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile long lastRebuildAt;
+
+    /**
+     * Immutable snapshot of an active parcel.
+     * Delivery coordinates are NaN when the parcel has none; deliveryCosLat is
+     * precomputed for the per-ping distance calculation. City and vehicle type
+     * select the EtaModel speed profile.
+     */
+    public record ActiveParcel(long parcelId, long agentId, String trackingNumber,
+            double deliveryLatitude, double deliveryLongitude, double deliveryCosLat,
+            String deliveryCity, VehicleType vehicleType) {
+
+        public boolean hasDeliveryLocation() {
+            return !Double.isNaN(deliveryLatitude) && !Double.isNaN(deliveryLongitude);
+        }
+    }
+
+    // ==========================================
+    // Read Path
+    // ==========================================
+
+    /**
+     * Active parcels currently carried by an agent (never null)
+     */
+    public List<ActiveParcel> getActiveParcels(Long agentId) {
+        lookups.increment();
+        if (agentId == null) {
+            return List.of();
+        }
+        return byAgent.getOrDefault(agentId, List.of());
+    }
+
+    // ==========================================
+    // Write Path
+    // ==========================================
+
+    /**
+     * Record a parcel's agent/status change. Call after saving the parcel.
+     * Inside a transaction the change is applied only once it commits, so a
+     * rollback never leaves the index ahead of the database.
+     */
+    public void onParcelChanged(Parcel parcel) {
+        if (parcel == null || parcel.getId() == null) {
+            return;
+        }
+
+        // Snapshot now; the entity may change or detach before commit
+        ActiveParcel entry = toEntry(parcel);
+        long parcelId = parcel.getId();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(parcelId, entry);
+                }
+            });
+        } else {
+            apply(parcelId, entry);
+        }
+    }
+
+    /**
+     * Record changes for several parcels (group flows)
+     */
+    public void onParcelsChanged(List<Parcel> parcels) {
+        parcels.forEach(this::onParcelChanged);
+    }
+
+    private ActiveParcel toEntry(Parcel parcel) {
+        if (parcel.getAgent() == null || !ACTIVE_STATUSES.contains(parcel.getStatus())) {
+            return null;
+        }
+        // getId() on a lazy proxy does not initialize it
+        return newEntry(parcel.getId(), parcel.getAgent().getId(), parcel.getTrackingNumber(),
+                parcel.getDeliveryLatitude(), parcel.getDeliveryLongitude(),
+                parcel.getDeliveryCity(), parcel.getAgent().getVehicleType());
+    }
+
+    /**
+     * Move a parcel to its new agent, or drop it when entry is null
+     */
+    private synchronized void apply(long parcelId, ActiveParcel entry) {
+        ActiveParcel previous = entry != null ? byParcel.put(parcelId, entry) : byParcel.remove(parcelId);
+
+        if (previous != null) {
+            byAgent.computeIfPresent(previous.agentId(), (agentId, list) -> {
+                List<ActiveParcel> next = new ArrayList<>(list);
+                next.removeIf(p -> p.parcelId() == parcelId);
+                return next.isEmpty() ? null : Collections.unmodifiableList(next);
+            });
+        }
+        if (entry != null) {
+            byAgent.compute(entry.agentId(), (agentId, list) -> {
+                List<ActiveParcel> next = list != null ? new ArrayList<>(list) : new ArrayList<>(1);
+                next.add(entry);
+                return Collections.unmodifiableList(next);
+            });
+        }
+        changes.increment();
+    }
+
+    /**
+     * Replace the delivery coordinates of an indexed parcel (background
+     * backfill). Parcels not in the index are left alone: their agent and
+     * status are unchanged, so they are still not active.
+     */
+    public synchronized void onDeliveryLocationChanged(long parcelId, BigDecimal latitude, BigDecimal longitude) {
+        ActiveParcel current = byParcel.get(parcelId);
+        if (current == null) {
+            return;
+        }
+        apply(parcelId, newEntry(parcelId, current.agentId(), current.trackingNumber(),
+                latitude, longitude, current.deliveryCity(), current.vehicleType()));
+    }
+
+    // ==========================================
+    // Rebuild
+    // ==========================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to build agent parcel index on startup: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Rebuild the whole index from the database and swap it in
+     *
+     * @return number of active parcels indexed
+     */
+    public synchronized int rebuild() {
+        List<Object[]> rows = parcelRepository.findActiveParcelIndexRows(ACTIVE_STATUSES);
+
+        Map<Long, ActiveParcel> parcels = new ConcurrentHashMap<>(Math.max(16, rows.size() * 2));
+        Map<Long, List<ActiveParcel>> grouped = new HashMap<>();
+        for (Object[] row : rows) {
+            ActiveParcel entry = newEntry((Long) row[0], (Long) row[1], (String) row[2],
+                    (BigDecimal) row[3], (BigDecimal) row[4], (String) row[5], (VehicleType) row[6]);
+            parcels.put(entry.parcelId(), entry);
+            grouped.computeIfAbsent(entry.agentId(), k -> new ArrayList<>()).add(entry);
+        }
+
+        Map<Long, List<ActiveParcel>> agents = new ConcurrentHashMap<>(Math.max(16, grouped.size() * 2));
+        grouped.forEach((agentId, list) -> agents.put(agentId, Collections.unmodifiableList(list)));
+
+        byParcel = parcels;
+        byAgent = agents;
+        rebuilds.increment();
+        lastRebuildAt = System.currentTimeMillis();
+
+        log.info("Agent parcel index rebuilt: {} active parcels across {} agents", parcels.size(), agents.size());
+        return parcels.size();
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("agents", byAgent.size());
+        stats.put("activeParcels", byParcel.size());
+        stats.put("lookups", lookups.sum());
+        stats.put("changes", changes.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("lastRebuildAt", lastRebuildAt);
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static ActiveParcel newEntry(Long parcelId, Long agentId, String trackingNumber,
+            BigDecimal deliveryLatitude, BigDecimal deliveryLongitude, String deliveryCity, VehicleType vehicleType) {
+        double latitude = deliveryLatitude != null ? deliveryLatitude.doubleValue() : Double.NaN;
+        double longitude = deliveryLongitude != null ? deliveryLongitude.doubleValue() : Double.NaN;
+        // Impossible coordinates (0,0, swapped) count as unknown until the backfill job fixes them
+        if (!Double.isNaN(latitude) && !Double.isNaN(longitude)
+                && !PincodeCentroidTable.isInIndia(latitude, longitude)) {
+            latitude = Double.NaN;
+            longitude = Double.NaN;
+        }
+        return new ActiveParcel(parcelId, agentId, trackingNumber, latitude, longitude, GeoUtils.cosLat(latitude),
+                deliveryCity, vehicleType);
+    }
+}
@@ -10,6 +10,7 @@ import com.tpts.dto.request.ChangePasswordRequest;
 import com.tpts.dto.response.AgentDTO;
 import com.tpts.dto.response.AgentDashboardDTO;
 import com.tpts.dto.response.AgentPublicDTO;
+import com.tpts.dto.response.AgentTrailDTO;
 import com.tpts.entity.*;
 import com.tpts.exception.TptsExceptions.*;
 import com.tpts.repository.DeliveryAgentRepository;
@@ -19,6 +20,7 @@ import com.tpts.repository.ParcelRepository;
 import com.tpts.repository.RatingRepository;
 import com.tpts.repository.CompanyAdminRepository;
 import com.tpts.repository.UserRepository;
+import com.tpts.security.PrincipalCache;
 import com.tpts.util.OtpUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,10 +30,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -55,6 +59,17 @@ public class AgentService {
     private final RatingRepository ratingRepository;
     private final GroupShipmentRepository groupShipmentRepository;
     private final CompanyAdminRepository companyRepository;
+    private final PrincipalCache principalCache;
+    private final AgentLocationStore agentLocationStore;
+    private final AgentParcelIndex agentParcelIndex;
+    private final AgentSpatialIndex agentSpatialIndex;
+    private final LocationTrailStore locationTrailStore;
+
+    // userId -> agentId; an agent's user never changes, so entries never go stale
+    private final Map<Long, Long> agentIdByUserId = new ConcurrentHashMap<>();
+
+    // agentId -> fullName for the public location endpoint; refreshed on profile updates
+    private final Map<Long, String> agentNameById = new ConcurrentHashMap<>();
 
     // ==========================================
     // Get Agent Profile
@@ -194,6 +209,7 @@ public class AgentService {
         // Update password
         currentUser.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(currentUser);
+        principalCache.evict(currentUser);
 
         log.info("Password changed successfully for agent: {}", currentUser.getEmail());
 
@@ -225,6 +241,7 @@ public class AgentService {
     private void updateAgentFields(DeliveryAgent agent, UpdateAgentRequest request) {
         if (request.getFullName() != null) {
             agent.setFullName(request.getFullName());
+            agentNameById.remove(agent.getId());
         }
         if (request.getVehicleType() != null) {
             agent.setVehicleType(request.getVehicleType());
@@ -282,6 +299,7 @@ public class AgentService {
 
         agent.setIsAvailable(isAvailable);
         agent = agentRepository.save(agent);
+        updateSpatialIndex(agent);
 
         log.info("Agent {} set availability to {}", agent.getId(), isAvailable);
         return mapToDTO(agent);
@@ -305,6 +323,7 @@ public class AgentService {
         User agentUser = agent.getUser();
         agentUser.setIsActive(isActive);
         userRepository.save(agentUser);
+        principalCache.evict(agentUser);
 
         // If deactivating, also set unavailable (agent can't take orders if suspended)
         if (!isActive) {
@@ -312,6 +331,7 @@ public class AgentService {
         }
 
         agent = agentRepository.save(agent);
+        updateSpatialIndex(agent);
 
         // Send email notification
         try {
@@ -337,17 +357,15 @@ public class AgentService {
 
     /**
      * Update agent's current location
+     * Recorded in AgentLocationStore and written behind to the database
      */
-    @Transactional
     public AgentDTO updateLocation(UpdateLocationRequest request, User currentUser) {
         DeliveryAgent agent = agentRepository.findByUser(currentUser)
                 .orElseThrow(() -> new ResourceNotFoundException("Agent profile not found"));
+        agentIdByUserId.putIfAbsent(currentUser.getId(), agent.getId());
 
-        agent.setCurrentLatitude(request.getLatitude());
-        agent.setCurrentLongitude(request.getLongitude());
-        agent.setLocationUpdatedAt(LocalDateTime.now());
-
-        agent = agentRepository.save(agent);
+        agentLocationStore.update(agent.getId(),
+                request.getLatitude().doubleValue(), request.getLongitude().doubleValue());
 
         log.debug("Agent {} updated location to ({}, {})",
                 agent.getId(), request.getLatitude(), request.getLongitude());
@@ -519,34 +537,136 @@ public class AgentService {
 
     /**
      * Update agent's current location for live tracking
+     * Recorded in AgentLocationStore; only group shipments are written directly
      */
     @Transactional
     public void updateAgentLocation(User currentUser, Double latitude, Double longitude, Long groupShipmentId) {
-        DeliveryAgent agent = agentRepository.findByUser(currentUser)
-                .orElseThrow(() -> new ResourceNotFoundException("Agent profile not found"));
+        Long agentId = resolveAgentId(currentUser);
 
         // Update agent's current location
-        agent.setCurrentLatitude(java.math.BigDecimal.valueOf(latitude));
-        agent.setCurrentLongitude(java.math.BigDecimal.valueOf(longitude));
-        agent.setLocationUpdatedAt(java.time.LocalDateTime.now());
-        agentRepository.save(agent);
+        agentLocationStore.update(agentId, latitude, longitude);
 
         // If groupShipmentId is provided, update the group's agent location too
         if (groupShipmentId != null) {
-            groupShipmentRepository.findById(groupShipmentId).ifPresent(group -> {
-                // Check if this agent is pickup or delivery agent and update accordingly
-                if (agent.equals(group.getPickupAgent())) {
-                    group.setPickupAgentLatitude(latitude);
-                    group.setPickupAgentLongitude(longitude);
-                } else if (agent.equals(group.getDeliveryAgent())) {
-                    group.setDeliveryAgentLatitude(latitude);
-                    group.setDeliveryAgentLongitude(longitude);
-                }
-                groupShipmentRepository.save(group);
-            });
+            updateGroupAgentLocation(agentId, groupShipmentId, latitude, longitude);
+        }
+
+        log.debug("Agent {} location updated: [{},{}]", agentId, latitude, longitude);
+    }
+
+    /**
+     * Get an agent's recorded GPS trail between two times (replay / disputes)
+     * Company admins can only read their own agents
+     */
+    public AgentTrailDTO getAgentTrail(Long agentId, LocalDateTime from, LocalDateTime to, int limit,
+            User currentUser) {
+        if (currentUser.getUserType() == UserType.COMPANY_ADMIN) {
+            CompanyAdmin company = companyService.getCompanyEntityByUser(currentUser);
+            agentRepository.findByIdAndCompanyId(agentId, company.getId())
+                    .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", agentId));
+        } else if (!agentRepository.existsById(agentId)) {
+            throw new ResourceNotFoundException("Agent", "id", agentId);
         }
+        if (from.isAfter(to)) {
+            throw new BadRequestException("'from' must be before 'to'");
+        }
+
+        // Same zone as the controller's default window and the other client-facing times;
+        // the store only sees epoch millis, whatever zone it cuts days in
+        ZoneId zone = ZoneId.systemDefault();
+        List<LocationTrailStore.TrailPoint> stored = locationTrailStore.query(agentId,
+                from.atZone(zone).toInstant().toEpochMilli(), to.atZone(zone).toInstant().toEpochMilli(), limit + 1);
+
+        boolean truncated = stored.size() > limit;
+        List<AgentTrailDTO.TrailPoint> points = stored.stream()
+                .limit(limit)
+                .map(p -> AgentTrailDTO.TrailPoint.builder()
+                        .timestamp(p.timestamp())
+                        .latitude(p.latitude())
+                        .longitude(p.longitude())
+                        .build())
+                .toList();
+
+        return AgentTrailDTO.builder()
+                .agentId(agentId)
+                .from(from)
+                .to(to)
+                .count(points.size())
+                .truncated(truncated)
+                .points(points)
+                .build();
+    }
 
-        log.info("Agent {} location updated: [{},{}]", agent.getFullName(), latitude, longitude);
+    /**
+     * Update the pickup or delivery agent location stored on a group shipment
+     */
+    public void updateGroupAgentLocation(Long agentId, Long groupShipmentId, Double latitude, Double longitude) {
+        groupShipmentRepository.findById(groupShipmentId).ifPresent(group -> {
+            // Check if this agent is pickup or delivery agent and update accordingly
+            if (group.getPickupAgent() != null && agentId.equals(group.getPickupAgent().getId())) {
+                group.setPickupAgentLatitude(latitude);
+                group.setPickupAgentLongitude(longitude);
+            } else if (group.getDeliveryAgent() != null && agentId.equals(group.getDeliveryAgent().getId())) {
+                group.setDeliveryAgentLatitude(latitude);
+                group.setDeliveryAgentLongitude(longitude);
+            }
+            groupShipmentRepository.save(group);
+        });
+    }
+
+    /**
+     * Get agent's current location for customer tracking
+     * Served from memory when the agent has pinged since startup
+     *
+     * @return location data, or null if the agent has no known location
+     */
+    public Map<String, Object> getAgentLocation(Long agentId) {
+        AgentLocationStore.AgentPosition position = agentLocationStore.get(agentId);
+        String agentName = agentNameById.get(agentId);
+
+        BigDecimal latitude;
+        BigDecimal longitude;
+        LocalDateTime updatedAt;
+
+        if (position != null && agentName != null) {
+            latitude = position.latitudeDecimal();
+            longitude = position.longitudeDecimal();
+            updatedAt = position.updatedAt();
+        } else {
+            DeliveryAgent agent = agentRepository.findById(agentId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Agent", "id", agentId));
+            agentName = agent.getFullName();
+            agentNameById.put(agentId, agentName);
+
+            latitude = position != null ? position.latitudeDecimal() : agent.getCurrentLatitude();
+            longitude = position != null ? position.longitudeDecimal() : agent.getCurrentLongitude();
+            updatedAt = position != null ? position.updatedAt() : agent.getLocationUpdatedAt();
+        }
+
+        if (latitude == null || longitude == null) {
+            return null;
+        }
+
+        Map<String, Object> locationData = new HashMap<>();
+        locationData.put("agentLat", latitude);
+        locationData.put("agentLng", longitude);
+        locationData.put("agentName", agentName);
+        locationData.put("timestamp", updatedAt);
+        return locationData;
+    }
+
+    /**
+     * Resolve the agent ID for a user, hitting the database only once per user
+     */
+    public Long resolveAgentId(User currentUser) {
+        Long cached = agentIdByUserId.get(currentUser.getId());
+        if (cached != null) {
+            return cached;
+        }
+        DeliveryAgent agent = agentRepository.findByUser(currentUser)
+                .orElseThrow(() -> new ResourceNotFoundException("Agent profile not found"));
+        agentIdByUserId.put(currentUser.getId(), agent.getId());
+        return agent.getId();
     }
 
     /**
@@ -589,6 +709,7 @@ public class AgentService {
             parcel.setPickupPhotoUrl(photoUrl);
         }
         parcelRepository.save(parcel);
+        agentParcelIndex.onParcelChanged(parcel);
 
         log.info("Agent {} picked up parcel {} with OTP verification", agent.getFullName(), parcel.getTrackingNumber());
     }
@@ -633,6 +754,7 @@ public class AgentService {
             parcel.setDeliveryPhotoUrl(photoUrl);
         }
         parcelRepository.save(parcel);
+        agentParcelIndex.onParcelChanged(parcel);
 
         // Update agent's current orders count (reduce active orders)
         agent.setCurrentOrdersCount(Math.max(0, agent.getCurrentOrdersCount() - 1));
@@ -701,6 +823,7 @@ public class AgentService {
             parcel.setStatus(ParcelStatus.AT_WAREHOUSE);
             parcel.setWarehouseArrivedAt(now);
             parcelRepository.save(parcel);
+            agentParcelIndex.onParcelChanged(parcel);
         }
 
         // Update group status to PICKUP_COMPLETE (all parcels at warehouse)
@@ -729,10 +852,9 @@ public class AgentService {
 
         List<DeliveryAgent> agents = agentRepository.findByCompanyId(company.getId());
 
-        return agents.stream()
+        return mapToDTOs(agents.stream()
                 .filter(a -> !Boolean.TRUE.equals(a.getUser().getIsDeleted())) // Exclude soft-deleted
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+                .toList());
     }
 
     /**
@@ -743,9 +865,7 @@ public class AgentService {
 
         List<DeliveryAgent> agents = agentRepository.findAvailableAgentsByCompany(company.getId());
 
-        return agents.stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(agents);
     }
 
     /**
@@ -757,9 +877,43 @@ public class AgentService {
         List<DeliveryAgent> agents = agentRepository.findAvailableAgentsByPriorityPincodeAndCity(
                 company.getId(), pincode, city);
 
-        return agents.stream()
-                .map(this::mapToDTO)
-                .collect(Collectors.toList());
+        return mapToDTOs(agents);
+    }
+
+    /**
+     * Get the k nearest available agents to a point (for assignment)
+     * Served from AgentSpatialIndex; only agents with a known position are returned
+     */
+    public List<AgentDTO> getNearestAvailableAgents(BigDecimal latitude, BigDecimal longitude, int k,
+            Double radiusKm, User companyUser) {
+        CompanyAdmin company = companyService.getCompanyEntityByUser(companyUser);
+
+        List<AgentSpatialIndex.NearbyAgent> nearby = agentSpatialIndex.findNearest(
+                company.getId(), latitude.doubleValue(), longitude.doubleValue(), k, radiusKm);
+        if (nearby.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, DeliveryAgent> agentsById = agentRepository.findAllWithUserAndCompanyByIdIn(
+                nearby.stream().map(AgentSpatialIndex.NearbyAgent::agentId).toList())
+                .stream()
+                .collect(Collectors.toMap(DeliveryAgent::getId, a -> a));
+
+        List<DeliveryAgent> agents = new ArrayList<>(nearby.size());
+        List<Double> distances = new ArrayList<>(nearby.size());
+        for (AgentSpatialIndex.NearbyAgent match : nearby) {
+            DeliveryAgent agent = agentsById.get(match.agentId());
+            if (agent != null) {
+                agents.add(agent);
+                distances.add(Math.round(match.distanceKm() * 100) / 100.0);
+            }
+        }
+
+        List<AgentDTO> result = mapToDTOs(agents);
+        for (int i = 0; i < result.size(); i++) {
+            result.get(i).setDistanceKm(distances.get(i));
+        }
+        return result;
     }
 
     /**
@@ -819,6 +973,8 @@ public class AgentService {
 
         agentRepository.save(agent);
         userRepository.save(agent.getUser());
+        principalCache.evict(agent.getUser());
+        updateSpatialIndex(agent);
 
         log.info("Company {} soft deleted agent {}", company.getId(), agentId);
     }
@@ -859,6 +1015,49 @@ public class AgentService {
         if (totalRatingsCount == null)
             totalRatingsCount = 0L;
 
+        return mapToDTO(agent, totalDeliveriesCount, totalRatingsCount);
+    }
+
+    /**
+     * Map a list of agents to full DTOs, in order
+     * Same counts as mapToDTO, loaded with grouped queries for the whole list
+     * instead of four queries per agent
+     */
+    public List<AgentDTO> mapToDTOs(List<DeliveryAgent> agents) {
+        if (agents.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<Long> agentIds = agents.stream().map(DeliveryAgent::getId).distinct().toList();
+
+        Map<Long, Long> deliveries = new HashMap<>();
+        addCounts(deliveries, parcelRepository.countByAgentIdsAndStatusAndGroupShipmentIdIsNull(
+                agentIds, ParcelStatus.DELIVERED), 1);
+        addCounts(deliveries, groupShipmentRepository.countCompletedByPickupAgentIds(agentIds), 1);
+        addCounts(deliveries, groupShipmentRepository.countCompletedByDeliveryAgentIds(agentIds), 1);
+
+        // A rating that scores the same agent for pickup and delivery counts once
+        Map<Long, Long> ratings = new HashMap<>();
+        addCounts(ratings, ratingRepository.countPublicDeliveryRatingsByAgentIds(agentIds), 1);
+        addCounts(ratings, ratingRepository.countPublicPickupRatingsByAgentIds(agentIds), 1);
+        addCounts(ratings, ratingRepository.countPublicDualRatingsByAgentIds(agentIds), -1);
+
+        List<AgentDTO> dtos = new ArrayList<>(agents.size());
+        for (DeliveryAgent agent : agents) {
+            dtos.add(mapToDTO(agent, deliveries.getOrDefault(agent.getId(), 0L),
+                    ratings.getOrDefault(agent.getId(), 0L)));
+        }
+        return dtos;
+    }
+
+    private static void addCounts(Map<Long, Long> totals, List<Object[]> rows, int sign) {
+        for (Object[] row : rows) {
+            totals.merge((Long) row[0], sign * ((Number) row[1]).longValue(), Long::sum);
+        }
+    }
+
+    private AgentDTO mapToDTO(DeliveryAgent agent, long totalDeliveriesCount, long totalRatingsCount) {
+        AgentLocationStore.AgentPosition position = agentLocationStore.get(agent.getId());
+
         return AgentDTO.builder()
                 .id(agent.getId())
                 .userId(agent.getUser().getId())
@@ -875,9 +1074,9 @@ public class AgentService {
                 .isActive(agent.getIsActive())
                 .isAvailable(agent.getIsAvailable())
                 .isVerified(agent.getUser().getIsVerified())
-                .currentLatitude(agent.getCurrentLatitude())
-                .currentLongitude(agent.getCurrentLongitude())
-                .locationUpdatedAt(agent.getLocationUpdatedAt())
+                .currentLatitude(position != null ? position.latitudeDecimal() : agent.getCurrentLatitude())
+                .currentLongitude(position != null ? position.longitudeDecimal() : agent.getCurrentLongitude())
+                .locationUpdatedAt(position != null ? position.updatedAt() : agent.getLocationUpdatedAt())
                 .ratingAvg(agent.getRatingAvg())
                 .totalDeliveries((int) totalDeliveriesCount)
                 .currentOrdersCount(agent.getCurrentOrdersCount())
@@ -898,6 +1097,8 @@ public class AgentService {
      * Map DeliveryAgent entity to public DTO
      */
     public AgentPublicDTO mapToPublicDTO(DeliveryAgent agent) {
+        AgentLocationStore.AgentPosition position = agentLocationStore.get(agent.getId());
+
         return AgentPublicDTO.builder()
                 .id(agent.getId())
                 .fullName(agent.getFullName())
@@ -906,8 +1107,8 @@ public class AgentService {
                 .vehicleNumber(agent.getVehicleNumber())
                 .ratingAvg(agent.getRatingAvg())
                 .totalDeliveries(agent.getTotalDeliveries())
-                .currentLatitude(agent.getCurrentLatitude())
-                .currentLongitude(agent.getCurrentLongitude())
+                .currentLatitude(position != null ? position.latitudeDecimal() : agent.getCurrentLatitude())
+                .currentLongitude(position != null ? position.longitudeDecimal() : agent.getCurrentLongitude())
                 .build();
     }
 
@@ -915,6 +1116,21 @@ public class AgentService {
     // Helper Methods
     // ==========================================
 
+    /**
+     * Re-evaluate an agent in the spatial index after its active/available flags change
+     */
+    private void updateSpatialIndex(DeliveryAgent agent) {
+        AgentLocationStore.AgentPosition position = agentLocationStore.get(agent.getId());
+        if (position != null) {
+            agentSpatialIndex.onAgentChanged(agent, position.latitude(), position.longitude());
+        } else if (agent.getCurrentLatitude() != null && agent.getCurrentLongitude() != null) {
+            agentSpatialIndex.onAgentChanged(agent,
+                    agent.getCurrentLatitude().doubleValue(), agent.getCurrentLongitude().doubleValue());
+        } else {
+            agentSpatialIndex.onAgentChanged(agent, null, null);
+        }
+    }
+
     private String convertListToJson(List<String> list) {
         if (list == null || list.isEmpty()) {
             return null;
@@ -0,0 +1,395 @@
+package com.tpts.service;
+
+import com.tpts.entity.DeliveryAgent;
+import com.tpts.repository.DeliveryAgentRepository;
+import com.tpts.util.GeoUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory grid index of active, available agents per company
+ *
+ * Agents are bucketed into fixed-size lat/lng cells (a geohash-style grid)
+ * per company. k-nearest and radius queries scan rings of cells outward from
+ * the query point and stop as soon as no unvisited cell can hold a closer
+ * agent, so cost depends on local density, not on fleet size.
+ *
+ * Fed by AgentLocationStore (live positions) and by AgentService when an
+ * agent's active/available flags change (applied after commit); rebuilt from
+ * the database at startup and periodically resynced by TrackingScheduler.
+ * A rebuild fills fresh maps and swaps them in with one volatile write, so
+ * queries never see a half-built index.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AgentSpatialIndex {
+
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final DeliveryAgentRepository agentRepository;
+
+    @Value("${tracking.agent-index.cell-size-degrees:0.01}")
+    private double cellSizeDegrees;
+
+    @Value("${tracking.agent-index.max-search-km:50}")
+    private double maxSearchKm;
+
+    private volatile State state = new State();
+    // Agents changed by onAgentChanged while a rebuild reads the database (guarded by this)
+    private Set<Long> changedDuringRebuild;
+
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder cellsScanned = new LongAdder();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    private record IndexedAgent(long agentId, long companyId, double latitude, double longitude,
+            double cosLat, long cellKey) {
+    }
+
+    /**
+     * One generation of the index; replaced as a whole by rebuild()
+     */
+    private static final class State {
+        // agentId -> indexed entry (eligible agents with a known position only)
+        final Map<Long, IndexedAgent> agents = new ConcurrentHashMap<>();
+        // companyId -> cellKey -> agentIds
+        final Map<Long, Map<Long, Set<Long>>> grids = new ConcurrentHashMap<>();
+        // agentId -> companyId for active + available agents (with or without a position)
+        final Map<Long, Long> eligible = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * An agent found by a spatial query
+     */
+    public record NearbyAgent(long agentId, double distanceKm) {
+    }
+
+    // ==========================================
+    // Queries
+    // ==========================================
+
+    /**
+     * Up to k nearest available agents of a company, closest first
+     *
+     * @param radiusKm optional search radius; null uses tracking.agent-index.max-search-km
+     */
+    public List<NearbyAgent> findNearest(Long companyId, double latitude, double longitude, int k, Double radiusKm) {
+        queries.increment();
+        State current = state;
+        Map<Long, Set<Long>> grid = current.grids.get(companyId);
+        if (grid == null || grid.isEmpty() || k <= 0) {
+            return List.of();
+        }
+
+        double radius = radiusKm != null ? Math.min(radiusKm, maxSearchKm) : maxSearchKm;
+        int centerLat = cell(latitude);
+        int centerLng = cell(longitude);
+
+        // Worst-case km per cell step, so ring r is never closer than (r - 1) * ringKm
+        double farthestLat = Math.min(89.0, Math.abs(latitude) + radius / KM_PER_DEGREE);
+        double ringKm = cellSizeDegrees * KM_PER_DEGREE * Math.cos(Math.toRadians(farthestLat));
+        int maxRing = (int) Math.ceil(radius / ringKm) + 1;
+
+        double cosLat = GeoUtils.cosLat(latitude);
+
+        // Max-heap on distance holding the best k so far
+        PriorityQueue<NearbyAgent> best = new PriorityQueue<>(Math.min(k, 64),
+                Comparator.comparingDouble(NearbyAgent::distanceKm).reversed());
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            double ringMinKm = Math.max(0, ring - 1) * ringKm;
+            if (ringMinKm > radius || (best.size() >= k && ringMinKm > best.peek().distanceKm())) {
+                break;
+            }
+            scanRing(current, grid, centerLat, centerLng, ring, latitude, longitude, cosLat, radius, k, best);
+        }
+
+        List<NearbyAgent> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble(NearbyAgent::distanceKm));
+        return result;
+    }
+
+    /**
+     * All available agents of a company within radiusKm, closest first
+     */
+    public List<NearbyAgent> findWithinRadius(Long companyId, double latitude, double longitude, double radiusKm) {
+        return findNearest(companyId, latitude, longitude, Integer.MAX_VALUE, radiusKm);
+    }
+
+    private void scanRing(State current, Map<Long, Set<Long>> grid, int centerLat, int centerLng, int ring,
+            double latitude, double longitude, double cosLat, double radius, int k, PriorityQueue<NearbyAgent> best) {
+        for (int dLat = -ring; dLat <= ring; dLat++) {
+            boolean edgeRow = dLat == -ring || dLat == ring;
+            // Interior rows only contribute their two edge cells
+            int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+            for (int dLng = -ring; dLng <= ring; dLng += step) {
+                Set<Long> ids = grid.get(cellKey(centerLat + dLat, centerLng + dLng));
+                cellsScanned.increment();
+                if (ids == null) {
+                    continue;
+                }
+                for (Long agentId : ids) {
+                    IndexedAgent agent = current.agents.get(agentId);
+                    if (agent == null) {
+                        continue;
+                    }
+                    double d = GeoUtils.distanceKm(latitude, longitude, cosLat,
+                            agent.latitude(), agent.longitude(), agent.cosLat());
+                    if (d > radius) {
+                        continue;
+                    }
+                    if (best.size() < k) {
+                        best.add(new NearbyAgent(agentId, d));
+                    } else if (d < best.peek().distanceKm()) {
+                        best.poll();
+                        best.add(new NearbyAgent(agentId, d));
+                    }
+                }
+            }
+        }
+    }
+
+    // ==========================================
+    // Updates
+    // ==========================================
+
+    /**
+     * New live position for an agent (called by AgentLocationStore)
+     * Ignored unless the agent is currently active and available.
+     */
+    public void onPositionChanged(Long agentId, double latitude, double longitude) {
+        State current = state;
+        Long companyId = current.eligible.get(agentId);
+        if (companyId == null) {
+            return;
+        }
+
+        long key = cellKey(cell(latitude), cell(longitude));
+        // Same cell: swap the entry in place, no grid change needed
+        IndexedAgent updated = current.agents.computeIfPresent(agentId, (id, entry) -> entry.cellKey() == key
+                ? new IndexedAgent(id, companyId, latitude, longitude, GeoUtils.cosLat(latitude), key)
+                : entry);
+        // A rebuild may have copied the old entry before the in-place swap; place it again
+        if (updated == null || updated.cellKey() != key || state != current) {
+            place(agentId, latitude, longitude);
+        }
+    }
+
+    /**
+     * Re-evaluate an agent after its active/available flags change
+     * Inside a transaction the change is applied only once it commits, so a
+     * rollback never leaves the index ahead of the database.
+     *
+     * @param latitude  current position, or null if unknown
+     * @param longitude current position, or null if unknown
+     */
+    public void onAgentChanged(DeliveryAgent agent, Double latitude, Double longitude) {
+        // Snapshot now; the entity may change or detach before commit
+        long agentId = agent.getId();
+        boolean isEligible = Boolean.TRUE.equals(agent.getIsActive())
+                && Boolean.TRUE.equals(agent.getIsAvailable())
+                && agent.getCompany() != null;
+        Long companyId = isEligible ? agent.getCompany().getId() : null;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyAgentChange(agentId, companyId, latitude, longitude);
+                }
+            });
+        } else {
+            applyAgentChange(agentId, companyId, latitude, longitude);
+        }
+    }
+
+    private synchronized void applyAgentChange(long agentId, Long companyId, Double latitude, Double longitude) {
+        if (changedDuringRebuild != null) {
+            changedDuringRebuild.add(agentId);
+        }
+        State current = state;
+        if (companyId == null) {
+            current.eligible.remove(agentId);
+            unplace(current, agentId);
+            return;
+        }
+
+        current.eligible.put(agentId, companyId);
+        if (latitude != null && longitude != null) {
+            place(agentId, latitude, longitude);
+        }
+    }
+
+    private synchronized void place(long agentId, double latitude, double longitude) {
+        State current = state;
+        // Re-check under the lock: the agent may have gone unavailable meanwhile
+        Long companyId = current.eligible.get(agentId);
+        if (companyId == null) {
+            return;
+        }
+        place(current, agentId, companyId, latitude, longitude);
+        moves.increment();
+    }
+
+    private static void place(State target, long agentId, long companyId, double latitude, double longitude,
+            long key) {
+        IndexedAgent previous = target.agents.put(agentId,
+                new IndexedAgent(agentId, companyId, latitude, longitude, GeoUtils.cosLat(latitude), key));
+        if (previous != null) {
+            removeFromCell(target, previous);
+        }
+        target.grids.computeIfAbsent(companyId, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(key, c -> ConcurrentHashMap.newKeySet())
+                .add(agentId);
+    }
+
+    private void place(State target, long agentId, long companyId, double latitude, double longitude) {
+        place(target, agentId, companyId, latitude, longitude, cellKey(cell(latitude), cell(longitude)));
+    }
+
+    private static void unplace(State target, long agentId) {
+        IndexedAgent previous = target.agents.remove(agentId);
+        if (previous != null) {
+            removeFromCell(target, previous);
+        }
+    }
+
+    private static void removeFromCell(State target, IndexedAgent entry) {
+        Map<Long, Set<Long>> grid = target.grids.get(entry.companyId());
+        if (grid == null) {
+            return;
+        }
+        grid.computeIfPresent(entry.cellKey(), (key, ids) -> {
+            ids.remove(entry.agentId());
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    // ==========================================
+    // Rebuild
+    // ==========================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to build agent spatial index on startup: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reload eligible agents and their last persisted positions from the database.
+     * Positions may lag the live store by one write-behind interval; the next
+     * ping of each agent corrects them. Flag changes committed while the query
+     * runs are carried over from the live index instead of the (older) rows.
+     *
+     * @return number of agents placed on the grid
+     */
+    public int rebuild() {
+        synchronized (this) {
+            if (changedDuringRebuild != null) {
+                return state.agents.size(); // another rebuild is already running
+            }
+            changedDuringRebuild = new HashSet<>();
+        }
+
+        State next = new State();
+        try {
+            List<Object[]> rows = agentRepository.findAvailableAgentIndexRows();
+
+            synchronized (this) {
+                State live = state;
+                for (Object[] row : rows) {
+                    long agentId = (Long) row[0];
+                    long companyId = (Long) row[1];
+                    if (changedDuringRebuild.contains(agentId)) {
+                        continue;
+                    }
+                    next.eligible.put(agentId, companyId);
+
+                    // Prefer a position already received live over the persisted one
+                    IndexedAgent known = live.agents.get(agentId);
+                    if (known != null) {
+                        place(next, agentId, companyId, known.latitude(), known.longitude());
+                    } else if (row[2] != null && row[3] != null) {
+                        place(next, agentId, companyId,
+                                ((BigDecimal) row[2]).doubleValue(), ((BigDecimal) row[3]).doubleValue());
+                    }
+                }
+                for (Long agentId : changedDuringRebuild) {
+                    Long companyId = live.eligible.get(agentId);
+                    if (companyId == null) {
+                        continue;
+                    }
+                    next.eligible.put(agentId, companyId);
+                    IndexedAgent known = live.agents.get(agentId);
+                    if (known != null) {
+                        place(next, agentId, companyId, known.latitude(), known.longitude());
+                    }
+                }
+                state = next;
+            }
+        } finally {
+            synchronized (this) {
+                changedDuringRebuild = null;
+            }
+        }
+
+        rebuilds.increment();
+        log.info("Agent spatial index rebuilt: {} available agents, {} with a position",
+                next.eligible.size(), next.agents.size());
+        return next.agents.size();
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        long queryCount = queries.sum();
+        State current = state;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("availableAgents", current.eligible.size());
+        stats.put("indexedAgents", current.agents.size());
+        stats.put("companies", current.grids.size());
+        stats.put("cellSizeDegrees", cellSizeDegrees);
+        stats.put("queries", queryCount);
+        stats.put("avgCellsScanned", queryCount == 0 ? 0.0 : (double) cellsScanned.sum() / queryCount);
+        stats.put("moves", moves.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / cellSizeDegrees);
+    }
+
+    private static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+}
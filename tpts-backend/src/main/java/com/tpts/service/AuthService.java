@@ -8,6 +8,7 @@ import com.tpts.entity.*;
 import com.tpts.exception.TptsExceptions.*;
 import com.tpts.repository.*;
 import com.tpts.security.JwtUtil;
+import com.tpts.security.PrincipalCache;
 import com.tpts.util.OtpUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +43,7 @@ public class AuthService {
     private final NotificationService notificationService;
     private final EmailService emailService;
     private final LoginActivityService loginActivityService;
+    private final PrincipalCache principalCache;
 
     @Value("${otp.expiration-minutes:10}")
     private int otpExpirationMinutes;
@@ -261,6 +263,7 @@ public class AuthService {
         user.setRefreshTokenExpiry(LocalDateTime.now().plusSeconds(jwtUtil.getRefreshTokenExpiration() / 1000));
         user.setLastLogin(LocalDateTime.now());
         userRepository.save(user);
+        principalCache.evict(user);
 
         // Record login activity
         try {
@@ -352,6 +355,7 @@ public class AuthService {
         user.setRefreshToken(refreshToken);
         user.setRefreshTokenExpiry(LocalDateTime.now().plusSeconds(jwtUtil.getRefreshTokenExpiration() / 1000));
         userRepository.save(user);
+        principalCache.evict(user);
 
         // Get profile info using Optional.map pattern
         Long profileId = null;
@@ -458,6 +462,7 @@ public class AuthService {
         user.setRefreshToken(refreshToken);
         user.setRefreshTokenExpiry(LocalDateTime.now().plusSeconds(jwtUtil.getRefreshTokenExpiration() / 1000));
         userRepository.save(user);
+        principalCache.evict(user);
 
         // Get profile info using Optional.map pattern
         Long profileId = null;
@@ -564,6 +569,7 @@ public class AuthService {
         user.setResetToken(null);
         user.setResetTokenExpiry(null);
         userRepository.save(user);
+        principalCache.evict(user);
 
         log.info("✅ Password reset successfully for user: {}", user.getEmail());
 
@@ -594,6 +600,7 @@ public class AuthService {
         user.setRefreshToken(null);
         user.setRefreshTokenExpiry(null);
         userRepository.save(user);
+        principalCache.evict(user);
     }
 
     // ==========================================
@@ -0,0 +1,531 @@
+package com.tpts.service;
+
+import com.tpts.util.GeoUtils;
+import com.tpts.util.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coordinate Backfill Job
+ * Finds parcels and saved addresses whose coordinates are missing or
+ * suspicious, geocodes them in the background and writes the results back
+ * in JDBC batches, so request-time code never has to guess.
+ *
+ * Coordinates are suspicious when they are null, outside India (0,0,
+ * swapped lat/lng), or further than max-centroid-distance-km from the
+ * centroid of their pincode. Nominatim answers that are themselves that far
+ * off are replaced by the centroid.
+ *
+ * Each run scans the next scan-batch-size rows per table by id and makes at
+ * most max-lookups-per-run lookups, parcel-share of them reserved for
+ * parcels and the rest (plus whatever parcels left over) for addresses.
+ * A location that still cannot be resolved (GeocodingService only had its
+ * offline centroid fallback) is skipped until its backoff
+ * (retry-backoff-minutes, doubling per attempt up to max-retry-backoff-hours)
+ * runs out, so hopeless rows stop eating the budget. Nominatim calls go
+ * through a token bucket at geocode.backfill.requests-per-second and then
+ * through the limiter GeocodingService shares with interactive lookups, so
+ * the job keeps to its share and leaves the rest of Nominatim's
+ * 1 request/second to users.
+ * The id cursors and failed attempts are saved to checkpoint-file after
+ * every run, so a restart resumes where the last run stopped; a table wraps
+ * to the start after its last row.
+ *
+ * A run can sleep on the rate limiter for minutes, so it runs on its own
+ * thread (trigger()) rather than on the shared @Scheduled thread pool.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CoordinateBackfillService {
+
+    private static final String PARCEL_SCAN_SQL =
+            "SELECT id, tracking_number, pickup_address, pickup_city, pickup_pincode, pickup_latitude, pickup_longitude, "
+                    + "delivery_address, delivery_city, delivery_pincode, delivery_latitude, delivery_longitude "
+                    + "FROM parcels WHERE id > ? AND status <> 'CANCELLED' ORDER BY id LIMIT ?";
+    private static final String ADDRESS_SCAN_SQL =
+            "SELECT id, address_line1, address_line2, city, pincode, latitude, longitude "
+                    + "FROM addresses WHERE id > ? ORDER BY id LIMIT ?";
+
+    // Only overwrite the values that were scanned: coordinates a user corrected
+    // while the run was geocoding are left alone (<=> also matches NULL = NULL)
+    private static final String PICKUP_UPDATE_SQL =
+            "UPDATE parcels SET pickup_latitude = ?, pickup_longitude = ? "
+                    + "WHERE id = ? AND pickup_latitude <=> ? AND pickup_longitude <=> ?";
+    private static final String DELIVERY_UPDATE_SQL =
+            "UPDATE parcels SET delivery_latitude = ?, delivery_longitude = ? "
+                    + "WHERE id = ? AND delivery_latitude <=> ? AND delivery_longitude <=> ?";
+    private static final String ADDRESS_UPDATE_SQL =
+            "UPDATE addresses SET latitude = ?, longitude = ? "
+                    + "WHERE id = ? AND latitude <=> ? AND longitude <=> ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final GeocodingService geocodingService;
+    private final PincodeCentroidTable pincodeCentroids;
+    private final AgentParcelIndex agentParcelIndex;
+    private final TrackingProjectionCache trackingProjectionCache;
+
+    @Value("${geocode.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${geocode.backfill.requests-per-second:0.5}")
+    private double requestsPerSecond;
+
+    @Value("${geocode.backfill.scan-batch-size:500}")
+    private int scanBatchSize;
+
+    @Value("${geocode.backfill.max-lookups-per-run:100}")
+    private int maxLookupsPerRun;
+
+    @Value("${geocode.backfill.parcel-share:0.5}")
+    private double parcelShare;
+
+    @Value("${geocode.backfill.retry-backoff-minutes:60}")
+    private long retryBackoffMinutes;
+
+    @Value("${geocode.backfill.max-retry-backoff-hours:168}")
+    private long maxRetryBackoffHours;
+
+    @Value("${geocode.backfill.max-tracked-failures:100000}")
+    private int maxTrackedFailures;
+
+    @Value("${geocode.backfill.max-centroid-distance-km:50}")
+    private double maxCentroidDistanceKm;
+
+    @Value("${geocode.backfill.checkpoint-file:data/geocode-backfill.properties}")
+    private String checkpointFile;
+
+    private TokenBucket limiter;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private ExecutorService runner;
+
+    // Cursors: last id handled in the current pass
+    private volatile long parcelCursor;
+    private volatile long addressCursor;
+    private volatile long parcelPasses;
+    private volatile long addressPasses;
+    private volatile long lastRunAt;
+
+    // Locations that could not be resolved, keyed by parcel:{id}:pickup|delivery or address:{id}
+    private final Map<String, FailedLookup> failures = new ConcurrentHashMap<>();
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder suspicious = new LongAdder();
+    private final LongAdder updated = new LongAdder();
+    private final LongAdder unresolved = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder skippedChanged = new LongAdder();
+    private final LongAdder skippedBackoff = new LongAdder();
+
+    private record ParcelRow(long id, String trackingNumber,
+            String pickupAddress, String pickupCity, String pickupPincode, BigDecimal pickupLat, BigDecimal pickupLng,
+            String deliveryAddress, String deliveryCity, String deliveryPincode,
+            BigDecimal deliveryLat, BigDecimal deliveryLng) {
+    }
+
+    private record AddressRow(long id, String address, String city, String pincode, BigDecimal lat, BigDecimal lng) {
+    }
+
+    /**
+     * Unresolved location; addressHash lets an edited address be retried at once
+     */
+    private record FailedLookup(int attempts, long retryAt, int addressHash) {
+
+        String encode() {
+            return attempts + "," + retryAt + "," + addressHash;
+        }
+
+        static FailedLookup decode(String value) {
+            String[] parts = value.split(",");
+            return new FailedLookup(Integer.parseInt(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+        }
+    }
+
+    /**
+     * Lookups left in the current run
+     */
+    private static final class Budget {
+        int remaining;
+
+        Budget(int remaining) {
+            this.remaining = remaining;
+        }
+    }
+
+    // ==========================================
+    // Lifecycle
+    // ==========================================
+
+    @PostConstruct
+    public void init() {
+        limiter = new TokenBucket(requestsPerSecond, 1);
+        runner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "coordinate-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Path path = Paths.get(checkpointFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        Properties checkpoint = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            checkpoint.load(in);
+            parcelCursor = Long.parseLong(checkpoint.getProperty("parcels.cursor", "0"));
+            addressCursor = Long.parseLong(checkpoint.getProperty("addresses.cursor", "0"));
+            parcelPasses = Long.parseLong(checkpoint.getProperty("parcels.passes", "0"));
+            addressPasses = Long.parseLong(checkpoint.getProperty("addresses.passes", "0"));
+            for (String name : checkpoint.stringPropertyNames()) {
+                if (name.startsWith("failed.")) {
+                    failures.put(name.substring("failed.".length()), FailedLookup.decode(checkpoint.getProperty(name)));
+                }
+            }
+            log.info("Coordinate backfill resuming at parcel {} / address {}", parcelCursor, addressCursor);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable backfill checkpoint {}: {}", path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    // ==========================================
+    // Run
+    // ==========================================
+
+    /**
+     * Start a run on the backfill thread unless one is still going
+     *
+     * @return false if a run was already in progress
+     */
+    public boolean trigger() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            runner.execute(() -> {
+                try {
+                    run();
+                } catch (Exception e) {
+                    log.error("Coordinate backfill failed: {}", e.getMessage(), e);
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            running.set(false); // Shutting down
+            return false;
+        }
+    }
+
+    /**
+     * Scan the next batch of parcels and addresses and fix what can be fixed
+     *
+     * @return number of coordinates written back
+     */
+    public synchronized int run() {
+        if (!enabled) {
+            return 0;
+        }
+        // Parcels need two lookups per row, so they always get room for one
+        int parcelLookups = Math.min(maxLookupsPerRun, Math.max(2, (int) Math.ceil(maxLookupsPerRun * parcelShare)));
+        Budget parcelBudget = new Budget(parcelLookups);
+        int written = backfillParcels(parcelBudget);
+        written += backfillAddresses(new Budget(maxLookupsPerRun - parcelLookups + parcelBudget.remaining));
+        lastRunAt = System.currentTimeMillis();
+        saveCheckpoint();
+
+        if (written > 0) {
+            log.info("Coordinate backfill wrote {} coordinates (cursors: parcel {}, address {})",
+                    written, parcelCursor, addressCursor);
+        }
+        return written;
+    }
+
+    private int backfillParcels(Budget budget) {
+        List<ParcelRow> rows = jdbcTemplate.query(PARCEL_SCAN_SQL, (rs, i) -> new ParcelRow(
+                rs.getLong("id"), rs.getString("tracking_number"),
+                rs.getString("pickup_address"), rs.getString("pickup_city"), rs.getString("pickup_pincode"),
+                rs.getBigDecimal("pickup_latitude"), rs.getBigDecimal("pickup_longitude"),
+                rs.getString("delivery_address"), rs.getString("delivery_city"), rs.getString("delivery_pincode"),
+                rs.getBigDecimal("delivery_latitude"), rs.getBigDecimal("delivery_longitude")),
+                parcelCursor, scanBatchSize);
+
+        List<Object[]> pickupUpdates = new ArrayList<>();
+        List<Object[]> deliveryUpdates = new ArrayList<>();
+        Set<String> changedTrackingNumbers = new LinkedHashSet<>();
+        long cursor = parcelCursor;
+        boolean finished = true;
+
+        for (ParcelRow row : rows) {
+            // A row needs up to two lookups; leave it whole for the next run
+            if (budget.remaining < 2) {
+                finished = false;
+                break;
+            }
+            scanned.increment();
+            double[] pickup = resolve("parcel:" + row.id() + ":pickup", row.pickupAddress(), row.pickupCity(),
+                    row.pickupPincode(), row.pickupLat(), row.pickupLng(), budget);
+            if (pickup != null) {
+                pickupUpdates.add(updateArgs(pickup, row.id(), row.pickupLat(), row.pickupLng()));
+                changedTrackingNumbers.add(row.trackingNumber());
+            }
+            double[] delivery = resolve("parcel:" + row.id() + ":delivery", row.deliveryAddress(),
+                    row.deliveryCity(), row.deliveryPincode(), row.deliveryLat(), row.deliveryLng(), budget);
+            if (delivery != null) {
+                deliveryUpdates.add(updateArgs(delivery, row.id(), row.deliveryLat(), row.deliveryLng()));
+                changedTrackingNumbers.add(row.trackingNumber());
+            }
+            cursor = row.id();
+        }
+
+        List<Object[]> pickupWritten = write(PICKUP_UPDATE_SQL, pickupUpdates);
+        List<Object[]> deliveryWritten = write(DELIVERY_UPDATE_SQL, deliveryUpdates);
+        int written = pickupWritten.size() + deliveryWritten.size();
+        if (written > 0) {
+            // JDBC writes bypass the entity listeners, so refresh the derived views here
+            changedTrackingNumbers.forEach(trackingProjectionCache::evict);
+            for (Object[] args : deliveryWritten) {
+                agentParcelIndex.onDeliveryLocationChanged((Long) args[2], (BigDecimal) args[0], (BigDecimal) args[1]);
+            }
+        }
+
+        if (finished && rows.size() < scanBatchSize) {
+            parcelCursor = 0;
+            parcelPasses++;
+        } else {
+            parcelCursor = cursor;
+        }
+        return written;
+    }
+
+    private int backfillAddresses(Budget budget) {
+        List<AddressRow> rows = jdbcTemplate.query(ADDRESS_SCAN_SQL, (rs, i) -> {
+            String line2 = rs.getString("address_line2");
+            String address = rs.getString("address_line1")
+                    + (line2 != null && !line2.isBlank() ? ", " + line2 : "");
+            return new AddressRow(rs.getLong("id"), address, rs.getString("city"), rs.getString("pincode"),
+                    rs.getBigDecimal("latitude"), rs.getBigDecimal("longitude"));
+        }, addressCursor, scanBatchSize);
+
+        List<Object[]> updates = new ArrayList<>();
+        long cursor = addressCursor;
+        boolean finished = true;
+
+        for (AddressRow row : rows) {
+            if (budget.remaining < 1) {
+                finished = false;
+                break;
+            }
+            scanned.increment();
+            double[] coordinates = resolve("address:" + row.id(), row.address(), row.city(), row.pincode(),
+                    row.lat(), row.lng(), budget);
+            if (coordinates != null) {
+                updates.add(updateArgs(coordinates, row.id(), row.lat(), row.lng()));
+            }
+            cursor = row.id();
+        }
+
+        int written = write(ADDRESS_UPDATE_SQL, updates).size();
+
+        if (finished && rows.size() < scanBatchSize) {
+            addressCursor = 0;
+            addressPasses++;
+        } else {
+            addressCursor = cursor;
+        }
+        return written;
+    }
+
+    /**
+     * Better coordinates for a location, or null if the current ones are fine,
+     * nothing better is known or the location is backing off
+     */
+    private double[] resolve(String key, String address, String city, String pincode, BigDecimal lat, BigDecimal lng,
+                             Budget budget) {
+        PincodeCentroidTable.Centroid centroid = pincodeCentroids.findByPincode(pincode);
+        if (!isSuspicious(lat, lng, centroid)) {
+            failures.remove(key); // Fixed by someone else
+            return null;
+        }
+        suspicious.increment();
+
+        int addressHash = Objects.hash(address, city, pincode);
+        FailedLookup failed = failures.get(key);
+        long now = System.currentTimeMillis();
+        if (failed != null && failed.addressHash() == addressHash && now < failed.retryAt()) {
+            skippedBackoff.increment();
+            return null;
+        }
+        budget.remaining--;
+
+        GeocodingService.GeocodingResponse result = geocodingService.geocodeAddress(address, city, pincode, limiter);
+        // An offline centroid stands in for a failed lookup (Nominatim down, rate
+        // limited, no match); writing it back would stop the row from ever being retried
+        if (!Boolean.TRUE.equals(result.getSuccess()) || Boolean.TRUE.equals(result.getIsFallback())
+                || result.getLatitude() == null || result.getLongitude() == null) {
+            recordFailure(key, failed, addressHash, now);
+            return null;
+        }
+
+        double newLat = result.getLatitude().doubleValue();
+        double newLng = result.getLongitude().doubleValue();
+        if (centroid != null && GeoUtils.haversineKm(newLat, newLng, centroid.latitude(), centroid.longitude())
+                > maxCentroidDistanceKm) {
+            // Nominatim matched a same-named place elsewhere; the pincode is more trustworthy
+            newLat = centroid.latitude();
+            newLng = centroid.longitude();
+        }
+        if (!PincodeCentroidTable.isInIndia(newLat, newLng)) {
+            recordFailure(key, failed, addressHash, now);
+            return null;
+        }
+        failures.remove(key);
+        return new double[] { newLat, newLng };
+    }
+
+    private void recordFailure(String key, FailedLookup previous, int addressHash, long now) {
+        unresolved.increment();
+        int attempts = previous != null && previous.addressHash() == addressHash ? previous.attempts() + 1 : 1;
+        if (previous == null && failures.size() >= maxTrackedFailures) {
+            return;
+        }
+        long backoffMinutes = Math.min(retryBackoffMinutes << Math.min(attempts - 1, 20), maxRetryBackoffHours * 60);
+        failures.put(key, new FailedLookup(attempts, now + backoffMinutes * 60_000L, addressHash));
+    }
+
+    private boolean isSuspicious(BigDecimal lat, BigDecimal lng, PincodeCentroidTable.Centroid centroid) {
+        if (lat == null || lng == null) {
+            return true;
+        }
+        double latitude = lat.doubleValue();
+        double longitude = lng.doubleValue();
+        if (!PincodeCentroidTable.isInIndia(latitude, longitude)) {
+            return true;
+        }
+        return centroid != null
+                && GeoUtils.haversineKm(latitude, longitude, centroid.latitude(), centroid.longitude())
+                        > maxCentroidDistanceKm;
+    }
+
+    private static Object[] updateArgs(double[] coordinates, long id, BigDecimal scannedLat, BigDecimal scannedLng) {
+        return new Object[] {
+                BigDecimal.valueOf(coordinates[0]).setScale(8, RoundingMode.HALF_UP),
+                BigDecimal.valueOf(coordinates[1]).setScale(8, RoundingMode.HALF_UP),
+                id, scannedLat, scannedLng };
+    }
+
+    /**
+     * Run a batch of conditional updates
+     *
+     * @return the argument rows that changed a row
+     */
+    private List<Object[]> write(String sql, List<Object[]> batch) {
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+        try {
+            int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(sql, batch));
+            List<Object[]> written = new ArrayList<>(batch.size());
+            for (int i = 0; i < counts.length; i++) {
+                // Drivers that rewrite batches report SUCCESS_NO_INFO per statement
+                if (counts[i] == Statement.SUCCESS_NO_INFO || counts[i] > 0) {
+                    written.add(batch.get(i));
+                }
+            }
+            skippedChanged.add(batch.size() - written.size());
+            updated.add(written.size());
+            return written;
+        } catch (Exception e) {
+            // Rows stay suspicious and are picked up again on the next pass
+            writeFailures.increment();
+            log.error("Failed to write {} backfilled coordinates: {}", batch.size(), e.getMessage());
+            return List.of();
+        }
+    }
+
+    // ==========================================
+    // Checkpoint
+    // ==========================================
+
+    private void saveCheckpoint() {
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("parcels.cursor", Long.toString(parcelCursor));
+        checkpoint.setProperty("addresses.cursor", Long.toString(addressCursor));
+        checkpoint.setProperty("parcels.passes", Long.toString(parcelPasses));
+        checkpoint.setProperty("addresses.passes", Long.toString(addressPasses));
+        failures.forEach((key, failed) -> checkpoint.setProperty("failed." + key, failed.encode()));
+        try {
+            Path path = Paths.get(checkpointFile).toAbsolutePath();
+            Files.createDirectories(path.getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                checkpoint.store(out, "Coordinate backfill cursors");
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to save backfill checkpoint: {}", e.getMessage());
+        }
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("requestsPerSecond", requestsPerSecond);
+        stats.put("parcelCursor", parcelCursor);
+        stats.put("addressCursor", addressCursor);
+        stats.put("parcelPasses", parcelPasses);
+        stats.put("addressPasses", addressPasses);
+        stats.put("scanned", scanned.sum());
+        stats.put("suspicious", suspicious.sum());
+        stats.put("updated", updated.sum());
+        stats.put("unresolved", unresolved.sum());
+        stats.put("writeFailures", writeFailures.sum());
+        stats.put("skippedChanged", skippedChanged.sum());
+        stats.put("skippedBackoff", skippedBackoff.sum());
+        stats.put("backingOff", failures.size());
+        stats.put("running", running.get());
+        stats.put("lastRunAt", lastRunAt);
+        return stats;
+    }
+}
@@ -16,6 +16,7 @@ import com.tpts.repository.CustomerRepository;
 import com.tpts.repository.ParcelRepository;
 import com.tpts.repository.RatingRepository;
 import com.tpts.repository.UserRepository;
+import com.tpts.security.PrincipalCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -39,6 +40,7 @@ public class CustomerService {
     private final ParcelRepository parcelRepository;
     private final RatingRepository ratingRepository;
     private final PasswordEncoder passwordEncoder;
+    private final PrincipalCache principalCache;
 
     // ==========================================
     // Get Customer Profile
@@ -204,6 +206,7 @@ public class CustomerService {
         // Update password
         currentUser.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(currentUser);
+        principalCache.evict(currentUser);
 
         log.info("Password changed successfully for customer: {}", customerId);
     }
@@ -269,6 +272,7 @@ public class CustomerService {
         // Deactivate user account (soft delete)
         currentUser.setIsActive(false);
         userRepository.save(currentUser);
+        principalCache.evict(currentUser);
 
         log.info("Account deleted for customer: {}", customerId);
     }
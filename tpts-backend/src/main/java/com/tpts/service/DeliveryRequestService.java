@@ -32,6 +32,7 @@ public class DeliveryRequestService {
     private final CompanyAdminRepository companyRepository;
     private final DeliveryAgentRepository agentRepository;
     private final NotificationService notificationService;
+    private final AgentParcelIndex agentParcelIndex;
 
     // ==========================================
     // Create Delivery Request (Assign Agent)
@@ -245,6 +246,7 @@ public class DeliveryRequestService {
         Parcel parcel = deliveryRequest.getParcel();
         parcel.setAgent(newAgent);
         parcelRepository.save(parcel);
+        agentParcelIndex.onParcelChanged(parcel);
 
         log.info("Reassigned delivery request {} to new agent {}. Attempt #{}",
                 requestId, newAgent.getId(), deliveryRequest.getAttemptCount());
@@ -368,6 +370,7 @@ public class DeliveryRequestService {
         Parcel parcel = deliveryRequest.getParcel();
         parcel.setAgent(null);
         parcelRepository.save(parcel);
+        agentParcelIndex.onParcelChanged(parcel);
 
         deliveryRequest = deliveryRequestRepository.save(deliveryRequest);
 
@@ -0,0 +1,320 @@
+package com.tpts.service;
+
+import com.tpts.entity.VehicleType;
+import com.tpts.repository.ParcelRepository;
+import com.tpts.util.GeoUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Learned ETA Model
+ * Estimates travel time from straight-line distance using speed profiles
+ * learned from delivered parcels, per city x hour-of-day x vehicle type.
+ *
+ * Each completed regular (non-group) delivery contributes its straight-line
+ * pickup -> delivery distance and its pickedUpAt -> deliveredAt time to the
+ * 8 profile cells it belongs to (specific and "any" for city, hour and
+ * vehicle). Lookups fall back from the most specific cell with enough
+ * samples to the global profile, then to the configured default speed.
+ *
+ * Profiles live in flat primitive arrays indexed by
+ * (city, hour, vehicle); TrackingScheduler feeds them incrementally from a
+ * (deliveredAt, id) watermark, so each delivery is read once. A refresh
+ * learns into copies of the arrays and publishes them as one immutable
+ * snapshot, so request threads never see a half-updated profile.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EtaModel {
+
+    private static final int HOURS = 25; // 0-23 plus "any hour"
+    private static final int ANY_HOUR = 24;
+    private static final int ANY_CITY = 0;
+    private static final VehicleType[] VEHICLES = VehicleType.values();
+    private static final int VEHICLE_SLOTS = VEHICLES.length + 1; // plus "any vehicle"
+    private static final int ANY_VEHICLE = VEHICLES.length;
+
+    private static final double MIN_SPEED_KMH = 2.0;
+    private static final double MAX_SPEED_KMH = 120.0;
+
+    private final ParcelRepository parcelRepository;
+
+    @Value("${tracking.eta.default-speed-kmh:20}")
+    private double defaultSpeedKmh;
+
+    @Value("${tracking.eta.min-samples:5}")
+    private int minSamples;
+
+    @Value("${tracking.eta.max-cities:512}")
+    private int maxCities;
+
+    @Value("${tracking.eta.road-factor:1.3}")
+    private double roadFactor;
+
+    @Value("${tracking.eta.batch-size:2000}")
+    private int batchSize;
+
+    // Published by refresh, never modified afterwards; null until the first refresh
+    private volatile Profiles profiles;
+
+    private LocalDateTime watermarkAt = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private long watermarkId = 0;
+    private volatile long tripsLearned;
+    private volatile long tripsRejected;
+    private volatile long lastRefreshAt;
+
+    /**
+     * Estimate for a trip
+     *
+     * @param speedKmh learned (or default) straight-line speed used
+     * @param learned  false when no profile had enough samples
+     */
+    public record Estimate(int minutes, double speedKmh, boolean learned) {
+    }
+
+    /**
+     * Flat profile arrays and the city slots indexing them
+     *
+     * @param citySlots normalised city name -> slot (1..maxCities-1); slot 0 is "any city"
+     */
+    private record Profiles(double[] sumKm, double[] sumHours, int[] samples, Map<String, Integer> citySlots) {
+
+        Profiles copy() {
+            return new Profiles(sumKm.clone(), sumHours.clone(), samples.clone(), new HashMap<>(citySlots));
+        }
+    }
+
+    // ==========================================
+    // Estimation
+    // ==========================================
+
+    /**
+     * Minutes to cover a straight-line distance, starting now
+     */
+    public Estimate estimate(double distanceKm, String city, VehicleType vehicleType) {
+        return estimate(distanceKm, city, vehicleType, LocalDateTime.now().getHour());
+    }
+
+    public Estimate estimate(double distanceKm, String city, VehicleType vehicleType, int hour) {
+        double speed = learnedSpeed(city, vehicleType, hour);
+        boolean learned = !Double.isNaN(speed);
+        if (!learned) {
+            speed = defaultSpeedKmh;
+        }
+        int minutes = distanceKm <= 0 ? 0 : (int) Math.ceil(distanceKm / speed * 60);
+        return new Estimate(minutes, speed, learned);
+    }
+
+    /**
+     * Most specific learned speed with enough samples, or NaN
+     */
+    private double learnedSpeed(String city, VehicleType vehicleType, int hour) {
+        Profiles current = profiles;
+        if (current == null) {
+            return Double.NaN;
+        }
+        Integer slot = city != null ? current.citySlots().get(normalise(city)) : null;
+        int citySlot = slot != null ? slot : -1;
+        int vehicle = vehicleType != null ? vehicleType.ordinal() : ANY_VEHICLE;
+        int h = hour >= 0 && hour < 24 ? hour : ANY_HOUR;
+
+        // City-specific first, then platform-wide
+        if (citySlot > 0) {
+            double speed = speedForCity(citySlot, h, vehicle, current);
+            if (!Double.isNaN(speed)) {
+                return speed;
+            }
+        }
+        return speedForCity(ANY_CITY, h, vehicle, current);
+    }
+
+    private double speedForCity(int city, int hour, int vehicle, Profiles current) {
+        double speed = speedAt(city, hour, vehicle, current);
+        if (Double.isNaN(speed)) {
+            speed = speedAt(city, hour, ANY_VEHICLE, current);
+        }
+        if (Double.isNaN(speed)) {
+            speed = speedAt(city, ANY_HOUR, vehicle, current);
+        }
+        if (Double.isNaN(speed)) {
+            speed = speedAt(city, ANY_HOUR, ANY_VEHICLE, current);
+        }
+        return speed;
+    }
+
+    private double speedAt(int city, int hour, int vehicle, Profiles current) {
+        int i = index(city, hour, vehicle);
+        if (current.samples()[i] < minSamples) {
+            return Double.NaN;
+        }
+        double hours = current.sumHours()[i];
+        return hours > 0 ? current.sumKm()[i] / hours : Double.NaN;
+    }
+
+    // ==========================================
+    // Learning
+    // ==========================================
+
+    /**
+     * Read deliveries completed since the last watermark into the profiles
+     *
+     * @return number of trips learned in this run
+     */
+    public synchronized int refresh() {
+        Profiles next;
+        if (profiles == null) {
+            int cells = maxCities * HOURS * VEHICLE_SLOTS;
+            next = new Profiles(new double[cells], new double[cells], new int[cells], new HashMap<>());
+        } else {
+            next = profiles.copy();
+        }
+
+        // The watermark only moves with the published snapshot, so a failed read is retried whole
+        LocalDateTime nextAt = watermarkAt;
+        long nextId = watermarkId;
+        int learned = 0;
+        while (true) {
+            List<Object[]> rows = parcelRepository.findDeliveredTripRowsAfter(
+                    nextAt, nextId, PageRequest.of(0, batchSize));
+            for (Object[] row : rows) {
+                if (learn(row, next)) {
+                    learned++;
+                }
+                nextId = (Long) row[0];
+                nextAt = (LocalDateTime) row[9];
+            }
+            if (rows.size() < batchSize) {
+                break;
+            }
+        }
+
+        profiles = new Profiles(next.sumKm(), next.sumHours(), next.samples(), Map.copyOf(next.citySlots()));
+        watermarkAt = nextAt;
+        watermarkId = nextId;
+
+        tripsLearned += learned;
+        lastRefreshAt = System.currentTimeMillis();
+        if (learned > 0) {
+            log.info("ETA model learned {} trips ({} total)", learned, tripsLearned);
+        }
+        return learned;
+    }
+
+    private boolean learn(Object[] row, Profiles into) {
+        String city = (String) row[1];
+        VehicleType vehicleType = (VehicleType) row[2];
+        LocalDateTime pickedUpAt = (LocalDateTime) row[8];
+        LocalDateTime deliveredAt = (LocalDateTime) row[9];
+
+        double km = straightLineKm(row);
+        double hours = Duration.between(pickedUpAt, deliveredAt).toSeconds() / 3600.0;
+        if (Double.isNaN(km) || hours <= 0) {
+            tripsRejected++;
+            return false;
+        }
+        double speed = km / hours;
+        if (speed < MIN_SPEED_KMH || speed > MAX_SPEED_KMH) {
+            // Parcels left overnight or marked delivered in bulk are not travel time
+            tripsRejected++;
+            return false;
+        }
+
+        int citySlot = citySlot(city, into.citySlots());
+        int hour = pickedUpAt.getHour();
+        int vehicle = vehicleType != null ? vehicleType.ordinal() : ANY_VEHICLE;
+
+        for (int c : citySlot > 0 ? new int[] { citySlot, ANY_CITY } : new int[] { ANY_CITY }) {
+            for (int h : new int[] { hour, ANY_HOUR }) {
+                add(into, index(c, h, vehicle), km, hours);
+                if (vehicle != ANY_VEHICLE) {
+                    add(into, index(c, h, ANY_VEHICLE), km, hours);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void add(Profiles into, int i, double km, double hours) {
+        into.sumKm()[i] += km;
+        into.sumHours()[i] += hours;
+        into.samples()[i]++;
+    }
+
+    /**
+     * Straight-line pickup -> delivery distance; falls back to the stored
+     * (road) distance scaled by the road factor when coordinates are missing
+     */
+    private double straightLineKm(Object[] row) {
+        BigDecimal pickupLat = (BigDecimal) row[4];
+        BigDecimal pickupLng = (BigDecimal) row[5];
+        BigDecimal deliveryLat = (BigDecimal) row[6];
+        BigDecimal deliveryLng = (BigDecimal) row[7];
+        if (pickupLat != null && pickupLng != null && deliveryLat != null && deliveryLng != null) {
+            return GeoUtils.haversineKm(pickupLat.doubleValue(), pickupLng.doubleValue(),
+                    deliveryLat.doubleValue(), deliveryLng.doubleValue());
+        }
+        BigDecimal distanceKm = (BigDecimal) row[3];
+        return distanceKm != null ? distanceKm.doubleValue() / roadFactor : Double.NaN;
+    }
+
+    private int citySlot(String city, Map<String, Integer> citySlots) {
+        if (city == null || city.isBlank()) {
+            return ANY_CITY;
+        }
+        String key = normalise(city);
+        Integer slot = citySlots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        if (citySlots.size() + 1 >= maxCities) {
+            return ANY_CITY;
+        }
+        int next = citySlots.size() + 1;
+        citySlots.put(key, next);
+        return next;
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Profiles current = profiles;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cities", current != null ? current.citySlots().size() : 0);
+        stats.put("tripsLearned", tripsLearned);
+        stats.put("tripsRejected", tripsRejected);
+        if (current != null) {
+            double global = speedAt(ANY_CITY, ANY_HOUR, ANY_VEHICLE, current);
+            stats.put("globalSpeedKmh", Double.isNaN(global) ? null : Math.round(global * 10) / 10.0);
+        }
+        stats.put("defaultSpeedKmh", defaultSpeedKmh);
+        stats.put("lastRefreshAt", lastRefreshAt);
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static int index(int city, int hour, int vehicle) {
+        return (city * HOURS + hour) * VEHICLE_SLOTS + vehicle;
+    }
+
+    private static String normalise(String city) {
+        return city.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,290 @@
+package com.tpts.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent Geocode Cache
+ * Remembers successful Nominatim forward and reverse lookups so the same
+ * address (or the same ~11 m spot) is never sent to Nominatim twice, even
+ * across restarts.
+ *
+ * Entries live in memory and are appended to a tab-separated log file
+ * (geocode.cache.file); the log is replayed on startup and rewritten
+ * without duplicates when it has grown to twice the live entry count.
+ * Addresses are keyed case- and whitespace-insensitively; reverse lookups
+ * are keyed by coordinates snapped to geocode.cache.reverse-grid-degrees.
+ * Once max-size is reached new entries are served but not cached.
+ */
+@Service
+@Slf4j
+public class GeocodeCache {
+
+    private static final String FORWARD = "F";
+    private static final String REVERSE = "R";
+
+    @Value("${geocode.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${geocode.cache.file:data/geocode-cache.tsv}")
+    private String file;
+
+    @Value("${geocode.cache.max-size:200000}")
+    private int maxSize;
+
+    @Value("${geocode.cache.reverse-grid-degrees:0.0001}")
+    private double reverseGridDegrees;
+
+    private final Map<String, ForwardEntry> forward = new ConcurrentHashMap<>();
+    private final Map<String, ReverseEntry> reverse = new ConcurrentHashMap<>();
+
+    private final LongAdder forwardHits = new LongAdder();
+    private final LongAdder reverseHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+
+    private Path path;
+    private BufferedWriter writer;
+
+    public record ForwardEntry(double latitude, double longitude, String displayName) {
+    }
+
+    public record ReverseEntry(String displayName, String city, String state, String postcode, String country) {
+    }
+
+    // ==========================================
+    // Lifecycle
+    // ==========================================
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            path = Paths.get(file).toAbsolutePath();
+            Files.createDirectories(path.getParent());
+            int lines = Files.exists(path) ? replay() : 0;
+            if (lines > 2 * size() + 1000) {
+                compact();
+            }
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.info("Geocode cache at {}: {} forward, {} reverse entries", path, forward.size(), reverse.size());
+        } catch (IOException e) {
+            writer = null;
+            log.error("Geocode cache will not persist, cannot open {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Failed to close geocode cache: {}", e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    private int replay() throws IOException {
+        int lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                String[] f = line.split("\t", -1);
+                try {
+                    if (f.length == 5 && FORWARD.equals(f[0])) {
+                        forward.put(f[1], new ForwardEntry(Double.parseDouble(f[2]), Double.parseDouble(f[3]),
+                                emptyToNull(f[4])));
+                    } else if (f.length == 7 && REVERSE.equals(f[0])) {
+                        reverse.put(f[1], new ReverseEntry(emptyToNull(f[2]), emptyToNull(f[3]),
+                                emptyToNull(f[4]), emptyToNull(f[5]), emptyToNull(f[6])));
+                    }
+                } catch (NumberFormatException ignored) {
+                    // Torn or corrupt line; skip
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Rewrite the log with one line per live entry
+     */
+    private void compact() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, ForwardEntry> e : forward.entrySet()) {
+                out.write(forwardLine(e.getKey(), e.getValue()));
+            }
+            for (Map.Entry<String, ReverseEntry> e : reverse.entrySet()) {
+                out.write(reverseLine(e.getKey(), e.getValue()));
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Geocode cache compacted to {} entries", size());
+    }
+
+    // ==========================================
+    // Forward
+    // ==========================================
+
+    public String forwardKey(String address, String city, String pincode) {
+        return normalise(address) + "|" + normalise(city) + "|" + normalise(pincode);
+    }
+
+    public ForwardEntry getForward(String key) {
+        ForwardEntry entry = enabled ? forward.get(key) : null;
+        if (entry != null) {
+            forwardHits.increment();
+        } else {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    public void putForward(String key, double latitude, double longitude, String displayName) {
+        if (!enabled || !hasRoom()) {
+            return;
+        }
+        ForwardEntry entry = new ForwardEntry(latitude, longitude, displayName);
+        if (!entry.equals(forward.put(key, entry))) {
+            append(forwardLine(key, entry));
+        }
+    }
+
+    // ==========================================
+    // Reverse
+    // ==========================================
+
+    public String reverseKey(double latitude, double longitude) {
+        return Math.round(latitude / reverseGridDegrees) + "," + Math.round(longitude / reverseGridDegrees);
+    }
+
+    public ReverseEntry getReverse(String key) {
+        ReverseEntry entry = enabled ? reverse.get(key) : null;
+        if (entry != null) {
+            reverseHits.increment();
+        } else {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    public void putReverse(String key, ReverseEntry entry) {
+        if (!enabled || !hasRoom()) {
+            return;
+        }
+        if (!entry.equals(reverse.put(key, entry))) {
+            append(reverseLine(key, entry));
+        }
+    }
+
+    // ==========================================
+    // Persistence
+    // ==========================================
+
+    private boolean hasRoom() {
+        if (size() < maxSize) {
+            return true;
+        }
+        rejectedFull.increment();
+        return false;
+    }
+
+    private synchronized void append(String line) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(line);
+            writer.flush();
+            writes.increment();
+        } catch (IOException e) {
+            writeErrors.increment();
+            log.warn("Failed to persist geocode cache entry: {}", e.getMessage());
+        }
+    }
+
+    private static String forwardLine(String key, ForwardEntry e) {
+        return FORWARD + "\t" + key + "\t" + e.latitude() + "\t" + e.longitude() + "\t" + clean(e.displayName()) + "\n";
+    }
+
+    private static String reverseLine(String key, ReverseEntry e) {
+        return REVERSE + "\t" + key + "\t" + clean(e.displayName()) + "\t" + clean(e.city()) + "\t"
+                + clean(e.state()) + "\t" + clean(e.postcode()) + "\t" + clean(e.country()) + "\n";
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        long hits = forwardHits.sum() + reverseHits.sum();
+        long total = hits + misses.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("forwardEntries", forward.size());
+        stats.put("reverseEntries", reverse.size());
+        stats.put("maxSize", maxSize);
+        stats.put("forwardHits", forwardHits.sum());
+        stats.put("reverseHits", reverseHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        stats.put("writes", writes.sum());
+        stats.put("writeErrors", writeErrors.sum());
+        stats.put("rejectedFull", rejectedFull.sum());
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private int size() {
+        return forward.size() + reverse.size();
+    }
+
+    /**
+     * Lower-case, single-spaced, tab-free (safe as a key field)
+     */
+    private static String normalise(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static String clean(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+}
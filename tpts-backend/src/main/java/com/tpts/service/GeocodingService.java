@@ -1,149 +1,301 @@
 package com.tpts.service;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.util.SingleFlight;
+import com.tpts.util.TokenBucket;
 
 import java.math.BigDecimal;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Nominatim Geocoding Service
  * Converts addresses to coordinates and vice versa
+ * Successful lookups are kept in GeocodeCache; the offline
+ * PincodeCentroidTable answers when Nominatim can't
+ *
+ * Every Nominatim call, interactive or background, takes a token from one
+ * shared limiter (geocode.nominatim.requests-per-second; the public
+ * instance allows 1). Interactive lookups wait at most max-wait-ms for it,
+ * background ones at most background-max-wait-ms; either falls back to the
+ * offline centroid when it runs out. The wait happens inside a SingleFlight
+ * loader that other callers may be joined to, so it is always bounded.
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class GeocodingService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final GeocodeCache geocodeCache;
+    private final PincodeCentroidTable pincodeCentroids;
+    private final UpstreamHttpClient upstreamHttpClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Value("${geocode.nominatim.requests-per-second:1.0}")
+    private double nominatimRequestsPerSecond;
+
+    @Value("${geocode.nominatim.max-wait-ms:2000}")
+    private long nominatimMaxWaitMs;
+
+    @Value("${geocode.nominatim.background-max-wait-ms:10000}")
+    private long nominatimBackgroundMaxWaitMs;
+
+    private TokenBucket nominatimLimiter;
+
+    private final LongAdder rateLimited = new LongAdder();
+
+    // Concurrent misses for the same cache key share one Nominatim call
+    private final SingleFlight<String, GeocodeCache.ForwardEntry> forwardFlights = new SingleFlight<>();
+    private final SingleFlight<String, GeocodeCache.ReverseEntry> reverseFlights = new SingleFlight<>();
+
     private static final String NOMINATIM_BASE_URL = "https://nominatim.openstreetmap.org";
     private static final String USER_AGENT = "TPTSApp/1.0"; // Required by Nominatim
+    private static final String NOMINATIM_UPSTREAM = "nominatim";
+    private static final Map<String, String> NOMINATIM_HEADERS = Map.of("User-Agent", USER_AGENT);
+
+    @PostConstruct
+    public void init() {
+        nominatimLimiter = new TokenBucket(nominatimRequestsPerSecond, 1);
+    }
 
     /**
      * Geocode address to coordinates (Forward Geocoding)
+     * Order: persistent cache, offline centroid for bare pincodes, Nominatim,
+     * then offline pincode/city centroid if Nominatim fails.
+     * Concurrent misses for the same address wait on a single Nominatim call.
      */
     public GeocodingResponse geocodeAddress(String address, String city, String pincode) {
-        try {
-            String fullAddress = String.format("%s, %s, %s, India", address, city, pincode);
+        return geocodeAddress(address, city, pincode, null);
+    }
 
-            String url = UriComponentsBuilder.fromHttpUrl(NOMINATIM_BASE_URL + "/search")
-                    .queryParam("q", fullAddress)
-                    .queryParam("format", "json")
-                    .queryParam("limit", 1)
-                    .queryParam("countrycodes", "in")
-                    .build()
-                    .toUriString();
+    /**
+     * Geocode with every Nominatim lookup first taking a token from the job's
+     * own limiter, before joining or starting a flight, then one from the
+     * shared limiter (background jobs; cache hits and offline answers cost nothing)
+     */
+    public GeocodingResponse geocodeAddress(String address, String city, String pincode, TokenBucket limiter) {
+        String cacheKey = geocodeCache.forwardKey(address, city, pincode);
+        GeocodeCache.ForwardEntry entry = geocodeCache.getForward(cacheKey);
 
-            log.info("Geocoding address: {}", fullAddress);
+        if (entry == null) {
+            // Nothing finer than the pincode to look up
+            if (address == null || address.isBlank()) {
+                return getFallbackCoordinates(city, pincode);
+            }
 
-            String response = restTemplate.getForObject(url, String.class);
-            JsonNode results = objectMapper.readTree(response);
+            // The job's own pacing may sleep for a while; keep it out of the
+            // flight so interactive callers joining it never wait on it
+            if (limiter != null && !limiter.acquire()) {
+                return getFallbackCoordinates(city, pincode);
+            }
 
-            if (results.isEmpty()) {
-                log.warn("No geocoding results for: {}", fullAddress);
+            try {
+                entry = forwardFlights.execute(cacheKey,
+                        () -> fetchForward(cacheKey, address, city, pincode, limiter != null));
+            } catch (UpstreamHttpClient.UpstreamUnavailableException e) {
+                log.warn("Nominatim unavailable: {}", e.getMessage());
+                return getFallbackCoordinates(city, pincode);
+            } catch (Exception e) {
+                log.error("Geocoding failed", e);
+                return getFallbackCoordinates(city, pincode);
+            }
+            if (entry == null) {
                 return getFallbackCoordinates(city, pincode);
             }
+        }
 
-            JsonNode firstResult = results.get(0);
-            BigDecimal lat = new BigDecimal(firstResult.path("lat").asText());
-            BigDecimal lng = new BigDecimal(firstResult.path("lon").asText());
-            String displayName = firstResult.path("display_name").asText();
+        return GeocodingResponse.builder()
+                .latitude(BigDecimal.valueOf(entry.latitude()))
+                .longitude(BigDecimal.valueOf(entry.longitude()))
+                .displayName(entry.displayName())
+                .success(true)
+                .build();
+    }
 
-            log.info("Geocoded to: {}, {}", lat, lng);
+    /**
+     * Query Nominatim search and cache the hit
+     *
+     * @return the result, or null if Nominatim found nothing
+     */
+    private GeocodeCache.ForwardEntry fetchForward(String cacheKey, String address, String city, String pincode,
+                                                   boolean background) {
+        // A flight that finished just before this one started has already cached it
+        GeocodeCache.ForwardEntry cached = geocodeCache.getForward(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
 
-            return GeocodingResponse.builder()
-                    .latitude(lat)
-                    .longitude(lng)
-                    .displayName(displayName)
-                    .success(true)
-                    .build();
+        String fullAddress = String.format("%s, %s, %s, India", address, city, pincode);
+
+        String url = UriComponentsBuilder.fromHttpUrl(NOMINATIM_BASE_URL + "/search")
+                .queryParam("q", fullAddress)
+                .queryParam("format", "json")
+                .queryParam("limit", 1)
+                .queryParam("countrycodes", "in")
+                .build()
+                .toUriString();
+
+        acquireNominatimToken(background);
+
+        log.info("Geocoding address: {}", fullAddress);
+
+        JsonNode results = readJson(upstreamHttpClient.get(NOMINATIM_UPSTREAM, url, NOMINATIM_HEADERS));
 
-        } catch (Exception e) {
-            log.error("Geocoding failed", e);
-            return getFallbackCoordinates(city, pincode);
+        if (results.isEmpty()) {
+            log.warn("No geocoding results for: {}", fullAddress);
+            return null;
         }
+
+        JsonNode firstResult = results.get(0);
+        double lat = Double.parseDouble(firstResult.path("lat").asText());
+        double lng = Double.parseDouble(firstResult.path("lon").asText());
+        String displayName = firstResult.path("display_name").asText();
+
+        log.info("Geocoded to: {}, {}", lat, lng);
+        geocodeCache.putForward(cacheKey, lat, lng, displayName);
+
+        return new GeocodeCache.ForwardEntry(lat, lng, displayName);
     }
 
     /**
      * Reverse geocode coordinates to address
+     * Concurrent misses for the same spot wait on a single Nominatim call
      */
     public ReverseGeocodingResponse reverseGeocode(BigDecimal lat, BigDecimal lng) {
-        try {
-            String url = UriComponentsBuilder.fromHttpUrl(NOMINATIM_BASE_URL + "/reverse")
-                    .queryParam("lat", lat)
-                    .queryParam("lon", lng)
-                    .queryParam("format", "json")
-                    .build()
-                    .toUriString();
-
-            log.info("Reverse geocoding: {}, {}", lat, lng);
-
-            String response = restTemplate.getForObject(url, String.class);
-            JsonNode result = objectMapper.readTree(response);
-
-            JsonNode address = result.path("address");
-
-            return ReverseGeocodingResponse.builder()
-                    .displayName(result.path("display_name").asText())
-                    .city(address.path("city").asText())
-                    .state(address.path("state").asText())
-                    .postcode(address.path("postcode").asText())
-                    .country(address.path("country").asText())
-                    .success(true)
-                    .build();
+        String cacheKey = geocodeCache.reverseKey(lat.doubleValue(), lng.doubleValue());
+        GeocodeCache.ReverseEntry entry = geocodeCache.getReverse(cacheKey);
 
-        } catch (Exception e) {
-            log.error("Reverse geocoding failed", e);
-            return ReverseGeocodingResponse.builder()
-                    .success(false)
-                    .build();
+        if (entry == null) {
+            try {
+                entry = reverseFlights.execute(cacheKey, () -> fetchReverse(cacheKey, lat, lng));
+            } catch (UpstreamHttpClient.UpstreamUnavailableException e) {
+                log.warn("Nominatim unavailable: {}", e.getMessage());
+                return ReverseGeocodingResponse.builder()
+                        .success(false)
+                        .build();
+            } catch (Exception e) {
+                log.error("Reverse geocoding failed", e);
+                return ReverseGeocodingResponse.builder()
+                        .success(false)
+                        .build();
+            }
+        }
+
+        return ReverseGeocodingResponse.builder()
+                .displayName(entry.displayName())
+                .city(entry.city())
+                .state(entry.state())
+                .postcode(entry.postcode())
+                .country(entry.country())
+                .success(true)
+                .build();
+    }
+
+    /**
+     * Query Nominatim reverse and cache the result unless Nominatim reported an error
+     */
+    private GeocodeCache.ReverseEntry fetchReverse(String cacheKey, BigDecimal lat, BigDecimal lng) {
+        GeocodeCache.ReverseEntry cached = geocodeCache.getReverse(cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        String url = UriComponentsBuilder.fromHttpUrl(NOMINATIM_BASE_URL + "/reverse")
+                .queryParam("lat", lat)
+                .queryParam("lon", lng)
+                .queryParam("format", "json")
+                .build()
+                .toUriString();
+
+        acquireNominatimToken(false);
+
+        log.info("Reverse geocoding: {}, {}", lat, lng);
+
+        JsonNode result = readJson(upstreamHttpClient.get(NOMINATIM_UPSTREAM, url, NOMINATIM_HEADERS));
+        JsonNode address = result.path("address");
+
+        GeocodeCache.ReverseEntry entry = new GeocodeCache.ReverseEntry(
+                result.path("display_name").asText(),
+                address.path("city").asText(),
+                address.path("state").asText(),
+                address.path("postcode").asText(),
+                address.path("country").asText());
+
+        if (!result.has("error")) {
+            geocodeCache.putReverse(cacheKey, entry);
         }
+        return entry;
     }
 
     /**
-     * Fallback coordinates for major Indian cities
+     * Take a token from the shared Nominatim limiter
+     *
+     * @param background wait up to background-max-wait-ms instead of max-wait-ms
+     */
+    private void acquireNominatimToken(boolean background) {
+        long maxWaitMs = background ? nominatimBackgroundMaxWaitMs : nominatimMaxWaitMs;
+        boolean acquired = nominatimLimiter.acquire(maxWaitMs, TimeUnit.MILLISECONDS);
+        if (!acquired) {
+            rateLimited.increment();
+            throw new UpstreamHttpClient.UpstreamUnavailableException("Nominatim rate limit reached");
+        }
+    }
+
+    private JsonNode readJson(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid Nominatim response: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /**
+     * Request coalescing stats for Nominatim lookups
+     */
+    public Map<String, Object> getFlightStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("forward", forwardFlights.getStats());
+        stats.put("reverse", reverseFlights.getStats());
+        stats.put("requestsPerSecond", nominatimRequestsPerSecond);
+        stats.put("rateLimited", rateLimited.sum());
+        return stats;
+    }
+
+    /**
+     * Offline fallback: pincode centroid, else city centroid
+     * Coordinates are null when neither is known
      */
     private GeocodingResponse getFallbackCoordinates(String city, String pincode) {
-        // Default coordinates for major cities
-        BigDecimal lat, lng;
-
-        switch (city.toLowerCase()) {
-            case "chennai":
-                lat = new BigDecimal("13.0827");
-                lng = new BigDecimal("80.2707");
-                break;
-            case "bangalore", "bengaluru":
-                lat = new BigDecimal("12.9716");
-                lng = new BigDecimal("77.5946");
-                break;
-            case "mumbai":
-                lat = new BigDecimal("19.0760");
-                lng = new BigDecimal("72.8777");
-                break;
-            case "delhi":
-                lat = new BigDecimal("28.7041");
-                lng = new BigDecimal("77.1025");
-                break;
-            default:
-                // Default to Chennai
-                lat = new BigDecimal("13.0827");
-                lng = new BigDecimal("80.2707");
+        PincodeCentroidTable.Centroid centroid = pincodeCentroids.find(pincode, city);
+
+        if (centroid == null) {
+            log.warn("No offline coordinates for {} {}", city, pincode);
+            return GeocodingResponse.builder()
+                    .displayName(city + ", India")
+                    .success(false)
+                    .isFallback(true)
+                    .build();
         }
 
-        log.warn("Using fallback coordinates for {}: {}, {}", city, lat, lng);
+        BigDecimal lat = BigDecimal.valueOf(centroid.latitude()).setScale(6, RoundingMode.HALF_UP);
+        BigDecimal lng = BigDecimal.valueOf(centroid.longitude()).setScale(6, RoundingMode.HALF_UP);
+        log.debug("Using offline centroid for {} {}: {}, {}", city, pincode, lat, lng);
 
         return GeocodingResponse.builder()
                 .latitude(lat)
                 .longitude(lng)
-                .displayName(city + ", India")
+                .displayName(pincode != null ? city + " " + pincode + ", India" : city + ", India")
                 .success(false)
                 .isFallback(true)
                 .build();
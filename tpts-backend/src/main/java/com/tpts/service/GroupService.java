@@ -10,6 +10,7 @@ import com.tpts.entity.*;
 import com.tpts.exception.TptsExceptions.*;
 import com.tpts.repository.*;
 import com.tpts.util.OtpUtil;
+import com.tpts.util.TrackingCodeGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -40,9 +41,12 @@ public class GroupService {
     private final CustomerRepository customerRepository;
     private final EarningRepository earningRepository;
     private final OtpUtil otpUtil;
+    private final TrackingCodeGenerator trackingCodeGenerator;
     private final NotificationService notificationService;
     private final SmsService smsService;
     private final WalletService walletService;
+    private final AgentParcelIndex agentParcelIndex;
+    private final ParcelDtoAssembler parcelDtoAssembler;
 
     // Group earnings split rates (Platform 10%, Pickup Agent 10%, Delivery Agent
     // 10%, Company 70%)
@@ -69,7 +73,7 @@ public class GroupService {
         }
 
         // Generate unique group code
-        String groupCode = generateUniqueGroupCode();
+        String groupCode = trackingCodeGenerator.nextGroupCode();
 
         // Calculate deadline
         LocalDateTime deadline = LocalDateTime.now().plusHours(request.getDeadlineHours());
@@ -574,6 +578,7 @@ public class GroupService {
                 parcel.setStatus(ParcelStatus.ASSIGNED);
                 parcel.setAssignedAt(LocalDateTime.now());
                 parcelRepository.save(parcel);
+                agentParcelIndex.onParcelChanged(parcel);
             }
         }
 
@@ -630,6 +635,7 @@ public class GroupService {
             parcel.setAgent(agent); // Switch to delivery agent
             parcel.setStatus(ParcelStatus.OUT_FOR_DELIVERY);
             parcelRepository.save(parcel);
+            agentParcelIndex.onParcelChanged(parcel);
 
             // Send SMS to receiver with delivery OTP
             try {
@@ -695,6 +701,7 @@ public class GroupService {
             parcel.setStatus(ParcelStatus.PICKED_UP);
             parcel.setPickedUpAt(LocalDateTime.now());
             parcelRepository.save(parcel);
+            agentParcelIndex.onParcelChanged(parcel);
 
             // Send SMS to sender (pickup person)
             try {
@@ -768,6 +775,7 @@ public class GroupService {
             parcel.setStatus(ParcelStatus.DELIVERED);
             parcel.setDeliveredAt(LocalDateTime.now());
             parcelRepository.save(parcel);
+            agentParcelIndex.onParcelChanged(parcel);
 
             // Calculate and save earnings for this parcel with group split
             // Include balance payment amount if any (for partial groups with pro-rated
@@ -911,7 +919,7 @@ public class GroupService {
 
         List<Parcel> parcels = parcelRepository.findByGroupShipmentId(groupId);
 
-        return parcels.stream().map(this::mapParcelToDTO).collect(Collectors.toList());
+        return parcelDtoAssembler.toDTOs(parcels);
     }
 
     // ==========================================
@@ -957,6 +965,7 @@ public class GroupService {
                 parcel.setStatus(ParcelStatus.CONFIRMED);
             }
             parcelRepository.save(parcel);
+            agentParcelIndex.onParcelChanged(parcel);
         }
 
         log.info("Cancelled group {} ({} parcels removed)", group.getGroupCode(), parcels.size());
@@ -1129,19 +1138,6 @@ public class GroupService {
     // Helper Methods
     // ==========================================
 
-    private String generateUniqueGroupCode() {
-        String groupCode;
-        int attempts = 0;
-        do {
-            groupCode = otpUtil.generateGroupCode();
-            attempts++;
-            if (attempts > 10) {
-                throw new RuntimeException("Failed to generate unique group code");
-            }
-        } while (groupRepository.existsByGroupCode(groupCode));
-        return groupCode;
-    }
-
     private void verifyGroupAccess(GroupShipment group, User currentUser) {
         UserType userType = currentUser.getUserType();
 
@@ -1292,42 +1288,4 @@ public class GroupService {
         }
         return hours + "h " + mins + "m";
     }
-
-    private ParcelDTO mapParcelToDTO(Parcel parcel) {
-        return ParcelDTO.builder()
-                .id(parcel.getId())
-                .trackingNumber(parcel.getTrackingNumber())
-                .customerId(parcel.getCustomer().getId())
-                .customerName(parcel.getCustomer().getFullName())
-                .pickupName(parcel.getPickupName())
-                .pickupPhone(parcel.getPickupPhone())
-                .pickupAddress(parcel.getPickupAddress())
-                .pickupCity(parcel.getPickupCity())
-                .pickupPincode(parcel.getPickupPincode())
-                .pickupLatitude(parcel.getPickupLatitude())
-                .pickupLongitude(parcel.getPickupLongitude())
-                .deliveryName(parcel.getDeliveryName())
-                .deliveryPhone(parcel.getDeliveryPhone())
-                .deliveryAddress(parcel.getDeliveryAddress())
-                .deliveryCity(parcel.getDeliveryCity())
-                .deliveryPincode(parcel.getDeliveryPincode())
-                .deliveryLatitude(parcel.getDeliveryLatitude())
-                .deliveryLongitude(parcel.getDeliveryLongitude())
-                .packageType(parcel.getPackageType())
-                .weightKg(parcel.getWeightKg())
-                .basePrice(parcel.getBasePrice())
-                .discountAmount(parcel.getDiscountAmount())
-                .finalPrice(parcel.getFinalPrice())
-                .status(parcel.getStatus())
-                .paymentStatus(parcel.getPaymentStatus())
-                .pickupOtp(parcel.getPickupOtp())
-                .deliveryOtp(parcel.getDeliveryOtp())
-                .pickupPhotoUrl(parcel.getPickupPhotoUrl())
-                .deliveryPhotoUrl(parcel.getDeliveryPhotoUrl())
-                .pickedUpAt(parcel.getPickedUpAt())
-                .deliveredAt(parcel.getDeliveredAt())
-                .groupShipmentId(parcel.getGroupShipmentId())
-                .createdAt(parcel.getCreatedAt())
-                .build();
-    }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.tpts.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Single-node pub/sub: straight to the local simple broker
+ */
+@Component
+@ConditionalOnProperty(name = "tracking.pubsub.mode", havingValue = "local", matchIfMissing = true)
+@RequiredArgsConstructor
+public class LocalTrackingPubSub implements TrackingPubSub {
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final LongAdder published = new LongAdder();
+
+    @Override
+    public void publish(String destination, Message<byte[]> message) {
+        messagingTemplate.send(destination, message);
+        published.increment();
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", "local");
+        stats.put("published", published.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,175 @@
+package com.tpts.service;
+
+import com.tpts.dto.event.AgentLocationEvent;
+import com.tpts.util.GeoUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-topic coalescing of agent-location broadcasts
+ *
+ * Decides whether a location update for a tracking topic goes out now:
+ * - updates arriving within min-interval of the last send are held, and
+ *   only the latest held value is forwarded once the interval has passed
+ * - updates that moved less than min-distance are suppressed, except for a
+ *   keep-alive once max-interval has passed since the last send
+ *
+ * Holds no sending logic; TrackingWebSocketController sends what this
+ * returns and drains due held values on the TrackingScheduler tick.
+ */
+@Component
+public class LocationBroadcastThrottle {
+
+    @Value("${tracking.broadcast.throttle.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tracking.broadcast.throttle.min-distance-meters:15}")
+    private double minDistanceMeters;
+
+    @Value("${tracking.broadcast.throttle.min-interval-ms:2000}")
+    private long minIntervalMs;
+
+    @Value("${tracking.broadcast.throttle.max-interval-ms:30000}")
+    private long maxIntervalMs;
+
+    @Value("${tracking.broadcast.throttle.idle-expiry-ms:600000}")
+    private long idleExpiryMs;
+
+    private final Map<String, TopicState> topics = new ConcurrentHashMap<>();
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder sentDelayed = new LongAdder();
+    private final LongAdder suppressedStationary = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Last-sent state of a topic plus the latest held (not yet sent) update
+     */
+    private static final class TopicState {
+        double sentLat;
+        double sentLng;
+        long sentAt;
+        boolean hasSent;
+
+        AgentLocationEvent pending;
+        double pendingLat;
+        double pendingLng;
+    }
+
+    /**
+     * A held update that is now due for sending
+     */
+    public record DueUpdate(String topic, AgentLocationEvent event) {
+    }
+
+    // ==========================================
+    // Decision
+    // ==========================================
+
+    /**
+     * Offer a location update for a topic
+     *
+     * @return true if the caller should send it now; false if it was held or suppressed
+     */
+    public boolean offer(String topic, double latitude, double longitude, AgentLocationEvent event) {
+        offered.increment();
+        if (!enabled) {
+            sent.increment();
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        TopicState state = topics.computeIfAbsent(topic, k -> new TopicState());
+
+        synchronized (state) {
+            if (!state.hasSent) {
+                markSent(state, latitude, longitude, now);
+                return true;
+            }
+
+            long elapsed = now - state.sentAt;
+            boolean moved = GeoUtils.equirectangularKm(state.sentLat, state.sentLng, latitude, longitude) * 1000
+                    >= minDistanceMeters;
+
+            if (!moved && elapsed < maxIntervalMs) {
+                // Standing still: nothing new for subscribers; drop any held value too
+                state.pending = null;
+                suppressedStationary.increment();
+                return false;
+            }
+
+            if (elapsed < minIntervalMs) {
+                // Too soon: keep only the latest value for the trailing send
+                if (state.pending != null) {
+                    coalesced.increment();
+                }
+                state.pending = event;
+                state.pendingLat = latitude;
+                state.pendingLng = longitude;
+                return false;
+            }
+
+            markSent(state, latitude, longitude, now);
+            return true;
+        }
+    }
+
+    /**
+     * Collect held updates whose min-interval has passed, and forget idle topics
+     */
+    public List<DueUpdate> drainDue() {
+        long now = System.currentTimeMillis();
+        List<DueUpdate> due = new ArrayList<>();
+
+        topics.entrySet().removeIf(entry -> {
+            TopicState state = entry.getValue();
+            synchronized (state) {
+                if (state.pending != null && now - state.sentAt >= minIntervalMs) {
+                    due.add(new DueUpdate(entry.getKey(), state.pending));
+                    markSent(state, state.pendingLat, state.pendingLng, now);
+                    sentDelayed.increment();
+                    return false;
+                }
+                return state.pending == null && now - state.sentAt >= idleExpiryMs;
+            }
+        });
+        return due;
+    }
+
+    private void markSent(TopicState state, double latitude, double longitude, long now) {
+        state.sentLat = latitude;
+        state.sentLng = longitude;
+        state.sentAt = now;
+        state.hasSent = true;
+        state.pending = null;
+        sent.increment();
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        long offeredCount = offered.sum();
+        long suppressedCount = suppressedStationary.sum() + coalesced.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("topics", topics.size());
+        stats.put("offered", offeredCount);
+        stats.put("sent", sent.sum());
+        stats.put("sentDelayed", sentDelayed.sum());
+        stats.put("suppressedStationary", suppressedStationary.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("suppressionRate", offeredCount == 0 ? 0.0 : (double) suppressedCount / offeredCount);
+        return stats;
+    }
+}
@@ -0,0 +1,671 @@
+package com.tpts.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Append-only GPS trail history on local disk
+ *
+ * Every accepted agent position is appended as a fixed-width 32-byte record
+ * (agentId, timestamp, latitude, longitude) to memory-mapped segment files,
+ * one directory per day. MySQL is never touched.
+ *
+ * Layout: {dir}/{yyyy-MM-dd}/seg-00000.trl, seg-00001.trl, ... and, after
+ * compaction, {dir}/{yyyy-MM-dd}/compacted.trl holding the day's records
+ * sorted by (agentId, timestamp) so an agent's range is a binary search.
+ *
+ * Each file starts with a 64-byte header: magic, version, record size,
+ * flags, record count. The count is written after the record, so a crash
+ * can lose at most the record being appended.
+ */
+@Service
+@Slf4j
+public class LocationTrailStore {
+
+    private static final int MAGIC = 0x54505452; // "TPTR"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 32;
+    private static final int FLAGS_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+    private static final int FLAG_COMPACTED = 1;
+
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".trl";
+    private static final String COMPACTED_FILE = "compacted.trl";
+
+    @Value("${tracking.trail-store.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tracking.trail-store.dir:data/trails}")
+    private String directory;
+
+    @Value("${tracking.trail-store.segment-records:262144}")
+    private int segmentRecords;
+
+    @Value("${tracking.trail-store.retention-days:30}")
+    private int retentionDays;
+
+    @Value("${tracking.trail-store.compaction-max-records:5000000}")
+    private int compactionMaxRecords;
+
+    /** Day directories follow the zone the rest of the app stores times in */
+    @Value("${spring.jpa.properties.hibernate.jdbc.time_zone:Asia/Kolkata}")
+    private ZoneId zone;
+
+    private Path root;
+
+    // Open writable segment per day, guarded by this
+    private final Map<LocalDate, Segment> writers = new HashMap<>();
+    // Last appended timestamp per agent, guarded by this
+    private final Map<Long, Long> lastAppended = new HashMap<>();
+    // Days being compacted, guarded by this: late points for them go to a new
+    // segment, never into one the compaction has read and is about to delete
+    private final Set<LocalDate> compacting = new HashSet<>();
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder outOfOrder = new LongAdder();
+    private final LongAdder appendFailures = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder compactedDays = new LongAdder();
+    private final LongAdder expiredDays = new LongAdder();
+
+    /**
+     * A stored trail point
+     */
+    public record TrailPoint(long agentId, long timestamp, double latitude, double longitude) {
+    }
+
+    /**
+     * Memory-mapped segment file opened for appending
+     */
+    private static final class Segment {
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final int capacity;
+        int count;
+
+        Segment(Path path, FileChannel channel, MappedByteBuffer buffer, int capacity, int count) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.count = count;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            root = Paths.get(directory).toAbsolutePath();
+            Files.createDirectories(root);
+            log.info("Location trail store at {}", root);
+        } catch (IOException e) {
+            enabled = false;
+            log.error("Location trail store disabled, cannot create {}: {}", directory, e.getMessage());
+        }
+    }
+
+    // ==========================================
+    // Append
+    // ==========================================
+
+    /**
+     * Append a position. Points not newer than the agent's last appended point
+     * are dropped, so the trail of each agent is strictly increasing in time.
+     */
+    public synchronized void append(long agentId, long timestamp, double latitude, double longitude) {
+        if (!enabled) {
+            return;
+        }
+        Long last = lastAppended.get(agentId);
+        if (last != null && timestamp <= last) {
+            outOfOrder.increment();
+            return;
+        }
+
+        try {
+            Segment segment = writableSegment(dayOf(timestamp));
+            int position = HEADER_SIZE + segment.count * RECORD_SIZE;
+            segment.buffer.putLong(position, agentId);
+            segment.buffer.putLong(position + 8, timestamp);
+            segment.buffer.putDouble(position + 16, latitude);
+            segment.buffer.putDouble(position + 24, longitude);
+            segment.count++;
+            segment.buffer.putInt(COUNT_OFFSET, segment.count);
+
+            lastAppended.put(agentId, timestamp);
+            appended.increment();
+        } catch (IOException e) {
+            appendFailures.increment();
+            log.warn("Failed to append trail point for agent {}: {}", agentId, e.getMessage());
+        }
+    }
+
+    private Segment writableSegment(LocalDate day) throws IOException {
+        Segment segment = writers.get(day);
+        if (segment != null && segment.count < segment.capacity) {
+            return segment;
+        }
+        if (segment != null) {
+            close(segment);
+        }
+
+        Path dayDir = root.resolve(day.toString());
+        Files.createDirectories(dayDir);
+
+        // Reopen the newest segment after a restart if it still has room
+        List<Path> existing = listSegments(dayDir);
+        if (segment == null && !existing.isEmpty() && !compacting.contains(day)) {
+            Segment reopened = openSegment(existing.get(existing.size() - 1));
+            if (reopened.count < reopened.capacity) {
+                writers.put(day, reopened);
+                return reopened;
+            }
+            close(reopened);
+        }
+
+        int nextIndex = existing.isEmpty() ? 0 : segmentIndex(existing.get(existing.size() - 1)) + 1;
+        Segment created = openSegment(dayDir.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, nextIndex, SEGMENT_SUFFIX)));
+        writers.put(day, created);
+        return created;
+    }
+
+    private Segment openSegment(Path path) throws IOException {
+        boolean isNew = !Files.exists(path);
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long size = isNew ? HEADER_SIZE + (long) segmentRecords * RECORD_SIZE : channel.size();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        int capacity = (int) ((size - HEADER_SIZE) / RECORD_SIZE);
+
+        if (isNew) {
+            writeHeader(buffer, 0, 0);
+            return new Segment(path, channel, buffer, capacity, 0);
+        }
+        checkHeader(buffer, path);
+        return new Segment(path, channel, buffer, capacity, buffer.getInt(COUNT_OFFSET));
+    }
+
+    private void close(Segment segment) {
+        try {
+            segment.buffer.force();
+            segment.channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close trail segment {}: {}", segment.path, e.getMessage());
+        }
+    }
+
+    // ==========================================
+    // Replay / Query
+    // ==========================================
+
+    /**
+     * Trail of an agent between two instants (inclusive), oldest first
+     */
+    public List<TrailPoint> query(long agentId, long fromMillis, long toMillis, int limit) {
+        queries.increment();
+        if (!enabled || fromMillis > toMillis) {
+            return List.of();
+        }
+
+        List<TrailPoint> points = new ArrayList<>();
+        for (LocalDate day = dayOf(fromMillis); !day.isAfter(dayOf(toMillis)); day = day.plusDays(1)) {
+            Path dayDir = root.resolve(day.toString());
+            if (!Files.isDirectory(dayDir)) {
+                continue;
+            }
+            try {
+                Path compacted = dayDir.resolve(COMPACTED_FILE);
+                if (Files.exists(compacted)) {
+                    readCompacted(compacted, agentId, fromMillis, toMillis, points);
+                }
+                for (Path segment : listSegments(dayDir)) {
+                    readSegment(segment, agentId, fromMillis, toMillis, points);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read trail for agent {} on {}: {}", agentId, day, e.getMessage());
+            }
+        }
+
+        // Late points for an already compacted day sit in raw segments, and a
+        // concurrent compaction can briefly expose a record twice
+        points.sort(Comparator.comparingLong(TrailPoint::timestamp));
+        List<TrailPoint> result = new ArrayList<>(Math.min(points.size(), limit));
+        for (TrailPoint point : points) {
+            if (result.size() >= limit) {
+                break;
+            }
+            if (result.isEmpty() || result.get(result.size() - 1).timestamp() != point.timestamp()) {
+                result.add(point);
+            }
+        }
+        return result;
+    }
+
+    private void readSegment(Path path, long agentId, long from, long to, List<TrailPoint> out) throws IOException {
+        ByteBuffer buffer;
+        int count;
+        synchronized (this) {
+            Segment open = writers.values().stream()
+                    .filter(s -> s.path.equals(path))
+                    .findFirst()
+                    .orElse(null);
+            if (open != null) {
+                buffer = open.buffer.duplicate();
+                count = open.count;
+            } else {
+                buffer = mapReadOnly(path);
+                count = buffer.getInt(COUNT_OFFSET);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            int position = HEADER_SIZE + i * RECORD_SIZE;
+            if (buffer.getLong(position) != agentId) {
+                continue;
+            }
+            long timestamp = buffer.getLong(position + 8);
+            if (timestamp >= from && timestamp <= to) {
+                out.add(readPoint(buffer, position));
+            }
+        }
+    }
+
+    private void readCompacted(Path path, long agentId, long from, long to, List<TrailPoint> out) throws IOException {
+        ByteBuffer buffer = mapReadOnly(path);
+        int count = buffer.getInt(COUNT_OFFSET);
+
+        // Records are sorted by (agentId, timestamp): binary search the first >= (agentId, from)
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int position = HEADER_SIZE + mid * RECORD_SIZE;
+            long midAgent = buffer.getLong(position);
+            long midTime = buffer.getLong(position + 8);
+            if (midAgent < agentId || (midAgent == agentId && midTime < from)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        for (int i = low; i < count; i++) {
+            int position = HEADER_SIZE + i * RECORD_SIZE;
+            if (buffer.getLong(position) != agentId || buffer.getLong(position + 8) > to) {
+                break;
+            }
+            out.add(readPoint(buffer, position));
+        }
+    }
+
+    // ==========================================
+    // Retention & Compaction
+    // ==========================================
+
+    /**
+     * Delete days past retention and compact every finished day that still
+     * has raw segments. Called daily by TrackingScheduler.
+     */
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        LocalDate today = LocalDate.now(zone);
+        LocalDate oldestKept = today.minusDays(retentionDays);
+
+        closeWritersBefore(today);
+
+        for (Path dayDir : listDays()) {
+            LocalDate day = LocalDate.parse(dayDir.getFileName().toString());
+            try {
+                if (day.isBefore(oldestKept)) {
+                    deleteDay(dayDir);
+                    expiredDays.increment();
+                    log.info("Deleted expired trail day {}", day);
+                } else if (day.isBefore(today) && !listSegments(dayDir).isEmpty()) {
+                    compact(day);
+                }
+            } catch (IOException e) {
+                log.error("Trail maintenance failed for {}: {}", day, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Merge a day's raw segments (and any earlier compacted file) into one
+     * compacted file sorted by (agentId, timestamp), dropping duplicates
+     *
+     * @return number of records in the compacted file, or -1 if skipped
+     */
+    public int compact(LocalDate day) throws IOException {
+        Path dayDir = root.resolve(day.toString());
+        List<Path> segments;
+        synchronized (this) {
+            if (!compacting.add(day)) {
+                return -1;
+            }
+            Segment open = writers.remove(day);
+            if (open != null) {
+                close(open);
+            }
+            try {
+                segments = listSegments(dayDir);
+            } catch (IOException e) {
+                compacting.remove(day);
+                throw e;
+            }
+        }
+        try {
+            return compact(day, dayDir, segments);
+        } finally {
+            synchronized (this) {
+                compacting.remove(day);
+            }
+        }
+    }
+
+    /**
+     * Compact exactly the given segments; appends made meanwhile land in newer
+     * segments (see writableSegment) and are left for the next compaction
+     */
+    private int compact(LocalDate day, Path dayDir, List<Path> segments) throws IOException {
+        if (segments.isEmpty()) {
+            return -1;
+        }
+
+        Path compacted = dayDir.resolve(COMPACTED_FILE);
+        long total = 0;
+        List<Path> sources = new ArrayList<>(segments);
+        if (Files.exists(compacted)) {
+            sources.add(0, compacted);
+        }
+        for (Path source : sources) {
+            total += mapReadOnly(source).getInt(COUNT_OFFSET);
+        }
+        if (total > compactionMaxRecords) {
+            log.warn("Skipping compaction of {}: {} records exceeds limit {}", day, total, compactionMaxRecords);
+            return -1;
+        }
+
+        // Copy the raw records into the output mapping, then sort and de-duplicate
+        // them there: the day never has to fit on the heap
+        Path tmp = dayDir.resolve(COMPACTED_FILE + ".tmp");
+        int written;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + total * RECORD_SIZE);
+            int count = 0;
+            for (Path source : sources) {
+                ByteBuffer in = mapReadOnly(source);
+                int records = in.getInt(COUNT_OFFSET);
+                buffer.put(HEADER_SIZE + count * RECORD_SIZE, in, HEADER_SIZE, records * RECORD_SIZE);
+                count += records;
+            }
+            sortRecords(buffer, 0, count);
+            written = removeDuplicates(buffer, count);
+            writeHeader(buffer, FLAG_COMPACTED, written);
+            buffer.force();
+        }
+        Files.move(tmp, compacted, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+        compactedDays.increment();
+        log.info("Compacted trail day {}: {} segments, {} records", day, segments.size(), written);
+        return written;
+    }
+
+    private synchronized void closeWritersBefore(LocalDate day) {
+        Iterator<Map.Entry<LocalDate, Segment>> it = writers.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<LocalDate, Segment> entry = it.next();
+            if (entry.getKey().isBefore(day)) {
+                close(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private void deleteDay(Path dayDir) throws IOException {
+        try (Stream<Path> files = Files.list(dayDir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dayDir);
+    }
+
+    @PreDestroy
+    public synchronized void closeAll() {
+        writers.values().forEach(this::close);
+        writers.clear();
+    }
+
+    // ==========================================
+    // In-place Record Sort
+    // ==========================================
+
+    /**
+     * Sort records [from, to) of a mapped file by (agentId, timestamp):
+     * quicksort on the fixed-width records, insertion sort for short ranges
+     */
+    private static void sortRecords(ByteBuffer buffer, int from, int to) {
+        while (to - from > 16) {
+            int mid = (from + to) >>> 1;
+            long pivotAgent = agentAt(buffer, mid);
+            long pivotTime = timeAt(buffer, mid);
+            int i = from;
+            int j = to - 1;
+            while (i <= j) {
+                while (compareTo(buffer, i, pivotAgent, pivotTime) < 0) {
+                    i++;
+                }
+                while (compareTo(buffer, j, pivotAgent, pivotTime) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    swapRecords(buffer, i++, j--);
+                }
+            }
+            // Recurse into the smaller half so the stack stays O(log n)
+            if (j + 1 - from < to - i) {
+                sortRecords(buffer, from, j + 1);
+                from = i;
+            } else {
+                sortRecords(buffer, i, to);
+                to = j + 1;
+            }
+        }
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && compareTo(buffer, j - 1, agentAt(buffer, j), timeAt(buffer, j)) > 0; j--) {
+                swapRecords(buffer, j - 1, j);
+            }
+        }
+    }
+
+    /**
+     * Drop records repeating the previous (agentId, timestamp) of a sorted run
+     *
+     * @return number of records kept at the front
+     */
+    private static int removeDuplicates(ByteBuffer buffer, int count) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (kept > 0 && compareTo(buffer, kept - 1, agentAt(buffer, i), timeAt(buffer, i)) == 0) {
+                continue;
+            }
+            if (i != kept) {
+                copyRecord(buffer, i, kept);
+            }
+            kept++;
+        }
+        return kept;
+    }
+
+    private static int compareTo(ByteBuffer buffer, int record, long agentId, long timestamp) {
+        int byAgent = Long.compare(agentAt(buffer, record), agentId);
+        return byAgent != 0 ? byAgent : Long.compare(timeAt(buffer, record), timestamp);
+    }
+
+    private static long agentAt(ByteBuffer buffer, int record) {
+        return buffer.getLong(HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    private static long timeAt(ByteBuffer buffer, int record) {
+        return buffer.getLong(HEADER_SIZE + record * RECORD_SIZE + 8);
+    }
+
+    private static void swapRecords(ByteBuffer buffer, int a, int b) {
+        int pa = HEADER_SIZE + a * RECORD_SIZE;
+        int pb = HEADER_SIZE + b * RECORD_SIZE;
+        for (int offset = 0; offset < RECORD_SIZE; offset += 8) {
+            long value = buffer.getLong(pa + offset);
+            buffer.putLong(pa + offset, buffer.getLong(pb + offset));
+            buffer.putLong(pb + offset, value);
+        }
+    }
+
+    private static void copyRecord(ByteBuffer buffer, int from, int to) {
+        int pf = HEADER_SIZE + from * RECORD_SIZE;
+        int pt = HEADER_SIZE + to * RECORD_SIZE;
+        for (int offset = 0; offset < RECORD_SIZE; offset += 8) {
+            buffer.putLong(pt + offset, buffer.getLong(pf + offset));
+        }
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("directory", root != null ? root.toString() : directory);
+        stats.put("days", enabled ? listDays().size() : 0);
+        synchronized (this) {
+            stats.put("openSegments", writers.size());
+        }
+        stats.put("appended", appended.sum());
+        stats.put("outOfOrder", outOfOrder.sum());
+        stats.put("appendFailures", appendFailures.sum());
+        stats.put("queries", queries.sum());
+        stats.put("compactedDays", compactedDays.sum());
+        stats.put("expiredDays", expiredDays.sum());
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private LocalDate dayOf(long epochMillis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(epochMillis), zone);
+    }
+
+    private static TrailPoint readPoint(ByteBuffer buffer, int position) {
+        return new TrailPoint(
+                buffer.getLong(position),
+                buffer.getLong(position + 8),
+                buffer.getDouble(position + 16),
+                buffer.getDouble(position + 24));
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int flags, int count) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putInt(FLAGS_OFFSET, flags);
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    private static void checkHeader(ByteBuffer buffer, Path path) throws IOException {
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(8) != RECORD_SIZE) {
+            throw new IOException("Not a trail file: " + path);
+        }
+    }
+
+    private static ByteBuffer mapReadOnly(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            checkHeader(buffer, path);
+            return buffer;
+        }
+    }
+
+    private static List<Path> listSegments(Path dayDir) throws IOException {
+        if (!Files.isDirectory(dayDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dayDir)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted(Comparator.comparingInt(LocationTrailStore::segmentIndex))
+                    .toList();
+        }
+    }
+
+    private static int segmentIndex(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private List<Path> listDays() {
+        try (Stream<Path> dirs = Files.list(root)) {
+            return dirs.filter(Files::isDirectory)
+                    .filter(p -> {
+                        try {
+                            LocalDate.parse(p.getFileName().toString());
+                            return true;
+                        } catch (DateTimeParseException e) {
+                            return false;
+                        }
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Failed to list trail days in {}: {}", root, e.getMessage());
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,409 @@
+package com.tpts.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.dto.event.ParcelLifecycleEvent;
+import com.tpts.entity.OutboxEvent;
+import com.tpts.entity.OutboxStatus;
+import com.tpts.repository.OutboxEventRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outbox Dispatcher
+ * Delivers recorded parcel events to every ParcelEventSubscriber.
+ *
+ * - Claims due events with a lease (locked_by / locked_until), so several
+ *   instances can dispatch from the same table; a crashed dispatcher's
+ *   events become claimable again when the lease expires
+ * - Per-parcel order: only a parcel's oldest pending event is claimed; later
+ *   ones wait until it succeeds or is given up on (DEAD)
+ * - Outcomes are written only while the lease is still held, so a dispatcher
+ *   that overran its lease cannot overwrite the state of whoever took over
+ * - Parcels are spread over single-threaded workers by id, so different
+ *   parcels are handled in parallel and one parcel's events never overlap
+ * - At-least-once: a failing subscriber is retried with exponential backoff;
+ *   subscribers that already succeeded for the event are skipped
+ *
+ * Woken after each commit that records an event; OutboxScheduler polls as a
+ * safety net and to pick up retries.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxDispatcher {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final List<ParcelEventSubscriber> subscribers;
+
+    @Value("${outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${outbox.workers:4}")
+    private int workerCount;
+
+    @Value("${outbox.lease-seconds:60}")
+    private int leaseSeconds;
+
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.initial-backoff-seconds:5}")
+    private long initialBackoffSeconds;
+
+    @Value("${outbox.max-backoff-seconds:600}")
+    private long maxBackoffSeconds;
+
+    @Value("${outbox.retention-days:7}")
+    private int retentionDays;
+
+    private final String owner = ownerId();
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+
+    private ExecutorService coordinator;
+    private ExecutorService[] workers;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder dead = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder leaseLost = new LongAdder();
+    private final Map<String, LongAdder> failuresBySubscriber = new ConcurrentHashMap<>();
+    private volatile long lastLagMillis;
+
+    // ==========================================
+    // Lifecycle
+    // ==========================================
+
+    @PostConstruct
+    public void start() {
+        coordinator = Executors.newSingleThreadExecutor(daemon("outbox-dispatcher"));
+        workers = new ExecutorService[Math.max(1, workerCount)];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Executors.newSingleThreadExecutor(daemon("outbox-worker-" + i));
+        }
+        log.info("Outbox dispatcher {} started with {} workers and subscribers {}", owner, workers.length,
+                subscribers.stream().map(ParcelEventSubscriber::name).toList());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        coordinator.shutdown();
+        coordinator.awaitTermination(10, TimeUnit.SECONDS);
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        for (ExecutorService worker : workers) {
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // ==========================================
+    // Dispatch
+    // ==========================================
+
+    /**
+     * Schedule a drain of due events; calls while one is queued are coalesced
+     */
+    public void wake() {
+        if (drainQueued.compareAndSet(false, true)) {
+            try {
+                coordinator.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                drainQueued.set(false); // Shutting down
+            }
+        }
+    }
+
+    private void drain() {
+        drainQueued.set(false);
+        try {
+            while (dispatchBatch()) {
+                // Progress was made; the next events of those parcels may now be due
+            }
+        } catch (Exception e) {
+            log.error("Outbox dispatch failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claim and deliver one batch
+     *
+     * @return true if at least one event was finished, so more may be claimable
+     */
+    private boolean dispatchBatch() throws Exception {
+        LocalDateTime now = LocalDateTime.now();
+        int claimed = outboxEventRepository.claimDue(owner, now.plusSeconds(leaseSeconds), now, batchSize);
+        if (claimed == 0) {
+            return false;
+        }
+
+        Map<Long, List<OutboxEvent>> byParcel = new LinkedHashMap<>();
+        for (OutboxEvent event : outboxEventRepository.findByLockedByAndStatusOrderByIdAsc(owner, OutboxStatus.PENDING)) {
+            byParcel.computeIfAbsent(event.getAggregateId(), id -> new ArrayList<>()).add(event);
+        }
+        if (byParcel.isEmpty()) {
+            return false;
+        }
+
+        // The claim only takes each parcel's oldest pending event, but one recorded
+        // between the claim and this check, or leased elsewhere, still goes first
+        Map<Long, Long> oldestPending = new HashMap<>();
+        for (Object[] row : outboxEventRepository.findOldestPendingIds(byParcel.keySet())) {
+            oldestPending.put((Long) row[0], (Long) row[1]);
+        }
+        List<Long> blocked = new ArrayList<>();
+        byParcel.entrySet().removeIf(entry -> {
+            Long oldest = oldestPending.get(entry.getKey());
+            if (oldest != null && !oldest.equals(entry.getValue().get(0).getId())) {
+                entry.getValue().forEach(event -> blocked.add(event.getId()));
+                return true;
+            }
+            return false;
+        });
+        if (!blocked.isEmpty()) {
+            outboxEventRepository.release(blocked);
+            deferred.add(blocked.size());
+        }
+
+        List<Future<Integer>> running = new ArrayList<>(byParcel.size());
+        for (Map.Entry<Long, List<OutboxEvent>> entry : byParcel.entrySet()) {
+            ExecutorService worker = workers[(int) Math.floorMod(entry.getKey(), (long) workers.length)];
+            List<OutboxEvent> events = entry.getValue();
+            running.add(worker.submit(() -> deliverInOrder(events)));
+        }
+        int finished = 0;
+        for (Future<Integer> future : running) {
+            finished += future.get();
+        }
+
+        return finished > 0;
+    }
+
+    /**
+     * Deliver one parcel's claimed events in id order, stopping at the first
+     * one that has to be retried
+     *
+     * @return number of events finished (processed or dead)
+     */
+    private int deliverInOrder(List<OutboxEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            boolean done;
+            try {
+                done = deliver(events.get(i));
+            } catch (Exception e) {
+                // Could not record the outcome; the lease expiry makes it claimable again
+                log.error("Failed to record outbox event {}: {}", events.get(i).getId(), e.getMessage(), e);
+                done = false;
+            }
+            if (!done) {
+                List<Long> rest = events.subList(i + 1, events.size()).stream().map(OutboxEvent::getId).toList();
+                if (!rest.isEmpty()) {
+                    outboxEventRepository.release(rest);
+                    deferred.add(rest.size());
+                }
+                return i;
+            }
+        }
+        return events.size();
+    }
+
+    /**
+     * Run the event through every subscriber that has not handled it yet
+     *
+     * @return false if it will be retried (later events of the parcel must wait)
+     */
+    private boolean deliver(OutboxEvent row) {
+        ParcelLifecycleEvent event;
+        try {
+            event = objectMapper.readValue(row.getPayload(), ParcelLifecycleEvent.class);
+        } catch (Exception e) {
+            row.setStatus(OutboxStatus.DEAD);
+            row.setLastError(truncate("Unreadable payload: " + e.getMessage()));
+            if (!recordAttempt(row)) {
+                return false;
+            }
+            dead.increment();
+            log.error("Outbox event {} has an unreadable payload; marked DEAD", row.getId());
+            return true;
+        }
+
+        Set<String> completed = parseSubscribers(row.getCompletedSubscribers());
+        StringBuilder errors = new StringBuilder();
+        for (ParcelEventSubscriber subscriber : subscribers) {
+            if (completed.contains(subscriber.name())) {
+                continue;
+            }
+            try {
+                subscriber.onEvent(event);
+                completed.add(subscriber.name());
+            } catch (Exception e) {
+                failuresBySubscriber.computeIfAbsent(subscriber.name(), name -> new LongAdder()).increment();
+                errors.append(errors.length() > 0 ? "; " : "").append(subscriber.name()).append(": ").append(e.getMessage());
+                log.warn("Subscriber {} failed on {} for parcel {}: {}",
+                        subscriber.name(), event.type(), event.trackingNumber(), e.getMessage());
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        row.setCompletedSubscribers(String.join(",", completed));
+
+        boolean done;
+        if (errors.length() == 0) {
+            row.setStatus(OutboxStatus.PROCESSED);
+            row.setProcessedAt(now);
+            row.setLastError(null);
+            done = true;
+        } else {
+            int attempts = row.getAttempts() + 1;
+            row.setAttempts(attempts);
+            row.setLastError(truncate(errors.toString()));
+            if (attempts >= maxAttempts) {
+                row.setStatus(OutboxStatus.DEAD);
+                log.error("Giving up on outbox event {} ({} for parcel {}) after {} attempts: {}",
+                        row.getId(), event.type(), event.trackingNumber(), attempts, row.getLastError());
+                done = true;
+            } else {
+                row.setNextAttemptAt(now.plusSeconds(backoffSeconds(attempts)));
+                done = false;
+            }
+        }
+        if (!recordAttempt(row)) {
+            return false;
+        }
+
+        if (row.getStatus() == OutboxStatus.PROCESSED) {
+            processed.increment();
+            lastLagMillis = Duration.between(row.getCreatedAt(), now).toMillis();
+        } else if (row.getStatus() == OutboxStatus.DEAD) {
+            dead.increment();
+        } else {
+            retried.increment();
+        }
+        return done;
+    }
+
+    /**
+     * Write the attempt's outcome and drop the lease, unless the lease was lost
+     * (it expired and another dispatcher claimed the event); that dispatcher's
+     * state then stands and this parcel's remaining events are handed back
+     */
+    private boolean recordAttempt(OutboxEvent row) {
+        int updated = outboxEventRepository.recordAttempt(row.getId(), owner, row.getStatus(), row.getAttempts(),
+                row.getNextAttemptAt(), row.getCompletedSubscribers(), row.getLastError(), row.getProcessedAt());
+        if (updated == 0) {
+            leaseLost.increment();
+            log.warn("Lease on outbox event {} expired before its outcome was recorded; "
+                    + "leaving it to the current holder", row.getId());
+            return false;
+        }
+        return true;
+    }
+
+    // ==========================================
+    // Maintenance
+    // ==========================================
+
+    /**
+     * Delete processed events past the retention period; DEAD events are kept for inspection
+     */
+    public int purgeProcessed() {
+        int deleted = outboxEventRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            log.info("Purged {} processed outbox events", deleted);
+        }
+        return deleted;
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("owner", owner);
+        stats.put("subscribers", subscribers.stream().map(ParcelEventSubscriber::name).toList());
+        stats.put("pending", outboxEventRepository.countByStatus(OutboxStatus.PENDING));
+        stats.put("deadTotal", outboxEventRepository.countByStatus(OutboxStatus.DEAD));
+        stats.put("processed", processed.sum());
+        stats.put("retried", retried.sum());
+        stats.put("dead", dead.sum());
+        stats.put("deferred", deferred.sum());
+        stats.put("leaseLost", leaseLost.sum());
+        Map<String, Long> failures = new LinkedHashMap<>();
+        failuresBySubscriber.forEach((name, count) -> failures.put(name, count.sum()));
+        stats.put("subscriberFailures", failures);
+        stats.put("lastLagMs", lastLagMillis);
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private long backoffSeconds(int attempts) {
+        long seconds = initialBackoffSeconds << Math.min(attempts - 1, 20);
+        return Math.min(seconds, maxBackoffSeconds);
+    }
+
+    private static Set<String> parseSubscribers(String value) {
+        Set<String> names = new LinkedHashSet<>();
+        if (value != null && !value.isBlank()) {
+            names.addAll(Arrays.asList(value.split(",")));
+        }
+        return names;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static String ownerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + ":" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
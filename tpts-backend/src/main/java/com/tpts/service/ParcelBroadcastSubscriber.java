@@ -0,0 +1,30 @@
+package com.tpts.service;
+
+import com.tpts.controller.TrackingWebSocketController;
+import com.tpts.dto.event.ParcelLifecycleEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pushes the refreshed public tracking view to /topic/tracking/{trackingNumber}
+ * The projection was evicted when the parcel was written, so this rebuilds
+ * it from the committed state and re-warms the cache for polling clients.
+ */
+@Component
+@RequiredArgsConstructor
+public class ParcelBroadcastSubscriber implements ParcelEventSubscriber {
+
+    private final ParcelService parcelService;
+    private final TrackingWebSocketController wsController;
+
+    @Override
+    public String name() {
+        return "tracking-broadcast";
+    }
+
+    @Override
+    public void onEvent(ParcelLifecycleEvent event) {
+        wsController.broadcastParcelUpdate(event.trackingNumber(),
+                parcelService.getPublicTracking(event.trackingNumber(), null));
+    }
+}
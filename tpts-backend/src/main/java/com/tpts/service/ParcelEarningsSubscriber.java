@@ -0,0 +1,58 @@
+package com.tpts.service;
+
+import com.tpts.dto.event.ParcelLifecycleEvent;
+import com.tpts.entity.Parcel;
+import com.tpts.entity.ParcelStatus;
+import com.tpts.repository.ParcelRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Earnings split and reversal for parcel lifecycle events
+ * Both WalletService operations are idempotent per parcel (existing earning
+ * / already cancelled), so redelivery is safe.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ParcelEarningsSubscriber implements ParcelEventSubscriber {
+
+    private final ParcelRepository parcelRepository;
+    private final WalletService walletService;
+
+    @Override
+    public String name() {
+        return "earnings";
+    }
+
+    @Override
+    @Transactional
+    public void onEvent(ParcelLifecycleEvent event) {
+        boolean credit = event.type() == ParcelLifecycleEvent.Type.PAYMENT_CONFIRMED
+                || (event.type() == ParcelLifecycleEvent.Type.STATUS_CHANGED
+                        && event.toStatus() == ParcelStatus.DELIVERED);
+        boolean reverse = event.type() == ParcelLifecycleEvent.Type.CANCELLED
+                || (event.type() == ParcelLifecycleEvent.Type.STATUS_CHANGED
+                        && event.toStatus() == ParcelStatus.CANCELLED);
+        if (!credit && !reverse) {
+            return;
+        }
+
+        Parcel parcel = parcelRepository.findById(event.parcelId()).orElse(null);
+        if (parcel == null) {
+            log.warn("Parcel {} no longer exists; skipping earnings", event.parcelId());
+            return;
+        }
+
+        if (credit) {
+            // Creates the Earning record and updates wallets
+            walletService.processDeliveryEarnings(parcel);
+            log.info("Earnings processed for parcel {}", parcel.getTrackingNumber());
+        } else {
+            // Reverse any earnings that were credited for this parcel
+            walletService.reverseEarningsForParcel(parcel);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.tpts.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.dto.event.ParcelLifecycleEvent;
+import com.tpts.entity.OutboxEvent;
+import com.tpts.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Parcel Event Outbox
+ * Records lifecycle events in the caller's transaction, so an event exists
+ * exactly when the change it describes committed. Side effects (notifications,
+ * earnings, broadcasts) run later in OutboxDispatcher instead of holding the
+ * request's transaction and row locks open.
+ *
+ * The dispatcher is looked up lazily: subscribers depend on services that
+ * record events, so a direct dependency would be circular.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ParcelEventOutbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<OutboxDispatcher> dispatcher;
+
+    /**
+     * Record an event; must be called inside the transaction making the change.
+     * The dispatcher is woken once the transaction commits.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(ParcelLifecycleEvent event) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize parcel event " + event.type(), e);
+        }
+
+        outboxEventRepository.save(OutboxEvent.builder()
+                .aggregateId(event.parcelId())
+                .eventType(event.type().name())
+                .payload(payload)
+                .build());
+
+        log.debug("Recorded {} for parcel {}", event.type(), event.trackingNumber());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    OutboxDispatcher outboxDispatcher = dispatcher.getIfAvailable();
+                    if (outboxDispatcher != null) {
+                        outboxDispatcher.wake();
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.tpts.service;
+
+import com.tpts.dto.event.ParcelLifecycleEvent;
+
+/**
+ * Receives parcel lifecycle events from the outbox, after commit and off the
+ * request thread
+ *
+ * Delivery is at-least-once and in order per parcel. A subscriber that
+ * throws is retried with backoff; subscribers that already succeeded for
+ * the event are not called again. Handlers should therefore tolerate an
+ * occasional duplicate.
+ */
+public interface ParcelEventSubscriber {
+
+    /**
+     * Stable name recorded with each event's completed subscribers; do not rename lightly
+     */
+    String name();
+
+    void onEvent(ParcelLifecycleEvent event);
+}
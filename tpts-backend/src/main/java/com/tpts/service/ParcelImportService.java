@@ -0,0 +1,449 @@
+package com.tpts.service;
+
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.dto.request.CreateParcelRequest;
+import com.tpts.dto.response.ParcelImportRowResult;
+import com.tpts.dto.response.ParcelImportSummaryDTO;
+import com.tpts.entity.CompanyAdmin;
+import com.tpts.entity.Customer;
+import com.tpts.entity.Parcel;
+import com.tpts.entity.User;
+import com.tpts.exception.TptsExceptions.*;
+import com.tpts.repository.CompanyAdminRepository;
+import com.tpts.repository.CustomerRepository;
+import com.tpts.util.CsvReader;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Bulk Parcel Import
+ * Creates PENDING parcels for a customer from a CSV or JSON-lines upload,
+ * each row priced exactly like POST /api/parcels.
+ *
+ * - Rows are read, validated and priced one at a time; only the current
+ *   batch is held in memory, whatever the file size
+ * - Valid rows are inserted batch by batch, one transaction per batch, so
+ *   Hibernate sends them as JDBC batches (parcel ids come from a pooled sequence)
+ * - A bad row is reported and skipped, never aborting the file. If a batch
+ *   fails to insert, its rows are retried one at a time so only the culprits fail
+ * - Row results go to the caller after each batch, in file order
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ParcelImportService {
+
+    public enum Format {
+        CSV, JSONL
+    }
+
+    // Normalized CSV header (lowercase, letters and digits only) -> request property
+    private static final Map<String, String> CSV_COLUMNS = csvColumns();
+
+    private static final int MAX_CACHED_COMPANIES = 1000;
+
+    private final ParcelService parcelService;
+    private final CustomerRepository customerRepository;
+    private final CompanyAdminRepository companyRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${parcel.import.batch-size:100}")
+    private int batchSize;
+
+    @Value("${parcel.import.max-rows:100000}")
+    private long maxRows;
+
+    @Value("${parcel.import.max-record-chars:16384}")
+    private int maxRecordChars;
+
+    // ==========================================
+    // Import
+    // ==========================================
+
+    /**
+     * Import parcels from an upload
+     * Problems with the request itself (no customer profile, unknown default
+     * company, bad CSV header) throw before any row is read, so the caller can
+     * still answer with an error status.
+     *
+     * @param defaultCompanyId used for rows without their own companyId
+     * @param sink             receives the results of each batch, in file order
+     */
+    public ParcelImportSummaryDTO importParcels(InputStream body, Format format, Long defaultCompanyId,
+            User currentUser, Consumer<List<ParcelImportRowResult>> sink) throws IOException {
+        Customer customer = customerRepository.findByUser(currentUser)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer profile not found"));
+
+        Map<Long, Optional<CompanyAdmin>> companies = new HashMap<>();
+        if (defaultCompanyId != null) {
+            CompanyAdmin company = findCompany(defaultCompanyId, companies)
+                    .orElseThrow(() -> new ResourceNotFoundException("Company", "id", defaultCompanyId));
+            if (!company.getIsApproved()) {
+                throw new BadRequestException("Selected company is not approved for operations");
+            }
+        }
+
+        Reader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        RowSource rows = format == Format.CSV ? csvRows(reader) : jsonLineRows(reader);
+
+        List<PendingRow> batch = new ArrayList<>(batchSize);
+        long rowNumber = 0;
+        long created = 0;
+        String error = null;
+
+        while (true) {
+            SourceRow source;
+            try {
+                source = rows.next();
+            } catch (IOException e) {
+                error = "Stopped reading after row " + rowNumber + ": " + e.getMessage();
+                break;
+            }
+            if (source == null) {
+                break;
+            }
+            if (++rowNumber > maxRows) {
+                rowNumber = maxRows;
+                error = "File has more than " + maxRows + " rows; the rest was not imported";
+                break;
+            }
+
+            PendingRow row = new PendingRow(rowNumber);
+            row.parcel = toParcel(source, defaultCompanyId, customer, companies, row.errors);
+            batch.add(row);
+
+            if (batch.size() >= batchSize) {
+                created += flush(batch, customer.getId(), sink);
+            }
+        }
+        created += flush(batch, customer.getId(), sink);
+
+        log.info("Bulk import for customer {}: {} rows, {} parcels created{}",
+                customer.getId(), rowNumber, created, error != null ? " (" + error + ")" : "");
+
+        return ParcelImportSummaryDTO.builder()
+                .totalRows(rowNumber)
+                .created(created)
+                .failed(rowNumber - created)
+                .completed(error == null)
+                .error(error)
+                .build();
+    }
+
+    // ==========================================
+    // Row Handling
+    // ==========================================
+
+    /**
+     * Validate and price one row; null (with errors filled in) if it is unusable
+     */
+    private Parcel toParcel(SourceRow source, Long defaultCompanyId, Customer customer,
+            Map<Long, Optional<CompanyAdmin>> companies, List<String> errors) {
+        if (source.error() != null) {
+            errors.add(source.error());
+            return null;
+        }
+
+        CreateParcelRequest request;
+        try {
+            request = objectMapper.convertValue(source.value(), CreateParcelRequest.class);
+        } catch (IllegalArgumentException e) {
+            errors.add(describe(e));
+            return null;
+        }
+        if (request.getCompanyId() == null) {
+            request.setCompanyId(defaultCompanyId);
+        }
+
+        validator.validate(request).stream()
+                .sorted(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                .map(ConstraintViolation::getMessage)
+                .forEach(errors::add);
+        if (request.getGroupShipmentId() != null) {
+            errors.add("Group shipment parcels cannot be bulk imported");
+        }
+        if (!errors.isEmpty()) {
+            return null;
+        }
+
+        Optional<CompanyAdmin> company = findCompany(request.getCompanyId(), companies);
+        if (company.isEmpty()) {
+            errors.add("Company not found with id: " + request.getCompanyId());
+            return null;
+        }
+        if (!company.get().getIsApproved()) {
+            errors.add("Company " + request.getCompanyId() + " is not approved for operations");
+            return null;
+        }
+
+        return parcelService.newPendingParcel(request, customer, company.get(), null);
+    }
+
+    private Optional<CompanyAdmin> findCompany(Long companyId, Map<Long, Optional<CompanyAdmin>> companies) {
+        if (companies.size() >= MAX_CACHED_COMPANIES && !companies.containsKey(companyId)) {
+            companies.clear();
+        }
+        return companies.computeIfAbsent(companyId, companyRepository::findById);
+    }
+
+    /**
+     * Insert the batch's valid rows and hand all its results to the sink
+     * Returns the number of parcels created
+     */
+    private int flush(List<PendingRow> batch, Long customerId, Consumer<List<ParcelImportRowResult>> sink) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        List<PendingRow> valid = batch.stream().filter(r -> r.parcel != null).toList();
+        if (!valid.isEmpty()) {
+            try {
+                insert(valid, customerId);
+            } catch (RuntimeException e) {
+                log.warn("Bulk import batch of {} rows failed ({}); retrying row by row",
+                        valid.size(), e.getMessage());
+                for (PendingRow row : valid) {
+                    try {
+                        insert(List.of(row), customerId);
+                    } catch (RuntimeException rowError) {
+                        row.parcel = null;
+                        row.errors.add("Could not be saved: " + rootMessage(rowError));
+                    }
+                }
+            }
+        }
+
+        int created = 0;
+        List<ParcelImportRowResult> results = new ArrayList<>(batch.size());
+        for (PendingRow row : batch) {
+            if (row.parcel != null) {
+                created++;
+                results.add(ParcelImportRowResult.builder()
+                        .row(row.number)
+                        .status(ParcelImportRowResult.CREATED)
+                        .parcelId(row.parcel.getId())
+                        .trackingNumber(row.parcel.getTrackingNumber())
+                        .finalPrice(row.parcel.getFinalPrice())
+                        .build());
+            } else {
+                results.add(ParcelImportRowResult.builder()
+                        .row(row.number)
+                        .status(ParcelImportRowResult.FAILED)
+                        .errors(row.errors)
+                        .build());
+            }
+        }
+        batch.clear();
+        sink.accept(results);
+        return created;
+    }
+
+    /**
+     * Persist in one transaction; customer and company are bound as references,
+     * so nothing is loaded per row
+     */
+    private void insert(List<PendingRow> rows, Long customerId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Customer customer = entityManager.getReference(Customer.class, customerId);
+            for (PendingRow row : rows) {
+                Parcel parcel = row.parcel;
+                parcel.setId(null); // a rolled-back attempt leaves its allocated id behind
+                parcel.setCustomer(customer);
+                parcel.setCompany(entityManager.getReference(CompanyAdmin.class, parcel.getCompany().getId()));
+                entityManager.persist(parcel);
+            }
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+
+    // ==========================================
+    // Readers
+    // ==========================================
+
+    private record SourceRow(Object value, String error) {
+    }
+
+    private interface RowSource {
+        SourceRow next() throws IOException;
+    }
+
+    private static final class PendingRow {
+        final long number;
+        final List<String> errors = new ArrayList<>(0);
+        Parcel parcel;
+
+        PendingRow(long number) {
+            this.number = number;
+        }
+    }
+
+    /**
+     * CSV with a header row naming CreateParcelRequest properties
+     * (case, spaces and underscores ignored: "pickup_city" = "pickupCity")
+     */
+    private RowSource csvRows(Reader reader) throws IOException {
+        CsvReader csv = new CsvReader(reader, maxRecordChars);
+        List<String> header;
+        try {
+            header = csv.next();
+        } catch (IOException e) {
+            throw new BadRequestException("Could not read CSV header: " + e.getMessage());
+        }
+        if (header == null) {
+            throw new BadRequestException("CSV file is empty");
+        }
+
+        String[] properties = new String[header.size()];
+        List<String> unknown = new ArrayList<>();
+        for (int i = 0; i < header.size(); i++) {
+            properties[i] = CSV_COLUMNS.get(normalize(header.get(i)));
+            if (properties[i] == null) {
+                unknown.add(header.get(i));
+            }
+        }
+        if (!unknown.isEmpty()) {
+            throw new BadRequestException("Unknown CSV columns: " + String.join(", ", unknown));
+        }
+
+        return () -> {
+            List<String> record = csv.next();
+            if (record == null) {
+                return null;
+            }
+            if (record.size() != properties.length) {
+                return new SourceRow(null, "Expected " + properties.length + " columns, found " + record.size());
+            }
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i < properties.length; i++) {
+                String cell = record.get(i).trim();
+                if (!cell.isEmpty()) {
+                    values.put(properties[i], "packageType".equals(properties[i])
+                            ? cell.toUpperCase(Locale.ROOT)
+                            : cell);
+                }
+            }
+            return new SourceRow(values, null);
+        };
+    }
+
+    /**
+     * One JSON object per line, same fields as POST /api/parcels
+     * An over-long line fails only its own row
+     */
+    private RowSource jsonLineRows(Reader reader) {
+        StringBuilder line = new StringBuilder();
+        return () -> {
+            while (true) {
+                line.setLength(0);
+                boolean tooLong = false;
+                int c;
+                while ((c = reader.read()) != -1 && c != '\n') {
+                    if (line.length() < maxRecordChars) {
+                        line.append((char) c);
+                    } else {
+                        tooLong = true;
+                    }
+                }
+                if (c == -1 && line.length() == 0) {
+                    return null;
+                }
+                if (tooLong) {
+                    return new SourceRow(null, "Line exceeds " + maxRecordChars + " characters");
+                }
+
+                String json = line.toString().strip();
+                if (json.startsWith("\uFEFF")) {
+                    json = json.substring(1);
+                }
+                if (json.isEmpty()) {
+                    continue;
+                }
+                try {
+                    JsonNode node = objectMapper.readTree(json);
+                    if (!node.isObject()) {
+                        return new SourceRow(null, "Line is not a JSON object");
+                    }
+                    return new SourceRow(node, null);
+                } catch (IOException e) {
+                    return new SourceRow(null, "Malformed JSON");
+                }
+            }
+        };
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static Map<String, String> csvColumns() {
+        Map<String, String> columns = new HashMap<>();
+        for (Field field : CreateParcelRequest.class.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                columns.put(normalize(field.getName()), field.getName());
+            }
+        }
+        return Map.copyOf(columns);
+    }
+
+    private static String normalize(String header) {
+        StringBuilder sb = new StringBuilder(header.length());
+        for (int i = 0; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String describe(IllegalArgumentException e) {
+        if (e.getCause() instanceof JsonMappingException mapping && !mapping.getPath().isEmpty()) {
+            String field = mapping.getPath().get(mapping.getPath().size() - 1).getFieldName();
+            if (field != null) {
+                return "Invalid value for " + field;
+            }
+        }
+        return "Row could not be read";
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+}
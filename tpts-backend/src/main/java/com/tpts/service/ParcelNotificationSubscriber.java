@@ -0,0 +1,190 @@
+package com.tpts.service;
+
+import com.tpts.dto.event.ParcelLifecycleEvent;
+import com.tpts.entity.DeliveryAgent;
+import com.tpts.entity.Parcel;
+import com.tpts.entity.Payment;
+import com.tpts.entity.User;
+import com.tpts.repository.DeliveryAgentRepository;
+import com.tpts.repository.ParcelRepository;
+import com.tpts.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * Parcel lifecycle notifications (in-app, SMS, email) to customers,
+ * companies, agents and receivers
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ParcelNotificationSubscriber implements ParcelEventSubscriber {
+
+    private final ParcelRepository parcelRepository;
+    private final PaymentRepository paymentRepository;
+    private final DeliveryAgentRepository agentRepository;
+    private final NotificationService notificationService;
+    private final SmsService smsService;
+
+    @Override
+    public String name() {
+        return "notifications";
+    }
+
+    @Override
+    @Transactional
+    public void onEvent(ParcelLifecycleEvent event) {
+        Parcel parcel = parcelRepository.findById(event.parcelId()).orElse(null);
+        if (parcel == null) {
+            log.warn("Parcel {} no longer exists; skipping notifications", event.parcelId());
+            return;
+        }
+
+        switch (event.type()) {
+            case PAYMENT_CONFIRMED -> onPaymentConfirmed(event, parcel);
+            case AGENT_ASSIGNED -> onAgentAssigned(event, parcel);
+            case STATUS_CHANGED -> onStatusChanged(event, parcel);
+            case CANCELLED -> onCancelled(event, parcel);
+        }
+    }
+
+    // ==========================================
+    // Handlers
+    // ==========================================
+
+    private void onPaymentConfirmed(ParcelLifecycleEvent event, Parcel parcel) {
+        Payment payment = event.paymentId() != null ? paymentRepository.findById(event.paymentId()).orElse(null) : null;
+        if (payment == null) {
+            log.warn("Payment {} not found for parcel {}", event.paymentId(), parcel.getTrackingNumber());
+            return;
+        }
+        User customerUser = payment.getCustomer().getUser();
+        User companyUser = payment.getCompany().getUser();
+        String formattedAmount = formatAmount(payment.getTotalAmount());
+
+        // Payment success notifications
+        notificationService.sendPaymentSuccessToCustomer(customerUser, parcel.getTrackingNumber(), formattedAmount);
+        notificationService.sendPaymentReceivedToCompany(companyUser, parcel.getTrackingNumber(), formattedAmount);
+
+        // Order confirmation notifications (with tracking number)
+        notificationService.sendOrderConfirmation(
+                customerUser,
+                parcel.getTrackingNumber(),
+                parcel.getDeliveryAddress() + ", " + parcel.getDeliveryCity());
+
+        notificationService.sendNewShipmentToCompany(
+                companyUser,
+                parcel.getTrackingNumber(),
+                parcel.getPickupCity(),
+                parcel.getDeliveryCity());
+    }
+
+    private void onAgentAssigned(ParcelLifecycleEvent event, Parcel parcel) {
+        DeliveryAgent agent = event.agentId() != null ? agentRepository.findById(event.agentId()).orElse(null) : null;
+        if (agent == null) {
+            return;
+        }
+
+        // Send notification to agent about new assignment
+        notificationService.sendNewAssignmentToAgent(
+                agent.getUser(),
+                parcel.getTrackingNumber(),
+                parcel.getPickupAddress() + ", " + parcel.getPickupCity(),
+                parcel.getDeliveryAddress() + ", " + parcel.getDeliveryCity());
+
+        // Notify customer that agent is assigned
+        notificationService.sendAgentAssignedToCustomer(
+                parcel.getCustomer().getUser(),
+                parcel.getTrackingNumber(),
+                agent.getFullName(),
+                agent.getUser().getPhone());
+    }
+
+    private void onStatusChanged(ParcelLifecycleEvent event, Parcel parcel) {
+        // Send status notification to customer (sender)
+        notificationService.sendDeliveryUpdate(
+                parcel.getCustomer().getUser(),
+                parcel.getTrackingNumber(),
+                event.toStatus());
+
+        // Send SMS to receiver for relevant statuses
+        try {
+            String receiverPhone = parcel.getDeliveryPhone();
+            String receiverName = parcel.getDeliveryName();
+            String trackingNumber = parcel.getTrackingNumber();
+            String agentName = parcel.getAgent() != null ? parcel.getAgent().getFullName() : "Agent";
+
+            switch (event.toStatus()) {
+                case PICKED_UP:
+                    // Notify receiver that package is picked up
+                    smsService.sendPickedUpToReceiver(receiverPhone, trackingNumber, receiverName, agentName);
+                    break;
+                case IN_TRANSIT:
+                    // Notify receiver that package is in transit
+                    smsService.sendInTransitToReceiver(receiverPhone, trackingNumber, receiverName);
+                    break;
+                case OUT_FOR_DELIVERY:
+                    // Notify receiver with delivery OTP
+                    smsService.sendDeliveryNotification(receiverPhone, trackingNumber, receiverName,
+                            parcel.getDeliveryOtp());
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            // Not retried: the customer notification above already went out
+            log.warn("Failed to send SMS to receiver for parcel {}: {}", parcel.getTrackingNumber(), e.getMessage());
+        }
+    }
+
+    private void onCancelled(ParcelLifecycleEvent event, Parcel parcel) {
+        String cancellationMessage = "Order " + parcel.getTrackingNumber() + " has been cancelled by customer. Reason: "
+                + parcel.getCancellationReason();
+
+        // Notify company
+        if (parcel.getCompany() != null) {
+            String companyMessage = parcel.getGroupShipmentId() != null
+                    ? "Group order " + parcel.getTrackingNumber() + " has been cancelled by customer. Reason: "
+                            + parcel.getCancellationReason()
+                    : cancellationMessage;
+            notificationService.sendNotification(
+                    parcel.getCompany().getUser(),
+                    parcel.getGroupShipmentId() != null ? "Group Order Cancelled" : "Order Cancelled",
+                    companyMessage,
+                    "ORDER_CANCELLED",
+                    parcel.getId());
+        }
+
+        // Notify agent if was assigned
+        DeliveryAgent assignedAgent = event.agentId() != null
+                ? agentRepository.findById(event.agentId()).orElse(null)
+                : null;
+        if (assignedAgent != null) {
+            notificationService.sendNotification(
+                    assignedAgent.getUser(),
+                    "Assigned Order Cancelled",
+                    "Order " + parcel.getTrackingNumber()
+                            + " that was assigned to you has been cancelled by the customer.",
+                    "ORDER_CANCELLED",
+                    parcel.getId());
+        }
+
+        log.info("Notified company and agent of cancelled parcel {}", parcel.getTrackingNumber());
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private String formatAmount(BigDecimal amount) {
+        NumberFormat formatter = NumberFormat
+                .getCurrencyInstance(new Locale.Builder().setLanguage("en").setRegion("IN").build());
+        return formatter.format(amount);
+    }
+}
@@ -1,9 +1,12 @@
 package com.tpts.service;
 
+import com.tpts.dto.event.ParcelLifecycleEvent;
 import com.tpts.dto.request.AssignAgentRequest;
 import com.tpts.dto.request.CreateParcelRequest;
+import com.tpts.dto.request.ParcelListFilter;
 import com.tpts.dto.request.UpdateParcelStatusRequest;
 import com.tpts.dto.response.AgentPublicDTO;
+import com.tpts.dto.response.CursorPageDTO;
 import com.tpts.dto.response.ParcelDTO;
 import com.tpts.dto.response.ParcelTrackingDTO;
 import com.tpts.entity.*;
@@ -13,11 +16,15 @@ import com.tpts.repository.CustomerRepository;
 import com.tpts.repository.DeliveryAgentRepository;
 import com.tpts.repository.GroupShipmentRepository;
 import com.tpts.repository.ParcelRepository;
-import com.tpts.repository.PaymentRepository;
-import com.tpts.repository.RatingRepository;
+import com.tpts.repository.ParcelSpecifications;
+import com.tpts.repository.ParcelSpecifications.Owner;
+import com.tpts.util.KeysetCursor;
 import com.tpts.util.OtpUtil;
+import com.tpts.util.TrackingCodeGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -27,7 +34,6 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Service for Parcel operations
@@ -43,11 +49,19 @@ public class ParcelService {
     private final DeliveryAgentRepository agentRepository;
     private final GroupShipmentRepository groupShipmentRepository;
     private final NotificationService notificationService;
-    private final SmsService smsService;
-    private final RatingRepository ratingRepository;
-    private final PaymentRepository paymentRepository;
     private final OtpUtil otpUtil;
-    private final WalletService walletService;
+    private final TrackingCodeGenerator trackingCodeGenerator;
+    private final AgentLocationStore agentLocationStore;
+    private final AgentParcelIndex agentParcelIndex;
+    private final TrackingProjectionCache trackingProjectionCache;
+    private final ParcelDtoAssembler parcelDtoAssembler;
+    private final ParcelEventOutbox parcelEventOutbox;
+
+    @Value("${parcel.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${parcel.page.max-size:200}")
+    private int maxPageSize;
 
     // ==========================================
     // Create Parcel
@@ -71,8 +85,36 @@ public class ParcelService {
             throw new BadRequestException("Selected company is not approved for operations");
         }
 
+        GroupShipment group = request.getGroupShipmentId() != null
+                ? groupShipmentRepository.findById(request.getGroupShipmentId()).orElse(null)
+                : null;
+
+        Parcel parcel = newPendingParcel(request, customer, company, group);
+        String trackingNumber = parcel.getTrackingNumber();
+        String pickupOtp = parcel.getPickupOtp();
+        String deliveryOtp = parcel.getDeliveryOtp();
+
+        parcel = parcelRepository.save(parcel);
+
+        log.info("Created parcel {} for customer {} (PENDING - awaiting payment)", trackingNumber, customer.getId());
+
+        // NOTE: Notifications are sent in confirmParcel() after payment is complete
+
+        log.info("Pickup OTP for {}: {}", trackingNumber, pickupOtp);
+        log.info("Delivery OTP for {}: {}", trackingNumber, deliveryOtp);
+
+        return mapToDTO(parcel);
+    }
+
+    /**
+     * Build an unsaved PENDING parcel: tracking number, OTPs, pricing
+     * (company rates, group discount, 18% GST) and estimated delivery.
+     * Shared by single creation and bulk import.
+     */
+    Parcel newPendingParcel(CreateParcelRequest request, Customer customer, CompanyAdmin company,
+            GroupShipment group) {
         // Generate unique tracking number
-        String trackingNumber = generateUniqueTrackingNumber();
+        String trackingNumber = trackingCodeGenerator.nextTrackingNumber();
 
         // Generate OTPs for pickup and delivery
         String pickupOtp = otpUtil.generateOtp();
@@ -87,15 +129,11 @@ public class ParcelService {
         // Apply group discount if this is a group shipment
         BigDecimal discountAmount = BigDecimal.ZERO;
         BigDecimal discountPercentage = BigDecimal.ZERO;
-        if (request.getGroupShipmentId() != null) {
-            GroupShipment group = groupShipmentRepository.findById(request.getGroupShipmentId())
-                    .orElse(null);
-            if (group != null && group.getDiscountPercentage() != null) {
-                discountPercentage = group.getDiscountPercentage();
-                discountAmount = basePrice.multiply(discountPercentage)
-                        .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-                log.info("Applied {}% group discount: ₹{}", discountPercentage, discountAmount);
-            }
+        if (group != null && group.getDiscountPercentage() != null) {
+            discountPercentage = group.getDiscountPercentage();
+            discountAmount = basePrice.multiply(discountPercentage)
+                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+            log.info("Applied {}% group discount: ₹{}", discountPercentage, discountAmount);
         }
 
         BigDecimal priceAfterDiscount = basePrice.subtract(discountAmount);
@@ -107,8 +145,7 @@ public class ParcelService {
         LocalDateTime estimatedDelivery = calculateEstimatedDelivery(
                 request.getPickupCity(), request.getDeliveryCity());
 
-        // Create parcel
-        Parcel parcel = Parcel.builder()
+        return Parcel.builder()
                 .trackingNumber(trackingNumber)
                 .customer(customer)
                 .company(company)
@@ -148,17 +185,6 @@ public class ParcelService {
                 .deliveryOtp(deliveryOtp)
                 .estimatedDelivery(estimatedDelivery)
                 .build();
-
-        parcel = parcelRepository.save(parcel);
-
-        log.info("Created parcel {} for customer {} (PENDING - awaiting payment)", trackingNumber, customer.getId());
-
-        // NOTE: Notifications are sent in confirmParcel() after payment is complete
-
-        log.info("Pickup OTP for {}: {}", trackingNumber, pickupOtp);
-        log.info("Delivery OTP for {}: {}", trackingNumber, deliveryOtp);
-
-        return mapToDTO(parcel);
     }
 
     // ==========================================
@@ -209,24 +235,27 @@ public class ParcelService {
      * Used by WebSocket and public tracking page
      */
     public ParcelTrackingDTO getPublicTracking(String trackingNumber, String deliveryPhone) {
-        Parcel parcel = parcelRepository.findByTrackingNumber(trackingNumber)
-                .orElseThrow(() -> new ResourceNotFoundException("Parcel", "trackingNumber", trackingNumber));
+        TrackingProjectionCache.TrackingView view = trackingProjectionCache.get(trackingNumber, this::loadTrackingDTO);
+        if (view == null) {
+            throw new ResourceNotFoundException("Parcel", "trackingNumber", trackingNumber);
+        }
+        ParcelTrackingDTO tracking = view.tracking();
 
         // Optional: Verify delivery phone for security (if provided)
         if (deliveryPhone != null && !deliveryPhone.isEmpty()) {
             String last4 = deliveryPhone.length() >= 4 ? deliveryPhone.substring(deliveryPhone.length() - 4)
                     : deliveryPhone;
 
-            String parcelLast4 = parcel.getDeliveryPhone().length() >= 4
-                    ? parcel.getDeliveryPhone().substring(parcel.getDeliveryPhone().length() - 4)
-                    : parcel.getDeliveryPhone();
+            String parcelLast4 = tracking.getDeliveryPhone().length() >= 4
+                    ? tracking.getDeliveryPhone().substring(tracking.getDeliveryPhone().length() - 4)
+                    : tracking.getDeliveryPhone();
 
             if (!last4.equals(parcelLast4)) {
                 throw new BadRequestException("Invalid delivery phone number");
             }
         }
 
-        return mapToTrackingDTO(parcel);
+        return tracking;
     }
 
     /**
@@ -247,19 +276,38 @@ public class ParcelService {
 
     /**
      * Public tracking - No authentication required
-     * Uses tracking number + last 4 digits of receiver's phone
+     * Uses tracking number + last 4 digits of receiver's phone.
+     * Served from the tracking projection cache; the returned ETag lets
+     * clients revalidate with If-None-Match.
      */
-    public ParcelTrackingDTO trackParcel(String trackingNumber, String phoneLastFour) {
+    public TrackingProjectionCache.TrackingView trackParcel(String trackingNumber, String phoneLastFour) {
         // Validate phone last four digits
         if (phoneLastFour == null || phoneLastFour.length() != 4 || !phoneLastFour.matches("\\d{4}")) {
             throw new BadRequestException("Please provide valid last 4 digits of receiver's phone number");
         }
+        // A failed check character is a typo; no need to look it up
+        if (TrackingCodeGenerator.isMistyped(trackingNumber)) {
+            throw new ResourceNotFoundException(
+                    "Parcel not found. Please check tracking number and phone digits.");
+        }
+
+        TrackingProjectionCache.TrackingView view = trackingProjectionCache.get(trackingNumber, this::loadTrackingDTO);
+        String deliveryPhone = view != null ? view.tracking().getDeliveryPhone() : null;
+        if (deliveryPhone == null || !deliveryPhone.endsWith(phoneLastFour)) {
+            throw new ResourceNotFoundException(
+                    "Parcel not found. Please check tracking number and phone digits.");
+        }
 
-        Parcel parcel = parcelRepository.findByTrackingNumberAndPhoneLastFour(trackingNumber, phoneLastFour)
-                .orElseThrow(() -> new ResourceNotFoundException(
-                        "Parcel not found. Please check tracking number and phone digits."));
+        return view;
+    }
 
-        return mapToTrackingDTO(parcel);
+    /**
+     * Build the public tracking view from the database (projection cache miss)
+     */
+    private ParcelTrackingDTO loadTrackingDTO(String trackingNumber) {
+        return parcelRepository.findForTrackingByTrackingNumber(trackingNumber)
+                .map(this::mapToTrackingDTO)
+                .orElse(null);
     }
 
     // ==========================================
@@ -275,7 +323,7 @@ public class ParcelService {
 
         List<Parcel> parcels = parcelRepository.findByCustomerIdOrderByCreatedAtDesc(customer.getId());
 
-        return parcels.stream().map(this::mapToDTO).collect(Collectors.toList());
+        return parcelDtoAssembler.toDTOs(parcels);
     }
 
     /**
@@ -291,7 +339,18 @@ public class ParcelService {
 
         List<Parcel> parcels = parcelRepository.findByCustomerIdAndStatusIn(customer.getId(), activeStatuses);
 
-        return parcels.stream().map(this::mapToDTO).collect(Collectors.toList());
+        return parcelDtoAssembler.toDTOs(parcels);
+    }
+
+    /**
+     * Get one page of customer's parcels
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ParcelDTO> getCustomerParcelPage(User currentUser, ParcelListFilter filter) {
+        Customer customer = customerRepository.findByUser(currentUser)
+                .orElseThrow(() -> new ResourceNotFoundException("Customer profile not found"));
+
+        return findParcelPage(Owner.CUSTOMER, customer.getId(), filter);
     }
 
     // ==========================================
@@ -307,7 +366,18 @@ public class ParcelService {
 
         List<Parcel> parcels = parcelRepository.findByCompanyIdOrderByCreatedAtDesc(company.getId());
 
-        return parcels.stream().map(this::mapToDTO).collect(Collectors.toList());
+        return parcelDtoAssembler.toDTOs(parcels);
+    }
+
+    /**
+     * Get one page of company parcels
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ParcelDTO> getCompanyParcelPage(User currentUser, ParcelListFilter filter) {
+        CompanyAdmin company = companyRepository.findByUser(currentUser)
+                .orElseThrow(() -> new ResourceNotFoundException("Company profile not found"));
+
+        return findParcelPage(Owner.COMPANY, company.getId(), filter);
     }
 
     /**
@@ -319,7 +389,7 @@ public class ParcelService {
 
         List<Parcel> parcels = parcelRepository.findParcelsNeedingAssignment(company.getId());
 
-        return parcels.stream().map(this::mapToDTO).collect(Collectors.toList());
+        return parcelDtoAssembler.toDTOs(parcels);
     }
 
     // ==========================================
@@ -335,7 +405,7 @@ public class ParcelService {
 
         List<Parcel> parcels = parcelRepository.findActiveDeliveriesForAgent(agent.getId());
 
-        return parcels.stream().map(this::mapToDTO).collect(Collectors.toList());
+        return parcelDtoAssembler.toDTOs(parcels);
     }
 
     /**
@@ -347,7 +417,70 @@ public class ParcelService {
 
         List<Parcel> parcels = parcelRepository.findByAgentIdOrderByCreatedAtDesc(agent.getId());
 
-        return parcels.stream().map(this::mapToDTO).collect(Collectors.toList());
+        return parcelDtoAssembler.toDTOs(parcels);
+    }
+
+    /**
+     * Get one page of agent's deliveries
+     */
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ParcelDTO> getAgentParcelPage(User currentUser, ParcelListFilter filter) {
+        DeliveryAgent agent = agentRepository.findByUser(currentUser)
+                .orElseThrow(() -> new ResourceNotFoundException("Agent profile not found"));
+
+        return findParcelPage(Owner.AGENT, agent.getId(), filter);
+    }
+
+    /**
+     * Keyset page over (created_at DESC, id DESC) for one owner
+     * Only the filters that are set go into the SQL; one extra row is fetched to tell if there is a next page.
+     */
+    private CursorPageDTO<ParcelDTO> findParcelPage(Owner owner, Long ownerId, ParcelListFilter filter) {
+        int limit = filter.getLimit() != null ? filter.getLimit() : defaultPageSize;
+        if (limit < 1 || limit > maxPageSize) {
+            throw new BadRequestException("Limit must be between 1 and " + maxPageSize);
+        }
+        if (filter.getFrom() != null && filter.getTo() != null && filter.getFrom().isAfter(filter.getTo())) {
+            throw new BadRequestException("'from' must not be after 'to'");
+        }
+
+        KeysetCursor cursor = null;
+        if (filter.getCursor() != null && !filter.getCursor().isBlank()) {
+            try {
+                cursor = KeysetCursor.decode(filter.getCursor());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        String city = filter.getCity() != null && !filter.getCity().isBlank() ? filter.getCity().trim() : null;
+
+        Specification<Parcel> spec = ParcelSpecifications.page(owner, ownerId, filter.getStatus(),
+                filter.getFrom() != null ? filter.getFrom().atStartOfDay() : null,
+                filter.getTo() != null ? filter.getTo().plusDays(1).atStartOfDay() : null,
+                city,
+                cursor != null ? cursor.createdAt() : null,
+                cursor != null ? cursor.id() : null);
+        List<Parcel> rows = parcelRepository.findBy(spec,
+                q -> q.sortBy(ParcelSpecifications.NEWEST_FIRST)
+                        .project("customer", "company", "agent", "agent.user") // fetched for the DTOs
+                        .limit(limit + 1)
+                        .all());
+
+        boolean hasMore = rows.size() > limit;
+        List<Parcel> page = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Parcel last = page.get(page.size() - 1);
+            nextCursor = new KeysetCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return CursorPageDTO.<ParcelDTO>builder()
+                .items(parcelDtoAssembler.toDTOs(page))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .limit(limit)
+                .build();
     }
 
     // ==========================================
@@ -385,11 +518,13 @@ public class ParcelService {
         }
 
         // Assign agent
+        ParcelStatus previousStatus = parcel.getStatus();
         parcel.setAgent(agent);
         parcel.setStatus(ParcelStatus.ASSIGNED);
         parcel.setAssignedAt(LocalDateTime.now());
 
         parcel = parcelRepository.save(parcel);
+        agentParcelIndex.onParcelChanged(parcel);
 
         // Update agent's current orders count
         agent.setCurrentOrdersCount(agent.getCurrentOrdersCount() + 1);
@@ -397,19 +532,9 @@ public class ParcelService {
 
         log.info("Assigned agent {} to parcel {}", agent.getId(), parcel.getTrackingNumber());
 
-        // Send notification to agent about new assignment
-        notificationService.sendNewAssignmentToAgent(
-                agent.getUser(),
-                parcel.getTrackingNumber(),
-                parcel.getPickupAddress() + ", " + parcel.getPickupCity(),
-                parcel.getDeliveryAddress() + ", " + parcel.getDeliveryCity());
-
-        // Notify customer that agent is assigned
-        notificationService.sendAgentAssignedToCustomer(
-                parcel.getCustomer().getUser(),
-                parcel.getTrackingNumber(),
-                agent.getFullName(),
-                agent.getUser().getPhone());
+        // Agent and customer notifications go out after commit
+        parcelEventOutbox.record(
+                ParcelLifecycleEvent.of(ParcelLifecycleEvent.Type.AGENT_ASSIGNED, parcel, previousStatus));
 
         return mapToDTO(parcel);
     }
@@ -474,9 +599,7 @@ public class ParcelService {
                 CompanyAdmin company = parcel.getCompany();
                 company.setTotalDeliveries(company.getTotalDeliveries() + 1);
                 companyRepository.save(company);
-
-                // Process earnings - creates Earning record and updates wallets
-                walletService.processDeliveryEarnings(parcel);
+                // Earnings are processed from the STATUS_CHANGED event
                 break;
 
             case CANCELLED:
@@ -503,9 +626,7 @@ public class ParcelService {
                     agent.setCurrentOrdersCount(Math.max(0, agent.getCurrentOrdersCount() - 1));
                     agentRepository.save(agent);
                 }
-
-                // Reverse any earnings that were credited for this parcel
-                walletService.reverseEarningsForParcel(parcel);
+                // Earnings are reversed from the STATUS_CHANGED event
                 break;
 
             default:
@@ -514,43 +635,13 @@ public class ParcelService {
 
         parcel.setStatus(newStatus);
         parcel = parcelRepository.save(parcel);
+        agentParcelIndex.onParcelChanged(parcel);
 
         log.info("Updated parcel {} status to {}", parcel.getTrackingNumber(), newStatus);
 
-        // Send status notification to customer (sender)
-        notificationService.sendDeliveryUpdate(
-                parcel.getCustomer().getUser(),
-                parcel.getTrackingNumber(),
-                newStatus);
-
-        // Send SMS to receiver for relevant statuses
-        try {
-            String receiverPhone = parcel.getDeliveryPhone();
-            String receiverName = parcel.getDeliveryName();
-            String trackingNumber = parcel.getTrackingNumber();
-            String agentName = parcel.getAgent() != null ? parcel.getAgent().getFullName() : "Agent";
-
-            switch (newStatus) {
-                case PICKED_UP:
-                    // Notify receiver that package is picked up
-                    smsService.sendPickedUpToReceiver(receiverPhone, trackingNumber, receiverName, agentName);
-                    break;
-                case IN_TRANSIT:
-                    // Notify receiver that package is in transit
-                    smsService.sendInTransitToReceiver(receiverPhone, trackingNumber, receiverName);
-                    break;
-                case OUT_FOR_DELIVERY:
-                    // Notify receiver with delivery OTP
-                    smsService.sendDeliveryNotification(receiverPhone, trackingNumber, receiverName,
-                            parcel.getDeliveryOtp());
-                    break;
-                default:
-                    break;
-            }
-        } catch (Exception e) {
-            // Log but don't fail the status update if SMS fails
-            log.warn("Failed to send SMS to receiver for parcel {}: {}", parcel.getTrackingNumber(), e.getMessage());
-        }
+        // Customer update, receiver SMS, earnings and live tracking push run after commit
+        parcelEventOutbox.record(
+                ParcelLifecycleEvent.of(ParcelLifecycleEvent.Type.STATUS_CHANGED, parcel, currentStatus));
 
         return mapToDTO(parcel);
     }
@@ -643,6 +734,7 @@ public class ParcelService {
 
         // Store agent reference before clearing
         DeliveryAgent assignedAgent = parcel.getAgent();
+        ParcelStatus previousStatus = parcel.getStatus();
 
         parcel.setStatus(ParcelStatus.CANCELLED);
         parcel.setCancelledAt(LocalDateTime.now());
@@ -665,41 +757,14 @@ public class ParcelService {
             });
         }
 
-        // Reverse any earnings that were credited for this parcel
-        walletService.reverseEarningsForParcel(parcel);
-
         parcel = parcelRepository.save(parcel);
+        agentParcelIndex.onParcelChanged(parcel);
 
-        // Send notifications
-        String cancellationMessage = "Order " + parcel.getTrackingNumber() + " has been cancelled by customer. Reason: "
-                + parcel.getCancellationReason();
-
-        // Notify company
-        if (parcel.getCompany() != null) {
-            String companyMessage = parcel.getGroupShipmentId() != null
-                    ? "Group order " + parcel.getTrackingNumber() + " has been cancelled by customer. Reason: "
-                            + parcel.getCancellationReason()
-                    : cancellationMessage;
-            notificationService.sendNotification(
-                    parcel.getCompany().getUser(),
-                    parcel.getGroupShipmentId() != null ? "Group Order Cancelled" : "Order Cancelled",
-                    companyMessage,
-                    "ORDER_CANCELLED",
-                    parcel.getId());
-        }
-
-        // Notify agent if was assigned
-        if (assignedAgent != null) {
-            notificationService.sendNotification(
-                    assignedAgent.getUser(),
-                    "Assigned Order Cancelled",
-                    "Order " + parcel.getTrackingNumber()
-                            + " that was assigned to you has been cancelled by the customer.",
-                    "ORDER_CANCELLED",
-                    parcel.getId());
-        }
+        // Earnings reversal and company/agent notifications run after commit
+        parcelEventOutbox.record(
+                ParcelLifecycleEvent.of(ParcelLifecycleEvent.Type.CANCELLED, parcel, previousStatus));
 
-        log.info("Cancelled parcel {} - notified company and agent", parcel.getTrackingNumber());
+        log.info("Cancelled parcel {}", parcel.getTrackingNumber());
 
         return mapToDTO(parcel);
     }
@@ -708,19 +773,6 @@ public class ParcelService {
     // Helper Methods
     // ==========================================
 
-    private String generateUniqueTrackingNumber() {
-        String trackingNumber;
-        int attempts = 0;
-        do {
-            trackingNumber = otpUtil.generateTrackingNumber();
-            attempts++;
-            if (attempts > 10) {
-                throw new RuntimeException("Failed to generate unique tracking number");
-            }
-        } while (parcelRepository.existsByTrackingNumber(trackingNumber));
-        return trackingNumber;
-    }
-
     private BigDecimal calculatePrice(CompanyAdmin company, BigDecimal distanceKm, BigDecimal weightKg) {
         BigDecimal distancePrice = company.getBaseRatePerKm().multiply(distanceKm);
         BigDecimal weightPrice = company.getBaseRatePerKg().multiply(weightKg);
@@ -818,110 +870,7 @@ public class ParcelService {
     // ==========================================
 
     public ParcelDTO mapToDTO(Parcel parcel) {
-        return ParcelDTO.builder()
-                .id(parcel.getId())
-                .trackingNumber(parcel.getTrackingNumber())
-                .customerId(parcel.getCustomer().getId())
-                .customerName(parcel.getCustomer().getFullName())
-                .companyId(parcel.getCompany().getId())
-                .companyName(parcel.getCompany().getCompanyName())
-                .agentId(parcel.getAgent() != null ? parcel.getAgent().getId() : null)
-                .agentName(parcel.getAgent() != null ? parcel.getAgent().getFullName() : null)
-                .groupShipmentId(parcel.getGroupShipmentId())
-                // Pickup
-                .pickupName(parcel.getPickupName())
-                .pickupPhone(parcel.getPickupPhone())
-                .pickupAddress(parcel.getPickupAddress())
-                .pickupCity(parcel.getPickupCity())
-                .pickupState(parcel.getPickupState())
-                .pickupPincode(parcel.getPickupPincode())
-                .pickupLatitude(parcel.getPickupLatitude())
-                .pickupLongitude(parcel.getPickupLongitude())
-                // Delivery
-                .deliveryName(parcel.getDeliveryName())
-                .deliveryPhone(parcel.getDeliveryPhone())
-                .deliveryAddress(parcel.getDeliveryAddress())
-                .deliveryCity(parcel.getDeliveryCity())
-                .deliveryState(parcel.getDeliveryState())
-                .deliveryPincode(parcel.getDeliveryPincode())
-                .deliveryLatitude(parcel.getDeliveryLatitude())
-                .deliveryLongitude(parcel.getDeliveryLongitude())
-                // Package
-                .packageType(parcel.getPackageType())
-                .weightKg(parcel.getWeightKg())
-                .dimensions(parcel.getDimensions())
-                .isFragile(parcel.getIsFragile())
-                .specialInstructions(parcel.getSpecialInstructions())
-                // Pricing
-                .distanceKm(parcel.getDistanceKm())
-                .basePrice(parcel.getBasePrice())
-                .discountAmount(parcel.getDiscountAmount())
-                .finalPrice(parcel.getFinalPrice())
-                // Calculate tax and total (18% GST)
-                .taxAmount(parcel.getFinalPrice() != null
-                        ? parcel.getFinalPrice().multiply(new BigDecimal("0.18")).setScale(2,
-                                java.math.RoundingMode.HALF_UP)
-                        : BigDecimal.ZERO)
-                .totalAmount(parcel.getFinalPrice() != null
-                        ? parcel.getFinalPrice().multiply(new BigDecimal("1.18")).setScale(2,
-                                java.math.RoundingMode.HALF_UP)
-                        : BigDecimal.ZERO)
-                // Balance Payment (for partial groups)
-                .balanceAmount(parcel.getBalanceAmount())
-                .balancePaid(parcel.getBalancePaid())
-                .balancePaymentMethod(parcel.getBalancePaymentMethod())
-                .balancePaidAt(parcel.getBalancePaidAt())
-                .balanceCashPhotoUrl(parcel.getBalanceCashPhotoUrl())
-                .originalDiscountPercentage(parcel.getOriginalDiscountPercentage())
-                .effectiveDiscountPercentage(parcel.getEffectiveDiscountPercentage())
-                // Status
-                .status(parcel.getStatus())
-                .paymentStatus(parcel.getPaymentStatus())
-                // Get payment method from Payment entity (use first/most recent payment since
-                // balance payments can create multiple records)
-                .paymentMethod(paymentRepository.findFirstByParcelIdOrderByCreatedAtDesc(parcel.getId())
-                        .map(p -> p.getPaymentMethod() != null ? p.getPaymentMethod().name() : "RAZORPAY")
-                        .orElse(null))
-                .pickupOtp(parcel.getPickupOtp())
-                .deliveryOtp(parcel.getDeliveryOtp())
-                .pickupPhotoUrl(parcel.getPickupPhotoUrl())
-                .deliveryPhotoUrl(parcel.getDeliveryPhotoUrl())
-                .deliveryNotes(parcel.getDeliveryNotes())
-                // Timestamps
-                .estimatedDelivery(parcel.getEstimatedDelivery())
-                .confirmedAt(parcel.getConfirmedAt())
-                .assignedAt(parcel.getAssignedAt())
-                .pickedUpAt(parcel.getPickedUpAt())
-                .deliveredAt(parcel.getDeliveredAt())
-                .cancelledAt(parcel.getCancelledAt())
-                .cancellationReason(parcel.getCancellationReason())
-                .createdAt(parcel.getCreatedAt())
-                .updatedAt(parcel.getUpdatedAt())
-                // Rating status
-                .hasRated(ratingRepository.existsByParcelId(parcel.getId()))
-                .hasRatedPickupAgent(ratingRepository.existsPickupAgentRatingByParcelId(parcel.getId()))
-                .hasRatedDeliveryAgent(ratingRepository.existsDeliveryAgentRatingByParcelId(parcel.getId()))
-                .hasRatedCompany(ratingRepository.existsCompanyRatedByParcelId(parcel.getId()))
-                // Agent details for tracking
-                .agentPhone(parcel.getAgent() != null ? parcel.getAgent().getUser().getPhone() : null)
-                .agentVehicleType(parcel.getAgent() != null && parcel.getAgent().getVehicleType() != null
-                        ? parcel.getAgent().getVehicleType().name()
-                        : null)
-                .agentVehicleNumber(parcel.getAgent() != null ? parcel.getAgent().getVehicleNumber() : null)
-                // Agent rating - fetch from rating repository
-                .agentRating(
-                        parcel.getAgent() != null ? ratingRepository.getAverageAgentRating(parcel.getAgent().getId())
-                                : null)
-                .agentTotalRatings(
-                        parcel.getAgent() != null && ratingRepository.countByAgentId(parcel.getAgent().getId()) != null
-                                ? ratingRepository.countByAgentId(parcel.getAgent().getId()).intValue()
-                                : 0)
-                // Company rating - fetch from rating repository
-                .companyRating(ratingRepository.getAverageCompanyRating(parcel.getCompany().getId()))
-                .companyTotalRatings(ratingRepository.countByCompanyId(parcel.getCompany().getId()) != null
-                        ? ratingRepository.countByCompanyId(parcel.getCompany().getId()).intValue()
-                        : 0)
-                .build();
+        return parcelDtoAssembler.toDTO(parcel);
     }
 
     public ParcelTrackingDTO mapToTrackingDTO(Parcel parcel) {
@@ -932,6 +881,7 @@ public class ParcelService {
         AgentPublicDTO agentDTO = null;
         if (parcel.getAgent() != null) {
             DeliveryAgent agent = parcel.getAgent();
+            AgentLocationStore.AgentPosition position = agentLocationStore.get(agent.getId());
             agentDTO = AgentPublicDTO.builder()
                     .id(agent.getId())
                     .fullName(agent.getFullName())
@@ -940,8 +890,8 @@ public class ParcelService {
                     .vehicleNumber(agent.getVehicleNumber())
                     .ratingAvg(agent.getRatingAvg())
                     .totalDeliveries(agent.getTotalDeliveries())
-                    .currentLatitude(agent.getCurrentLatitude())
-                    .currentLongitude(agent.getCurrentLongitude())
+                    .currentLatitude(position != null ? position.latitudeDecimal() : agent.getCurrentLatitude())
+                    .currentLongitude(position != null ? position.longitudeDecimal() : agent.getCurrentLongitude())
                     .build();
         }
 
@@ -4,6 +4,7 @@ import com.razorpay.Order;
 import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
 import com.razorpay.Refund;
+import com.tpts.dto.event.ParcelLifecycleEvent;
 import com.tpts.dto.request.CreateParcelRequest;
 import com.tpts.dto.request.CreatePaymentRequest;
 import com.tpts.dto.request.InitiateOrderRequest;
@@ -17,6 +18,7 @@ import com.tpts.exception.TptsExceptions.*;
 import com.tpts.repository.*;
 import com.tpts.util.OtpUtil;
 import com.tpts.util.QRCodeGenerator;
+import com.tpts.util.TrackingCodeGenerator;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -52,6 +54,8 @@ public class PaymentService {
     private final WalletService walletService;
     private final NotificationService notificationService;
     private final OtpUtil otpUtil;
+    private final TrackingCodeGenerator trackingCodeGenerator;
+    private final ParcelEventOutbox parcelEventOutbox;
 
     @Value("${razorpay.key.id}")
     private String razorpayKeyId;
@@ -432,44 +436,8 @@ public class PaymentService {
             // not when payment is confirmed. See ParcelService.updateStatus() for DELIVERED
             // case.
 
-            try {
-                walletService.processDeliveryEarnings(parcel);
-                log.info("Earnings processed for parcel {}", parcel.getTrackingNumber());
-            } catch (Exception e) {
-                log.error("Failed to process earnings split: {}", e.getMessage());
-            }
-
-            try {
-                User customerUser = payment.getCustomer().getUser();
-                User companyUser = payment.getCompany().getUser();
-                String formattedAmount = formatAmount(payment.getTotalAmount());
-
-                // Payment success notifications
-                notificationService.sendPaymentSuccessToCustomer(
-                        customerUser,
-                        parcel.getTrackingNumber(),
-                        formattedAmount);
-
-                notificationService.sendPaymentReceivedToCompany(
-                        companyUser,
-                        parcel.getTrackingNumber(),
-                        formattedAmount);
-
-                // Order confirmation notifications (with tracking number)
-                notificationService.sendOrderConfirmation(
-                        customerUser,
-                        parcel.getTrackingNumber(),
-                        parcel.getDeliveryAddress() + ", " + parcel.getDeliveryCity());
-
-                notificationService.sendNewShipmentToCompany(
-                        companyUser,
-                        parcel.getTrackingNumber(),
-                        parcel.getPickupCity(),
-                        parcel.getDeliveryCity());
-
-            } catch (Exception e) {
-                log.error("Failed to send payment notification: {}", e.getMessage());
-            }
+            // Earnings split, payment/order notifications and live tracking push run after commit
+            parcelEventOutbox.record(ParcelLifecycleEvent.paymentConfirmed(parcel, payment.getId()));
         }
 
         log.info("Payment verified: ID={}, Razorpay Payment={}", payment.getId(), request.getRazorpayPaymentId());
@@ -485,7 +453,7 @@ public class PaymentService {
             JSONObject json = new JSONObject(payment.getMetadata());
 
             // Generate tracking number and OTPs
-            String trackingNumber = generateUniqueTrackingNumber();
+            String trackingNumber = trackingCodeGenerator.nextTrackingNumber();
             String pickupOtp = otpUtil.generateOtp();
             String deliveryOtp = otpUtil.generateOtp();
 
@@ -583,22 +551,6 @@ public class PaymentService {
         }
     }
 
-    /**
-     * Generate unique tracking number
-     */
-    private String generateUniqueTrackingNumber() {
-        String trackingNumber;
-        int attempts = 0;
-        do {
-            trackingNumber = otpUtil.generateTrackingNumber();
-            attempts++;
-            if (attempts > 10) {
-                throw new RuntimeException("Failed to generate unique tracking number");
-            }
-        } while (parcelRepository.existsByTrackingNumber(trackingNumber));
-        return trackingNumber;
-    }
-
     @Transactional
     public PaymentDTO markPaymentFailed(String razorpayOrderId, String errorCode, String errorDescription) {
         Payment payment = paymentRepository.findByRazorpayOrderId(razorpayOrderId)
@@ -0,0 +1,524 @@
+package com.tpts.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-node pub/sub over a TCP mesh between application nodes
+ *
+ * Every node listens on tracking.pubsub.listen-port and keeps one outbound
+ * connection per configured peer (tracking.pubsub.peers=host:port,...).
+ * A published message is delivered to this node's subscribers, framed once
+ * and queued to every peer; a node never re-forwards what it receives, so
+ * each message crosses each link at most once. Peers deliver received
+ * frames to their own subscribers only.
+ *
+ * Tracking updates are superseded by the next ping, so delivery is best
+ * effort: a full peer queue drops the frame, and a broken link drops its
+ * backlog and reconnects.
+ *
+ * The port is meant for the private network and listens on loopback unless
+ * tracking.pubsub.bind-address says otherwise. Listening beyond loopback or
+ * connecting to peers requires tracking.pubsub.secret: peers prove they know
+ * it with an HMAC over a per-connection nonce, so it never crosses the wire.
+ * Frames themselves are not encrypted. Inbound connections are capped, must
+ * finish the handshake within tracking.pubsub.handshake-timeout-ms, and may
+ * only publish to the tracking topics.
+ *
+ * Wire format, per connection: the listener sends a 16-byte nonce, the
+ * connector answers (UTF nodeId, 32-byte HMAC-SHA256(secret, nonce + nodeId)),
+ * then frames of [int length][UTF destination][UTF contentType][payload].
+ */
+@Component
+@ConditionalOnProperty(name = "tracking.pubsub.mode", havingValue = "peer")
+@RequiredArgsConstructor
+@Slf4j
+public class PeerTrackingPubSub implements TrackingPubSub {
+
+    private static final int MAX_FRAME_BYTES = 1 << 20;
+    private static final int BATCH_FLUSH_FRAMES = 256;
+    private static final int NONCE_BYTES = 16;
+    private static final int MAC_BYTES = 32;
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    // Destinations a peer may publish to; everything else closes the connection
+    static final List<String> ALLOWED_PREFIXES = List.of(
+            "/topic/tracking/", "/topic/agent-location/", "/topic/group/");
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    @Value("${tracking.pubsub.node-id:}")
+    private String nodeId;
+
+    @Value("${tracking.pubsub.bind-address:127.0.0.1}")
+    private String bindAddress;
+
+    @Value("${tracking.pubsub.listen-port:9601}")
+    private int listenPort;
+
+    @Value("${tracking.pubsub.peers:}")
+    private String peerList;
+
+    @Value("${tracking.pubsub.secret:}")
+    private String secret;
+
+    @Value("${tracking.pubsub.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${tracking.pubsub.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${tracking.pubsub.reconnect-delay-ms:2000}")
+    private long reconnectDelayMs;
+
+    @Value("${tracking.pubsub.handshake-timeout-ms:5000}")
+    private int handshakeTimeoutMs;
+
+    @Value("${tracking.pubsub.max-inbound-connections:32}")
+    private int maxInboundConnections;
+
+    private final List<PeerLink> links = new ArrayList<>();
+    private final Set<Socket> inbound = ConcurrentHashMap.newKeySet();
+    private final Map<String, LongAdder> receivedByNode = new ConcurrentHashMap<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejectedHandshakes = new LongAdder();
+    private final LongAdder malformedFrames = new LongAdder();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder rejectedDestinations = new LongAdder();
+    private final SecureRandom random = new SecureRandom();
+
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+
+    // ==========================================
+    // Lifecycle
+    // ==========================================
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = InetAddress.getLocalHost().getHostName() + ":" + listenPort;
+        }
+        InetSocketAddress bind = new InetSocketAddress(bindAddress, listenPort);
+        boolean hasPeers = !peerList.isBlank();
+        if (secret.isEmpty() && (hasPeers || !bind.getAddress().isLoopbackAddress())) {
+            throw new IllegalStateException("tracking.pubsub.secret must be set when tracking.pubsub.peers is set "
+                    + "or tracking.pubsub.bind-address is not a loopback address");
+        }
+        running = true;
+
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(bind);
+        startThread("pubsub-accept", this::acceptLoop);
+
+        for (String peer : peerList.split(",")) {
+            String address = peer.trim();
+            if (address.isEmpty()) {
+                continue;
+            }
+            int colon = address.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalStateException("Invalid tracking.pubsub.peers entry (expected host:port): " + address);
+            }
+            PeerLink link = new PeerLink(address, address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1)), new ArrayBlockingQueue<>(queueCapacity));
+            links.add(link);
+            startThread("pubsub-out-" + address, link::run);
+        }
+
+        log.info("Tracking pub/sub node {} listening on {}:{} with {} peers",
+                nodeId, bindAddress, getLocalPort(), links.size());
+    }
+
+    /**
+     * Port actually bound (listen-port 0 picks a free one)
+     */
+    int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException ignored) {
+            // Shutting down
+        }
+        inbound.forEach(this::closeQuietly);
+        links.forEach(link -> {
+            Socket socket = link.socket;
+            if (socket != null) {
+                closeQuietly(socket);
+            }
+        });
+    }
+
+    // ==========================================
+    // Publish
+    // ==========================================
+
+    @Override
+    public void publish(String destination, Message<byte[]> message) {
+        messagingTemplate.send(destination, message);
+        published.increment();
+        if (links.isEmpty()) {
+            return;
+        }
+
+        byte[] frame = encodeFrame(destination, message);
+        for (PeerLink link : links) {
+            if (!link.queue.offer(frame)) {
+                link.dropped.increment();
+            }
+        }
+    }
+
+    private byte[] encodeFrame(String destination, Message<byte[]> message) {
+        MimeType contentType = message.getHeaders().get(MessageHeaders.CONTENT_TYPE, MimeType.class);
+        byte[] payload = message.getPayload();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(payload.length + destination.length() + 48);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(0); // length placeholder
+            out.writeUTF(destination);
+            out.writeUTF(contentType != null ? contentType.toString() : "");
+            out.write(payload);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to frame message for " + destination, e);
+        }
+        byte[] frame = buffer.toByteArray();
+        int length = frame.length - 4;
+        frame[0] = (byte) (length >>> 24);
+        frame[1] = (byte) (length >>> 16);
+        frame[2] = (byte) (length >>> 8);
+        frame[3] = (byte) length;
+        return frame;
+    }
+
+    // ==========================================
+    // Outbound Links
+    // ==========================================
+
+    /**
+     * One outbound connection to a peer, fed by a bounded frame queue
+     */
+    private final class PeerLink {
+        final String address;
+        final String host;
+        final int port;
+        final BlockingQueue<byte[]> queue;
+        final LongAdder sent = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        volatile boolean connected;
+        volatile Socket socket;
+
+        PeerLink(String address, String host, int port, BlockingQueue<byte[]> queue) {
+            this.address = address;
+            this.host = host;
+            this.port = port;
+            this.queue = queue;
+        }
+
+        void run() {
+            while (running) {
+                try (Socket s = new Socket()) {
+                    socket = s;
+                    s.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+                    s.setTcpNoDelay(true);
+                    s.setKeepAlive(true);
+
+                    s.setSoTimeout(handshakeTimeoutMs);
+                    byte[] nonce = new byte[NONCE_BYTES];
+                    new DataInputStream(s.getInputStream()).readFully(nonce);
+                    s.setSoTimeout(0);
+
+                    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024));
+                    out.writeUTF(nodeId);
+                    out.write(handshakeMac(nonce, nodeId));
+                    out.flush();
+
+                    connected = true;
+                    log.info("Tracking pub/sub connected to peer {}", address);
+                    sendLoop(out);
+                } catch (IOException e) {
+                    if (connected) {
+                        log.warn("Tracking pub/sub lost peer {}: {}", address, e.getMessage());
+                    } else {
+                        log.debug("Tracking pub/sub cannot reach peer {}: {}", address, e.getMessage());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } finally {
+                    connected = false;
+                    socket = null;
+                }
+
+                // Backlog is stale by the time the link is back
+                int stale = queue.size();
+                queue.clear();
+                dropped.add(stale);
+                if (!sleepQuietly(reconnectDelayMs)) {
+                    return;
+                }
+            }
+        }
+
+        private void sendLoop(DataOutputStream out) throws IOException, InterruptedException {
+            while (running) {
+                byte[] frame = queue.poll(1, TimeUnit.SECONDS);
+                if (frame == null) {
+                    continue;
+                }
+                // Write whatever else is queued, then flush once
+                int batch = 0;
+                do {
+                    out.write(frame);
+                    sent.increment();
+                } while (++batch < BATCH_FLUSH_FRAMES && (frame = queue.poll()) != null);
+                out.flush();
+            }
+        }
+    }
+
+    // ==========================================
+    // Inbound Connections
+    // ==========================================
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                // Only this thread adds, so the size check cannot be overtaken
+                if (inbound.size() >= maxInboundConnections) {
+                    rejectedConnections.increment();
+                    log.warn("Tracking pub/sub refused {}: {} inbound connections already open",
+                            socket.getRemoteSocketAddress(), inbound.size());
+                    closeQuietly(socket);
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(handshakeTimeoutMs);
+                inbound.add(socket);
+                startThread("pubsub-in-" + socket.getRemoteSocketAddress(), () -> readLoop(socket));
+            } catch (IOException e) {
+                if (running) {
+                    log.error("Tracking pub/sub accept failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024))) {
+            byte[] nonce = new byte[NONCE_BYTES];
+            random.nextBytes(nonce);
+            socket.getOutputStream().write(nonce);
+            socket.getOutputStream().flush();
+
+            String peerNode = in.readUTF();
+            byte[] peerMac = new byte[MAC_BYTES];
+            in.readFully(peerMac);
+            if (!MessageDigest.isEqual(handshakeMac(nonce, peerNode), peerMac)) {
+                rejectedHandshakes.increment();
+                log.warn("Tracking pub/sub rejected {} from {}: bad secret", peerNode, socket.getRemoteSocketAddress());
+                return;
+            }
+            socket.setSoTimeout(0);
+            LongAdder counter = receivedByNode.computeIfAbsent(peerNode, k -> new LongAdder());
+
+            while (running) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_FRAME_BYTES) {
+                    malformedFrames.increment();
+                    log.warn("Tracking pub/sub dropping connection from {}: frame length {}", peerNode, length);
+                    return;
+                }
+                String destination = in.readUTF();
+                String contentType = in.readUTF();
+                int headerBytes = utfLength(destination) + utfLength(contentType);
+                if (headerBytes > length) {
+                    malformedFrames.increment();
+                    log.warn("Tracking pub/sub dropping connection from {}: frame length {}", peerNode, length);
+                    return;
+                }
+                byte[] payload = new byte[length - headerBytes];
+                in.readFully(payload);
+
+                if (!isAllowedDestination(destination)) {
+                    rejectedDestinations.increment();
+                    log.warn("Tracking pub/sub dropping connection from {}: destination {} not allowed",
+                            peerNode, destination);
+                    return;
+                }
+
+                deliverLocal(destination, contentType, payload);
+                received.increment();
+                counter.increment();
+            }
+        } catch (IOException e) {
+            log.debug("Tracking pub/sub inbound connection closed: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            malformedFrames.increment();
+            log.warn("Tracking pub/sub dropping connection: {}", e.getMessage());
+        } finally {
+            inbound.remove(socket);
+        }
+    }
+
+    private void deliverLocal(String destination, String contentType, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        if (!contentType.isEmpty()) {
+            accessor.setContentType(MimeType.valueOf(contentType));
+        }
+        messagingTemplate.send(destination, MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", "peer");
+        stats.put("nodeId", nodeId);
+        stats.put("published", published.sum());
+        stats.put("received", received.sum());
+        stats.put("inboundConnections", inbound.size());
+        stats.put("rejectedHandshakes", rejectedHandshakes.sum());
+        stats.put("malformedFrames", malformedFrames.sum());
+        stats.put("rejectedConnections", rejectedConnections.sum());
+        stats.put("rejectedDestinations", rejectedDestinations.sum());
+
+        Map<String, Long> byNode = new LinkedHashMap<>();
+        receivedByNode.forEach((node, count) -> byNode.put(node, count.sum()));
+        stats.put("receivedByNode", byNode);
+
+        List<Map<String, Object>> peers = new ArrayList<>();
+        for (PeerLink link : links) {
+            Map<String, Object> peer = new LinkedHashMap<>();
+            peer.put("address", link.address);
+            peer.put("connected", link.connected);
+            peer.put("sent", link.sent.sum());
+            peer.put("dropped", link.dropped.sum());
+            peer.put("queued", link.queue.size());
+            peers.add(peer);
+        }
+        stats.put("peers", peers);
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private void startThread(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    static boolean isAllowedDestination(String destination) {
+        if (destination.contains("..") || destination.indexOf('*') >= 0) {
+            return false;
+        }
+        for (String prefix : ALLOWED_PREFIXES) {
+            if (destination.startsWith(prefix) && destination.length() > prefix.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] handshakeMac(byte[] nonce, String node) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM));
+            mac.update(nonce);
+            return mac.doFinal(node.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot compute pub/sub handshake MAC", e);
+        }
+    }
+
+    /**
+     * Bytes writeUTF produced for a string (2-byte length + modified UTF-8)
+     */
+    private static int utfLength(String s) {
+        int bytes = 2;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007F) {
+                bytes += 1;
+            } else if (c <= 0x07FF) {
+                bytes += 2;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private boolean sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.tpts.service;
+
+import com.tpts.repository.ParcelRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline Pincode -> Centroid Table
+ * Resolves Indian 6-digit pincodes (and city names) to centroid coordinates
+ * without any network call, for geocoding fallbacks and bare-pincode lookups.
+ *
+ * Sources, in order of precedence:
+ * 1. classpath:geo/pincode-centroids.csv, if bundled in the build
+ * 2. the file at geocode.pincode.file, if configured
+ * 3. centroids of the pickup/delivery coordinates already stored on parcels
+ *
+ * Parcel coordinates come from clients, so only samples inside India count
+ * and a parcel-derived centroid is used only once min-parcel-samples parcels
+ * agree on it; below that one bad client could place a whole pincode.
+ *
+ * CSV format: pincode,latitude,longitude[,city] - lines not starting with a
+ * digit (headers, comments) are skipped.
+ *
+ * Pincodes are held as a sorted int[] with parallel float[] coordinates
+ * (~12 bytes per pincode, binary search lookup); the snapshot is swapped
+ * atomically on rebuild.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PincodeCentroidTable {
+
+    private static final String BUNDLED_RESOURCE = "geo/pincode-centroids.csv";
+
+    private final ParcelRepository parcelRepository;
+
+    @Value("${geocode.pincode.file:}")
+    private String pincodeFile;
+
+    @Value("${geocode.pincode.min-parcel-samples:5}")
+    private long minParcelSamples;
+
+    private volatile Snapshot snapshot = new Snapshot(new int[0], new float[0], new float[0], Map.of());
+
+    private final LongAdder pincodeHits = new LongAdder();
+    private final LongAdder cityHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile long lastRebuildAt;
+
+    /**
+     * Centroid coordinates
+     */
+    public record Centroid(double latitude, double longitude) {
+    }
+
+    private record Snapshot(int[] pincodes, float[] latitudes, float[] longitudes, Map<String, Centroid> cities) {
+    }
+
+    /**
+     * Weighted running mean while merging sources
+     */
+    private static final class Accumulator {
+        double sumLat;
+        double sumLng;
+        long weight;
+        boolean fromFile;
+
+        void add(double lat, double lng, long w) {
+            sumLat += lat * w;
+            sumLng += lng * w;
+            weight += w;
+        }
+    }
+
+    // ==========================================
+    // Lookup
+    // ==========================================
+
+    /**
+     * Centroid of a pincode, or null if unknown
+     */
+    public Centroid findByPincode(String pincode) {
+        int code = parsePincode(pincode);
+        Snapshot current = snapshot;
+        int i = code > 0 ? Arrays.binarySearch(current.pincodes(), code) : -1;
+        if (i < 0) {
+            return null;
+        }
+        pincodeHits.increment();
+        return new Centroid(current.latitudes()[i], current.longitudes()[i]);
+    }
+
+    /**
+     * Centroid of a city, or null if unknown
+     */
+    public Centroid findByCity(String city) {
+        if (city == null || city.isBlank()) {
+            return null;
+        }
+        Centroid centroid = snapshot.cities().get(normalise(city));
+        if (centroid != null) {
+            cityHits.increment();
+        }
+        return centroid;
+    }
+
+    /**
+     * Most precise centroid available: pincode, then city
+     */
+    public Centroid find(String pincode, String city) {
+        Centroid centroid = findByPincode(pincode);
+        if (centroid == null) {
+            centroid = findByCity(city);
+        }
+        if (centroid == null) {
+            misses.increment();
+        }
+        return centroid;
+    }
+
+    // ==========================================
+    // Rebuild
+    // ==========================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.error("Failed to build pincode centroid table on startup: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reload all sources and swap in the new table
+     *
+     * @return number of pincodes known
+     */
+    public synchronized int rebuild() {
+        Map<Integer, Accumulator> pincodes = new HashMap<>();
+        Map<String, Accumulator> cities = new HashMap<>();
+
+        ClassPathResource bundled = new ClassPathResource(BUNDLED_RESOURCE);
+        if (bundled.exists()) {
+            try (InputStream in = bundled.getInputStream()) {
+                loadCsv(in, pincodes, cities);
+            } catch (IOException e) {
+                log.error("Failed to read bundled {}: {}", BUNDLED_RESOURCE, e.getMessage());
+            }
+        }
+        if (pincodeFile != null && !pincodeFile.isBlank()) {
+            Path path = Paths.get(pincodeFile);
+            try (InputStream in = Files.newInputStream(path)) {
+                loadCsv(in, pincodes, cities);
+            } catch (IOException e) {
+                log.error("Failed to read pincode file {}: {}", path, e.getMessage());
+            }
+        }
+
+        // Parcel coordinates fill pincodes the files don't cover
+        loadRows(parcelRepository.findPickupPincodeCentroidRows(), pincodes, cities);
+        loadRows(parcelRepository.findDeliveryPincodeCentroidRows(), pincodes, cities);
+        int dropped = dropSparse(pincodes) + dropSparse(cities);
+        if (dropped > 0) {
+            log.debug("Skipped {} parcel-derived centroids with fewer than {} samples", dropped, minParcelSamples);
+        }
+
+        int[] codes = pincodes.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        float[] latitudes = new float[codes.length];
+        float[] longitudes = new float[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            Accumulator acc = pincodes.get(codes[i]);
+            latitudes[i] = (float) (acc.sumLat / acc.weight);
+            longitudes[i] = (float) (acc.sumLng / acc.weight);
+        }
+        Map<String, Centroid> cityCentroids = new HashMap<>(Math.max(16, cities.size() * 2));
+        cities.forEach((city, acc) -> cityCentroids.put(city,
+                new Centroid(acc.sumLat / acc.weight, acc.sumLng / acc.weight)));
+
+        snapshot = new Snapshot(codes, latitudes, longitudes, cityCentroids);
+        lastRebuildAt = System.currentTimeMillis();
+        log.info("Pincode centroid table built: {} pincodes, {} cities", codes.length, cityCentroids.size());
+        return codes.length;
+    }
+
+    private void loadCsv(InputStream in, Map<Integer, Accumulator> pincodes, Map<String, Accumulator> cities)
+            throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        int loaded = 0;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || !Character.isDigit(line.charAt(0))) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length < 3) {
+                continue;
+            }
+            try {
+                int code = parsePincode(fields[0]);
+                double lat = Double.parseDouble(fields[1].trim());
+                double lng = Double.parseDouble(fields[2].trim());
+                if (code <= 0 || !isInIndia(lat, lng)) {
+                    continue;
+                }
+                // A later file overrides an earlier one for the same pincode
+                Accumulator acc = new Accumulator();
+                acc.add(lat, lng, 1);
+                acc.fromFile = true;
+                pincodes.put(code, acc);
+                if (fields.length > 3 && !fields[3].isBlank()) {
+                    Accumulator city = cities.computeIfAbsent(normalise(fields[3]), k -> new Accumulator());
+                    city.add(lat, lng, 1);
+                    city.fromFile = true;
+                }
+                loaded++;
+            } catch (NumberFormatException ignored) {
+                // Skip malformed line
+            }
+        }
+        log.info("Loaded {} pincode centroids from file", loaded);
+    }
+
+    private void loadRows(List<Object[]> rows, Map<Integer, Accumulator> pincodes, Map<String, Accumulator> cities) {
+        for (Object[] row : rows) {
+            int code = parsePincode((String) row[0]);
+            String city = (String) row[1];
+            if (row[2] == null || row[3] == null) {
+                continue;
+            }
+            double lat = ((Number) row[2]).doubleValue();
+            double lng = ((Number) row[3]).doubleValue();
+            long samples = ((Number) row[4]).longValue();
+            if (!isInIndia(lat, lng)) {
+                continue;
+            }
+            if (code > 0) {
+                Accumulator acc = pincodes.computeIfAbsent(code, k -> new Accumulator());
+                if (!acc.fromFile) {
+                    acc.add(lat, lng, samples);
+                }
+            }
+            if (city != null && !city.isBlank()) {
+                cities.computeIfAbsent(normalise(city), k -> new Accumulator()).add(lat, lng, samples);
+            }
+        }
+    }
+
+    /**
+     * Remove parcel-only centroids backed by too few parcels
+     */
+    private int dropSparse(Map<?, Accumulator> centroids) {
+        int before = centroids.size();
+        centroids.values().removeIf(acc -> !acc.fromFile && acc.weight < minParcelSamples);
+        return before - centroids.size();
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Snapshot current = snapshot;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pincodes", current.pincodes().length);
+        stats.put("cities", current.cities().size());
+        stats.put("pincodeHits", pincodeHits.sum());
+        stats.put("cityHits", cityHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("lastRebuildAt", lastRebuildAt);
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    /**
+     * 6-digit pincode as an int, or -1
+     */
+    private static int parsePincode(String pincode) {
+        if (pincode == null) {
+            return -1;
+        }
+        String digits = pincode.trim();
+        if (digits.length() != 6) {
+            return -1;
+        }
+        int code = 0;
+        for (int i = 0; i < 6; i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code >= 100000 ? code : -1;
+    }
+
+    /**
+     * Inside India's bounding box (rejects 0,0 and swapped lat/lng)
+     */
+    public static boolean isInIndia(double lat, double lng) {
+        return lat >= 6 && lat <= 37.5 && lng >= 68 && lng <= 97.5;
+    }
+
+    private static String normalise(String city) {
+        return city.trim().toLowerCase(Locale.ROOT);
+    }
+}
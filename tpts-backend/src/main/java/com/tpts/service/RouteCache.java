@@ -0,0 +1,442 @@
+package com.tpts.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * OSRM Route Cache
+ * Caches road routes keyed by origin/destination snapped to a grid
+ * (tracking.route-cache.grid-degrees, ~110 m at the default 0.001), so
+ * repeated pickup -> hub and hub -> city routes cost no OSRM call.
+ *
+ * Two tiers:
+ * - memory: access-ordered LRU bounded by max-size entries and by
+ *   max-memory-bytes of estimated footprint (full GeoJSON geometries of long
+ *   routes run to hundreds of KB); entries expire after ttl
+ * - disk (optional): one small file per route under dir, written atomically,
+ *   read on a memory miss, so routes survive restarts; expired files are
+ *   deleted when read and swept on startup
+ *
+ * RouteService queries OSRM with the snapped cell coordinates, so a cached
+ * route is the same whichever point inside the cell asked first.
+ *
+ * Distance matrices for multi-stop sequencing are kept in a separate,
+ * memory-only LRU (matrix-max-size) keyed by the ordered list of cells.
+ */
+@Service
+@Slf4j
+public class RouteCache {
+
+    private static final int FILE_VERSION = 1;
+
+    @Value("${tracking.route-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tracking.route-cache.grid-degrees:0.001}")
+    private double gridDegrees;
+
+    @Value("${tracking.route-cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${tracking.route-cache.max-memory-bytes:67108864}")
+    private long maxMemoryBytes;
+
+    @Value("${tracking.route-cache.ttl-hours:168}")
+    private long ttlHours;
+
+    @Value("${tracking.route-cache.matrix-max-size:1000}")
+    private int matrixMaxSize;
+
+    @Value("${tracking.route-cache.disk.enabled:false}")
+    private boolean diskEnabled;
+
+    @Value("${tracking.route-cache.disk.dir:data/route-cache}")
+    private String diskDir;
+
+    // Access-ordered LRU; guarded by its own monitor
+    private final LinkedHashMap<RouteKey, CachedRoute> memory = new LinkedHashMap<>(256, 0.75f, true);
+    private final LinkedHashMap<String, CachedMatrix> matrices = new LinkedHashMap<>(64, 0.75f, true);
+    // Estimated footprint of the memory tier, guarded by memory
+    private long memoryBytes;
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder oversized = new LongAdder();
+    private final LongAdder diskErrors = new LongAdder();
+    private final LongAdder matrixHits = new LongAdder();
+    private final LongAdder matrixMisses = new LongAdder();
+
+    /**
+     * Grid cell indexes of origin and destination
+     */
+    public record RouteKey(int fromLat, int fromLng, int toLat, int toLng) {
+    }
+
+    /**
+     * OSRM result for a cell pair
+     *
+     * @param geometry GeoJSON LineString
+     */
+    public record CachedRoute(double distanceKm, int durationSeconds, String geometry, long expiresAt) {
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        /**
+         * Rough heap footprint: key, entry and record overhead plus the geometry chars
+         */
+        long estimatedBytes() {
+            return 160 + (geometry != null ? 40L + 2L * geometry.length() : 0);
+        }
+    }
+
+    /**
+     * OSRM table result for an ordered list of cells (row-major, read-only)
+     *
+     * @param durationsSeconds null when OSRM returned no durations
+     */
+    public record CachedMatrix(double[] distancesKm, double[] durationsSeconds, long expiresAt) {
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    // ==========================================
+    // Keys
+    // ==========================================
+
+    public RouteKey key(double fromLat, double fromLng, double toLat, double toLng) {
+        return new RouteKey(cell(fromLat), cell(fromLng), cell(toLat), cell(toLng));
+    }
+
+    /**
+     * Centre of a grid cell in degrees (the coordinate sent to OSRM)
+     */
+    public double cellCentre(int cell) {
+        return cell * gridDegrees;
+    }
+
+    /**
+     * A coordinate moved to the centre of its grid cell
+     */
+    public double snap(double degrees) {
+        return cellCentre(cell(degrees));
+    }
+
+    /**
+     * Key of a distance matrix over the given points, in order
+     */
+    public String matrixKey(double[] lats, double[] lngs) {
+        StringBuilder key = new StringBuilder(lats.length * 16);
+        for (int i = 0; i < lats.length; i++) {
+            key.append(cell(lats[i])).append(',').append(cell(lngs[i])).append(';');
+        }
+        return key.toString();
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.round(degrees / gridDegrees);
+    }
+
+    // ==========================================
+    // Lookup
+    // ==========================================
+
+    /**
+     * Cached route for a key, from memory or disk, or null
+     */
+    public CachedRoute get(RouteKey key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+
+        synchronized (memory) {
+            CachedRoute route = memory.get(key);
+            if (route != null) {
+                if (!route.isExpired(now)) {
+                    memoryHits.increment();
+                    return route;
+                }
+                removeFromMemory(key);
+                expirations.increment();
+            }
+        }
+
+        if (diskEnabled) {
+            CachedRoute route = readFromDisk(key, now);
+            if (route != null) {
+                diskHits.increment();
+                putInMemory(key, route);
+                return route;
+            }
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Store an OSRM result (never a fallback estimate)
+     */
+    public CachedRoute put(RouteKey key, double distanceKm, int durationSeconds, String geometry) {
+        CachedRoute route = new CachedRoute(distanceKm, durationSeconds, geometry,
+                System.currentTimeMillis() + ttlHours * 3_600_000L);
+        if (!enabled) {
+            return route;
+        }
+        putInMemory(key, route);
+        stores.increment();
+        if (diskEnabled) {
+            writeToDisk(key, route);
+        }
+        return route;
+    }
+
+    private void putInMemory(RouteKey key, CachedRoute route) {
+        long bytes = route.estimatedBytes();
+        synchronized (memory) {
+            if (bytes > maxMemoryBytes / 4) {
+                // One huge geometry would flush most of the tier; it stays on disk only
+                removeFromMemory(key);
+                oversized.increment();
+                return;
+            }
+            CachedRoute previous = memory.put(key, route);
+            if (previous != null) {
+                memoryBytes -= previous.estimatedBytes();
+            }
+            memoryBytes += bytes;
+            while (memory.size() > maxSize || memoryBytes > maxMemoryBytes) {
+                // Least recently used is first in access order
+                removeFromMemory(memory.keySet().iterator().next());
+                sizeEvictions.increment();
+            }
+        }
+    }
+
+    // Caller holds the memory monitor
+    private void removeFromMemory(RouteKey key) {
+        CachedRoute removed = memory.remove(key);
+        if (removed != null) {
+            memoryBytes -= removed.estimatedBytes();
+        }
+    }
+
+    // ==========================================
+    // Distance Matrices
+    // ==========================================
+
+    public CachedMatrix getMatrix(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (matrices) {
+            CachedMatrix matrix = matrices.get(key);
+            if (matrix != null && !matrix.isExpired(now)) {
+                matrixHits.increment();
+                return matrix;
+            }
+            if (matrix != null) {
+                matrices.remove(key);
+                expirations.increment();
+            }
+        }
+        matrixMisses.increment();
+        return null;
+    }
+
+    public CachedMatrix putMatrix(String key, double[] distancesKm, double[] durationsSeconds) {
+        CachedMatrix matrix = new CachedMatrix(distancesKm, durationsSeconds,
+                System.currentTimeMillis() + ttlHours * 3_600_000L);
+        if (!enabled) {
+            return matrix;
+        }
+        synchronized (matrices) {
+            matrices.put(key, matrix);
+            if (matrices.size() > matrixMaxSize) {
+                matrices.remove(matrices.keySet().iterator().next());
+                sizeEvictions.increment();
+            }
+        }
+        return matrix;
+    }
+
+    // ==========================================
+    // Disk Tier
+    // ==========================================
+
+    private Path pathFor(RouteKey key) {
+        int bucket = Math.floorMod(key.hashCode(), 256);
+        return Paths.get(diskDir, String.format("%02x", bucket),
+                key.fromLat() + "_" + key.fromLng() + "_" + key.toLat() + "_" + key.toLng() + ".route");
+    }
+
+    private CachedRoute readFromDisk(RouteKey key, long now) {
+        Path path = pathFor(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FILE_VERSION) {
+                Files.deleteIfExists(path);
+                return null;
+            }
+            long expiresAt = in.readLong();
+            if (now >= expiresAt) {
+                in.close();
+                Files.deleteIfExists(path);
+                expirations.increment();
+                return null;
+            }
+            double distanceKm = in.readDouble();
+            int durationSeconds = in.readInt();
+            byte[] geometry = new byte[in.readInt()];
+            in.readFully(geometry);
+            return new CachedRoute(distanceKm, durationSeconds,
+                    geometry.length == 0 ? null : new String(geometry, StandardCharsets.UTF_8), expiresAt);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            diskErrors.increment();
+            log.warn("Failed to read cached route {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(RouteKey key, CachedRoute route) {
+        Path path = pathFor(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), "route", ".tmp");
+            byte[] geometry = route.geometry() != null
+                    ? route.geometry().getBytes(StandardCharsets.UTF_8)
+                    : new byte[0];
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FILE_VERSION);
+                out.writeLong(route.expiresAt());
+                out.writeDouble(route.distanceKm());
+                out.writeInt(route.durationSeconds());
+                out.writeInt(geometry.length);
+                out.write(geometry);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            diskErrors.increment();
+            log.warn("Failed to write cached route {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Delete expired and partial route files left from previous runs
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void sweepDiskOnStartup() {
+        if (!enabled || !diskEnabled) {
+            return;
+        }
+        Path root = Paths.get(diskDir);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int[] removed = {0};
+        try (Stream<Path> files = Files.walk(root, 2)) {
+            files.filter(Files::isRegularFile).forEach(path -> {
+                if (isStale(path, now)) {
+                    try {
+                        Files.deleteIfExists(path);
+                        removed[0]++;
+                    } catch (IOException e) {
+                        diskErrors.increment();
+                    }
+                }
+            });
+            log.info("Route cache disk sweep removed {} stale files", removed[0]);
+        } catch (IOException e) {
+            log.error("Route cache disk sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean isStale(Path path, long now) {
+        if (!path.getFileName().toString().endsWith(".route")) {
+            return true;
+        }
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(path))) {
+            return in.readInt() != FILE_VERSION || now >= in.readLong();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        long memoryHitCount = memoryHits.sum();
+        long diskHitCount = diskHits.sum();
+        long missCount = misses.sum();
+        long total = memoryHitCount + diskHitCount + missCount;
+        int size;
+        long bytes;
+        synchronized (memory) {
+            size = memory.size();
+            bytes = memoryBytes;
+        }
+        int matrixSize;
+        synchronized (matrices) {
+            matrixSize = matrices.size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("gridDegrees", gridDegrees);
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("memoryBytes", bytes);
+        stats.put("maxMemoryBytes", maxMemoryBytes);
+        stats.put("ttlHours", ttlHours);
+        stats.put("diskEnabled", diskEnabled);
+        stats.put("memoryHits", memoryHitCount);
+        stats.put("diskHits", diskHitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) (memoryHitCount + diskHitCount) / total);
+        stats.put("stores", stores.sum());
+        stats.put("matrixSize", matrixSize);
+        stats.put("matrixHits", matrixHits.sum());
+        stats.put("matrixMisses", matrixMisses.sum());
+        stats.put("expirations", expirations.sum());
+        stats.put("sizeEvictions", sizeEvictions.sum());
+        stats.put("oversized", oversized.sum());
+        stats.put("diskErrors", diskErrors.sum());
+        return stats;
+    }
+}
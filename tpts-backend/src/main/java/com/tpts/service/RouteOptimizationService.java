@@ -0,0 +1,287 @@
+package com.tpts.service;
+
+import com.tpts.dto.response.OptimizedRouteDTO;
+import com.tpts.entity.DeliveryAgent;
+import com.tpts.entity.GroupShipment;
+import com.tpts.entity.Parcel;
+import com.tpts.entity.ParcelStatus;
+import com.tpts.entity.User;
+import com.tpts.exception.TptsExceptions.BadRequestException;
+import com.tpts.exception.TptsExceptions.ResourceNotFoundException;
+import com.tpts.repository.DeliveryAgentRepository;
+import com.tpts.repository.GroupShipmentRepository;
+import com.tpts.repository.ParcelRepository;
+import com.tpts.util.RouteSequencer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Multi-Stop Route Optimization
+ * Orders an agent's active jobs into one run starting from the agent's
+ * position, instead of the assignment order.
+ *
+ * Each active parcel contributes its next stop:
+ * - ASSIGNED: the pickup address
+ * - picked up on a group pickup run: nothing until the warehouse, which is
+ *   pinned as the last stop of the run
+ * - otherwise: the delivery address
+ *
+ * Distances come from a cached OSRM table (straight line if unavailable) and
+ * the order from RouteSequencer (nearest neighbour + 2-opt/Or-opt).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RouteOptimizationService {
+
+    private final DeliveryAgentRepository agentRepository;
+    private final ParcelRepository parcelRepository;
+    private final GroupShipmentRepository groupShipmentRepository;
+    private final AgentLocationStore agentLocationStore;
+    private final RouteService routeService;
+    private final EtaModel etaModel;
+
+    @Value("${tracking.route-optimizer.max-stops:100}")
+    private int maxStops;
+
+    /**
+     * A stop to sequence, with its coordinates as doubles
+     */
+    private record Candidate(OptimizedRouteDTO.Stop stop, double latitude, double longitude) {
+    }
+
+    // ==========================================
+    // Optimization
+    // ==========================================
+
+    /**
+     * Optimized stop order for the current agent
+     * Starts from the given coordinates, else the agent's last known position
+     */
+    @Transactional(readOnly = true)
+    public OptimizedRouteDTO getOptimizedRoute(User currentUser, BigDecimal startLat, BigDecimal startLng) {
+        DeliveryAgent agent = agentRepository.findByUser(currentUser)
+                .orElseThrow(() -> new ResourceNotFoundException("Agent profile not found"));
+
+        double[] start = resolveStart(agent, startLat, startLng);
+        List<Parcel> parcels = parcelRepository.findActiveDeliveriesForAgent(agent.getId());
+
+        List<Candidate> candidates = new ArrayList<>();
+        List<OptimizedRouteDTO.Stop> unsequenced = new ArrayList<>();
+        Candidate warehouse = collectStops(agent, parcels, candidates, unsequenced);
+
+        if (candidates.size() > maxStops) {
+            // Keep the earliest assignments; the rest wait for the next run
+            for (Candidate extra : candidates.subList(maxStops, candidates.size())) {
+                unsequenced.add(extra.stop());
+            }
+            candidates = new ArrayList<>(candidates.subList(0, maxStops));
+        }
+        if (warehouse != null) {
+            candidates.add(warehouse);
+        }
+
+        // Node 0 is the start, then the stops in assignment order
+        int n = candidates.size() + 1;
+        double[] lats = new double[n];
+        double[] lngs = new double[n];
+        lats[0] = start[0];
+        lngs[0] = start[1];
+        for (int i = 1; i < n; i++) {
+            lats[i] = candidates.get(i - 1).latitude();
+            lngs[i] = candidates.get(i - 1).longitude();
+        }
+
+        RouteService.DistanceMatrix matrix = routeService.distanceMatrix(lats, lngs);
+        int[] order = RouteSequencer.sequence(matrix.distancesKm(), n, warehouse != null);
+
+        int[] assignedOrder = new int[n];
+        for (int i = 0; i < n; i++) {
+            assignedOrder[i] = i;
+        }
+        double assignedKm = RouteSequencer.pathCost(matrix.distancesKm(), n, assignedOrder);
+
+        List<OptimizedRouteDTO.Stop> stops = new ArrayList<>(n - 1);
+        double cumulativeKm = 0;
+        double cumulativeSeconds = 0;
+        for (int k = 1; k < n; k++) {
+            int from = order[k - 1];
+            int to = order[k];
+            double legKm = matrix.distancesKm()[from * n + to];
+            cumulativeKm += legKm;
+            cumulativeSeconds += legSeconds(matrix, from, to, legKm, agent);
+
+            OptimizedRouteDTO.Stop stop = candidates.get(to - 1).stop();
+            stop.setSequence(k);
+            stop.setLegDistanceKm(km(legKm));
+            stop.setCumulativeDistanceKm(km(cumulativeKm));
+            stop.setEtaMinutes((int) Math.ceil(cumulativeSeconds / 60));
+            stops.add(stop);
+        }
+
+        log.debug("Optimized {} stops for agent {}: {}km vs {}km in assignment order",
+                stops.size(), agent.getId(), km(cumulativeKm), km(assignedKm));
+
+        return OptimizedRouteDTO.builder()
+                .agentId(agent.getId())
+                .startLatitude(BigDecimal.valueOf(start[0]))
+                .startLongitude(BigDecimal.valueOf(start[1]))
+                .totalDistanceKm(km(cumulativeKm))
+                .assignedOrderDistanceKm(km(assignedKm))
+                .savedDistanceKm(km(Math.max(0, assignedKm - cumulativeKm)))
+                .totalDurationMinutes((int) Math.ceil(cumulativeSeconds / 60))
+                .isFallback(matrix.fallback())
+                .stops(stops)
+                .unsequenced(unsequenced)
+                .build();
+    }
+
+    private double[] resolveStart(DeliveryAgent agent, BigDecimal startLat, BigDecimal startLng) {
+        if (startLat != null && startLng != null) {
+            return new double[] { startLat.doubleValue(), startLng.doubleValue() };
+        }
+        AgentLocationStore.AgentPosition position = agentLocationStore.get(agent.getId());
+        if (position != null) {
+            return new double[] { position.latitude(), position.longitude() };
+        }
+        if (agent.getCurrentLatitude() != null && agent.getCurrentLongitude() != null) {
+            return new double[] { agent.getCurrentLatitude().doubleValue(), agent.getCurrentLongitude().doubleValue() };
+        }
+        throw new BadRequestException("Current location unknown. Share your location or pass lat/lng");
+    }
+
+    /**
+     * Turn active parcels into candidate stops (in assignment order)
+     *
+     * @return the warehouse ending a group pickup run, or null
+     */
+    private Candidate collectStops(DeliveryAgent agent, List<Parcel> parcels,
+                                   List<Candidate> candidates, List<OptimizedRouteDTO.Stop> unsequenced) {
+        Set<Long> groupIds = parcels.stream()
+                .map(Parcel::getGroupShipmentId)
+                .filter(id -> id != null)
+                .collect(Collectors.toSet());
+        Map<Long, GroupShipment> groups = groupIds.isEmpty() ? Map.of()
+                : groupShipmentRepository.findAllById(groupIds).stream()
+                        .collect(Collectors.toMap(GroupShipment::getId, Function.identity()));
+
+        Map<Long, GroupShipment> pickupRuns = new LinkedHashMap<>();
+        for (Parcel parcel : parcels) {
+            GroupShipment group = parcel.getGroupShipmentId() != null ? groups.get(parcel.getGroupShipmentId()) : null;
+            boolean groupPickupRun = group != null
+                    && group.getPickupAgent() != null
+                    && group.getPickupAgent().getId().equals(agent.getId())
+                    && parcel.getStatus() != ParcelStatus.OUT_FOR_DELIVERY;
+
+            if (parcel.getStatus() == ParcelStatus.ASSIGNED) {
+                add(pickupStop(parcel), parcel.getPickupLatitude(), parcel.getPickupLongitude(), candidates, unsequenced);
+            } else if (!groupPickupRun) {
+                add(deliveryStop(parcel), parcel.getDeliveryLatitude(), parcel.getDeliveryLongitude(), candidates,
+                        unsequenced);
+            }
+            if (groupPickupRun) {
+                pickupRuns.put(group.getId(), group);
+            }
+        }
+
+        // Only one warehouse can end the run; any other is left for the agent to schedule
+        Candidate warehouse = null;
+        for (GroupShipment group : pickupRuns.values()) {
+            OptimizedRouteDTO.Stop stop = warehouseStop(group);
+            if (warehouse == null && group.getWarehouseLatitude() != null && group.getWarehouseLongitude() != null) {
+                warehouse = new Candidate(stop, group.getWarehouseLatitude().doubleValue(),
+                        group.getWarehouseLongitude().doubleValue());
+            } else {
+                unsequenced.add(stop);
+            }
+        }
+        return warehouse;
+    }
+
+    private void add(OptimizedRouteDTO.Stop stop, BigDecimal lat, BigDecimal lng,
+                     List<Candidate> candidates, List<OptimizedRouteDTO.Stop> unsequenced) {
+        if (lat == null || lng == null) {
+            unsequenced.add(stop);
+        } else {
+            candidates.add(new Candidate(stop, lat.doubleValue(), lng.doubleValue()));
+        }
+    }
+
+    /**
+     * Seconds for one leg: OSRM duration when known, else the learned speed profile
+     */
+    private double legSeconds(RouteService.DistanceMatrix matrix, int from, int to, double legKm, DeliveryAgent agent) {
+        if (matrix.durationsSeconds() != null) {
+            double seconds = matrix.durationsSeconds()[from * matrix.size() + to];
+            if (!Double.isNaN(seconds)) {
+                return seconds;
+            }
+        }
+        return etaModel.estimate(legKm, agent.getCity(), agent.getVehicleType()).minutes() * 60.0;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private OptimizedRouteDTO.Stop pickupStop(Parcel parcel) {
+        return OptimizedRouteDTO.Stop.builder()
+                .type("PICKUP")
+                .parcelId(parcel.getId())
+                .trackingNumber(parcel.getTrackingNumber())
+                .groupShipmentId(parcel.getGroupShipmentId())
+                .contactName(parcel.getPickupName())
+                .contactPhone(parcel.getPickupPhone())
+                .address(parcel.getPickupAddress())
+                .city(parcel.getPickupCity())
+                .pincode(parcel.getPickupPincode())
+                .latitude(parcel.getPickupLatitude())
+                .longitude(parcel.getPickupLongitude())
+                .build();
+    }
+
+    private OptimizedRouteDTO.Stop deliveryStop(Parcel parcel) {
+        return OptimizedRouteDTO.Stop.builder()
+                .type("DELIVERY")
+                .parcelId(parcel.getId())
+                .trackingNumber(parcel.getTrackingNumber())
+                .groupShipmentId(parcel.getGroupShipmentId())
+                .contactName(parcel.getDeliveryName())
+                .contactPhone(parcel.getDeliveryPhone())
+                .address(parcel.getDeliveryAddress())
+                .city(parcel.getDeliveryCity())
+                .pincode(parcel.getDeliveryPincode())
+                .latitude(parcel.getDeliveryLatitude())
+                .longitude(parcel.getDeliveryLongitude())
+                .build();
+    }
+
+    private OptimizedRouteDTO.Stop warehouseStop(GroupShipment group) {
+        return OptimizedRouteDTO.Stop.builder()
+                .type("WAREHOUSE")
+                .groupShipmentId(group.getId())
+                .address(group.getWarehouseAddress())
+                .city(group.getWarehouseCity())
+                .pincode(group.getWarehousePincode())
+                .latitude(group.getWarehouseLatitude())
+                .longitude(group.getWarehouseLongitude())
+                .build();
+    }
+
+    private static BigDecimal km(double km) {
+        return BigDecimal.valueOf(km).setScale(2, RoundingMode.HALF_UP);
+    }
+}
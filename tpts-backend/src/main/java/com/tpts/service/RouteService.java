@@ -2,14 +2,19 @@ package com.tpts.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.client.RestClientException;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.entity.VehicleType;
+import com.tpts.util.GeoUtils;
+import com.tpts.util.SingleFlight;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * OSRM Route Calculation Service
@@ -20,69 +25,116 @@ import java.math.RoundingMode;
 @RequiredArgsConstructor
 public class RouteService {
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final EtaModel etaModel;
+    private final RouteCache routeCache;
+    private final UpstreamHttpClient upstreamHttpClient;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // Concurrent misses for the same cell pair share one OSRM call
+    private final SingleFlight<RouteCache.RouteKey, RouteCache.CachedRoute> routeFlights = new SingleFlight<>();
+    private final SingleFlight<String, RouteCache.CachedMatrix> matrixFlights = new SingleFlight<>();
+
+    @Value("${tracking.route-optimizer.osrm-max-points:100}")
+    private int osrmTableMaxPoints;
+
     // OSRM Public API (free, no key required)
     private static final String OSRM_BASE_URL = "https://router.project-osrm.org/route/v1/driving/";
+    private static final String OSRM_TABLE_URL = "https://router.project-osrm.org/table/v1/driving/";
+    private static final String OSRM_UPSTREAM = "osrm";
+
+    /**
+     * Row-major n x n matrix, [i * n + j] = i -> j
+     *
+     * @param durationsSeconds null for straight-line fallbacks
+     */
+    public record DistanceMatrix(int size, double[] distancesKm, double[] durationsSeconds, boolean fallback) {
+    }
 
     /**
      * Calculate route between two coordinates
+     * Served from RouteCache when the snapped origin/destination cells were seen before;
+     * concurrent misses for the same cells wait on a single OSRM call
      * @return RouteResponse with distance, duration, geometry
      */
     public RouteResponse calculateRoute(BigDecimal fromLat, BigDecimal fromLng,
                                         BigDecimal toLat, BigDecimal toLng) {
-        try {
-            // Format: lng,lat;lng,lat (OSRM uses lng,lat order!)
-            String coordinates = String.format("%s,%s;%s,%s",
-                    fromLng, fromLat, toLng, toLat);
+        RouteCache.RouteKey key = routeCache.key(fromLat.doubleValue(), fromLng.doubleValue(),
+                toLat.doubleValue(), toLng.doubleValue());
+
+        RouteCache.CachedRoute route = routeCache.get(key);
+        if (route == null) {
+            try {
+                route = routeFlights.execute(key, () -> fetchRoute(key));
+            } catch (UpstreamHttpClient.UpstreamUnavailableException e) {
+                log.warn("OSRM unavailable: {}", e.getMessage());
+                // Fallback to Haversine distance if API fails (or its circuit is open)
+                return getFallbackRoute(fromLat, fromLng, toLat, toLng);
+            } catch (Exception e) {
+                log.error("Route calculation failed", e);
+                return getFallbackRoute(fromLat, fromLng, toLat, toLng);
+            }
+        }
 
-            String url = OSRM_BASE_URL + coordinates + "?overview=full&geometries=geojson";
+        return RouteResponse.builder()
+                .distanceKm(BigDecimal.valueOf(route.distanceKm()).setScale(2, RoundingMode.HALF_UP))
+                .durationMinutes((int) Math.ceil(route.durationSeconds() / 60.0))
+                .durationSeconds(route.durationSeconds())
+                .geometry(route.geometry())
+                .fromLat(fromLat)
+                .fromLng(fromLng)
+                .toLat(toLat)
+                .toLng(toLng)
+                .build();
+    }
+
+    /**
+     * Call OSRM for the snapped cell centres and cache the result
+     */
+    private RouteCache.CachedRoute fetchRoute(RouteCache.RouteKey key) {
+        // A flight that finished just before this one started has already cached it
+        RouteCache.CachedRoute cached = routeCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
 
-            log.info("Calling OSRM API: {}", url);
+        // Format: lng,lat;lng,lat (OSRM uses lng,lat order!)
+        String coordinates = coordinate(key.fromLng()) + "," + coordinate(key.fromLat()) + ";"
+                + coordinate(key.toLng()) + "," + coordinate(key.toLat());
 
-            String response = restTemplate.getForObject(url, String.class);
-            JsonNode root = objectMapper.readTree(response);
+        String url = OSRM_BASE_URL + coordinates + "?overview=full&geometries=geojson";
 
-            if (!"Ok".equals(root.path("code").asText())) {
-                throw new RuntimeException("OSRM returned error: " + root.path("message").asText());
-            }
+        log.info("Calling OSRM API: {}", url);
 
-            JsonNode route = root.path("routes").get(0);
-
-            // Distance in meters, convert to km
-            double distanceMeters = route.path("distance").asDouble();
-            BigDecimal distanceKm = BigDecimal.valueOf(distanceMeters / 1000)
-                    .setScale(2, RoundingMode.HALF_UP);
-
-            // Duration in seconds, convert to minutes
-            double durationSeconds = route.path("duration").asDouble();
-            int durationMinutes = (int) Math.ceil(durationSeconds / 60);
-
-            // Extract geometry for map polyline
-            String geometry = route.path("geometry").toString();
-
-            log.info("Route calculated: {}km, {}min", distanceKm, durationMinutes);
-
-            return RouteResponse.builder()
-                    .distanceKm(distanceKm)
-                    .durationMinutes(durationMinutes)
-                    .durationSeconds((int) durationSeconds)
-                    .geometry(geometry)
-                    .fromLat(fromLat)
-                    .fromLng(fromLng)
-                    .toLat(toLat)
-                    .toLng(toLng)
-                    .build();
-
-        } catch (RestClientException e) {
-            log.error("OSRM API call failed", e);
-            // Fallback to Haversine distance if API fails
-            return getFallbackRoute(fromLat, fromLng, toLat, toLng);
-        } catch (Exception e) {
-            log.error("Route calculation failed", e);
-            return getFallbackRoute(fromLat, fromLng, toLat, toLng);
+        String response = upstreamHttpClient.get(OSRM_UPSTREAM, url, Map.of());
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid OSRM response: " + e.getOriginalMessage(), e);
+        }
+
+        if (!"Ok".equals(root.path("code").asText())) {
+            throw new RuntimeException("OSRM returned error: " + root.path("message").asText());
         }
+
+        JsonNode route = root.path("routes").get(0);
+
+        // Distance in meters, convert to km
+        double distanceKm = route.path("distance").asDouble() / 1000;
+
+        // Duration in seconds
+        int durationSeconds = (int) route.path("duration").asDouble();
+
+        // Extract geometry for map polyline
+        String geometry = route.path("geometry").toString();
+
+        log.info("Route calculated: {}km, {}s", distanceKm, durationSeconds);
+
+        return routeCache.put(key, distanceKm, durationSeconds, geometry);
+    }
+
+    private String coordinate(int cell) {
+        return BigDecimal.valueOf(routeCache.cellCentre(cell)).setScale(6, RoundingMode.HALF_UP).toPlainString();
     }
 
     /**
@@ -92,8 +144,8 @@ public class RouteService {
                                            BigDecimal lat2, BigDecimal lng2) {
         BigDecimal distance = calculateHaversineDistance(lat1, lng1, lat2, lng2);
 
-        // Estimate: avg 40km/h in city, add 20% for actual roads
-        int estimatedMinutes = (int) Math.ceil(distance.doubleValue() * 1.2 * 1.5);
+        // Estimate from the learned platform-wide speed profile
+        int estimatedMinutes = etaModel.estimate(distance.doubleValue(), null, null).minutes();
 
         log.warn("Using fallback Haversine distance: {}km", distance);
 
@@ -115,18 +167,8 @@ public class RouteService {
      */
     public BigDecimal calculateHaversineDistance(BigDecimal lat1, BigDecimal lng1,
                                                  BigDecimal lat2, BigDecimal lng2) {
-        double earthRadius = 6371; // km
-
-        double dLat = Math.toRadians(lat2.doubleValue() - lat1.doubleValue());
-        double dLng = Math.toRadians(lng2.doubleValue() - lng1.doubleValue());
-
-        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-                Math.cos(Math.toRadians(lat1.doubleValue())) *
-                        Math.cos(Math.toRadians(lat2.doubleValue())) *
-                        Math.sin(dLng / 2) * Math.sin(dLng / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        double distance = earthRadius * c;
+        double distance = GeoUtils.haversineKm(lat1.doubleValue(), lng1.doubleValue(),
+                lat2.doubleValue(), lng2.doubleValue());
 
         return BigDecimal.valueOf(distance).setScale(2, RoundingMode.HALF_UP);
     }
@@ -136,15 +178,117 @@ public class RouteService {
      */
     public EtaResponse calculateEta(BigDecimal fromLat, BigDecimal fromLng,
                                     BigDecimal toLat, BigDecimal toLng) {
-        RouteResponse route = calculateRoute(fromLat, fromLng, toLat, toLng);
+        return calculateEta(fromLat, fromLng, toLat, toLng, null, null);
+    }
+
+    /**
+     * Calculate ETA from the learned speed profiles (no OSRM call)
+     * Distance is straight-line; city and vehicle type narrow the profile when given
+     */
+    public EtaResponse calculateEta(BigDecimal fromLat, BigDecimal fromLng,
+                                    BigDecimal toLat, BigDecimal toLng,
+                                    String city, VehicleType vehicleType) {
+        BigDecimal distance = calculateHaversineDistance(fromLat, fromLng, toLat, toLng);
+        EtaModel.Estimate estimate = etaModel.estimate(distance.doubleValue(), city, vehicleType);
 
         return EtaResponse.builder()
-                .distanceKm(route.getDistanceKm())
-                .etaMinutes(route.getDurationMinutes())
-                .etaText(formatEta(route.getDurationMinutes()))
+                .distanceKm(distance)
+                .etaMinutes(estimate.minutes())
+                .etaText(formatEta(estimate.minutes()))
+                .isLearned(estimate.learned())
                 .build();
     }
 
+    // ==================== Distance Matrix ====================
+
+    /**
+     * Road distance matrix between points (OSRM table service)
+     * Cached per ordered list of snapped cells; concurrent misses share one call.
+     * Falls back to straight-line distances when OSRM is unavailable or there
+     * are more points than the table service accepts.
+     */
+    public DistanceMatrix distanceMatrix(double[] lats, double[] lngs) {
+        int n = lats.length;
+        if (n < 2 || n > osrmTableMaxPoints) {
+            return straightLineMatrix(lats, lngs);
+        }
+
+        String key = routeCache.matrixKey(lats, lngs);
+        RouteCache.CachedMatrix matrix = routeCache.getMatrix(key);
+        if (matrix == null) {
+            try {
+                matrix = matrixFlights.execute(key, () -> fetchMatrix(key, lats, lngs));
+            } catch (UpstreamHttpClient.UpstreamUnavailableException e) {
+                log.warn("OSRM unavailable for {}-point matrix: {}", n, e.getMessage());
+                return straightLineMatrix(lats, lngs);
+            } catch (Exception e) {
+                log.error("Distance matrix failed", e);
+                return straightLineMatrix(lats, lngs);
+            }
+        }
+        return new DistanceMatrix(n, matrix.distancesKm(), matrix.durationsSeconds(), false);
+    }
+
+    private RouteCache.CachedMatrix fetchMatrix(String key, double[] lats, double[] lngs) {
+        RouteCache.CachedMatrix cached = routeCache.getMatrix(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        int n = lats.length;
+        StringBuilder coordinates = new StringBuilder(n * 24);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) {
+                coordinates.append(';');
+            }
+            // OSRM uses lng,lat order
+            coordinates.append(snapped(lngs[i])).append(',').append(snapped(lats[i]));
+        }
+        String url = OSRM_TABLE_URL + coordinates + "?annotations=distance,duration";
+
+        log.info("Calling OSRM table API for {} points", n);
+
+        JsonNode root;
+        try {
+            root = objectMapper.readTree(upstreamHttpClient.get(OSRM_UPSTREAM, url, Map.of()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Invalid OSRM response: " + e.getOriginalMessage(), e);
+        }
+        if (!"Ok".equals(root.path("code").asText())) {
+            throw new RuntimeException("OSRM returned error: " + root.path("message").asText());
+        }
+
+        JsonNode distances = root.path("distances");
+        JsonNode durations = root.path("durations");
+        double[] distancesKm = new double[n * n];
+        double[] durationsSeconds = durations.isArray() ? new double[n * n] : null;
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                JsonNode distance = distances.path(i).path(j);
+                // Unroutable pairs come back as null; use the straight line
+                distancesKm[i * n + j] = distance.isNumber()
+                        ? distance.asDouble() / 1000
+                        : GeoUtils.haversineKm(lats[i], lngs[i], lats[j], lngs[j]);
+                if (durationsSeconds != null) {
+                    JsonNode duration = durations.path(i).path(j);
+                    durationsSeconds[i * n + j] = duration.isNumber() ? duration.asDouble() : Double.NaN;
+                }
+            }
+        }
+        return routeCache.putMatrix(key, distancesKm, durationsSeconds);
+    }
+
+    private DistanceMatrix straightLineMatrix(double[] lats, double[] lngs) {
+        int n = lats.length;
+        double[] distancesKm = new double[n * n];
+        GeoUtils.distanceMatrixKm(lats, lngs, distancesKm, n);
+        return new DistanceMatrix(n, distancesKm, null, true);
+    }
+
+    private String snapped(double degrees) {
+        return BigDecimal.valueOf(routeCache.snap(degrees)).setScale(6, RoundingMode.HALF_UP).toPlainString();
+    }
+
     /**
      * Format ETA as human-readable text
      */
@@ -157,6 +301,16 @@ public class RouteService {
         return hours + "h " + mins + "m";
     }
 
+    /**
+     * Request coalescing stats for OSRM lookups
+     */
+    public Map<String, Object> getFlightStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("route", routeFlights.getStats());
+        stats.put("matrix", matrixFlights.getStats());
+        return stats;
+    }
+
     // ==================== DTOs ====================
 
     @lombok.Data
@@ -183,5 +337,6 @@ public class RouteService {
         private BigDecimal distanceKm;
         private Integer etaMinutes;
         private String etaText; // "25 mins" or "1h 15m"
+        private Boolean isLearned; // False if the default speed was used
     }
 }
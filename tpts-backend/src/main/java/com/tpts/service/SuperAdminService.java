@@ -6,11 +6,14 @@ import com.tpts.dto.response.*;
 import com.tpts.entity.*;
 import com.tpts.exception.TptsExceptions.*;
 import com.tpts.repository.*;
+import com.tpts.security.PrincipalCache;
+import com.tpts.util.TrackingCodeGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -18,7 +21,9 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -43,6 +48,26 @@ public class SuperAdminService {
     private final EmailService emailService;
     private final EarningRepository earningRepository;
     private final LoginActivityService loginActivityService;
+    private final PrincipalCache principalCache;
+    private final AgentLocationStore agentLocationStore;
+    private final AgentParcelIndex agentParcelIndex;
+    private final LocationBroadcastThrottle locationBroadcastThrottle;
+    private final AgentSpatialIndex agentSpatialIndex;
+    private final LocationTrailStore locationTrailStore;
+    private final EtaModel etaModel;
+    private final TrackingMessageEncoder trackingMessageEncoder;
+    private final TrackingPubSub trackingPubSub;
+    private final TrackingProjectionCache trackingProjectionCache;
+    private final RouteCache routeCache;
+    private final GeocodeCache geocodeCache;
+    private final PincodeCentroidTable pincodeCentroidTable;
+    private final CoordinateBackfillService coordinateBackfillService;
+    private final UpstreamHttpClient upstreamHttpClient;
+    private final RouteService routeService;
+    private final GeocodingService geocodingService;
+    private final TrackingCodeGenerator trackingCodeGenerator;
+    private final OutboxDispatcher outboxDispatcher;
+    private final WebSocketMessageBrokerStats webSocketMessageBrokerStats;
 
     // ==========================================
     // Dashboard & Statistics
@@ -269,6 +294,7 @@ public class SuperAdminService {
         company.getUser().setIsActive(false);
         companyRepository.save(company);
         userRepository.save(company.getUser());
+        principalCache.evict(company.getUser());
 
         recordAction(currentUser, "Rejected company: " + company.getCompanyName() + ". Reason: " + request.getReason());
 
@@ -296,6 +322,7 @@ public class SuperAdminService {
 
         company.getUser().setIsActive(false);
         userRepository.save(company.getUser());
+        principalCache.evict(company.getUser());
 
         recordAction(currentUser, "Suspended company: " + company.getCompanyName() + ". Reason: " + reason);
 
@@ -322,6 +349,7 @@ public class SuperAdminService {
 
         company.getUser().setIsActive(true);
         userRepository.save(company.getUser());
+        principalCache.evict(company.getUser());
 
         recordAction(currentUser, "Reactivated company: " + company.getCompanyName());
 
@@ -434,6 +462,7 @@ public class SuperAdminService {
 
         user.setIsActive(request.getIsActive());
         user = userRepository.save(user);
+        principalCache.evict(user);
 
         String action = request.getIsActive() ? "Activated" : "Suspended";
         recordAction(currentUser, action + " user: " + user.getEmail() +
@@ -497,6 +526,8 @@ public class SuperAdminService {
                     agent.getUser().setIsDeleted(true);
                     agentRepository.save(agent);
                     userRepository.save(agent.getUser());
+                    principalCache.evict(agent.getUser());
+                    agentSpatialIndex.onAgentChanged(agent, null, null);
                 }
                 log.info("Cascade deleted {} agents for company {}", agents.size(), company.getCompanyName());
             });
@@ -506,6 +537,7 @@ public class SuperAdminService {
         user.setIsDeleted(true);
         user.setIsActive(false);
         userRepository.save(user);
+        principalCache.evict(user);
 
         recordAction(currentUser, "Deleted user: " + user.getEmail());
 
@@ -1136,6 +1168,51 @@ public class SuperAdminService {
         return stats;
     }
 
+    // ==========================================
+    // System Metrics
+    // ==========================================
+
+    /**
+     * Runtime metrics of in-memory caches and pipelines
+     */
+    public Map<String, Object> getSystemMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("principalCache", principalCache.getStats());
+        metrics.put("agentLocationStore", agentLocationStore.getStats());
+        metrics.put("agentParcelIndex", agentParcelIndex.getStats());
+        metrics.put("locationBroadcastThrottle", locationBroadcastThrottle.getStats());
+        metrics.put("agentSpatialIndex", agentSpatialIndex.getStats());
+        metrics.put("locationTrailStore", locationTrailStore.getStats());
+        metrics.put("etaModel", etaModel.getStats());
+        metrics.put("trackingMessageEncoder", trackingMessageEncoder.getStats());
+        metrics.put("trackingPubSub", trackingPubSub.getStats());
+        metrics.put("trackingProjectionCache", trackingProjectionCache.getStats());
+        metrics.put("routeCache", routeCache.getStats());
+        metrics.put("geocodeCache", geocodeCache.getStats());
+        metrics.put("pincodeCentroidTable", pincodeCentroidTable.getStats());
+        metrics.put("coordinateBackfill", coordinateBackfillService.getStats());
+        metrics.put("upstreams", upstreamHttpClient.getStats());
+        metrics.put("routeFlights", routeService.getFlightStats());
+        metrics.put("geocodeFlights", geocodingService.getFlightStats());
+        metrics.put("trackingCodes", trackingCodeGenerator.getStats());
+        metrics.put("outbox", outboxDispatcher.getStats());
+        metrics.put("webSocket", getWebSocketStats());
+        return metrics;
+    }
+
+    /**
+     * Session counts and broker channel executor state (pool, active, queued, completed)
+     */
+    private Map<String, Object> getWebSocketStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", webSocketMessageBrokerStats.getWebSocketSessionStatsInfo());
+        stats.put("stomp", webSocketMessageBrokerStats.getStompSubProtocolStatsInfo());
+        stats.put("inboundChannel", webSocketMessageBrokerStats.getClientInboundExecutorStatsInfo());
+        stats.put("outboundChannel", webSocketMessageBrokerStats.getClientOutboundExecutorStatsInfo());
+        stats.put("sockJsScheduler", webSocketMessageBrokerStats.getSockJsTaskSchedulerStatsInfo());
+        return stats;
+    }
+
     // ==========================================
     // Login Activity Logs
     // ==========================================
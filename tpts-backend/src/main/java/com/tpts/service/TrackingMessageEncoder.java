@@ -0,0 +1,126 @@
+package com.tpts.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.dto.event.AgentLocationEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Encodes tracking broadcast payloads into ready-to-send STOMP messages
+ *
+ * Each payload is serialized exactly once into a Message<byte[]> with its
+ * content type set, so SimpMessagingTemplate and the broker pass the same
+ * bytes to every subscriber without running a message converter.
+ *
+ * Agent locations (the hot path) are written directly as JSON; all their
+ * fields are numbers or text we format ourselves, so no escaping is needed.
+ * With tracking.broadcast.compact=true they are sent as a positional array
+ * [agentLat, agentLng, epochMillis, distanceKm, etaMinutes] instead
+ * (content type application/vnd.tpts.location+json); distance and ETA are
+ * null when unknown.
+ */
+@Component
+@RequiredArgsConstructor
+public class TrackingMessageEncoder {
+
+    public static final MimeType COMPACT_LOCATION_TYPE = MimeType.valueOf("application/vnd.tpts.location+json");
+
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${tracking.broadcast.compact:false}")
+    private boolean compact;
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    // ==========================================
+    // Encoding
+    // ==========================================
+
+    /**
+     * Agent location update, in the configured wire format
+     */
+    public Message<byte[]> agentLocation(AgentLocationEvent event) {
+        StringBuilder sb = new StringBuilder(compact ? 64 : 160);
+        if (compact) {
+            sb.append('[').append(event.agentLat().toPlainString())
+                    .append(',').append(event.agentLng().toPlainString())
+                    .append(',').append(event.timestamp().atZone(ZONE).toInstant().toEpochMilli());
+            if (event.hasEta()) {
+                sb.append(',').append(event.distanceKm()).append(',').append(event.etaMinutes());
+            } else {
+                sb.append(",null,null");
+            }
+            sb.append(']');
+            return build(sb.toString().getBytes(StandardCharsets.UTF_8), COMPACT_LOCATION_TYPE);
+        }
+
+        sb.append("{\"agentLat\":").append(event.agentLat().toPlainString())
+                .append(",\"agentLng\":").append(event.agentLng().toPlainString())
+                .append(",\"timestamp\":\"");
+        DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(event.timestamp(), sb);
+        sb.append('"');
+        if (event.hasEta()) {
+            sb.append(",\"distanceKm\":\"").append(event.distanceKm())
+                    .append("\",\"etaMinutes\":").append(event.etaMinutes())
+                    .append(",\"etaText\":\"").append(event.etaText()).append('"');
+        }
+        sb.append('}');
+        return build(sb.toString().getBytes(StandardCharsets.UTF_8), MimeTypeUtils.APPLICATION_JSON);
+    }
+
+    /**
+     * Any other payload (records, DTOs) through the application ObjectMapper
+     */
+    public Message<byte[]> json(Object payload) {
+        try {
+            return build(objectMapper.writeValueAsBytes(payload), MimeTypeUtils.APPLICATION_JSON);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize " + payload.getClass().getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Immutable message; SimpMessagingTemplate copies only the headers per destination
+     */
+    private Message<byte[]> build(byte[] payload, MimeType contentType) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(contentType);
+        messages.increment();
+        bytes.add(payload.length);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        long count = messages.sum();
+        long total = bytes.sum();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("compact", compact);
+        stats.put("messages", count);
+        stats.put("bytes", total);
+        stats.put("avgBytes", count == 0 ? 0 : total / count);
+        return stats;
+    }
+}
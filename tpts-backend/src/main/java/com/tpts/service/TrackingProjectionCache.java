@@ -0,0 +1,276 @@
+package com.tpts.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.dto.response.AgentPublicDTO;
+import com.tpts.dto.response.ParcelTrackingDTO;
+import com.tpts.entity.ParcelWriteObserver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Public Tracking Projection Cache
+ * Bounded, TTL-based cache of the public tracking view per tracking number,
+ * so repeated polls and STOMP subscribes of an unchanged parcel run no SQL.
+ *
+ * Each projection carries a content hash computed once when it is built.
+ * The agent's live position is overlaid on read from AgentLocationStore
+ * and folded into the ETag, so the ETag changes exactly when the response
+ * would. Parcel writes evict the entry through ParcelWriteListener (after
+ * commit); the TTL bounds staleness of agent/company details such as
+ * ratings, which change without touching the parcel.
+ *
+ * A loader can read the pre-commit state and finish after the after-commit
+ * eviction; every eviction bumps a generation (striped by tracking number),
+ * and a load whose generation moved while it ran is not kept in the cache.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TrackingProjectionCache implements ParcelWriteObserver {
+
+    private final AgentLocationStore agentLocationStore;
+    private final ObjectMapper objectMapper;
+
+    @Value("${tracking.projection-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${tracking.projection-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${tracking.projection-cache.max-size:50000}")
+    private int maxSize;
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final Map<String, Projection> byTrackingNumber = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final LongAdder sizeEvictions = new LongAdder();
+    private final LongAdder staleLoads = new LongAdder();
+
+    private record Projection(ParcelTrackingDTO tracking, String contentHash, long expiresAt) {
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * Tracking response plus its ETag. The DTO may be shared: do not modify it.
+     */
+    public record TrackingView(ParcelTrackingDTO tracking, String etag) {
+    }
+
+    // ==========================================
+    // Lookup
+    // ==========================================
+
+    /**
+     * Get the tracking view, building it with the given loader on a miss.
+     * Returns null if the loader returns null (unknown tracking number);
+     * unknown tracking numbers are not cached.
+     */
+    public TrackingView get(String trackingNumber, Function<String, ParcelTrackingDTO> loader) {
+        long now = System.currentTimeMillis();
+        Projection projection = enabled ? byTrackingNumber.get(trackingNumber) : null;
+
+        if (projection != null && projection.isExpired(now)) {
+            if (byTrackingNumber.remove(trackingNumber, projection)) {
+                expirations.increment();
+            }
+            projection = null;
+        }
+
+        if (projection != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            int stripe = stripe(trackingNumber);
+            long generation = generations.get(stripe);
+            ParcelTrackingDTO tracking = loader.apply(trackingNumber);
+            if (tracking == null) {
+                return null;
+            }
+            projection = new Projection(tracking, contentHash(tracking), now + ttlSeconds * 1000);
+            if (enabled && generations.get(stripe) == generation) {
+                put(trackingNumber, projection, now);
+                // An eviction between the check and the put has already run its remove
+                if (generations.get(stripe) != generation && byTrackingNumber.remove(trackingNumber, projection)) {
+                    staleLoads.increment();
+                }
+            } else if (enabled) {
+                staleLoads.increment();
+            }
+        }
+        return withLivePosition(projection);
+    }
+
+    /**
+     * Overlay the agent's latest in-memory position (no DB access)
+     */
+    private TrackingView withLivePosition(Projection projection) {
+        ParcelTrackingDTO tracking = projection.tracking();
+        AgentPublicDTO agent = tracking.getAgent();
+        AgentLocationStore.AgentPosition position = agent != null && agent.getId() != null
+                ? agentLocationStore.get(agent.getId())
+                : null;
+
+        if (position == null) {
+            return new TrackingView(tracking, "\"" + projection.contentHash() + "\"");
+        }
+
+        ParcelTrackingDTO live = tracking.toBuilder()
+                .agent(agent.toBuilder()
+                        .currentLatitude(position.latitudeDecimal())
+                        .currentLongitude(position.longitudeDecimal())
+                        .build())
+                .build();
+        return new TrackingView(live,
+                "\"" + projection.contentHash() + "-" + Long.toHexString(position.timestamp()) + "\"");
+    }
+
+    private void put(String trackingNumber, Projection projection, long now) {
+        if (byTrackingNumber.size() >= maxSize) {
+            evictForSpace(now);
+        }
+        byTrackingNumber.put(trackingNumber, projection);
+    }
+
+    /**
+     * Drop expired entries first; if still full, drop the oldest tenth
+     */
+    private void evictForSpace(long now) {
+        byTrackingNumber.entrySet().removeIf(e -> {
+            if (e.getValue().isExpired(now)) {
+                expirations.increment();
+                return true;
+            }
+            return false;
+        });
+
+        if (byTrackingNumber.size() < maxSize) {
+            return;
+        }
+
+        int toRemove = Math.max(1, maxSize / 10);
+        List<Map.Entry<String, Projection>> oldest = byTrackingNumber.entrySet().stream()
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt()))
+                .limit(toRemove)
+                .toList();
+
+        for (Map.Entry<String, Projection> e : oldest) {
+            if (byTrackingNumber.remove(e.getKey(), e.getValue())) {
+                sizeEvictions.increment();
+            }
+        }
+        log.debug("Tracking projection cache full, evicted {} oldest entries", oldest.size());
+    }
+
+    // ==========================================
+    // Invalidation
+    // ==========================================
+
+    @Override
+    public void onParcelWritten(String trackingNumber) {
+        evict(trackingNumber);
+    }
+
+    /**
+     * Evict a parcel's projection now and, inside a transaction, again after
+     * commit, so a read racing the write cannot re-cache the old state
+     */
+    public void evict(String trackingNumber) {
+        if (trackingNumber == null) {
+            return;
+        }
+        evictNow(trackingNumber);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictNow(trackingNumber);
+                }
+            });
+        }
+    }
+
+    private void evictNow(String trackingNumber) {
+        // Bump before removing: a load that misses this remove sees the new generation
+        generations.incrementAndGet(stripe(trackingNumber));
+        if (byTrackingNumber.remove(trackingNumber) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Clear the whole cache
+     */
+    public void clear() {
+        byTrackingNumber.clear();
+        log.info("Tracking projection cache cleared");
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", byTrackingNumber.size());
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlSeconds);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("expirations", expirations.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("sizeEvictions", sizeEvictions.sum());
+        stats.put("staleLoads", staleLoads.sum());
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static int stripe(String trackingNumber) {
+        return Math.floorMod(trackingNumber.hashCode(), GENERATION_STRIPES);
+    }
+
+    /**
+     * Stable hash of the serialized view (same on every node for the same data)
+     */
+    private String contentHash(ParcelTrackingDTO tracking) {
+        try {
+            CRC32 crc = new CRC32();
+            crc.update(objectMapper.writeValueAsBytes(tracking));
+            return Long.toHexString(crc.getValue());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to hash tracking view for " + tracking.getTrackingNumber(), e);
+        }
+    }
+}
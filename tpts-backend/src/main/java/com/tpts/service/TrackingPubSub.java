@@ -0,0 +1,24 @@
+package com.tpts.service;
+
+import org.springframework.messaging.Message;
+
+import java.util.Map;
+
+/**
+ * Publish/subscribe channel behind the tracking broadcasts
+ *
+ * Every node delivers a published message to its own STOMP subscribers
+ * only; implementations decide how a message published on one node
+ * reaches the others. Selected with tracking.pubsub.mode:
+ * - local (default): single node, in-JVM only (LocalTrackingPubSub)
+ * - peer: TCP mesh between the configured nodes (PeerTrackingPubSub)
+ */
+public interface TrackingPubSub {
+
+    /**
+     * Deliver a pre-serialized message to the destination's subscribers on every node
+     */
+    void publish(String destination, Message<byte[]> message);
+
+    Map<String, Object> getStats();
+}
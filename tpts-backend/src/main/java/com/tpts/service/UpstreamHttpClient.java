@@ -0,0 +1,319 @@
+package com.tpts.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shared HTTP client for external map APIs (OSRM, Nominatim)
+ *
+ * One JDK HttpClient with pooled keep-alive connections, and per upstream:
+ * - a strict request deadline (upstream.{name}.timeout-ms)
+ * - a bulkhead capping concurrent calls (upstream.{name}.max-concurrent);
+ *   a caller that cannot get a slot within bulkhead-wait-ms fails fast
+ * - a circuit breaker that opens after failure-threshold consecutive
+ *   failures (I/O errors, timeouts, 429/5xx) and rejects calls for
+ *   open-ms, then lets a single trial call through
+ * - a latency histogram exposed through getStats()
+ *
+ * Callers catch UpstreamUnavailableException and use their offline fallback.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UpstreamHttpClient {
+
+    private static final long[] BUCKET_BOUNDS_MS = { 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000 };
+
+    private final Environment environment;
+
+    private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    /**
+     * The upstream was not called (bulkhead full, circuit open) or failed
+     */
+    public static class UpstreamUnavailableException extends RuntimeException {
+        public UpstreamUnavailableException(String message) {
+            super(message);
+        }
+
+        public UpstreamUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Limits, breaker state and metrics of one upstream
+     */
+    private static final class Upstream {
+        final String name;
+        final Duration timeout;
+        final Semaphore bulkhead;
+        final int maxConcurrent;
+        final long bulkheadWaitMs;
+        final int failureThreshold;
+        final long openMs;
+
+        // Breaker state, guarded by this
+        CircuitState state = CircuitState.CLOSED;
+        int consecutiveFailures;
+        long openedAt;
+        boolean trialInFlight;
+
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder rejectedBulkhead = new LongAdder();
+        final LongAdder rejectedOpen = new LongAdder();
+        final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+        final LongAdder totalMs = new LongAdder();
+
+        Upstream(String name, Duration timeout, int maxConcurrent, long bulkheadWaitMs,
+                int failureThreshold, long openMs) {
+            this.name = name;
+            this.timeout = timeout;
+            this.maxConcurrent = maxConcurrent;
+            this.bulkhead = new Semaphore(maxConcurrent);
+            this.bulkheadWaitMs = bulkheadWaitMs;
+            this.failureThreshold = failureThreshold;
+            this.openMs = openMs;
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        synchronized boolean allowCall(long now) {
+            switch (state) {
+                case OPEN:
+                    if (now - openedAt < openMs) {
+                        return false;
+                    }
+                    state = CircuitState.HALF_OPEN;
+                    trialInFlight = true;
+                    return true;
+                case HALF_OPEN:
+                    // Only one trial at a time
+                    if (trialInFlight) {
+                        return false;
+                    }
+                    trialInFlight = true;
+                    return true;
+                default:
+                    return true;
+            }
+        }
+
+        synchronized void releaseTrial() {
+            trialInFlight = false;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            trialInFlight = false;
+            state = CircuitState.CLOSED;
+        }
+
+        synchronized boolean onFailure(long now) {
+            trialInFlight = false;
+            consecutiveFailures++;
+            if (state == CircuitState.HALF_OPEN
+                    || (state == CircuitState.CLOSED && consecutiveFailures >= failureThreshold)) {
+                state = CircuitState.OPEN;
+                openedAt = now;
+                return true;
+            }
+            return false;
+        }
+
+        void record(long elapsedMs) {
+            int i = 0;
+            while (i < BUCKET_BOUNDS_MS.length && elapsedMs > BUCKET_BOUNDS_MS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            totalMs.add(elapsedMs);
+        }
+    }
+
+    // ==========================================
+    // Calls
+    // ==========================================
+
+    /**
+     * GET a URL from the named upstream and return the body
+     *
+     * @throws UpstreamUnavailableException when rejected, timed out, failed or non-2xx
+     */
+    public String get(String upstreamName, String url, Map<String, String> headers) {
+        Upstream upstream = upstreams.computeIfAbsent(upstreamName, this::createUpstream);
+        long now = System.currentTimeMillis();
+
+        if (!upstream.allowCall(now)) {
+            upstream.rejectedOpen.increment();
+            throw new UpstreamUnavailableException(upstreamName + " circuit open");
+        }
+
+        boolean acquired;
+        try {
+            acquired = upstream.bulkhead.tryAcquire(upstream.bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            upstream.releaseTrial();
+            throw new UpstreamUnavailableException(upstreamName + " call interrupted", e);
+        }
+        if (!acquired) {
+            upstream.rejectedBulkhead.increment();
+            upstream.releaseTrial();
+            throw new UpstreamUnavailableException(upstreamName + " bulkhead full");
+        }
+
+        long start = System.nanoTime();
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(upstream.timeout)
+                    .GET();
+            headers.forEach(request::header);
+
+            upstream.calls.increment();
+            HttpResponse<String> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+            int status = response.statusCode();
+
+            if (status == 429 || status >= 500) {
+                fail(upstream, null);
+                throw new UpstreamUnavailableException(upstreamName + " returned HTTP " + status);
+            }
+            // 4xx other than 429 is our request's fault, not the upstream's health
+            upstream.onSuccess();
+            if (status >= 400) {
+                throw new UpstreamUnavailableException(upstreamName + " returned HTTP " + status);
+            }
+            return response.body();
+
+        } catch (HttpTimeoutException e) {
+            upstream.timeouts.increment();
+            fail(upstream, e);
+            throw new UpstreamUnavailableException(upstreamName + " timed out after " + upstream.timeout.toMillis() + "ms", e);
+        } catch (IOException e) {
+            fail(upstream, e);
+            throw new UpstreamUnavailableException(upstreamName + " call failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(upstream, e);
+            throw new UpstreamUnavailableException(upstreamName + " call interrupted", e);
+        } catch (UpstreamUnavailableException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Bad URL, SecurityException, ...: still settle the breaker so a trial call cannot wedge it
+            fail(upstream, e);
+            throw new UpstreamUnavailableException(upstreamName + " call failed: " + e.getMessage(), e);
+        } finally {
+            upstream.record((System.nanoTime() - start) / 1_000_000);
+            upstream.bulkhead.release();
+        }
+    }
+
+    private void fail(Upstream upstream, Exception cause) {
+        upstream.failures.increment();
+        if (upstream.onFailure(System.currentTimeMillis())) {
+            log.warn("Circuit for {} opened for {}ms after {} consecutive failures{}", upstream.name, upstream.openMs,
+                    upstream.consecutiveFailures, cause != null ? " (last: " + cause.getMessage() + ")" : "");
+        }
+    }
+
+    private Upstream createUpstream(String name) {
+        String prefix = "upstream." + name + ".";
+        // Public Nominatim allows ~1 request/second, so keep it to a trickle
+        boolean nominatim = "nominatim".equals(name);
+        return new Upstream(name,
+                Duration.ofMillis(environment.getProperty(prefix + "timeout-ms", Long.class, nominatim ? 5000L : 3000L)),
+                environment.getProperty(prefix + "max-concurrent", Integer.class, nominatim ? 2 : 16),
+                environment.getProperty(prefix + "bulkhead-wait-ms", Long.class, 100L),
+                environment.getProperty(prefix + "failure-threshold", Integer.class, 5),
+                environment.getProperty(prefix + "open-ms", Long.class, 30000L));
+    }
+
+    // ==========================================
+    // Metrics
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        upstreams.forEach((name, upstream) -> stats.put(name, statsOf(upstream)));
+        return stats;
+    }
+
+    private Map<String, Object> statsOf(Upstream upstream) {
+        long[] counts = new long[upstream.buckets.length];
+        long total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = upstream.buckets[i].sum();
+            total += counts[i];
+        }
+
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            histogram.put(i < BUCKET_BOUNDS_MS.length ? "le" + BUCKET_BOUNDS_MS[i] + "ms" : "gt"
+                    + BUCKET_BOUNDS_MS[BUCKET_BOUNDS_MS.length - 1] + "ms", counts[i]);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (upstream) {
+            stats.put("circuit", upstream.state.name());
+        }
+        stats.put("timeoutMs", upstream.timeout.toMillis());
+        stats.put("maxConcurrent", upstream.maxConcurrent);
+        stats.put("inFlight", upstream.maxConcurrent - upstream.bulkhead.availablePermits());
+        stats.put("calls", upstream.calls.sum());
+        stats.put("failures", upstream.failures.sum());
+        stats.put("timeouts", upstream.timeouts.sum());
+        stats.put("rejectedBulkhead", upstream.rejectedBulkhead.sum());
+        stats.put("rejectedOpen", upstream.rejectedOpen.sum());
+        stats.put("avgMs", total == 0 ? 0 : upstream.totalMs.sum() / total);
+        stats.put("p50Ms", percentile(counts, total, 0.50));
+        stats.put("p95Ms", percentile(counts, total, 0.95));
+        stats.put("p99Ms", percentile(counts, total, 0.99));
+        stats.put("latencyHistogram", histogram);
+        return stats;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile (-1 if above the last bound)
+     */
+    private static long percentile(long[] counts, long total, double p) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * p);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < BUCKET_BOUNDS_MS.length ? BUCKET_BOUNDS_MS[i] : -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,150 @@
+package com.tpts.util;
+
+/**
+ * Geodesic Distance Utility
+ * Allocation-free great-circle distance and ETA helpers on primitive doubles,
+ * shared by route fallback, live tracking broadcasts and the agent index.
+ *
+ * - haversineKm: exact great-circle distance on a spherical earth
+ * - equirectangularKm: flat-earth approximation, within 0.1% below ~50 km
+ * - distanceKm: picks the fast path automatically for short hops
+ * - the cosLat overloads take precomputed cos(latitude) for fixed destinations
+ */
+public final class GeoUtils {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    // Below this separation (degrees on either axis) the equirectangular error is negligible
+    private static final double FAST_PATH_MAX_DEGREES = 0.45;
+
+    private static final double RAD = Math.PI / 180.0;
+
+    private GeoUtils() {
+    }
+
+    // ==========================================
+    // Single Distance
+    // ==========================================
+
+    /**
+     * Precompute cos(latitude) for a point that is measured against repeatedly
+     */
+    public static double cosLat(double latitude) {
+        return Math.cos(latitude * RAD);
+    }
+
+    /**
+     * Great-circle distance in km (Haversine formula)
+     */
+    public static double haversineKm(double lat1, double lng1, double lat2, double lng2) {
+        return haversineKm(lat1, lng1, cosLat(lat1), lat2, lng2, cosLat(lat2));
+    }
+
+    /**
+     * Great-circle distance in km with precomputed cos(lat) of both points
+     */
+    public static double haversineKm(double lat1, double lng1, double cosLat1,
+                                     double lat2, double lng2, double cosLat2) {
+        double sinDLat = Math.sin((lat2 - lat1) * RAD / 2);
+        double sinDLng = Math.sin((lng2 - lng1) * RAD / 2);
+        double a = sinDLat * sinDLat + cosLat1 * cosLat2 * sinDLng * sinDLng;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Equirectangular approximation in km (one cos, one sqrt)
+     */
+    public static double equirectangularKm(double lat1, double lng1, double lat2, double lng2) {
+        double x = (lng2 - lng1) * RAD * Math.cos((lat1 + lat2) * RAD / 2);
+        double y = (lat2 - lat1) * RAD;
+        return EARTH_RADIUS_KM * Math.sqrt(x * x + y * y);
+    }
+
+    /**
+     * Distance in km: equirectangular for short hops, Haversine otherwise
+     */
+    public static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        if (isShortHop(lat1, lng1, lat2, lng2)) {
+            return equirectangularKm(lat1, lng1, lat2, lng2);
+        }
+        return haversineKm(lat1, lng1, lat2, lng2);
+    }
+
+    /**
+     * Distance in km with precomputed cos(lat) of both points.
+     * The short-hop path uses the mean of the two cosines, so no trig is done at all.
+     */
+    public static double distanceKm(double lat1, double lng1, double cosLat1,
+                                    double lat2, double lng2, double cosLat2) {
+        if (isShortHop(lat1, lng1, lat2, lng2)) {
+            double x = (lng2 - lng1) * RAD * (cosLat1 + cosLat2) / 2;
+            double y = (lat2 - lat1) * RAD;
+            return EARTH_RADIUS_KM * Math.sqrt(x * x + y * y);
+        }
+        return haversineKm(lat1, lng1, cosLat1, lat2, lng2, cosLat2);
+    }
+
+    private static boolean isShortHop(double lat1, double lng1, double lat2, double lng2) {
+        return Math.abs(lat2 - lat1) < FAST_PATH_MAX_DEGREES && Math.abs(lng2 - lng1) < FAST_PATH_MAX_DEGREES;
+    }
+
+    // ==========================================
+    // Bulk Distance
+    // ==========================================
+
+    /**
+     * Distances from one origin to n destinations, written into out[0..n)
+     *
+     * @param destCosLats precomputed cos(lat) of each destination
+     */
+    public static void distancesKm(double originLat, double originLng,
+                                   double[] destLats, double[] destLngs, double[] destCosLats,
+                                   double[] out, int n) {
+        double originCos = cosLat(originLat);
+        for (int i = 0; i < n; i++) {
+            out[i] = distanceKm(originLat, originLng, originCos, destLats[i], destLngs[i], destCosLats[i]);
+        }
+    }
+
+    /**
+     * Symmetric n x n distance matrix (row-major, out.length >= n * n)
+     */
+    public static void distanceMatrixKm(double[] lats, double[] lngs, double[] out, int n) {
+        double[] cos = new double[n];
+        for (int i = 0; i < n; i++) {
+            cos[i] = cosLat(lats[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            out[i * n + i] = 0;
+            for (int j = i + 1; j < n; j++) {
+                double d = distanceKm(lats[i], lngs[i], cos[i], lats[j], lngs[j], cos[j]);
+                out[i * n + j] = d;
+                out[j * n + i] = d;
+            }
+        }
+    }
+
+    // ==========================================
+    // ETA Formatting
+    // ==========================================
+
+    /**
+     * "45 mins" / "1 hrs 5 mins", without String.format
+     */
+    public static String formatEta(int minutes) {
+        if (minutes < 60) {
+            return minutes + " mins";
+        }
+        return (minutes / 60) + " hrs " + (minutes % 60) + " mins";
+    }
+
+    /**
+     * Distance with exactly two decimals ("3.40"), without String.format
+     */
+    public static String formatKm(double km) {
+        long hundredths = Math.round(km * 100);
+        long whole = hundredths / 100;
+        int fraction = (int) (hundredths % 100);
+        return whole + (fraction < 10 ? ".0" : ".") + fraction;
+    }
+}
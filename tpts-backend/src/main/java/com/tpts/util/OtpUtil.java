@@ -37,28 +37,6 @@ public class OtpUtil {
         return UUID.randomUUID().toString().replace("-", "");
     }
 
-    /**
-     * Generate a unique tracking number
-     * Format: TRK + timestamp(last 6 digits) + random(4 digits)
-     * Example: TRK1234567890
-     */
-    public String generateTrackingNumber() {
-        long timestamp = System.currentTimeMillis();
-        String timestampPart = String.valueOf(timestamp).substring(7); // Last 6 digits
-        int randomPart = 1000 + random.nextInt(9000); // 4-digit random
-        return "TRK" + timestampPart + randomPart;
-    }
-
-    /**
-     * Generate a unique group code
-     * Format: GRP + random(6 digits)
-     * Example: GRP123456
-     */
-    public String generateGroupCode() {
-        int randomPart = 100000 + random.nextInt(900000); // 6-digit random
-        return "GRP" + randomPart;
-    }
-
     /**
      * Generate a temporary password
      * @return 8-character alphanumeric password
@@ -0,0 +1,216 @@
+package com.tpts.util;
+
+/**
+ * Multi-Stop Route Sequencing
+ * Orders the stops of one run over a precomputed distance matrix: a
+ * nearest-neighbour tour seeds the order, then 2-opt (segment reversal) and
+ * Or-opt (moving runs of 1-3 stops) improve it until neither finds a gain.
+ *
+ * Node 0 is the start (the agent's position) and the path is open - it ends
+ * at whichever stop is visited last - unless pinnedEnd is set, in which case
+ * node n-1 is always the final stop (e.g. the warehouse ending a pickup run).
+ *
+ * The matrix is row-major with matrix[i * n + j] the cost of i -> j and may
+ * be asymmetric (road distances usually are); all deltas are evaluated in
+ * the direction of travel.
+ */
+public final class RouteSequencer {
+
+    private static final int MAX_OR_OPT_SEGMENT = 3;
+    private static final int MAX_PASSES = 100;
+    private static final double EPSILON = 1e-9;
+
+    private RouteSequencer() {
+    }
+
+    /**
+     * Visiting order of all n nodes, starting with node 0
+     */
+    public static int[] sequence(double[] matrix, int n, boolean pinnedEnd) {
+        int[] order = nearestNeighbour(matrix, n, pinnedEnd);
+        if (n < 4) {
+            return order;
+        }
+
+        double[] forward = new double[n];
+        double[] backward = new double[n];
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean improved = twoOpt(matrix, n, order, pinnedEnd, forward, backward);
+            improved |= orOpt(matrix, n, order, pinnedEnd);
+            if (!improved) {
+                break;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Total cost of visiting nodes in the given order
+     */
+    public static double pathCost(double[] matrix, int n, int[] order) {
+        double cost = 0;
+        for (int k = 1; k < order.length; k++) {
+            cost += matrix[order[k - 1] * n + order[k]];
+        }
+        return cost;
+    }
+
+    // ==========================================
+    // Construction
+    // ==========================================
+
+    /**
+     * Greedy tour: always drive to the closest unvisited stop
+     */
+    static int[] nearestNeighbour(double[] matrix, int n, boolean pinnedEnd) {
+        int[] order = new int[n];
+        boolean[] visited = new boolean[n];
+        int last = pinnedEnd ? n - 1 : n;
+        visited[0] = true;
+
+        int current = 0;
+        for (int k = 1; k < last; k++) {
+            int best = -1;
+            double bestCost = Double.MAX_VALUE;
+            for (int j = 1; j < last; j++) {
+                if (!visited[j] && matrix[current * n + j] < bestCost) {
+                    best = j;
+                    bestCost = matrix[current * n + j];
+                }
+            }
+            visited[best] = true;
+            order[k] = best;
+            current = best;
+        }
+        if (pinnedEnd) {
+            order[n - 1] = n - 1;
+        }
+        return order;
+    }
+
+    // ==========================================
+    // Improvement
+    // ==========================================
+
+    /**
+     * One pass of first-improvement 2-opt: reverse order[i..j] when that shortens the path.
+     * Prefix sums of the forward and backward edge costs give the reversed
+     * segment's cost in O(1), so asymmetric matrices are handled exactly.
+     */
+    static boolean twoOpt(double[] matrix, int n, int[] order, boolean pinnedEnd,
+                          double[] forward, double[] backward) {
+        int lastMovable = pinnedEnd ? n - 2 : n - 1;
+        boolean improved = false;
+        prefixCosts(matrix, n, order, forward, backward);
+
+        for (int i = 1; i < lastMovable; i++) {
+            for (int j = i + 1; j <= lastMovable; j++) {
+                int before = order[i - 1];
+                int first = order[i];
+                int last = order[j];
+                double current = matrix[before * n + first] + (forward[j] - forward[i]);
+                double reversed = matrix[before * n + last] + (backward[j] - backward[i]);
+                if (j + 1 < n) {
+                    int after = order[j + 1];
+                    current += matrix[last * n + after];
+                    reversed += matrix[first * n + after];
+                }
+                if (reversed < current - EPSILON) {
+                    reverse(order, i, j);
+                    prefixCosts(matrix, n, order, forward, backward);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    /**
+     * One pass of Or-opt: move a run of 1-3 consecutive stops (keeping its
+     * direction) to the position where it adds the least distance
+     */
+    static boolean orOpt(double[] matrix, int n, int[] order, boolean pinnedEnd) {
+        int lastMovable = pinnedEnd ? n - 2 : n - 1;
+        boolean improved = false;
+
+        for (int length = 1; length <= MAX_OR_OPT_SEGMENT; length++) {
+            for (int i = 1; i + length - 1 <= lastMovable; i++) {
+                int e = i + length - 1;
+                int first = order[i];
+                int last = order[e];
+                int prev = order[i - 1];
+                int next = e + 1 < n ? order[e + 1] : -1;
+
+                double removeGain = matrix[prev * n + first];
+                if (next >= 0) {
+                    removeGain += matrix[last * n + next] - matrix[prev * n + next];
+                }
+
+                int bestPosition = -1;
+                double bestAdd = removeGain - EPSILON;
+                // Insert between order[p] and order[p + 1]; never after a pinned end
+                int lastPosition = pinnedEnd ? n - 2 : n - 1;
+                for (int p = 0; p <= lastPosition; p++) {
+                    if (p >= i - 1 && p <= e) {
+                        continue;
+                    }
+                    int from = order[p];
+                    int to = p + 1 < n ? order[p + 1] : -1;
+                    double add = matrix[from * n + first];
+                    if (to >= 0) {
+                        add += matrix[last * n + to] - matrix[from * n + to];
+                    }
+                    if (add < bestAdd) {
+                        bestAdd = add;
+                        bestPosition = p;
+                    }
+                }
+
+                if (bestPosition >= 0) {
+                    move(order, i, e, bestPosition);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static void prefixCosts(double[] matrix, int n, int[] order, double[] forward, double[] backward) {
+        forward[0] = 0;
+        backward[0] = 0;
+        for (int k = 1; k < n; k++) {
+            forward[k] = forward[k - 1] + matrix[order[k - 1] * n + order[k]];
+            backward[k] = backward[k - 1] + matrix[order[k] * n + order[k - 1]];
+        }
+    }
+
+    private static void reverse(int[] order, int i, int j) {
+        while (i < j) {
+            int tmp = order[i];
+            order[i++] = order[j];
+            order[j--] = tmp;
+        }
+    }
+
+    /**
+     * Move order[i..e] to just after the node currently at position p (p outside i-1..e)
+     */
+    private static void move(int[] order, int i, int e, int p) {
+        int length = e - i + 1;
+        int[] segment = new int[length];
+        System.arraycopy(order, i, segment, 0, length);
+        if (p < i) {
+            // Shift order[p+1..i-1] right by length
+            System.arraycopy(order, p + 1, order, p + 1 + length, i - p - 1);
+            System.arraycopy(segment, 0, order, p + 1, length);
+        } else {
+            // Shift order[e+1..p] left by length
+            System.arraycopy(order, e + 1, order, i, p - e);
+            System.arraycopy(segment, 0, order, p - length + 1, length);
+        }
+    }
+}
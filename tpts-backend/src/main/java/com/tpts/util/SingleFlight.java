@@ -0,0 +1,85 @@
+package com.tpts.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-flight request coalescing ("single flight")
+ *
+ * Concurrent callers asking for the same key share one execution of the
+ * loader: the first caller runs it, the rest wait on its future and get
+ * the same result or the same exception. The key is forgotten as soon as
+ * the call completes, so this deduplicates bursts without caching; put a
+ * cache in front for reuse over time.
+ *
+ * Waiting callers are bounded by the leader's own deadline (upstream
+ * timeouts), so loaders must not block indefinitely.
+ */
+public final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Run the loader for this key, or join the call already in flight
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            followers.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        leaders.increment();
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            failures.increment();
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return e;
+    }
+
+    public Map<String, Object> getStats() {
+        long leaderCount = leaders.sum();
+        long followerCount = followers.sum();
+        long total = leaderCount + followerCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.size());
+        stats.put("calls", leaderCount);
+        stats.put("coalesced", followerCount);
+        stats.put("coalescedRate", total == 0 ? 0.0 : (double) followerCount / total);
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+}
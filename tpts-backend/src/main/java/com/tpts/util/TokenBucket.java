@@ -0,0 +1,90 @@
+package com.tpts.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter
+ * Refills at a fixed rate up to a burst capacity; each call takes one token.
+ * Used to keep calls within an upstream's usage policy (e.g. Nominatim's
+ * one request per second).
+ */
+public final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+
+    // Guarded by this
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Rate and capacity must be positive");
+        }
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Take a token if one is available right now
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Take a token, waiting for the refill if necessary
+     *
+     * @return false if the thread was interrupted while waiting
+     */
+    public boolean acquire() {
+        return acquire(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Take a token, waiting at most the given time for the refill
+     *
+     * @return false if no token came up in time or the thread was interrupted
+     */
+    public boolean acquire(long maxWait, TimeUnit unit) {
+        long remainingNanos = unit.toNanos(maxWait);
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return true;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+            if (waitNanos > remainingNanos) {
+                return false;
+            }
+            remainingNanos -= waitNanos;
+            try {
+                Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    public double getTokensPerSecond() {
+        return tokensPerNano * 1_000_000_000.0;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,235 @@
+package com.tpts.util;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracking Number / Group Code Generator
+ * Unique by construction, so callers never need an existence check.
+ *
+ * Each code is a 58-bit id:
+ * - 32 bits: seconds since 2025-01-01T00:00:00Z (good until 2161)
+ * - 10 bits: node id (0-1023), distinct per running instance
+ *   (tracking-code.node-id; tracking-code.single-node=true pins it to 0 for a
+ *   deployment with exactly one instance, =false makes the node id required;
+ *   with neither set the generator runs as node 0 and warns at startup)
+ * - 16 bits: sequence within the second (65,536 codes/s per node)
+ *
+ * written as 12 Crockford Base32 characters (no I, L, O, U) plus a Luhn
+ * mod 32 check character, behind the usual prefix:
+ * TRK + 13 chars for parcels, GRP + 13 chars for groups (16 characters).
+ *
+ * The clock never runs backwards here: if the system clock steps back, the
+ * last issued second is reused until its sequence runs out, and then the
+ * generator waits for real time to catch up.
+ */
+@Component
+@Slf4j
+public class TrackingCodeGenerator {
+
+    public static final String TRACKING_PREFIX = "TRK";
+    public static final String GROUP_PREFIX = "GRP";
+
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+    private static final int RADIX = 32;
+    private static final int BODY_LENGTH = 12;
+    public static final int CODE_LENGTH = 3 + BODY_LENGTH + 1;
+
+    private static final long EPOCH_SECONDS = 1735689600L; // 2025-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 16;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            VALUES[ALPHABET.charAt(i)] = i;
+            VALUES[Character.toLowerCase(ALPHABET.charAt(i))] = i;
+        }
+    }
+
+    @Value("${tracking-code.node-id:-1}")
+    private int configuredNodeId;
+
+    // null when not configured: run as node 0, but warn
+    @Value("${tracking-code.single-node:#{null}}")
+    private Boolean singleNode;
+
+    private long nodeId;
+
+    // (second << SEQUENCE_BITS) | sequence of the last issued id
+    private final AtomicLong state = new AtomicLong();
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder sequenceWaits = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (configuredNodeId >= 0) {
+            if (configuredNodeId > MAX_NODE) {
+                throw new IllegalStateException("tracking-code.node-id must be between 0 and " + MAX_NODE);
+            }
+            nodeId = configuredNodeId;
+        } else if (Boolean.TRUE.equals(singleNode)) {
+            nodeId = 0;
+        } else if (singleNode == null) {
+            nodeId = 0;
+            log.warn("**************************************************************");
+            log.warn("tracking-code.node-id is not set: issuing tracking codes as node 0.");
+            log.warn("Codes WILL collide if more than one instance runs. Set a distinct");
+            log.warn("tracking-code.node-id per instance, or tracking-code.single-node=true.");
+            log.warn("**************************************************************");
+        } else {
+            // A guessed id can collide with another instance's and reissue its codes
+            throw new IllegalStateException("tracking-code.node-id must be set to an id distinct per instance, "
+                    + "or tracking-code.single-node=true when only one instance runs");
+        }
+        // Treat the startup second as used up, so a quick restart cannot reissue
+        // codes the previous process handed out in that same second
+        state.set((currentSecond() << SEQUENCE_BITS) | SEQUENCE_MASK);
+        log.info("Tracking code generator started on node {}", nodeId);
+    }
+
+    // ==========================================
+    // Generation
+    // ==========================================
+
+    public String nextTrackingNumber() {
+        return format(TRACKING_PREFIX, nextId());
+    }
+
+    public String nextGroupCode() {
+        return format(GROUP_PREFIX, nextId());
+    }
+
+    /**
+     * Next raw id; lock-free, waits only when a second's sequence is exhausted
+     */
+    long nextId() {
+        while (true) {
+            long prev = state.get();
+            long prevSecond = prev >>> SEQUENCE_BITS;
+            long now = currentSecond();
+
+            long next;
+            if (now > prevSecond) {
+                next = now << SEQUENCE_BITS;
+            } else if ((prev & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                next = prev + 1;
+            } else {
+                sequenceWaits.increment();
+                awaitSecondAfter(prevSecond);
+                continue;
+            }
+
+            if (state.compareAndSet(prev, next)) {
+                issued.increment();
+                long second = next >>> SEQUENCE_BITS;
+                return (second << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    // ==========================================
+    // Validation
+    // ==========================================
+
+    /**
+     * True if the code has this generator's shape and a correct check character.
+     * Codes issued before this format (e.g. TRK + 10 digits) return false.
+     */
+    public static boolean isWellFormed(String code) {
+        if (code == null || code.length() != CODE_LENGTH) {
+            return false;
+        }
+        String prefix = code.substring(0, 3);
+        if (!TRACKING_PREFIX.equalsIgnoreCase(prefix) && !GROUP_PREFIX.equalsIgnoreCase(prefix)) {
+            return false;
+        }
+        return luhnSum(code.substring(3), true) % RADIX == 0;
+    }
+
+    /**
+     * True if the code looks like one of ours but fails the check, i.e. a typo
+     */
+    public static boolean isMistyped(String code) {
+        return code != null
+                && code.length() == CODE_LENGTH
+                && code.regionMatches(true, 0, TRACKING_PREFIX, 0, 3)
+                && !isWellFormed(code);
+    }
+
+    // ==========================================
+    // Stats
+    // ==========================================
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("nodeId", nodeId);
+        stats.put("issued", issued.sum());
+        stats.put("sequenceWaits", sequenceWaits.sum());
+        return stats;
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static String format(String prefix, long id) {
+        char[] body = new char[BODY_LENGTH];
+        for (int i = BODY_LENGTH - 1; i >= 0; i--) {
+            body[i] = ALPHABET.charAt((int) (id & (RADIX - 1)));
+            id >>>= 5;
+        }
+        String payload = new String(body);
+        int check = (RADIX - luhnSum(payload, false) % RADIX) % RADIX;
+        return prefix + payload + ALPHABET.charAt(check);
+    }
+
+    /**
+     * Luhn mod N sum, doubling every second character from the right.
+     * Without the check character the rightmost payload character is doubled;
+     * with it, the check character is not. Returns -1 on a foreign character.
+     */
+    private static int luhnSum(String s, boolean withCheck) {
+        int sum = 0;
+        boolean doubleIt = !withCheck;
+        for (int i = s.length() - 1; i >= 0; i--) {
+            char c = s.charAt(i);
+            int value = c < VALUES.length ? VALUES[c] : -1;
+            if (value < 0) {
+                return -1;
+            }
+            int addend = doubleIt ? value * 2 : value;
+            sum += addend / RADIX + addend % RADIX;
+            doubleIt = !doubleIt;
+        }
+        return sum;
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000 - EPOCH_SECONDS;
+    }
+
+    private static void awaitSecondAfter(long second) {
+        while (currentSecond() <= second) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the tracking code sequence");
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+-- V1004__widen_group_code.sql
+-- Group codes are now GRP + 13 characters (time/node/sequence + check character)
+
+ALTER TABLE group_shipments MODIFY COLUMN group_code VARCHAR(16) NOT NULL;
@@ -0,0 +1,11 @@
+-- V1005__parcel_id_sequence.sql
+-- Parcel ids now come from a pooled sequence (emulated with a table on MySQL)
+-- so inserts can be JDBC-batched. Start it above every existing id.
+
+CREATE TABLE IF NOT EXISTS parcels_seq (next_val BIGINT);
+
+INSERT INTO parcels_seq (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT 1 FROM parcels_seq);
+
+UPDATE parcels_seq
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 101 FROM parcels));
@@ -0,0 +1,179 @@
+package com.tpts.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tracking fan-out through the in-process STOMP broker at 10k sessions
+ * Skipped in normal builds; run with:
+ * mvn test -Dtest=BrokerFanOutBenchmark -Dbenchmark=true
+ *
+ * 10,000 sessions watch 2,000 parcel topics (5 each). Publisher threads send
+ * pings to random topics the way AgentLocationService does; a subscriber on
+ * the outbound channel stands in for the WebSocket sessions and records the
+ * publish-to-outbound latency. Outbound pool sizes match WebSocketConfig's
+ * defaults. Each mode runs saturated (messages/sec; latency there is just
+ * queue depth) and paced at 10k pings/s (p50/p99). One ping per topic is sent
+ * before measuring so the destination cache is warm.
+ *
+ * - default: Spring defaults (no broker channel executor, 1024-entry
+ *            destination cache, smaller than the number of topics)
+ * - cached:  16k destination cache (WebSocketConfig default), no executor
+ * - sharded: 16k cache plus ShardedChannelExecutor with 4 lanes
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BrokerFanOutBenchmark {
+
+    private static final int SESSIONS = 10_000;
+    private static final int TOPICS = 2_000;
+    private static final int PUBLISHERS = 4;
+    private static final int PINGS = 40_000;
+    private static final int PACED_PINGS_PER_SECOND = 10_000;
+
+    @Test
+    void fanOut() throws Exception {
+        for (int round = 0; round < 2; round++) {
+            run("default", null, 1024, round);
+            run("cached", null, 16_384, round);
+            ShardedChannelExecutor sharded = new ShardedChannelExecutor(4, 10_000, 1_000);
+            sharded.initialize();
+            try {
+                run("sharded", sharded, 16_384, round);
+            } finally {
+                sharded.shutdown();
+            }
+        }
+    }
+
+    private void run(String mode, ShardedChannelExecutor brokerExecutor, int cacheLimit, int round)
+            throws Exception {
+        for (boolean paced : new boolean[] { false, true }) {
+            ThreadPoolTaskExecutor outboundExecutor = new ThreadPoolTaskExecutor();
+            outboundExecutor.setCorePoolSize(8);
+            outboundExecutor.setMaxPoolSize(32);
+            outboundExecutor.setQueueCapacity(Integer.MAX_VALUE);
+            outboundExecutor.setThreadNamePrefix("outbound-");
+            outboundExecutor.initialize();
+
+            ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel();
+            ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel(outboundExecutor);
+            ExecutorSubscribableChannel broker = brokerExecutor != null
+                    ? new ExecutorSubscribableChannel(brokerExecutor)
+                    : new ExecutorSubscribableChannel();
+
+            int expected = PINGS * (SESSIONS / TOPICS);
+            long[] latencies = new long[expected];
+            AtomicInteger delivered = new AtomicInteger();
+            CountDownLatch done = new CountDownLatch(expected);
+            CountDownLatch warmedUp = new CountDownLatch(SESSIONS);
+            AtomicBoolean measuring = new AtomicBoolean();
+            outbound.subscribe(message -> {
+                if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE) {
+                    return; // CONNECT_ACK
+                }
+                if (!measuring.get()) {
+                    warmedUp.countDown();
+                    return;
+                }
+                long sentAt = ByteBuffer.wrap((byte[]) message.getPayload()).getLong();
+                int i = delivered.getAndIncrement();
+                if (i < expected) {
+                    latencies[i] = System.nanoTime() - sentAt;
+                }
+                done.countDown();
+            });
+
+            SimpleBrokerMessageHandler handler = new SimpleBrokerMessageHandler(inbound, outbound, broker,
+                    List.of("/topic"));
+            handler.setCacheLimit(cacheLimit);
+            handler.start();
+            for (int s = 0; s < SESSIONS; s++) {
+                SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+                connect.setSessionId("session-" + s);
+                handler.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+
+                SimpMessageHeaderAccessor subscribe = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+                subscribe.setSessionId("session-" + s);
+                subscribe.setSubscriptionId("sub-0");
+                subscribe.setDestination(topic(s % TOPICS));
+                handler.handleMessage(MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()));
+            }
+
+            // One ping per topic first, so the destination cache is as warm as in production
+            for (int t = 0; t < TOPICS; t++) {
+                broker.send(ping(t));
+            }
+            assertThat(warmedUp.await(60, TimeUnit.SECONDS)).isTrue();
+            measuring.set(true);
+
+            long start = System.nanoTime();
+            Thread[] publishers = new Thread[PUBLISHERS];
+            for (int p = 0; p < PUBLISHERS; p++) {
+                publishers[p] = new Thread(() -> publish(broker, paced));
+                publishers[p].start();
+            }
+            for (Thread publisher : publishers) {
+                publisher.join();
+            }
+            long published = System.nanoTime() - start;
+            assertThat(done.await(60, TimeUnit.SECONDS)).as("delivered %s of %s", delivered, expected).isTrue();
+            long elapsed = System.nanoTime() - start;
+
+            handler.stop();
+            outboundExecutor.shutdown();
+
+            Arrays.sort(latencies);
+            System.out.printf("round %d %-7s %-9s %,d deliveries in %d ms: %,.0f msg/s, publish %,.0f pings/s, "
+                            + "p50 %.2f ms, p99 %.2f ms%n",
+                    round, mode, paced ? "paced" : "saturated", expected,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), expected * 1e9 / elapsed, PINGS * 1e9 / published,
+                    latencies[expected / 2] / 1e6, latencies[(int) (expected * 0.99)] / 1e6);
+        }
+    }
+
+    private static void publish(ExecutorSubscribableChannel broker, boolean paced) {
+        int count = PINGS / PUBLISHERS;
+        long intervalNanos = paced ? TimeUnit.SECONDS.toNanos(1) * PUBLISHERS / PACED_PINGS_PER_SECOND : 0;
+        long next = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            if (paced) {
+                next += intervalNanos;
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            broker.send(ping(ThreadLocalRandom.current().nextInt(TOPICS)));
+        }
+    }
+
+    private static Message<byte[]> ping(int topic) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(topic(topic));
+        byte[] payload = ByteBuffer.allocate(8).putLong(System.nanoTime()).array();
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+
+    private static String topic(int topic) {
+        return "/topic/parcel/TRK" + topic;
+    }
+}
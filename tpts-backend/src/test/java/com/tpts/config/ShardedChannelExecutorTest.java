@@ -0,0 +1,144 @@
+package com.tpts.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedChannelExecutorTest {
+
+    private ShardedChannelExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new ShardedChannelExecutor(4, 1000, 1000);
+        executor.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void keepsPublishOrderPerDestination() throws Exception {
+        int topics = 16;
+        int perTopic = 500;
+        Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(topics * perTopic);
+
+        ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
+        channel.subscribe(message -> {
+            String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+            received.computeIfAbsent(destination, d -> new ArrayList<>()).add((Integer) message.getPayload());
+            done.countDown();
+        });
+
+        for (int i = 0; i < perTopic; i++) {
+            for (int t = 0; t < topics; t++) {
+                channel.send(message("/topic/parcel/TRK" + t, i));
+            }
+        }
+
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(received).hasSize(topics);
+        for (List<Integer> sequence : received.values()) {
+            assertThat(sequence).hasSize(perTopic).isSorted();
+        }
+        assertThat(executor.getStats().get("dispatched")).isEqualTo((long) topics * perTopic);
+    }
+
+    @Test
+    void fullLaneBlocksThePublisherAndKeepsOrder() throws Exception {
+        ShardedChannelExecutor small = new ShardedChannelExecutor(1, 1, 5_000);
+        small.initialize();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(3);
+            List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+            ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(small);
+            channel.subscribe(message -> {
+                await(release);
+                received.add((Integer) message.getPayload());
+                done.countDown();
+            });
+
+            channel.send(message("/topic/a", 1)); // occupies the lane thread
+            Thread.sleep(50);
+            channel.send(message("/topic/a", 2)); // fills the queue
+            Thread publisher = new Thread(() -> channel.send(message("/topic/a", 3))); // waits for room
+            publisher.start();
+            Thread.sleep(50);
+            assertThat(publisher.isAlive()).isTrue();
+            release.countDown();
+
+            publisher.join(5_000);
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(received).containsExactly(1, 2, 3);
+            assertThat(small.getStats().get("blocked")).isEqualTo(1L);
+            assertThat(small.getStats().get("dropped")).isEqualTo(0L);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    @Test
+    void fullLaneDropsAfterTheOfferTimeout() throws Exception {
+        ShardedChannelExecutor small = new ShardedChannelExecutor(1, 1, 20);
+        small.initialize();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(2);
+            List<String> threads = Collections.synchronizedList(new ArrayList<>());
+            List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+            ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(small);
+            channel.subscribe(message -> {
+                await(release);
+                threads.add(Thread.currentThread().getName());
+                received.add((Integer) message.getPayload());
+                done.countDown();
+            });
+
+            channel.send(message("/topic/a", 1)); // occupies the lane thread
+            Thread.sleep(50);
+            channel.send(message("/topic/a", 2)); // fills the queue
+            channel.send(message("/topic/a", 3)); // times out -> dropped
+            release.countDown();
+
+            assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(received).containsExactly(1, 2);
+            assertThat(threads).allMatch(name -> name.startsWith("broker-lane-"));
+            assertThat(small.getStats().get("dropped")).isEqualTo(1L);
+        } finally {
+            small.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Message<Integer> message(String destination, int sequence) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(sequence, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,147 @@
+package com.tpts.repository;
+
+import com.tpts.entity.OutboxEvent;
+import com.tpts.entity.OutboxStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * claimDue is native MySQL (UPDATE ... ORDER BY ... LIMIT over a derived
+ * table), so it runs against a real MySQL; skipped where Docker is missing
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+class OutboxEventRepositoryTest {
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+    }
+
+    // Claims run a minute ahead of the inserts so every new event is due
+    private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusMinutes(1);
+
+    @Autowired
+    private OutboxEventRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void claimsOnlyEachParcelsOldestPendingEvent() {
+        OutboxEvent first = event(1);
+        OutboxEvent second = event(1);
+        OutboxEvent other = event(2);
+
+        assertThat(repository.claimDue("A", now.plusSeconds(60), now, 10)).isEqualTo(2);
+
+        assertThat(reload(first).getLockedBy()).isEqualTo("A");
+        assertThat(reload(second).getLockedBy()).isNull();
+        assertThat(reload(other).getLockedBy()).isEqualTo("A");
+    }
+
+    @Test
+    void laterEventWaitsWhileEarlierIsLeasedOrRetrying() {
+        OutboxEvent first = event(1);
+        OutboxEvent second = event(1);
+
+        assertThat(repository.claimDue("A", now.plusSeconds(60), now, 10)).isEqualTo(1);
+        // Leased by A
+        assertThat(repository.claimDue("B", now.plusSeconds(60), now, 10)).isZero();
+
+        repository.recordAttempt(first.getId(), "A", OutboxStatus.PENDING, 1, now.plusMinutes(10),
+                null, "boom", null);
+        // Backing off, unleased, but still the parcel's head
+        assertThat(repository.claimDue("B", now.plusSeconds(60), now, 10)).isZero();
+        assertThat(reload(second).getLockedBy()).isNull();
+
+        LocalDateTime later = now.plusMinutes(11);
+        assertThat(repository.claimDue("B", later.plusSeconds(60), later, 10)).isEqualTo(1);
+        assertThat(reload(first).getLockedBy()).isEqualTo("B");
+
+        repository.recordAttempt(first.getId(), "B", OutboxStatus.PROCESSED, 1, now.plusMinutes(10),
+                null, null, later);
+        assertThat(repository.claimDue("C", later.plusSeconds(60), later, 10)).isEqualTo(1);
+        assertThat(reload(second).getLockedBy()).isEqualTo("C");
+    }
+
+    @Test
+    void deadEventNoLongerBlocksItsParcel() {
+        OutboxEvent first = event(1);
+        OutboxEvent second = event(1);
+
+        repository.claimDue("A", now.plusSeconds(60), now, 10);
+        repository.recordAttempt(first.getId(), "A", OutboxStatus.DEAD, 10, now, null, "gave up", null);
+
+        assertThat(repository.claimDue("A", now.plusSeconds(60), now, 10)).isEqualTo(1);
+        assertThat(reload(second).getLockedBy()).isEqualTo("A");
+    }
+
+    @Test
+    void expiredLeaseIsReclaimed() {
+        OutboxEvent event = event(1);
+
+        assertThat(repository.claimDue("A", now.plusSeconds(60), now, 10)).isEqualTo(1);
+        assertThat(repository.claimDue("B", now.plusSeconds(90), now.plusSeconds(30), 10)).isZero();
+
+        LocalDateTime expired = now.plusSeconds(61);
+        assertThat(repository.claimDue("B", expired.plusSeconds(60), expired, 10)).isEqualTo(1);
+
+        OutboxEvent reclaimed = reload(event);
+        assertThat(reclaimed.getLockedBy()).isEqualTo("B");
+        assertThat(reclaimed.getLockedUntil()).isEqualTo(expired.plusSeconds(60));
+    }
+
+    @Test
+    void staleWorkerCannotRecordAfterTakeover() {
+        OutboxEvent event = event(1);
+        repository.claimDue("A", now.plusSeconds(60), now, 10);
+        LocalDateTime expired = now.plusSeconds(61);
+        repository.claimDue("B", expired.plusSeconds(60), expired, 10);
+
+        assertThat(repository.recordAttempt(event.getId(), "A", OutboxStatus.PROCESSED, 0, now,
+                "audit", null, expired)).isZero();
+        OutboxEvent untouched = reload(event);
+        assertThat(untouched.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(untouched.getLockedBy()).isEqualTo("B");
+
+        assertThat(repository.recordAttempt(event.getId(), "B", OutboxStatus.PROCESSED, 0, now,
+                "audit", null, expired)).isEqualTo(1);
+        OutboxEvent recorded = reload(event);
+        assertThat(recorded.getStatus()).isEqualTo(OutboxStatus.PROCESSED);
+        assertThat(recorded.getLockedBy()).isNull();
+    }
+
+    private OutboxEvent event(long parcelId) {
+        return repository.saveAndFlush(OutboxEvent.builder()
+                .aggregateId(parcelId)
+                .eventType("STATUS_CHANGED")
+                .payload("{}")
+                .build());
+    }
+
+    // Bulk updates bypass the persistence context
+    private OutboxEvent reload(OutboxEvent event) {
+        entityManager.clear();
+        return repository.findById(event.getId()).orElseThrow();
+    }
+}
@@ -0,0 +1,76 @@
+package com.tpts.repository;
+
+import com.tpts.entity.Parcel;
+import com.tpts.entity.ParcelStatus;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class ParcelSpecificationsTest {
+
+    private Root<Parcel> root;
+    private CriteriaQuery<?> query;
+    private CriteriaBuilder cb;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        root = mock(Root.class, RETURNS_DEEP_STUBS);
+        query = mock(CriteriaQuery.class);
+        cb = mock(CriteriaBuilder.class);
+    }
+
+    @Test
+    void firstPageWithoutFiltersOnlyMatchesTheOwner() {
+        ParcelSpecifications.page(ParcelSpecifications.Owner.COMPANY, 7L,
+                null, null, null, null, null, null).toPredicate(root, query, cb);
+
+        verify(root).get("company");
+        verify(cb).equal(any(), eq(7L));
+        verify(root, never()).get("status");
+        verify(cb, never()).greaterThanOrEqualTo(any(), any(LocalDateTime.class));
+        verify(cb, never()).lessThan(any(), any(LocalDateTime.class));
+        verify(cb, never()).or(any(), any());
+    }
+
+    @Test
+    void addsOnlyTheActiveFilters() {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        ParcelSpecifications.page(ParcelSpecifications.Owner.CUSTOMER, 3L,
+                List.of(ParcelStatus.DELIVERED), from, null, null, null, null).toPredicate(root, query, cb);
+
+        verify(root).get("customer");
+        verify(root).get("status");
+        verify(cb).greaterThanOrEqualTo(any(), eq(from));
+        verify(cb, never()).lessThan(any(), any(LocalDateTime.class));
+        verify(cb, never()).or(any(), any());
+    }
+
+    @Test
+    void cursorAddsTheKeysetPredicate() {
+        LocalDateTime at = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+        ParcelSpecifications.page(ParcelSpecifications.Owner.AGENT, 9L,
+                null, null, null, null, at, 42L).toPredicate(root, query, cb);
+
+        verify(root).get("agent");
+        verify(cb).lessThan(any(), eq(at));
+        verify(cb).equal(any(), eq(at));
+        verify(cb).lessThan(any(), eq(42L));
+        verify(root, never()).get("pickupCity");
+        verify(root, never()).get("deliveryCity");
+    }
+}
@@ -0,0 +1,77 @@
+package com.tpts.security;
+
+import com.tpts.entity.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PrincipalCacheTest {
+
+    private PrincipalCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new PrincipalCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void servesCopiesFromCache() {
+        User first = cache.get("a@x.com", this::load);
+        User second = cache.get("a@x.com", this::load);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getEmail()).isEqualTo("a@x.com");
+    }
+
+    @Test
+    void evictsAgainAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evict(load("a@x.com"));
+
+        // A concurrent request re-caches the row before the transaction commits
+        cache.get("a@x.com", this::load);
+        assertThat(loads.get()).isEqualTo(2);
+
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        cache.get("a@x.com", this::load);
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void loadOverlappingAnEvictionIsNotCached() {
+        cache.get("a@x.com", email -> {
+            User stale = load(email);
+            cache.evict(stale);
+            return stale;
+        });
+        cache.get("a@x.com", this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private User load(String email) {
+        loads.incrementAndGet();
+        return User.builder().id(1L).email(email).isActive(true).build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.tpts.service;
+
+import com.tpts.dto.request.LocationTrailRequest;
+import com.tpts.exception.TptsExceptions.BadRequestException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AgentLocationServiceTest {
+
+    private static final long MAX_AGE_MS = 3_600_000L;
+
+    private AgentLocationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AgentLocationService(null, null, null, null, null, null);
+        ReflectionTestUtils.setField(service, "trailMaxPoints", 1000);
+        ReflectionTestUtils.setField(service, "trailMaxClockSkewMs", 60_000L);
+        ReflectionTestUtils.setField(service, "trailMaxAgeMs", MAX_AGE_MS);
+    }
+
+    @Test
+    void decodesRecentTrail() {
+        long base = System.currentTimeMillis() - 30_000L;
+
+        AgentLocationService.DecodedTrail trail = service.decodeTrail(trail(base, 0L, 10_000L, 10_000L));
+
+        assertThat(trail.timestamps()).containsExactly(base, base + 10_000L, base + 20_000L);
+        assertThat(trail.latitudes()[2]).isEqualTo(12.97002);
+    }
+
+    @Test
+    void rejectsTrailOlderThanMaxAge() {
+        long base = System.currentTimeMillis() - MAX_AGE_MS - 60_000L;
+
+        assertThatThrownBy(() -> service.decodeTrail(trail(base, 0L, 10_000L)))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> service.decodeTrail(trail(0L, 0L, 10_000L)))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    @Test
+    void rejectsTrailInTheFuture() {
+        long base = System.currentTimeMillis() + 120_000L;
+
+        assertThatThrownBy(() -> service.decodeTrail(trail(base, 0L)))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    private static LocationTrailRequest trail(long baseTime, Long... timeDeltas) {
+        List<Integer> deltas = Collections.nCopies(timeDeltas.length, 10);
+        return LocationTrailRequest.builder()
+                .baseTime(baseTime)
+                .baseLat(12_970_000)
+                .baseLng(77_590_000)
+                .timeDeltas(List.of(timeDeltas))
+                .latDeltas(deltas)
+                .lngDeltas(deltas)
+                .build();
+    }
+}
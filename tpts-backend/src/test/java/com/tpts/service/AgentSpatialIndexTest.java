@@ -0,0 +1,107 @@
+package com.tpts.service;
+
+import com.tpts.entity.CompanyAdmin;
+import com.tpts.entity.DeliveryAgent;
+import com.tpts.repository.DeliveryAgentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AgentSpatialIndexTest {
+
+    private static final long COMPANY = 7L;
+
+    private DeliveryAgentRepository repository;
+    private AgentSpatialIndex index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(DeliveryAgentRepository.class);
+        index = new AgentSpatialIndex(repository);
+        ReflectionTestUtils.setField(index, "cellSizeDegrees", 0.01);
+        ReflectionTestUtils.setField(index, "maxSearchKm", 50.0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void findsNearestFirst() {
+        index.onAgentChanged(agent(1L, true), 12.90, 77.50);
+        index.onAgentChanged(agent(2L, true), 12.95, 77.55);
+        index.onAgentChanged(agent(3L, true), 13.50, 78.00);
+
+        List<AgentSpatialIndex.NearbyAgent> nearest = index.findNearest(COMPANY, 12.901, 77.501, 2, null);
+
+        assertThat(nearest).extracting(AgentSpatialIndex.NearbyAgent::agentId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void appliesFlagChangesOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        index.onAgentChanged(agent(1L, true), 12.90, 77.50);
+        assertThat(index.findNearest(COMPANY, 12.90, 77.50, 5, null)).isEmpty();
+
+        for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+            sync.afterCommit();
+        }
+        assertThat(index.findNearest(COMPANY, 12.90, 77.50, 5, null)).hasSize(1);
+    }
+
+    @Test
+    void rebuildKeepsLivePositionsAndSwapsWholeIndex() {
+        index.onAgentChanged(agent(1L, true), 12.90, 77.50);
+        index.onPositionChanged(1L, 12.91, 77.51);
+
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { 1L, COMPANY, new BigDecimal("10.00"), new BigDecimal("70.00") });
+        rows.add(new Object[] { 2L, COMPANY, new BigDecimal("12.92"), new BigDecimal("77.52") });
+        when(repository.findAvailableAgentIndexRows()).thenReturn(rows);
+
+        assertThat(index.rebuild()).isEqualTo(2);
+
+        List<AgentSpatialIndex.NearbyAgent> nearest = index.findNearest(COMPANY, 12.91, 77.51, 5, 5.0);
+        assertThat(nearest).extracting(AgentSpatialIndex.NearbyAgent::agentId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void flagChangeDuringRebuildWinsOverTheOlderRows() {
+        index.onAgentChanged(agent(1L, true), 12.90, 77.50);
+
+        // The agent goes unavailable while the rebuild query is running
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { 1L, COMPANY, new BigDecimal("12.90"), new BigDecimal("77.50") });
+        when(repository.findAvailableAgentIndexRows()).thenAnswer(invocation -> {
+            index.onAgentChanged(agent(1L, false), null, null);
+            return rows;
+        });
+
+        index.rebuild();
+
+        assertThat(index.findNearest(COMPANY, 12.90, 77.50, 5, null)).isEmpty();
+    }
+
+    private DeliveryAgent agent(long id, boolean available) {
+        return DeliveryAgent.builder()
+                .id(id)
+                .company(CompanyAdmin.builder().id(COMPANY).build())
+                .isActive(true)
+                .isAvailable(available)
+                .build();
+    }
+}
@@ -0,0 +1,120 @@
+package com.tpts.service;
+
+import com.tpts.entity.VehicleType;
+import com.tpts.repository.ParcelRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EtaModelTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 2, 9, 0);
+
+    private final List<Object[]> delivered = new ArrayList<>();
+    private EtaModel model;
+    private long nextId = 1;
+
+    @BeforeEach
+    void setUp() {
+        ParcelRepository repository = mock(ParcelRepository.class);
+        // Serves the rows after the (deliveredAt, id) watermark, one page at a time
+        when(repository.findDeliveredTripRowsAfter(any(), any(), any())).thenAnswer(invocation -> {
+            LocalDateTime since = invocation.getArgument(0);
+            long lastId = invocation.getArgument(1);
+            Pageable page = invocation.getArgument(2);
+            return delivered.stream()
+                    .filter(row -> {
+                        LocalDateTime at = (LocalDateTime) row[9];
+                        return at.isAfter(since) || (at.isEqual(since) && (Long) row[0] > lastId);
+                    })
+                    .limit(page.getPageSize())
+                    .toList();
+        });
+
+        model = new EtaModel(repository);
+        ReflectionTestUtils.setField(model, "defaultSpeedKmh", 20.0);
+        ReflectionTestUtils.setField(model, "minSamples", 5);
+        ReflectionTestUtils.setField(model, "maxCities", 16);
+        ReflectionTestUtils.setField(model, "roadFactor", 1.0);
+        ReflectionTestUtils.setField(model, "batchSize", 3);
+    }
+
+    @Test
+    void fallsBackToDefaultSpeedWithoutEnoughSamples() {
+        EtaModel.Estimate before = model.estimate(10, "Pune", VehicleType.BIKE, 9);
+        assertThat(before.learned()).isFalse();
+        assertThat(before.minutes()).isEqualTo(30);
+
+        addTrips(4, "Pune", VehicleType.BIKE, 15, 30);
+        model.refresh();
+
+        EtaModel.Estimate after = model.estimate(10, "Pune", VehicleType.BIKE, 9);
+        assertThat(after.learned()).isFalse();
+        assertThat(after.speedKmh()).isEqualTo(20.0);
+    }
+
+    @Test
+    void learnsSpeedPerCityHourAndVehicle() {
+        addTrips(5, "Pune", VehicleType.BIKE, 15, 30);  // 30 km/h
+        addTrips(5, "Mumbai", VehicleType.CAR, 30, 30); // 60 km/h
+        assertThat(model.refresh()).isEqualTo(10);
+
+        EtaModel.Estimate pune = model.estimate(15, " pune ", VehicleType.BIKE, 9);
+        assertThat(pune.learned()).isTrue();
+        assertThat(pune.speedKmh()).isCloseTo(30.0, within(1e-9));
+        assertThat(pune.minutes()).isEqualTo(30);
+
+        // No Pune cars: the city's any-vehicle profile for that hour
+        assertThat(model.estimate(15, "Pune", VehicleType.CAR, 9).speedKmh()).isCloseTo(30.0, within(1e-9));
+        // Unknown city: platform-wide bike profile
+        assertThat(model.estimate(15, "Delhi", VehicleType.BIKE, 9).speedKmh()).isCloseTo(30.0, within(1e-9));
+        // Unknown city and vehicle: every trip at that hour, 225 km in 5 h
+        assertThat(model.estimate(15, "Delhi", VehicleType.TRUCK, 9).speedKmh()).isCloseTo(45.0, within(1e-9));
+        // Other hour: the any-hour profile
+        assertThat(model.estimate(15, "Mumbai", VehicleType.CAR, 22).speedKmh()).isCloseTo(60.0, within(1e-9));
+    }
+
+    @Test
+    void refreshReadsOnlyDeliveriesAfterTheWatermark() {
+        addTrips(5, "Pune", VehicleType.BIKE, 15, 30);
+        assertThat(model.refresh()).isEqualTo(5);
+        assertThat(model.refresh()).isZero();
+
+        addTrips(4, "Pune", VehicleType.BIKE, 30, 30);
+        assertThat(model.refresh()).isEqualTo(4);
+
+        // 75 + 120 km over 4.5 h
+        assertThat(model.estimate(15, "Pune", VehicleType.BIKE, 9).speedKmh()).isCloseTo(195 / 4.5, within(1e-9));
+        assertThat(model.getStats().get("tripsLearned")).isEqualTo(9L);
+    }
+
+    @Test
+    void rejectsImplausibleTrips() {
+        addTrips(5, "Pune", VehicleType.BIKE, 1, 600); // 0.1 km/h: left overnight
+        assertThat(model.refresh()).isZero();
+
+        assertThat(model.estimate(10, "Pune", VehicleType.BIKE, 9).learned()).isFalse();
+        assertThat(model.getStats().get("tripsRejected")).isEqualTo(5L);
+    }
+
+    private void addTrips(int count, String city, VehicleType vehicle, double km, int minutes) {
+        for (int i = 0; i < count; i++) {
+            long id = nextId++;
+            LocalDateTime deliveredAt = START.plusMinutes(minutes).plusSeconds(id);
+            delivered.add(new Object[] { id, city, vehicle, BigDecimal.valueOf(km), null, null, null, null,
+                    deliveredAt.minusMinutes(minutes), deliveredAt });
+        }
+    }
+}
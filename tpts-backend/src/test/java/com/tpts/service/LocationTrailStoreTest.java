@@ -0,0 +1,121 @@
+package com.tpts.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocationTrailStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static final ZoneId ZONE = ZoneId.of("Asia/Kolkata");
+
+    private LocationTrailStore store;
+    private final LocalDate day = LocalDate.now(ZONE).minusDays(1);
+    private final long dayStart = day.atStartOfDay(ZONE).toInstant().toEpochMilli();
+
+    @BeforeEach
+    void setUp() {
+        store = new LocationTrailStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "directory", dir.toString());
+        ReflectionTestUtils.setField(store, "segmentRecords", 64);
+        ReflectionTestUtils.setField(store, "retentionDays", 30);
+        ReflectionTestUtils.setField(store, "compactionMaxRecords", 1_000_000);
+        ReflectionTestUtils.setField(store, "zone", ZONE);
+        store.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.closeAll();
+    }
+
+    @Test
+    void compactionKeepsLatePoints() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            store.append(1, dayStart + i * 1000L, 12.9, 77.5);
+        }
+        assertThat(store.compact(day)).isEqualTo(100);
+
+        store.append(1, dayStart + 200_000L, 13.0, 77.6);
+        assertThat(store.query(1, dayStart, dayStart + 86_399_999L, 1000)).hasSize(101);
+
+        assertThat(store.compact(day)).isEqualTo(101);
+        assertThat(store.query(1, dayStart, dayStart + 86_399_999L, 1000)).hasSize(101);
+    }
+
+    @Test
+    void appendsDuringCompactionAreNotLost() throws Exception {
+        for (int i = 0; i < 5_000; i++) {
+            store.append(i % 7, dayStart + i * 10L, 12.9, 77.5);
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(1);
+        List<Long> late = new ArrayList<>();
+        Thread writer = new Thread(() -> {
+            started.countDown();
+            long t = dayStart + 60_000_000L;
+            while (!done.get()) {
+                store.append(100, ++t, 13.0, 77.6);
+                synchronized (late) {
+                    late.add(t);
+                }
+            }
+        });
+        writer.start();
+        started.await();
+        for (int round = 0; round < 5; round++) {
+            store.compact(day);
+        }
+        done.set(true);
+        writer.join();
+
+        List<LocationTrailStore.TrailPoint> stored = store.query(100, dayStart, dayStart + 86_399_999L, Integer.MAX_VALUE);
+        assertThat(stored).hasSize(late.size());
+        assertThat(Files.exists(dir.resolve(day.toString()).resolve("compacted.trl"))).isTrue();
+    }
+
+    @Test
+    void compactionSortsAndDeduplicatesAcrossSegments() throws Exception {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(42));
+        for (int i : order) {
+            store.append(i % 5, dayStart + i * 1000L, 12.9, 77.5);
+        }
+        // Resend a slice: duplicates land in later segments
+        for (int i = 0; i < 300; i++) {
+            store.append(i % 5, dayStart + i * 1000L, 12.9, 77.5);
+        }
+
+        assertThat(store.compact(day)).isEqualTo(2_000);
+
+        for (int i = 0; i < 5; i++) {
+            long agent = i;
+            List<LocationTrailStore.TrailPoint> points = store.query(agent, dayStart, dayStart + 86_399_999L, Integer.MAX_VALUE);
+            assertThat(points).hasSize(400);
+            assertThat(points).allMatch(p -> p.agentId() == agent);
+            assertThat(points).extracting(LocationTrailStore.TrailPoint::timestamp).isSorted();
+        }
+    }
+}
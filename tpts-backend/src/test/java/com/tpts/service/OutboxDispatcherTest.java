@@ -0,0 +1,155 @@
+package com.tpts.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.dto.event.ParcelLifecycleEvent;
+import com.tpts.entity.OutboxEvent;
+import com.tpts.entity.OutboxStatus;
+import com.tpts.entity.ParcelStatus;
+import com.tpts.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OutboxDispatcherTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final OutboxEventRepository repository = mock(OutboxEventRepository.class);
+    private final ParcelEventSubscriber subscriber = mock(ParcelEventSubscriber.class);
+
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        when(subscriber.name()).thenReturn("audit");
+        when(repository.claimDue(anyString(), any(), any(), anyInt())).thenReturn(1);
+        when(repository.recordAttempt(any(), anyString(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+
+        dispatcher = new OutboxDispatcher(repository, objectMapper, List.of(subscriber));
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 10);
+        ReflectionTestUtils.setField(dispatcher, "workerCount", 2);
+        ReflectionTestUtils.setField(dispatcher, "leaseSeconds", 60);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 10);
+        ReflectionTestUtils.setField(dispatcher, "initialBackoffSeconds", 5L);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoffSeconds", 600L);
+        dispatcher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    @Test
+    void failedDeliveryBacksOffExponentially() throws Exception {
+        doThrow(new IllegalStateException("down")).when(subscriber).onEvent(any());
+        OutboxEvent event = event(10, 1, 3);
+        claimed(event);
+
+        LocalDateTime before = LocalDateTime.now();
+        assertThat(dispatchBatch()).isFalse();
+
+        OutboxEvent recorded = recordedAttempt();
+        assertThat(recorded.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(recorded.getAttempts()).isEqualTo(4);
+        assertThat(recorded.getLastError()).contains("audit: down");
+        // 5s << 3
+        assertThat(Duration.between(before, recorded.getNextAttemptAt()).getSeconds()).isBetween(39L, 41L);
+    }
+
+    @Test
+    void backoffIsCapped() throws Exception {
+        doThrow(new IllegalStateException("down")).when(subscriber).onEvent(any());
+        claimed(event(10, 1, 8));
+
+        LocalDateTime before = LocalDateTime.now();
+        dispatchBatch();
+
+        assertThat(Duration.between(before, recordedAttempt().getNextAttemptAt()).getSeconds()).isBetween(599L, 601L);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() throws Exception {
+        doThrow(new IllegalStateException("down")).when(subscriber).onEvent(any());
+        claimed(event(10, 1, 9));
+
+        assertThat(dispatchBatch()).isTrue();
+
+        OutboxEvent recorded = recordedAttempt();
+        assertThat(recorded.getStatus()).isEqualTo(OutboxStatus.DEAD);
+        assertThat(recorded.getAttempts()).isEqualTo(10);
+        assertThat(dispatcher.getStats().get("dead")).isEqualTo(1L);
+    }
+
+    @Test
+    void lostLeaseHandsTheParcelBack() throws Exception {
+        OutboxEvent first = event(10, 1, 0);
+        OutboxEvent second = event(11, 1, 0);
+        claimed(first, second);
+        // The lease expired and another dispatcher took the event over
+        when(repository.recordAttempt(eq(10L), anyString(), any(), any(), any(), any(), any(), any())).thenReturn(0);
+
+        assertThat(dispatchBatch()).isFalse();
+
+        verify(repository).release(List.of(11L));
+        assertThat(dispatcher.getStats().get("leaseLost")).isEqualTo(1L);
+        assertThat(dispatcher.getStats().get("processed")).isEqualTo(0L);
+    }
+
+    private boolean dispatchBatch() {
+        return ReflectionTestUtils.invokeMethod(dispatcher, "dispatchBatch");
+    }
+
+    private void claimed(OutboxEvent... events) {
+        when(repository.findByLockedByAndStatusOrderByIdAsc(anyString(), eq(OutboxStatus.PENDING)))
+                .thenReturn(List.of(events));
+        when(repository.findOldestPendingIds(anyCollection()))
+                .thenReturn(List.<Object[]>of(new Object[] { events[0].getAggregateId(), events[0].getId() }));
+    }
+
+    private OutboxEvent recordedAttempt() {
+        ArgumentCaptor<OutboxStatus> status = ArgumentCaptor.forClass(OutboxStatus.class);
+        ArgumentCaptor<Integer> attempts = ArgumentCaptor.forClass(Integer.class);
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<String> lastError = ArgumentCaptor.forClass(String.class);
+        verify(repository).recordAttempt(any(), anyString(), status.capture(), attempts.capture(),
+                nextAttemptAt.capture(), any(), lastError.capture(), any());
+        return OutboxEvent.builder()
+                .status(status.getValue())
+                .attempts(attempts.getValue())
+                .nextAttemptAt(nextAttemptAt.getValue())
+                .lastError(lastError.getValue())
+                .build();
+    }
+
+    private OutboxEvent event(long id, long parcelId, int attempts) throws Exception {
+        ParcelLifecycleEvent payload = new ParcelLifecycleEvent(ParcelLifecycleEvent.Type.STATUS_CHANGED, parcelId,
+                "TRK" + parcelId, ParcelStatus.PICKED_UP, ParcelStatus.IN_TRANSIT, null, null, LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        return OutboxEvent.builder()
+                .id(id)
+                .aggregateId(parcelId)
+                .eventType(payload.type().name())
+                .payload(objectMapper.writeValueAsString(payload))
+                .attempts(attempts)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build();
+    }
+}
@@ -0,0 +1,210 @@
+package com.tpts.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.MimeTypeUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs real pub/sub nodes over loopback; a mocked messaging template stands
+ * in for each node's STOMP broker
+ */
+class PeerTrackingPubSubTest {
+
+    private static final String SECRET = "test-secret";
+
+    private final List<PeerTrackingPubSub> nodes = new ArrayList<>();
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(PeerTrackingPubSub::stop);
+    }
+
+    @Test
+    void deliversToPeerSubscribers() {
+        SimpMessagingTemplate brokerB = mock(SimpMessagingTemplate.class);
+        PeerTrackingPubSub nodeB = startNode("b", brokerB, "", SECRET);
+        SimpMessagingTemplate brokerA = mock(SimpMessagingTemplate.class);
+        PeerTrackingPubSub nodeA = startNode("a", brokerA, "127.0.0.1:" + nodeB.getLocalPort(), SECRET);
+
+        Message<byte[]> message = MessageBuilder.withPayload("{\"status\":\"IN_TRANSIT\"}".getBytes(StandardCharsets.UTF_8))
+                .setHeader("contentType", MimeTypeUtils.APPLICATION_JSON)
+                .build();
+
+        // The link connects asynchronously; publish until the peer sees one
+        for (int i = 0; i < 50; i++) {
+            nodeA.publish("/topic/tracking/TRK1", message);
+            try {
+                verify(brokerB, timeout(100).atLeastOnce()).send(eq("/topic/tracking/TRK1"), any(Message.class));
+                break;
+            } catch (AssertionError notYet) {
+                // retry
+            }
+        }
+
+        verify(brokerB, timeout(2000).atLeastOnce()).send(eq("/topic/tracking/TRK1"), any(Message.class));
+        verify(brokerA, timeout(2000).atLeastOnce()).send(eq("/topic/tracking/TRK1"), any(Message.class));
+        assertThat(nodeB.getStats().get("received")).isNotEqualTo(0L);
+    }
+
+    @Test
+    void rejectsWrongSecret() throws IOException {
+        SimpMessagingTemplate broker = mock(SimpMessagingTemplate.class);
+        PeerTrackingPubSub node = startNode("b", broker, "", SECRET);
+
+        try (Socket socket = new Socket("127.0.0.1", node.getLocalPort())) {
+            socket.setSoTimeout(2000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            handshake(in, out, "intruder", "wrong-secret");
+            sendFrame(out, "/topic/tracking/TRK1", "{}");
+
+            assertClosed(in);
+        }
+        verify(broker, after(300).never()).send(anyString(), any(Message.class));
+        assertThat(node.getStats().get("rejectedHandshakes")).isEqualTo(1L);
+    }
+
+    @Test
+    void rejectsDestinationsOutsideTrackingTopics() throws IOException {
+        SimpMessagingTemplate broker = mock(SimpMessagingTemplate.class);
+        PeerTrackingPubSub node = startNode("b", broker, "", SECRET);
+
+        try (Socket socket = new Socket("127.0.0.1", node.getLocalPort())) {
+            socket.setSoTimeout(2000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            handshake(in, out, "peer", SECRET);
+            sendFrame(out, "/queue/notifications", "{}");
+
+            assertClosed(in);
+        }
+        verify(broker, after(300).never()).send(anyString(), any(Message.class));
+        assertThat(node.getStats().get("rejectedDestinations")).isEqualTo(1L);
+    }
+
+    @Test
+    void closesConnectionsThatNeverHandshake() throws IOException {
+        PeerTrackingPubSub node = startNode("b", mock(SimpMessagingTemplate.class), "", SECRET);
+
+        try (Socket socket = new Socket("127.0.0.1", node.getLocalPort())) {
+            socket.setSoTimeout(3000);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            in.readFully(new byte[16]); // nonce, then silence
+            assertClosed(in);
+        }
+    }
+
+    @Test
+    void refusesPeersWithoutSecret() {
+        PeerTrackingPubSub node = newNode("a", mock(SimpMessagingTemplate.class), "127.0.0.1:9", "");
+        assertThatThrownBy(node::start).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void refusesNonLoopbackBindWithoutSecret() {
+        PeerTrackingPubSub node = newNode("a", mock(SimpMessagingTemplate.class), "", "");
+        ReflectionTestUtils.setField(node, "bindAddress", "0.0.0.0");
+        assertThatThrownBy(node::start).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void allowsOnlyTrackingTopics() {
+        assertThat(PeerTrackingPubSub.isAllowedDestination("/topic/agent-location/TRK1")).isTrue();
+        assertThat(PeerTrackingPubSub.isAllowedDestination("/topic/group/GRP1")).isTrue();
+        assertThat(PeerTrackingPubSub.isAllowedDestination("/topic/tracking/")).isFalse();
+        assertThat(PeerTrackingPubSub.isAllowedDestination("/topic/tracking/../admin")).isFalse();
+        assertThat(PeerTrackingPubSub.isAllowedDestination("/user/queue/notifications")).isFalse();
+    }
+
+    // ==========================================
+    // Helpers
+    // ==========================================
+
+    private PeerTrackingPubSub startNode(String id, SimpMessagingTemplate broker, String peers, String secret) {
+        PeerTrackingPubSub node = newNode(id, broker, peers, secret);
+        try {
+            node.start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        nodes.add(node);
+        return node;
+    }
+
+    private static PeerTrackingPubSub newNode(String id, SimpMessagingTemplate broker, String peers, String secret) {
+        PeerTrackingPubSub node = new PeerTrackingPubSub(broker);
+        ReflectionTestUtils.setField(node, "nodeId", id);
+        ReflectionTestUtils.setField(node, "bindAddress", "127.0.0.1");
+        ReflectionTestUtils.setField(node, "listenPort", 0);
+        ReflectionTestUtils.setField(node, "peerList", peers);
+        ReflectionTestUtils.setField(node, "secret", secret);
+        ReflectionTestUtils.setField(node, "queueCapacity", 100);
+        ReflectionTestUtils.setField(node, "connectTimeoutMs", 1000);
+        ReflectionTestUtils.setField(node, "reconnectDelayMs", 50L);
+        ReflectionTestUtils.setField(node, "handshakeTimeoutMs", 500);
+        ReflectionTestUtils.setField(node, "maxInboundConnections", 4);
+        return node;
+    }
+
+    private static void handshake(DataInputStream in, DataOutputStream out, String node, String secret)
+            throws IOException {
+        byte[] nonce = new byte[16];
+        in.readFully(nonce);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(nonce);
+            out.writeUTF(node);
+            out.write(mac.doFinal(node.getBytes(StandardCharsets.UTF_8)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sendFrame(DataOutputStream out, String destination, String payload) throws IOException {
+        byte[] body = payload.getBytes(StandardCharsets.UTF_8);
+        byte[] dest = destination.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(2 + dest.length + 2 + body.length);
+        out.writeUTF(destination);
+        out.writeUTF("");
+        out.write(body);
+        out.flush();
+    }
+
+    private static void assertClosed(DataInputStream in) throws IOException {
+        try {
+            assertThat(in.read()).isEqualTo(-1);
+        } catch (SocketTimeoutException e) {
+            throw new AssertionError("connection was left open", e);
+        } catch (EOFException | java.net.SocketException closed) {
+            // closed
+        }
+    }
+}
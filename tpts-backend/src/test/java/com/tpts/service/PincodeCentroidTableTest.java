@@ -0,0 +1,63 @@
+package com.tpts.service;
+
+import com.tpts.repository.ParcelRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PincodeCentroidTableTest {
+
+    private ParcelRepository repository;
+    private PincodeCentroidTable table;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ParcelRepository.class);
+        table = new PincodeCentroidTable(repository);
+        ReflectionTestUtils.setField(table, "pincodeFile", "");
+        ReflectionTestUtils.setField(table, "minParcelSamples", 5L);
+    }
+
+    @Test
+    void parcelCentroidNeedsEnoughSamples() {
+        when(repository.findPickupPincodeCentroidRows()).thenReturn(rows(
+                new Object[] { "560001", "Bengaluru", 12.97, 77.59, 3L },
+                new Object[] { "400001", "Mumbai", 18.94, 72.83, 40L }));
+        when(repository.findDeliveryPincodeCentroidRows()).thenReturn(rows(
+                new Object[] { "110001", "Delhi", 28.63, 77.22, 4L }));
+
+        table.rebuild();
+
+        assertThat(table.findByPincode("560001")).isNull();
+        assertThat(table.findByCity("Bengaluru")).isNull();
+        assertThat(table.findByPincode("110001")).isNull();
+        assertThat(table.findByPincode("400001")).isNotNull();
+        assertThat(table.findByCity("mumbai")).isNotNull();
+    }
+
+    @Test
+    void samplesAddUpAcrossPickupAndDelivery() {
+        when(repository.findPickupPincodeCentroidRows()).thenReturn(rows(
+                new Object[] { "560001", "Bengaluru", 12.90, 77.50, 3L }));
+        when(repository.findDeliveryPincodeCentroidRows()).thenReturn(rows(
+                new Object[] { "560001", "Bengaluru", 13.00, 77.60, 2L }));
+
+        table.rebuild();
+
+        PincodeCentroidTable.Centroid centroid = table.findByPincode("560001");
+        assertThat(centroid).isNotNull();
+        assertThat(centroid.latitude()).isCloseTo(12.94, within(1e-4));
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return new ArrayList<>(List.of(rows));
+    }
+}
@@ -0,0 +1,50 @@
+package com.tpts.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteCacheTest {
+
+    private RouteCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RouteCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "gridDegrees", 0.001);
+        ReflectionTestUtils.setField(cache, "maxSize", 10_000);
+        ReflectionTestUtils.setField(cache, "maxMemoryBytes", 100_000L);
+        ReflectionTestUtils.setField(cache, "ttlHours", 1L);
+        ReflectionTestUtils.setField(cache, "matrixMaxSize", 10);
+        ReflectionTestUtils.setField(cache, "diskEnabled", false);
+    }
+
+    @Test
+    void memoryTierIsBoundedByGeometryBytes() {
+        String geometry = "x".repeat(10_000); // ~20 KB estimated
+        for (int i = 0; i < 20; i++) {
+            cache.put(key(i), 1.0, 60, geometry);
+        }
+
+        assertThat((long) cache.getStats().get("memoryBytes")).isLessThanOrEqualTo(100_000L);
+        assertThat((int) cache.getStats().get("size")).isLessThan(20);
+        assertThat(cache.get(key(19))).isNotNull();
+        assertThat(cache.get(key(0))).isNull();
+    }
+
+    @Test
+    void oversizedGeometryIsNotKeptInMemory() {
+        cache.put(key(1), 1.0, 60, "x".repeat(20_000)); // above a quarter of the budget
+
+        assertThat(cache.get(key(1))).isNull();
+        assertThat(cache.getStats().get("oversized")).isEqualTo(1L);
+        assertThat(cache.getStats().get("memoryBytes")).isEqualTo(0L);
+    }
+
+    private RouteCache.RouteKey key(int i) {
+        return cache.key(12.9 + i * 0.01, 77.5, 13.0, 77.6);
+    }
+}
@@ -0,0 +1,62 @@
+package com.tpts.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tpts.dto.response.ParcelTrackingDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TrackingProjectionCacheTest {
+
+    private TrackingProjectionCache cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new TrackingProjectionCache(mock(AgentLocationStore.class), new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+    }
+
+    @Test
+    void cachesLoadedView() {
+        cache.get("TRK1", this::load);
+        cache.get("TRK1", this::load);
+
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void evictionDuringLoadDiscardsTheLoadedView() {
+        // The loader read the old state; the write commits and evicts before it returns
+        cache.get("TRK1", number -> {
+            ParcelTrackingDTO stale = load(number);
+            cache.evict(number);
+            return stale;
+        });
+        cache.get("TRK1", this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.getStats().get("staleLoads")).isEqualTo(1L);
+    }
+
+    @Test
+    void evictionAfterLoadRemovesTheView() {
+        cache.get("TRK1", this::load);
+        cache.evict("TRK1");
+        cache.get("TRK1", this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    private ParcelTrackingDTO load(String trackingNumber) {
+        loads.incrementAndGet();
+        return ParcelTrackingDTO.builder().trackingNumber(trackingNumber).build();
+    }
+}
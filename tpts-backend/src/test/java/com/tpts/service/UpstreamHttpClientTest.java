@@ -0,0 +1,33 @@
+package com.tpts.service;
+
+import com.tpts.service.UpstreamHttpClient.UpstreamUnavailableException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamHttpClientTest {
+
+    @Test
+    void unexpectedExceptionDuringTrialDoesNotWedgeTheCircuit() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("upstream.test.failure-threshold", "1")
+                .withProperty("upstream.test.open-ms", "0");
+        UpstreamHttpClient client = new UpstreamHttpClient(environment);
+
+        // The first call opens the circuit; the next ones are half-open trials
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> client.get("test", "http://bad host/route", Map.of()))
+                    .isInstanceOf(UpstreamUnavailableException.class)
+                    .hasCauseInstanceOf(IllegalArgumentException.class);
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> stats = (Map<String, Object>) client.getStats().get("test");
+        assertThat(stats.get("rejectedOpen")).isEqualTo(0L);
+        assertThat(stats.get("failures")).isEqualTo(3L);
+    }
+}
@@ -0,0 +1,58 @@
+package com.tpts.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvReaderTest {
+
+    @Test
+    void readsPlainRecordsWithMixedLineEndings() throws IOException {
+        assertThat(readAll("a,b,c\r\n1,2,3\n4,,6"))
+                .containsExactly(List.of("a", "b", "c"), List.of("1", "2", "3"), List.of("4", "", "6"));
+    }
+
+    @Test
+    void handlesQuotedCommasQuotesAndLineBreaks() throws IOException {
+        assertThat(readAll("\"x, y\",\"say \"\"hi\"\"\",\"two\r\nlines\"\nnext"))
+                .containsExactly(List.of("x, y", "say \"hi\"", "two\r\nlines"), List.of("next"));
+    }
+
+    @Test
+    void skipsBomAndBlankLines() throws IOException {
+        assertThat(readAll("\uFEFFname\n\n\r\nbob\n"))
+                .containsExactly(List.of("name"), List.of("bob"));
+    }
+
+    @Test
+    void rejectsUnterminatedQuote() {
+        assertThatThrownBy(() -> readAll("a,\"open\n"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Unterminated");
+    }
+
+    @Test
+    void rejectsOversizedRecord() {
+        CsvReader reader = new CsvReader(new StringReader("short\n" + "x".repeat(50) + "\n"), 20);
+
+        assertThatThrownBy(() -> {
+            assertThat(reader.next()).containsExactly("short");
+            reader.next();
+        }).isInstanceOf(IOException.class).hasMessageContaining("exceeds 20");
+    }
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        CsvReader reader = new CsvReader(new StringReader(csv), 1000);
+        List<List<String>> records = new ArrayList<>();
+        for (List<String> record = reader.next(); record != null; record = reader.next()) {
+            records.add(record);
+        }
+        return records;
+    }
+}
@@ -0,0 +1,99 @@
+package com.tpts.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+
+/**
+ * Per-ping cost of the tracking distance/ETA step, before and after GeoUtils
+ * Skipped in normal builds; run with:
+ * mvn test -Dtest=GeoUtilsBenchmark -Dbenchmark=true
+ *
+ * "before" is the code AgentLocationService ran per active parcel until the
+ * shared kernel: a full Haversine with four trig calls plus String.format.
+ * "after" is the current path: the agent's cos(lat) once per ping, the
+ * parcel's cos(lat) precomputed, the flat-earth fast path and formatKm.
+ * A plain warmed-up loop with a result sink, not JMH: good enough to compare
+ * the two paths, not for absolute numbers.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class GeoUtilsBenchmark {
+
+    private static final int PINGS = 200_000;
+    private static final int PARCELS_PER_PING = 5;
+    private static final int ROUNDS = 5;
+
+    private final double[] agentLats = new double[PINGS];
+    private final double[] agentLngs = new double[PINGS];
+    private final double[] parcelLats = new double[PARCELS_PER_PING];
+    private final double[] parcelLngs = new double[PARCELS_PER_PING];
+    private final double[] parcelCos = new double[PARCELS_PER_PING];
+
+    private long sink;
+
+    @Test
+    void perPingCost() {
+        Random random = new Random(7);
+        for (int i = 0; i < PINGS; i++) {
+            agentLats[i] = 12.9 + random.nextDouble() * 0.2;
+            agentLngs[i] = 77.5 + random.nextDouble() * 0.2;
+        }
+        for (int p = 0; p < PARCELS_PER_PING; p++) {
+            parcelLats[p] = 12.9 + random.nextDouble() * 0.2;
+            parcelLngs[p] = 77.5 + random.nextDouble() * 0.2;
+            parcelCos[p] = GeoUtils.cosLat(parcelLats[p]);
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long before = time(this::before);
+            long after = time(this::after);
+            System.out.printf("round %d: before %.0f ns/ping, after %.0f ns/ping (%d parcels per ping)%n",
+                    round, (double) before / PINGS, (double) after / PINGS, PARCELS_PER_PING);
+        }
+        System.out.println("sink " + sink);
+    }
+
+    private long time(Runnable body) {
+        long start = System.nanoTime();
+        body.run();
+        return System.nanoTime() - start;
+    }
+
+    private void before() {
+        for (int i = 0; i < PINGS; i++) {
+            for (int p = 0; p < PARCELS_PER_PING; p++) {
+                double distanceKm = legacyDistance(agentLats[i], agentLngs[i], parcelLats[p], parcelLngs[p]);
+                int etaMinutes = (int) (distanceKm * 3);
+                String etaText = etaMinutes < 60
+                        ? etaMinutes + " mins"
+                        : (etaMinutes / 60) + " hrs " + (etaMinutes % 60) + " mins";
+                sink += String.format("%.2f", distanceKm).length() + etaText.length();
+            }
+        }
+    }
+
+    private void after() {
+        for (int i = 0; i < PINGS; i++) {
+            double cos = GeoUtils.cosLat(agentLats[i]);
+            for (int p = 0; p < PARCELS_PER_PING; p++) {
+                double distanceKm = GeoUtils.distanceKm(agentLats[i], agentLngs[i], cos,
+                        parcelLats[p], parcelLngs[p], parcelCos[p]);
+                int etaMinutes = (int) (distanceKm * 3);
+                sink += GeoUtils.formatKm(distanceKm).length() + GeoUtils.formatEta(etaMinutes).length();
+            }
+        }
+    }
+
+    // AgentLocationService.calculateDistance before GeoUtils
+    private static double legacyDistance(double lat1, double lon1, double lat2, double lon2) {
+        final int R = 6371;
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return R * c;
+    }
+}
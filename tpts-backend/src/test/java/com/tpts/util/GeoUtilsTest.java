@@ -0,0 +1,87 @@
+package com.tpts.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class GeoUtilsTest {
+
+    @Test
+    void haversineMatchesKnownDistance() {
+        // Bengaluru -> Chennai, about 290 km great-circle
+        double km = GeoUtils.haversineKm(12.9716, 77.5946, 13.0827, 80.2707);
+
+        assertThat(km).isCloseTo(290.2, within(1.0));
+        assertThat(GeoUtils.haversineKm(12.9716, 77.5946, 12.9716, 77.5946)).isZero();
+    }
+
+    @Test
+    void fastPathStaysWithinATenthOfAPercentOnShortHops() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            double lat1 = -60 + random.nextDouble() * 120;
+            double lng1 = -180 + random.nextDouble() * 360;
+            double lat2 = lat1 + (random.nextDouble() - 0.5) * 0.8;
+            double lng2 = lng1 + (random.nextDouble() - 0.5) * 0.8;
+
+            double exact = GeoUtils.haversineKm(lat1, lng1, lat2, lng2);
+            double fast = GeoUtils.distanceKm(lat1, lng1, lat2, lng2);
+            double precomputed = GeoUtils.distanceKm(lat1, lng1, GeoUtils.cosLat(lat1),
+                    lat2, lng2, GeoUtils.cosLat(lat2));
+
+            assertThat(fast).isCloseTo(exact, within(Math.max(1e-9, exact * 0.001)));
+            assertThat(precomputed).isCloseTo(exact, within(Math.max(1e-9, exact * 0.001)));
+        }
+    }
+
+    @Test
+    void longHopsUseHaversine() {
+        assertThat(GeoUtils.distanceKm(12.9716, 77.5946, 28.6139, 77.2090))
+                .isEqualTo(GeoUtils.haversineKm(12.9716, 77.5946, 28.6139, 77.2090));
+    }
+
+    @Test
+    void bulkAndMatrixMatchSingleDistances() {
+        double[] lats = { 12.90, 12.95, 13.10, 19.07 };
+        double[] lngs = { 77.50, 77.60, 77.40, 72.87 };
+        double[] cos = new double[lats.length];
+        for (int i = 0; i < lats.length; i++) {
+            cos[i] = GeoUtils.cosLat(lats[i]);
+        }
+
+        double[] out = new double[lats.length];
+        GeoUtils.distancesKm(12.97, 77.59, lats, lngs, cos, out, lats.length);
+        for (int i = 0; i < lats.length; i++) {
+            assertThat(out[i]).isEqualTo(GeoUtils.distanceKm(12.97, 77.59, GeoUtils.cosLat(12.97),
+                    lats[i], lngs[i], cos[i]));
+        }
+
+        int n = lats.length;
+        double[] matrix = new double[n * n];
+        GeoUtils.distanceMatrixKm(lats, lngs, matrix, n);
+        for (int i = 0; i < n; i++) {
+            assertThat(matrix[i * n + i]).isZero();
+            for (int j = 0; j < n; j++) {
+                assertThat(matrix[i * n + j]).isEqualTo(matrix[j * n + i]);
+            }
+        }
+    }
+
+    @Test
+    void formatKmMatchesStringFormat() {
+        double[] samples = { 0, 0.004, 0.005, 0.1, 3.4, 3.456, 9.999, 10.05, 123.456 };
+        for (double km : samples) {
+            assertThat(GeoUtils.formatKm(km)).as("%s km", km).isEqualTo(String.format("%.2f", km));
+        }
+    }
+
+    @Test
+    void formatEtaUsesMinutesAndHours() {
+        assertThat(GeoUtils.formatEta(45)).isEqualTo("45 mins");
+        assertThat(GeoUtils.formatEta(60)).isEqualTo("1 hrs 0 mins");
+        assertThat(GeoUtils.formatEta(65)).isEqualTo("1 hrs 5 mins");
+    }
+}
@@ -0,0 +1,126 @@
+package com.tpts.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteSequencerTest {
+
+    @Test
+    void visitsStopsAlongALineInOrder() {
+        // Start at 0, stops scattered along a line: the optimum is left to right
+        double[] xs = { 0, 4, 1, 3, 2, 5 };
+        double[] matrix = euclidean(xs, new double[xs.length]);
+
+        int[] order = RouteSequencer.sequence(matrix, xs.length, false);
+
+        assertThat(order).containsExactly(0, 2, 4, 3, 1, 5);
+        assertThat(RouteSequencer.pathCost(matrix, xs.length, order)).isEqualTo(5.0);
+    }
+
+    @Test
+    void returnsAPermutationStartingAtZeroAndKeepsPinnedEnd() {
+        Random random = new Random(1);
+        for (int n = 1; n <= 12; n++) {
+            double[] matrix = randomMatrix(random, n, false);
+            for (boolean pinned : new boolean[] { false, true }) {
+                if (pinned && n < 2) {
+                    continue;
+                }
+                int[] order = RouteSequencer.sequence(matrix, n, pinned);
+
+                assertThat(order[0]).isZero();
+                assertThat(Arrays.stream(order).sorted().toArray()).isEqualTo(range(n));
+                if (pinned) {
+                    assertThat(order[n - 1]).isEqualTo(n - 1);
+                }
+            }
+        }
+    }
+
+    @Test
+    void neverWorseThanNearestNeighbourAndCloseToOptimal() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int n = 4 + random.nextInt(5);
+            boolean pinned = random.nextBoolean();
+            boolean asymmetric = random.nextBoolean();
+            double[] matrix = randomMatrix(random, n, asymmetric);
+
+            double greedy = RouteSequencer.pathCost(matrix, n, RouteSequencer.nearestNeighbour(matrix, n, pinned));
+            double improved = RouteSequencer.pathCost(matrix, n, RouteSequencer.sequence(matrix, n, pinned));
+            double optimal = bruteForce(matrix, n, pinned);
+
+            assertThat(improved).isLessThanOrEqualTo(greedy + 1e-9);
+            assertThat(improved).isLessThanOrEqualTo(optimal * 1.25 + 1e-9);
+        }
+    }
+
+    // ==========================================
+    // Helper Methods
+    // ==========================================
+
+    private static double[] euclidean(double[] xs, double[] ys) {
+        int n = xs.length;
+        double[] matrix = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                matrix[i * n + j] = Math.hypot(xs[i] - xs[j], ys[i] - ys[j]);
+            }
+        }
+        return matrix;
+    }
+
+    private static double[] randomMatrix(Random random, int n, boolean asymmetric) {
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        for (int i = 0; i < n; i++) {
+            xs[i] = random.nextDouble() * 10;
+            ys[i] = random.nextDouble() * 10;
+        }
+        double[] matrix = euclidean(xs, ys);
+        if (asymmetric) {
+            // Road-like detours that differ by direction
+            for (int i = 0; i < n * n; i++) {
+                matrix[i] *= 1 + random.nextDouble() * 0.5;
+            }
+        }
+        return matrix;
+    }
+
+    private static double bruteForce(double[] matrix, int n, boolean pinned) {
+        int[] order = range(n);
+        int last = pinned ? n - 2 : n - 1;
+        return bestPermutation(matrix, n, order, 1, last);
+    }
+
+    private static double bestPermutation(double[] matrix, int n, int[] order, int k, int last) {
+        if (k > last) {
+            return RouteSequencer.pathCost(matrix, n, order);
+        }
+        double best = Double.MAX_VALUE;
+        for (int i = k; i <= last; i++) {
+            swap(order, k, i);
+            best = Math.min(best, bestPermutation(matrix, n, order, k + 1, last));
+            swap(order, k, i);
+        }
+        return best;
+    }
+
+    private static void swap(int[] a, int i, int j) {
+        int tmp = a[i];
+        a[i] = a[j];
+        a[j] = tmp;
+    }
+
+    private static int[] range(int n) {
+        int[] a = new int[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = i;
+        }
+        return a;
+    }
+}
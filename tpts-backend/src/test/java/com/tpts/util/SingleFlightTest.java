@@ -0,0 +1,99 @@
+package com.tpts.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flight = new SingleFlight<>();
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> flight.execute("route", () -> {
+                    calls.incrementAndGet();
+                    await(release);
+                    return "value";
+                })));
+            }
+            // Let every caller reach execute() before the leader finishes
+            while ((long) flight.getStats().get("coalesced") + calls.get() < 8) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+            assertThat(calls.get()).isEqualTo(1);
+            assertThat(flight.getStats().get("inFlight")).isEqualTo(0);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void followersGetTheLeadersException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> leader = pool.submit(() -> flight.execute("route", () -> {
+                await(release);
+                throw new IllegalStateException("upstream down");
+            }));
+            while ((int) flight.getStats().get("inFlight") == 0) {
+                Thread.sleep(5);
+            }
+
+            // Release the leader only once this thread has joined its call
+            Thread releaser = new Thread(() -> {
+                while ((long) flight.getStats().get("coalesced") == 0) {
+                    Thread.onSpinWait();
+                }
+                release.countDown();
+            });
+            releaser.start();
+            assertThatThrownBy(() -> flight.execute("route", () -> "unused"))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("upstream down");
+            assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void completedKeysAreNotCached() {
+        AtomicInteger calls = new AtomicInteger();
+
+        flight.execute("route", () -> "v" + calls.incrementAndGet());
+        String second = flight.execute("route", () -> "v" + calls.incrementAndGet());
+
+        assertThat(second).isEqualTo("v2");
+        assertThat(flight.getStats().get("coalesced")).isEqualTo(0L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
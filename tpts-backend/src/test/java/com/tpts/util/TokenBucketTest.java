@@ -0,0 +1,75 @@
+package com.tpts.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenBucketTest {
+
+    @Test
+    void allowsBurstUpToCapacityThenRefuses() {
+        TokenBucket bucket = new TokenBucket(1.0, 3);
+
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+    }
+
+    @Test
+    void refillsAtTheConfiguredRate() throws Exception {
+        TokenBucket bucket = new TokenBucket(2.0, 1);
+        assertThat(bucket.tryAcquire()).isTrue();
+        assertThat(bucket.tryAcquire()).isFalse();
+
+        Thread.sleep(600); // one refill interval plus slack
+        assertThat(bucket.tryAcquire()).isTrue();
+    }
+
+    @Test
+    void acquireWaitsForTheNextToken() {
+        TokenBucket bucket = new TokenBucket(5.0, 1);
+        bucket.tryAcquire();
+
+        long start = System.nanoTime();
+        assertThat(bucket.acquire()).isTrue();
+        long waitedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(waitedMs).isBetween(100L, 2_000L);
+    }
+
+    @Test
+    void boundedAcquireGivesUpWhenTheTokenIsTooFarAway() {
+        TokenBucket bucket = new TokenBucket(0.5, 1);
+        bucket.tryAcquire();
+
+        long start = System.nanoTime();
+        assertThat(bucket.acquire(100, TimeUnit.MILLISECONDS)).isFalse();
+        assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(1_000L);
+
+        assertThat(new TokenBucket(5.0, 1).acquire(0, TimeUnit.MILLISECONDS)).isTrue();
+    }
+
+    @Test
+    void acquireReturnsFalseWhenInterrupted() {
+        TokenBucket bucket = new TokenBucket(0.001, 1);
+        bucket.tryAcquire();
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThat(bucket.acquire()).isFalse();
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    void rejectsNonPositiveSettings() {
+        assertThatThrownBy(() -> new TokenBucket(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucket(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,80 @@
+package com.tpts.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput harness for TrackingCodeGenerator
+ * Skipped in normal builds; run with:
+ * mvn test -Dtest=TrackingCodeGeneratorBenchmark -Dbenchmark=true
+ *
+ * Reports the raw cost per code while the per-second sequence has room, and
+ * the sustained rate with 1 and 8 threads (bounded by 65,536 codes/s/node).
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class TrackingCodeGeneratorBenchmark {
+
+    private static final int BURST = 50_000;
+    private static final long SUSTAINED_MS = 3_000;
+
+    @Test
+    void burstCostPerCode() {
+        // Warm up, then measure fresh bursts that stay below the sequence cap
+        TrackingCodeGenerator generator = TrackingCodeGeneratorTest.node(7);
+        for (int round = 0; round < 5; round++) {
+            awaitNextSecond();
+            long start = System.nanoTime();
+            Set<String> codes = new HashSet<>(BURST * 2);
+            for (int i = 0; i < BURST; i++) {
+                codes.add(generator.nextTrackingNumber());
+            }
+            long elapsed = System.nanoTime() - start;
+            assertThat(codes).hasSize(BURST);
+            System.out.printf("burst round %d: %.1f ns/code%n", round, (double) elapsed / BURST);
+        }
+    }
+
+    @Test
+    void sustainedThroughput() throws Exception {
+        for (int threads : new int[] { 1, 8 }) {
+            TrackingCodeGenerator generator = TrackingCodeGeneratorTest.node(7);
+            Set<String> codes = ConcurrentHashMap.newKeySet();
+            CountDownLatch done = new CountDownLatch(threads);
+            long deadline = System.currentTimeMillis() + SUSTAINED_MS;
+
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Thread worker = new Thread(() -> {
+                    while (System.currentTimeMillis() < deadline) {
+                        codes.add(generator.nextTrackingNumber());
+                    }
+                    done.countDown();
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            done.await();
+
+            long issued = (Long) generator.getStats().get("issued");
+            assertThat(codes).hasSize((int) issued);
+            System.out.printf("%d thread(s): %d codes in %d ms, %.0f codes/s, all unique%n",
+                    threads, issued, SUSTAINED_MS, issued * 1000.0 / SUSTAINED_MS);
+        }
+    }
+
+    private static void awaitNextSecond() {
+        long second = System.currentTimeMillis() / 1000;
+        while (System.currentTimeMillis() / 1000 == second) {
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.tpts.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrackingCodeGeneratorTest {
+
+    private static final String ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ";
+
+    private TrackingCodeGenerator generator;
+
+    @BeforeEach
+    void setUp() {
+        generator = node(7);
+    }
+
+    @Test
+    void codesHavePrefixLengthAndValidCheck() {
+        String tracking = generator.nextTrackingNumber();
+        String group = generator.nextGroupCode();
+
+        assertThat(tracking).startsWith("TRK").hasSize(TrackingCodeGenerator.CODE_LENGTH);
+        assertThat(group).startsWith("GRP").hasSize(TrackingCodeGenerator.CODE_LENGTH);
+        assertThat(TrackingCodeGenerator.isWellFormed(tracking)).isTrue();
+        assertThat(TrackingCodeGenerator.isWellFormed(group)).isTrue();
+        assertThat(TrackingCodeGenerator.isWellFormed(tracking.toLowerCase())).isTrue();
+    }
+
+    @Test
+    void codesAreUniqueAcrossNodes() {
+        TrackingCodeGenerator other = node(8);
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(seen.add(generator.nextTrackingNumber())).isTrue();
+            assertThat(seen.add(other.nextTrackingNumber())).isTrue();
+        }
+    }
+
+    @Test
+    void checkCharacterCatchesSubstitutionsAndTranspositions() {
+        String code = generator.nextTrackingNumber();
+        char[] chars = code.toCharArray();
+
+        for (int i = 3; i < chars.length; i++) {
+            char original = chars[i];
+            for (char c : ALPHABET.toCharArray()) {
+                if (c == original) {
+                    continue;
+                }
+                chars[i] = c;
+                assertThat(TrackingCodeGenerator.isMistyped(new String(chars))).as("substitution at %d", i).isTrue();
+            }
+            chars[i] = original;
+        }
+
+        for (int i = 3; i < chars.length - 1; i++) {
+            if (chars[i] == chars[i + 1]) {
+                continue;
+            }
+            char[] swapped = chars.clone();
+            swapped[i] = chars[i + 1];
+            swapped[i + 1] = chars[i];
+            assertThat(TrackingCodeGenerator.isMistyped(new String(swapped))).as("transposition at %d", i).isTrue();
+        }
+    }
+
+    @Test
+    void legacyAndForeignCodesAreNotWellFormed() {
+        assertThat(TrackingCodeGenerator.isWellFormed("TRK1234561234")).isFalse();
+        assertThat(TrackingCodeGenerator.isMistyped("TRK1234561234")).isFalse();
+        assertThat(TrackingCodeGenerator.isWellFormed(null)).isFalse();
+        assertThat(TrackingCodeGenerator.isWellFormed("TRK0000000000I0")).isFalse();
+        assertThat(TrackingCodeGenerator.isWellFormed("ABC" + generator.nextTrackingNumber().substring(3))).isFalse();
+    }
+
+    @Test
+    void rejectsOutOfRangeNodeId() {
+        TrackingCodeGenerator bad = new TrackingCodeGenerator();
+        ReflectionTestUtils.setField(bad, "configuredNodeId", 1024);
+
+        assertThatThrownBy(bad::init).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void fallsBackToNodeZeroWhenNothingIsConfigured() {
+        TrackingCodeGenerator unset = new TrackingCodeGenerator();
+        ReflectionTestUtils.setField(unset, "configuredNodeId", -1);
+
+        unset.init();
+        assertThat(unset.getStats().get("nodeId")).isEqualTo(0L);
+    }
+
+    @Test
+    void requiresNodeIdWhenSingleNodeIsOff() {
+        TrackingCodeGenerator unset = new TrackingCodeGenerator();
+        ReflectionTestUtils.setField(unset, "configuredNodeId", -1);
+        ReflectionTestUtils.setField(unset, "singleNode", false);
+
+        assertThatThrownBy(unset::init).isInstanceOf(IllegalStateException.class);
+
+        ReflectionTestUtils.setField(unset, "singleNode", true);
+        unset.init();
+        assertThat(unset.getStats().get("nodeId")).isEqualTo(0L);
+    }
+
+    static TrackingCodeGenerator node(int nodeId) {
+        TrackingCodeGenerator generator = new TrackingCodeGenerator();
+        ReflectionTestUtils.setField(generator, "configuredNodeId", nodeId);
+        generator.init();
+        return generator;
+    }
+}